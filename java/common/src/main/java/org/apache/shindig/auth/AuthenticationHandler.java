@@ -31,7 +31,9 @@ public interface AuthenticationHandler {
    * Some authentication handlers need to read the request body to perform verification. Because
    * the servlet stream can only be read once, making the content unavailable to the receiving
    * servlet. An authentication handler that fully reads the body should stash the raw content
-   * byte array using request.setAttribute(STASHED_BODY, <body byte array>)
+   * byte array using request.setAttribute(STASHED_BODY, <body byte array>), or preferably read it
+   * with {@link StashedBody#stash}, which bounds the size and moves large bodies out of memory.
+   * Use {@link StashedBody#get} to read a stashed body, since large bodies aren't byte arrays.
    */
   public static final String STASHED_BODY = "STASHED_BODY";
 
@@ -21,10 +21,10 @@ import com.google.common.base.Charsets;
 import com.google.common.base.Preconditions;
 import com.google.inject.Inject;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.shindig.common.servlet.InjectedFilter;
 
 import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -79,6 +79,18 @@ public class AuthenticationServletFilter extends InjectedFilter {
     HttpServletRequest req = (HttpServletRequest) request;
     HttpServletResponse resp = (HttpServletResponse) response;
 
+    try {
+      authenticate(chain, req, resp);
+    } finally {
+      StashedBody body = StashedBody.get(req);
+      if (body != null) {
+        body.release();
+      }
+    }
+  }
+
+  private void authenticate(FilterChain chain, HttpServletRequest req, HttpServletResponse resp)
+      throws IOException, ServletException {
     try {
       for (AuthenticationHandler handler : handlers) {
         SecurityToken token = handler.getSecurityTokenFromRequest(req);
@@ -118,8 +130,14 @@ public class AuthenticationServletFilter extends InjectedFilter {
 
   private void callChain(FilterChain chain, HttpServletRequest request,
       HttpServletResponse response) throws IOException, ServletException {
-    if (request.getAttribute(AuthenticationHandler.STASHED_BODY) != null) {
-      chain.doFilter(new StashedBodyRequestwrapper(request), response);
+    StashedBody body = StashedBody.get(request);
+    if (body != null) {
+      StashedBodyRequestwrapper wrapper = new StashedBodyRequestwrapper(request, body);
+      try {
+        chain.doFilter(wrapper, response);
+      } finally {
+        IOUtils.closeQuietly(wrapper.rawStream);
+      }
     } else {
       chain.doFilter(request, response);      
     }
@@ -132,10 +150,9 @@ public class AuthenticationServletFilter extends InjectedFilter {
     BufferedReader reader;
 
 
-    StashedBodyRequestwrapper(HttpServletRequest wrapped) {
+    StashedBodyRequestwrapper(HttpServletRequest wrapped, StashedBody body) throws IOException {
       super(wrapped);
-      rawStream = new ByteArrayInputStream(
-          (byte[])wrapped.getAttribute(AuthenticationHandler.STASHED_BODY));
+      rawStream = body.getInputStream();
     }
 
     @Override
@@ -144,9 +161,30 @@ public class AuthenticationServletFilter extends InjectedFilter {
 
       if (stream == null) {
         stream = new ServletInputStream() {
+          @Override
           public int read() throws IOException {
             return rawStream.read();
           }
+
+          @Override
+          public int read(byte[] b, int off, int len) throws IOException {
+            return rawStream.read(b, off, len);
+          }
+
+          @Override
+          public int available() throws IOException {
+            return rawStream.available();
+          }
+
+          @Override
+          public long skip(long n) throws IOException {
+            return rawStream.skip(n);
+          }
+
+          @Override
+          public void close() throws IOException {
+            rawStream.close();
+          }
         };
       }
       return stream;
@@ -157,10 +195,8 @@ public class AuthenticationServletFilter extends InjectedFilter {
       Preconditions.checkState(stream == null, "The methods getInputStream() and getReader() are mutually exclusive.");
 
       if (reader == null) {
-        Charset charset = Charset.forName(getCharacterEncoding());
-        if (charset == null) {
-          charset =  Charsets.UTF_8;
-        }
+        String encoding = getCharacterEncoding();
+        Charset charset = encoding == null ? Charsets.UTF_8 : Charset.forName(encoding);
         reader = new BufferedReader(new InputStreamReader(rawStream, charset));
       }
       return reader;
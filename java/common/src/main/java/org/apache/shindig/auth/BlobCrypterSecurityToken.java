@@ -99,6 +99,14 @@ public class BlobCrypterSecurityToken extends AbstractSecurityToken implements S
     // トークン作成時のタイムスタンプが（自動で）含まれているので、MAX_TOKEN_LIFETIME_SEC 以上経過していないかもチェックする。
     //
     Map<String, String> values = crypter.unwrap(token, MAX_TOKEN_LIFETIME_SECS);
+    return fromValues(crypter, container, domain, values, activeUrl);
+  }
+
+  /**
+   * Builds a token from values that have already been decrypted and verified.
+   */
+  static BlobCrypterSecurityToken fromValues(BlobCrypter crypter, String container, String domain,
+        Map<String, String> values, String activeUrl) {
     BlobCrypterSecurityToken t = new BlobCrypterSecurityToken(crypter, container, domain);
     setTokenValues(t, values);
     t.setActiveUrl(activeUrl);
@@ -19,11 +19,16 @@
 package org.apache.shindig.auth;
 
 import org.apache.commons.lang.StringUtils;
+import org.apache.shindig.common.cache.Cache;
+import org.apache.shindig.common.cache.LruCache;
+import org.apache.shindig.common.cache.NullCache;
 import org.apache.shindig.common.crypto.BasicBlobCrypter;
 import org.apache.shindig.common.crypto.BlobCrypter;
 import org.apache.shindig.common.crypto.BlobCrypterException;
+import org.apache.shindig.common.util.TimeSource;
 import org.apache.shindig.config.ContainerConfig;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
@@ -45,6 +50,11 @@ import java.util.Map;
  * </pre>
  * Wire format is "&lt;container&gt;:&lt;encrypted-and-signed-token&gt;"
  *
+ * A page typically sends the same token with every request it makes, so the values of recently
+ * verified tokens are kept in a bounded cache keyed on the token string. A cached token is only
+ * reused while it is inside the lifetime checked by the crypter and before its own expiry time;
+ * after that it goes through full verification again.
+ *
  * @since 2.0.0
  */
 @Singleton
@@ -76,6 +86,13 @@ public class BlobCrypterSecurityTokenCodec implements SecurityTokenCodec {
    */
   protected final Map<String, String> domains = Maps.newHashMap();
 
+  /** Default number of verified tokens to remember. */
+  public static final int DEFAULT_TOKEN_CACHE_CAPACITY = 1000;
+
+  private Cache<String, VerifiedToken> tokenCache =
+      new LruCache<String, VerifiedToken>(DEFAULT_TOKEN_CACHE_CAPACITY);
+  private TimeSource timeSource = new TimeSource();
+
   @Inject
   public BlobCrypterSecurityTokenCodec(ContainerConfig config) {
     //
@@ -99,6 +116,21 @@ public class BlobCrypterSecurityTokenCodec implements SecurityTokenCodec {
     }
   }
 
+  /**
+   * Sets the number of verified tokens to remember. Zero disables caching.
+   */
+  public void setTokenCacheCapacity(int capacity) {
+    if (capacity > 0) {
+      tokenCache = new LruCache<String, VerifiedToken>(capacity);
+    } else {
+      tokenCache = new NullCache<String, VerifiedToken>();
+    }
+  }
+
+  public void setTimeSource(TimeSource timeSource) {
+    this.timeSource = timeSource;
+  }
+
   /**
    * Load a BlobCrypter from the specified file.  Override this if you have your own
    * BlobCrypter implementation.
@@ -143,12 +175,50 @@ public class BlobCrypterSecurityTokenCodec implements SecurityTokenCodec {
       // トークン本文となる暗号文字列（crypted）と、takenParameter 中に入っていた activeUrl から
       // セキュリティトークンを作成する。
       //
-      return BlobCrypterSecurityToken.decrypt(crypter, container, domain, crypted, activeUrl);
+      long now = timeSource.currentTimeMillis();
+      VerifiedToken verified = tokenCache.getElement(token);
+      if (verified != null) {
+        if (now < verified.reuseUntil) {
+          return BlobCrypterSecurityToken.fromValues(
+              crypter, container, domain, verified.values, activeUrl);
+        }
+        tokenCache.removeElement(token);
+      }
+      Map<String, String> values =
+          crypter.unwrap(crypted, BlobCrypterSecurityToken.MAX_TOKEN_LIFETIME_SECS);
+      cacheVerified(token, values, now);
+      return BlobCrypterSecurityToken.fromValues(crypter, container, domain, values, activeUrl);
     } catch (BlobCrypterException e) {
       throw new SecurityTokenException(e);
     }
   }
 
+  /**
+   * Remembers a verified token until the earlier of the end of its lifetime, not counting the
+   * clock skew allowance, and its expiry time. Tokens without a timestamp come from a crypter
+   * that checks validity some other way and are not cached.
+   */
+  private void cacheVerified(String token, Map<String, String> values, long now) {
+    String timestamp = values.get(BasicBlobCrypter.TIMESTAMP_KEY);
+    if (timestamp == null) {
+      return;
+    }
+    long reuseUntil;
+    try {
+      reuseUntil = (Long.parseLong(timestamp) + BlobCrypterSecurityToken.MAX_TOKEN_LIFETIME_SECS)
+          * 1000;
+      String expiresAt = values.get(BlobCrypterSecurityToken.EXPIRES_KEY);
+      if (expiresAt != null) {
+        reuseUntil = Math.min(reuseUntil, Long.parseLong(expiresAt));
+      }
+    } catch (NumberFormatException e) {
+      return;
+    }
+    if (now < reuseUntil) {
+      tokenCache.addElement(token, new VerifiedToken(ImmutableMap.copyOf(values), reuseUntil));
+    }
+  }
+
   public String encodeToken(SecurityToken token) throws SecurityTokenException {
     if (! (token instanceof BlobCrypterSecurityToken)) {
       throw new SecurityTokenException("Can only encode BlogCrypterSecurityTokens");
@@ -162,4 +232,14 @@ public class BlobCrypterSecurityTokenCodec implements SecurityTokenCodec {
       throw new SecurityTokenException(e);
     }
   }
+
+  private static class VerifiedToken {
+    private final Map<String, String> values;
+    private final long reuseUntil;
+
+    VerifiedToken(Map<String, String> values, long reuseUntil) {
+      this.values = values;
+      this.reuseUntil = reuseUntil;
+    }
+  }
 }
@@ -0,0 +1,223 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.auth;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import javax.servlet.ServletRequest;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * A request body read by an {@link AuthenticationHandler} and replayed to the rest of the filter
+ * chain by {@link AuthenticationServletFilter}.
+ *
+ * The body is read in bulk, once. Bodies up to the memory threshold are kept in an array of
+ * exactly the body's size, which is stashed as the plain byte[] {@link
+ * AuthenticationHandler#STASHED_BODY} attribute and shared by every later reader without copying.
+ * Larger bodies are written to a temporary file, and the StashedBody itself is stashed; the file
+ * is deleted by {@link #release()} when the request completes. Bodies larger than the size limit
+ * are rejected as soon as the limit is crossed, without reading the rest.
+ */
+public final class StashedBody {
+  /** Largest body kept in memory by default. */
+  public static final int DEFAULT_MEMORY_THRESHOLD = 256 * 1024;
+
+  /** Largest body accepted by default. */
+  public static final long DEFAULT_MAX_SIZE = 16L * 1024 * 1024;
+
+  private static final int CHUNK_SIZE = 8192;
+
+  private final byte[] bytes;
+  private final File file;
+  private final long length;
+
+  private StashedBody(byte[] bytes) {
+    this.bytes = bytes;
+    this.file = null;
+    this.length = bytes.length;
+  }
+
+  private StashedBody(File file, long length) {
+    this.bytes = null;
+    this.file = file;
+    this.length = length;
+  }
+
+  /**
+   * @return The body stashed on the request, or null if none has been stashed.
+   */
+  public static StashedBody get(ServletRequest request) {
+    Object stashed = request.getAttribute(AuthenticationHandler.STASHED_BODY);
+    if (stashed instanceof byte[]) {
+      return new StashedBody((byte[]) stashed);
+    }
+    if (stashed instanceof StashedBody) {
+      return (StashedBody) stashed;
+    }
+    return null;
+  }
+
+  /**
+   * Reads the body of the request and stashes it, unless that was already done.
+   *
+   * @throws IOException If the body can't be read or is larger than maxSize.
+   */
+  public static StashedBody stash(HttpServletRequest request, int memoryThreshold, long maxSize)
+      throws IOException {
+    StashedBody body = get(request);
+    if (body == null) {
+      body = read(request.getInputStream(), request.getContentLength(), memoryThreshold, maxSize);
+      request.setAttribute(AuthenticationHandler.STASHED_BODY,
+          body.bytes != null ? body.bytes : body);
+    }
+    return body;
+  }
+
+  /**
+   * Reads a body from the stream.
+   *
+   * @param declaredLength The length declared by the request, or -1 if unknown.
+   */
+  static StashedBody read(InputStream in, int declaredLength, int memoryThreshold, long maxSize)
+      throws IOException {
+    if (declaredLength > maxSize) {
+      throw tooLarge(maxSize);
+    }
+    int initialSize = declaredLength >= 0 && declaredLength <= memoryThreshold ?
+        declaredLength : Math.min(CHUNK_SIZE, memoryThreshold);
+    byte[] buffer = new byte[initialSize];
+    int count = 0;
+    while (true) {
+      if (count == buffer.length) {
+        // Probe before growing, so a body that exactly fills the buffer is never copied.
+        int next = in.read();
+        if (next == -1) {
+          break;
+        }
+        if (count >= memoryThreshold) {
+          return spill(in, buffer, count, next, maxSize);
+        }
+        byte[] grown = new byte[Math.min(Math.max(count * 2, CHUNK_SIZE), memoryThreshold)];
+        System.arraycopy(buffer, 0, grown, 0, count);
+        buffer = grown;
+        buffer[count++] = (byte) next;
+      } else {
+        int read = in.read(buffer, count, buffer.length - count);
+        if (read == -1) {
+          break;
+        }
+        count += read;
+      }
+      if (count > maxSize) {
+        throw tooLarge(maxSize);
+      }
+    }
+    if (count != buffer.length) {
+      byte[] exact = new byte[count];
+      System.arraycopy(buffer, 0, exact, 0, count);
+      buffer = exact;
+    }
+    return new StashedBody(buffer);
+  }
+
+  private static StashedBody spill(InputStream in, byte[] head, int headLength, int next,
+      long maxSize) throws IOException {
+    File file = File.createTempFile("shindig-body", ".tmp");
+    OutputStream out = null;
+    boolean complete = false;
+    try {
+      out = new FileOutputStream(file);
+      out.write(head, 0, headLength);
+      out.write(next);
+      long length = headLength + 1;
+      byte[] chunk = new byte[CHUNK_SIZE];
+      int read;
+      while ((read = in.read(chunk)) != -1) {
+        length += read;
+        if (length > maxSize) {
+          throw tooLarge(maxSize);
+        }
+        out.write(chunk, 0, read);
+      }
+      out.close();
+      complete = true;
+      return new StashedBody(file, length);
+    } finally {
+      IOUtils.closeQuietly(out);
+      if (!complete) {
+        file.delete();
+      }
+    }
+  }
+
+  private static IOException tooLarge(long maxSize) {
+    return new IOException("Request body is larger than " + maxSize + " bytes");
+  }
+
+  public long getLength() {
+    return length;
+  }
+
+  public boolean isInMemory() {
+    return bytes != null;
+  }
+
+  /**
+   * @return A new stream over the body. The caller should close it.
+   */
+  public InputStream getInputStream() throws IOException {
+    if (bytes != null) {
+      return new ByteArrayInputStream(bytes);
+    }
+    return new FileInputStream(file);
+  }
+
+  /**
+   * @return The body as an array. For bodies kept in memory this is the stashed array itself and
+   *     must not be modified; bodies in a file are read into a new array.
+   */
+  public byte[] getBytes() throws IOException {
+    if (bytes != null) {
+      return bytes;
+    }
+    InputStream in = getInputStream();
+    try {
+      return IOUtils.toByteArray(in);
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Deletes the temporary file backing the body, if any.
+   */
+  public void release() {
+    if (file != null) {
+      file.delete();
+    }
+  }
+}
@@ -19,6 +19,7 @@
 package org.apache.shindig.common;
 
 import org.apache.shindig.common.util.DateUtil;
+import org.apache.shindig.common.util.ProjectedList;
 import org.apache.shindig.common.uri.Uri;
 import org.joda.time.DateTime;
 import org.json.JSONArray;
@@ -34,6 +35,7 @@ import java.util.Date;
 import java.util.Iterator;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Serializes a JSONObject.
@@ -183,7 +185,22 @@ public final class JsonSerializer {
    * @throws IOException If {@link Appendable#append(char)} throws an exception.
    */
   public static void appendPojo(Appendable buf, Object pojo) throws IOException {
-    Map<String, Method> methods = JsonUtil.getGetters(pojo);
+    appendPojo(buf, pojo, JsonUtil.getGetters(pojo));
+  }
+
+  /**
+   * Appends a java object using only the getters of the given properties. The other getters are
+   * not called.
+   *
+   * @throws IOException If {@link Appendable#append(char)} throws an exception.
+   */
+  public static void appendPojo(Appendable buf, Object pojo, Set<String> fields)
+      throws IOException {
+    appendPojo(buf, pojo, JsonUtil.getGetters(pojo, fields));
+  }
+
+  private static void appendPojo(Appendable buf, Object pojo, Map<String, Method> methods)
+      throws IOException {
     buf.append('{');
     boolean firstDone = false;
     for (Map.Entry<String, Method> entry : methods.entrySet()) {
@@ -268,6 +285,10 @@ public final class JsonSerializer {
    */
   public static void appendCollection(Appendable buf, Collection<?> collection)
       throws IOException {
+    if (collection instanceof ProjectedList) {
+      appendProjectedList(buf, (ProjectedList<?>) collection);
+      return;
+    }
     buf.append('[');
     boolean firstDone = false;
     for (Object o : collection) {
@@ -283,6 +304,41 @@ public final class JsonSerializer {
     buf.append(']');
   }
 
+  /**
+   * Appends a projected list to the buffer. Beans in the list are written with only the projected
+   * properties; other values are written as usual.
+   *
+   * @throws IOException If {@link Appendable#append(char)} throws an exception.
+   */
+  public static void appendProjectedList(Appendable buf, ProjectedList<?> list)
+      throws IOException {
+    buf.append('[');
+    boolean firstDone = false;
+    for (Object o : list) {
+      if (o != null) {
+        if (firstDone) {
+          buf.append(',');
+        } else {
+          firstDone = true;
+        }
+        if (isPojo(o)) {
+          appendPojo(buf, o, list.getFields());
+        } else {
+          append(buf, o);
+        }
+      }
+    }
+    buf.append(']');
+  }
+
+  private static boolean isPojo(Object value) {
+    return !(value instanceof Number || value instanceof Boolean || value instanceof CharSequence
+        || value instanceof DateTime || value instanceof Locale || value instanceof Uri
+        || value instanceof Date || value instanceof JSONObject || value instanceof JSONArray
+        || value instanceof Map || value instanceof Multimap || value instanceof Collection
+        || value.getClass().isEnum() || value.getClass().isArray());
+  }
+
   /**
    * Appends a Map to the buffer.
    *
@@ -23,6 +23,7 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableSet;
@@ -40,6 +41,15 @@ public final class JsonUtil {
 
   private static final Map<Class<?>, Map<String, Method>> GETTERS = new MapMaker().makeMap();
 
+  /**
+   * Most projections kept per class. Field sets come from requests, so only the first ones seen
+   * are kept; others are computed on each use.
+   */
+  private static final int MAX_PROJECTIONS = 64;
+
+  private static final ConcurrentMap<Class<?>, Map<Set<String>, Map<String, Method>>> PROJECTIONS =
+      new MapMaker().makeMap();
+
   /**
    * Gets a property of an Object.  Will return a property value if
    * serializing the value would produce a JSON object containing that 
@@ -98,6 +108,39 @@ public final class JsonUtil {
     return methods;
   }
 
+  /**
+   * Gets the getters of the given properties, in the same order as {@link #getGetters(Object)}.
+   * Names that are not properties of the object are ignored.
+   */
+  static Map<String, Method> getGetters(Object pojo, Set<String> fields) {
+    Class<?> clazz = pojo.getClass();
+
+    Map<Set<String>, Map<String, Method>> projections = PROJECTIONS.get(clazz);
+    if (projections == null) {
+      Map<Set<String>, Map<String, Method>> created = new MapMaker().makeMap();
+      projections = PROJECTIONS.putIfAbsent(clazz, created);
+      if (projections == null) {
+        projections = created;
+      }
+    }
+    Map<String, Method> methods = projections.get(fields);
+    if (methods != null) {
+      return methods;
+    }
+
+    methods = Maps.newLinkedHashMap();
+    for (Map.Entry<String, Method> entry : getGetters(pojo).entrySet()) {
+      if (fields.contains(entry.getKey())) {
+        methods.put(entry.getKey(), entry.getValue());
+      }
+    }
+
+    if (projections.size() < MAX_PROJECTIONS) {
+      projections.put(ImmutableSet.copyOf(fields), methods);
+    }
+    return methods;
+  }
+
   private static String getPropertyName(Method method) {
     JsonProperty property = method.getAnnotation(JsonProperty.class);
     if (property == null) {
@@ -71,6 +71,13 @@ public final class Crypto {
   public final static int HMAC_SHA1_LEN = 20;
 
   private final static char[] DIGITS = { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9' };
+
+  /**
+   * Mac and Cipher instances are expensive to look up and not thread safe, so each thread keeps
+   * its own and re-initializes it with the key for every operation.
+   */
+  private static final ThreadLocal<Mac> HMACS = new ThreadLocal<Mac>();
+  private static final ThreadLocal<Cipher> CIPHERS = new ThreadLocal<Cipher>();
   
   // everything is static, no instantiating this class
   private Crypto() { 
@@ -142,7 +149,7 @@ public final class Crypto {
       throw new GeneralSecurityException("HMAC key should be at least "
           + MIN_HMAC_KEY_LEN + " bytes.");
     }
-    Mac hmac = Mac.getInstance(HMAC_TYPE);
+    Mac hmac = getHmac();
     Key hmacKey = new SecretKeySpec(key, HMAC_TYPE);
     hmac.init(hmacKey);
     hmac.update(in);
@@ -162,7 +169,7 @@ public final class Crypto {
    */
   public static void hmacSha1Verify(byte[] key, byte[] in, byte[] expected)
   throws GeneralSecurityException {
-    Mac hmac = Mac.getInstance(HMAC_TYPE);
+    Mac hmac = getHmac();
     Key hmacKey = new SecretKeySpec(key, HMAC_TYPE);
     hmac.init(hmacKey);
     hmac.update(in);
@@ -193,8 +200,7 @@ public final class Crypto {
    */
   public static byte[] aes128cbcEncrypt(byte[] key, byte[] plain)
   throws GeneralSecurityException {
-    Cipher cipher = Cipher.getInstance(CIPHER_TYPE);
-    byte iv[] = getRandomBytes(cipher.getBlockSize());
+    byte iv[] = getRandomBytes(CIPHER_BLOCK_SIZE);
     return concat(iv, aes128cbcEncryptWithIV(key, iv, plain));
   }
 
@@ -213,7 +219,7 @@ public final class Crypto {
    */
   public static byte[] aes128cbcEncryptWithIV(byte[] key, byte[] iv, byte[] plain)
   throws GeneralSecurityException {
-    Cipher cipher = Cipher.getInstance(CIPHER_TYPE);
+    Cipher cipher = getCipher();
     Key cipherKey = new SecretKeySpec(key, CIPHER_KEY_TYPE);
     IvParameterSpec ivSpec = new IvParameterSpec(iv);
     cipher.init(Cipher.ENCRYPT_MODE, cipherKey, ivSpec);
@@ -253,13 +259,31 @@ public final class Crypto {
    */
   public static byte[] aes128cbcDecryptWithIv(byte[] key, byte[] iv,
       byte[] cipherText, int offset) throws GeneralSecurityException {
-    Cipher cipher = Cipher.getInstance(CIPHER_TYPE);
+    Cipher cipher = getCipher();
     Key cipherKey = new SecretKeySpec(key, CIPHER_KEY_TYPE);
     IvParameterSpec ivSpec = new IvParameterSpec(iv);
     cipher.init(Cipher.DECRYPT_MODE, cipherKey, ivSpec);
     return cipher.doFinal(cipherText, offset, cipherText.length-offset);
   }
 
+  private static Mac getHmac() throws GeneralSecurityException {
+    Mac hmac = HMACS.get();
+    if (hmac == null) {
+      hmac = Mac.getInstance(HMAC_TYPE);
+      HMACS.set(hmac);
+    }
+    return hmac;
+  }
+
+  private static Cipher getCipher() throws GeneralSecurityException {
+    Cipher cipher = CIPHERS.get();
+    if (cipher == null) {
+      cipher = Cipher.getInstance(CIPHER_TYPE);
+      CIPHERS.set(cipher);
+    }
+    return cipher;
+  }
+
   /**
    * Concatenate two byte arrays.
    */
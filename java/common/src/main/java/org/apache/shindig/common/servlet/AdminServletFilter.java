@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.apache.shindig.common.servlet;
+
+import com.google.common.base.Charsets;
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Guards admin endpoints, such as cache warm-up and metrics reports, with a shared key.
+ *
+ * Requests must send the key configured as shindig.admin.key in the {@link #KEY_HEADER} header.
+ * The key is deliberately not accepted as a parameter, so it doesn't end up in access logs. When
+ * no key is configured every request is refused, so admin endpoints are closed by default.
+ */
+public class AdminServletFilter extends InjectedFilter {
+  public static final String KEY_HEADER = "X-Shindig-Admin-Key";
+
+  private byte[] adminKey;
+
+  @Inject(optional = true)
+  public void setAdminKey(@Named("shindig.admin.key") String adminKey) {
+    this.adminKey = adminKey == null || adminKey.length() == 0 ?
+        null : adminKey.getBytes(Charsets.UTF_8);
+  }
+
+  public void destroy() { }
+
+  public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+      throws IOException, ServletException {
+    if (!(request instanceof HttpServletRequest && response instanceof HttpServletResponse)) {
+      throw new ServletException("Admin filter can only handle HTTP");
+    }
+    HttpServletRequest req = (HttpServletRequest) request;
+    HttpServletResponse resp = (HttpServletResponse) response;
+
+    if (adminKey == null) {
+      resp.sendError(HttpServletResponse.SC_FORBIDDEN, "Admin endpoints are disabled");
+      return;
+    }
+    String key = req.getHeader(KEY_HEADER);
+    if (key == null || !matches(key.getBytes(Charsets.UTF_8))) {
+      resp.sendError(HttpServletResponse.SC_FORBIDDEN, "Invalid admin key");
+      return;
+    }
+    chain.doFilter(request, response);
+  }
+
+  /**
+   * Compares in time independent of where the keys differ.
+   */
+  private boolean matches(byte[] key) {
+    int diff = key.length ^ adminKey.length;
+    for (int i = 0; i < key.length; ++i) {
+      diff |= key[i] ^ adminKey[i % adminKey.length];
+    }
+    return diff == 0;
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.apache.shindig.common.util;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Maps;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * Length-prefixed primitives shared by the hand-written binary forms of cached values.
+ *
+ * Lengths and counts are written as unsigned variable-length integers, seven bits per byte.
+ * Strings are written as their UTF-8 bytes, without the 64K limit of
+ * {@link DataOutput#writeUTF(String)}.
+ */
+public final class BinaryCodec {
+  private BinaryCodec() {}
+
+  /**
+   * Writes a non-negative int in one to five bytes.
+   */
+  public static void writeVarInt(DataOutput out, int value) throws IOException {
+    if (value < 0) {
+      throw new IllegalArgumentException("Negative value " + value);
+    }
+    while ((value & ~0x7F) != 0) {
+      out.writeByte((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte(value);
+  }
+
+  public static int readVarInt(DataInput in) throws IOException {
+    int value = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      int b = in.readUnsignedByte();
+      value |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Malformed length");
+  }
+
+  /**
+   * Writes a string that may be null.
+   */
+  public static void writeString(DataOutput out, String value) throws IOException {
+    if (value == null) {
+      writeVarInt(out, 0);
+    } else {
+      byte[] bytes = CharsetUtil.getUtf8Bytes(value);
+      writeVarInt(out, bytes.length + 1);
+      out.write(bytes);
+    }
+  }
+
+  public static String readString(DataInput in) throws IOException {
+    int length = readVarInt(in);
+    if (length == 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length - 1];
+    in.readFully(bytes);
+    return Charsets.UTF_8.decode(ByteBuffer.wrap(bytes)).toString();
+  }
+
+  /**
+   * Writes a byte array that may be null.
+   */
+  public static void writeBytes(DataOutput out, byte[] value) throws IOException {
+    if (value == null) {
+      writeVarInt(out, 0);
+    } else {
+      writeVarInt(out, value.length + 1);
+      out.write(value);
+    }
+  }
+
+  public static byte[] readBytes(DataInput in) throws IOException {
+    int length = readVarInt(in);
+    if (length == 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length - 1];
+    in.readFully(bytes);
+    return bytes;
+  }
+
+  /**
+   * Writes a map of strings. Iteration order is preserved.
+   */
+  public static void writeStringMap(DataOutput out, Map<String, String> map) throws IOException {
+    writeVarInt(out, map.size());
+    for (Map.Entry<String, String> entry : map.entrySet()) {
+      writeString(out, entry.getKey());
+      writeString(out, entry.getValue());
+    }
+  }
+
+  public static Map<String, String> readStringMap(DataInput in) throws IOException {
+    int size = readVarInt(in);
+    Map<String, String> map = Maps.newLinkedHashMap();
+    for (int i = 0; i < size; ++i) {
+      String key = readString(in);
+      map.put(key, readString(in));
+    }
+    return map;
+  }
+
+  /**
+   * Reads a format version and checks that it can be read.
+   *
+   * @throws IOException If the version is newer than maxVersion.
+   */
+  public static int readVersion(DataInput in, int maxVersion) throws IOException {
+    int version = in.readUnsignedByte();
+    if (version == 0 || version > maxVersion) {
+      throw new IOException("Unsupported format version " + version);
+    }
+    return version;
+  }
+}
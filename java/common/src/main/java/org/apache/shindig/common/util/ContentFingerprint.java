@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.apache.shindig.common.util;
+
+import com.google.common.collect.MapMaker;
+
+import java.nio.CharBuffer;
+import java.security.SecureRandom;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Fast fingerprints of text content, for use in keys of caches indexed by content.
+ *
+ * A fingerprint is the 128-bit SipHash-2-4 of the UTF-16LE encoding of the content, computed
+ * directly over the characters without encoding them to bytes, and written as 32 hex digits.
+ * SipHash is keyed with a random key chosen when the process starts, so collisions can't be
+ * chosen by whoever supplies the content, and content-only keys are safe. For the same reason a
+ * fingerprint only means something within one process: don't store it, or send it to another
+ * server or to the browser. Use {@link HashUtil#checksum} for those.
+ *
+ * Fingerprints of large strings are remembered for as long as the string instance is in use, so
+ * that the same body is hashed once however many caches look it up.
+ */
+public final class ContentFingerprint {
+  private ContentFingerprint() {}
+
+  /** Strings at least this long have their fingerprint remembered. */
+  static final int MEMO_THRESHOLD = 4096;
+
+  private static final ConcurrentMap<String, String> MEMO = new MapMaker().weakKeys().makeMap();
+
+  private static final long KEY0;
+  private static final long KEY1;
+  static {
+    SecureRandom random = new SecureRandom();
+    KEY0 = random.nextLong();
+    KEY1 = random.nextLong();
+  }
+
+  private static final char[] HEX_CHARS = "0123456789abcdef".toCharArray();
+
+  /**
+   * @return The fingerprint of the content.
+   */
+  public static String of(CharSequence content) {
+    if (content instanceof String && content.length() >= MEMO_THRESHOLD) {
+      String fingerprint = MEMO.get(content);
+      if (fingerprint == null) {
+        fingerprint = hash(KEY0, KEY1, content, 0, content.length());
+        MEMO.put((String) content, fingerprint);
+      }
+      return fingerprint;
+    }
+    return hash(KEY0, KEY1, content, 0, content.length());
+  }
+
+  /**
+   * @return The fingerprint of a range of characters.
+   */
+  public static String of(char[] chars, int offset, int length) {
+    return hash(KEY0, KEY1, CharBuffer.wrap(chars), offset, length);
+  }
+
+  /**
+   * SipHash-2-4 with 128-bit output, reading four characters into each 64-bit word.
+   */
+  static String hash(long k0, long k1, CharSequence s, int offset, int length) {
+    SipState state = new SipState(k0, k1);
+    int end = offset + length;
+    int i = offset;
+    for (; i + 4 <= end; i += 4) {
+      state.compress(s.charAt(i) | (long) s.charAt(i + 1) << 16
+          | (long) s.charAt(i + 2) << 32 | (long) s.charAt(i + 3) << 48);
+    }
+
+    // The last word holds the remaining characters, and the length in bytes in its top byte.
+    long last = (long) (length * 2) << 56;
+    for (int j = 0; i + j < end; ++j) {
+      last |= (long) s.charAt(i + j) << (j * 16);
+    }
+    state.compress(last);
+
+    char[] hex = new char[32];
+    state.v2 ^= 0xee;
+    state.rounds(4);
+    toHex(state.v0 ^ state.v1 ^ state.v2 ^ state.v3, hex, 0);
+    state.v1 ^= 0xdd;
+    state.rounds(4);
+    toHex(state.v0 ^ state.v1 ^ state.v2 ^ state.v3, hex, 16);
+    return new String(hex);
+  }
+
+  private static final class SipState {
+    long v0;
+    long v1;
+    long v2;
+    long v3;
+
+    SipState(long k0, long k1) {
+      v0 = k0 ^ 0x736f6d6570736575L;
+      v1 = k1 ^ 0x646f72616e646f6dL ^ 0xee;
+      v2 = k0 ^ 0x6c7967656e657261L;
+      v3 = k1 ^ 0x7465646279746573L;
+    }
+
+    void compress(long m) {
+      v3 ^= m;
+      rounds(2);
+      v0 ^= m;
+    }
+
+    void rounds(int count) {
+      for (int i = 0; i < count; ++i) {
+        v0 += v1;
+        v1 = Long.rotateLeft(v1, 13);
+        v1 ^= v0;
+        v0 = Long.rotateLeft(v0, 32);
+        v2 += v3;
+        v3 = Long.rotateLeft(v3, 16);
+        v3 ^= v2;
+        v0 += v3;
+        v3 = Long.rotateLeft(v3, 21);
+        v3 ^= v0;
+        v2 += v1;
+        v1 = Long.rotateLeft(v1, 17);
+        v1 ^= v2;
+        v2 = Long.rotateLeft(v2, 32);
+      }
+    }
+  }
+
+  /** Writes the bytes of a word lowest first, as the SipHash reference output does. */
+  private static void toHex(long value, char[] hex, int offset) {
+    for (int i = 0; i < 16; i += 2) {
+      hex[offset + i] = HEX_CHARS[(int) (value >>> 4) & 0xF];
+      hex[offset + i + 1] = HEX_CHARS[(int) value & 0xF];
+      value >>>= 8;
+    }
+  }
+}
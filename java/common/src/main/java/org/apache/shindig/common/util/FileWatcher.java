@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.common.util;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Polling change detector for a set of files and directories. Directories are
+ * watched recursively. Each call to {@link #hasChanged()} compares the current
+ * modification time and length of every file against the previous call, so any
+ * added, removed or modified file is reported exactly once.
+ *
+ * This class is not thread safe; callers are expected to poll from a single thread.
+ */
+public class FileWatcher {
+  private final List<File> roots;
+  private Map<String, Long> lastState;
+
+  public FileWatcher(Collection<File> roots) {
+    this.roots = ImmutableList.copyOf(roots);
+    this.lastState = scan();
+  }
+
+  /**
+   * @return The files and directories being watched.
+   */
+  public List<File> getRoots() {
+    return roots;
+  }
+
+  /**
+   * @return True if anything under the watched roots has changed since the last call.
+   */
+  public boolean hasChanged() {
+    Map<String, Long> state = scan();
+    boolean changed = !state.equals(lastState);
+    lastState = state;
+    return changed;
+  }
+
+  private Map<String, Long> scan() {
+    Map<String, Long> state = Maps.newHashMap();
+    for (File root : roots) {
+      scan(root, state);
+    }
+    return state;
+  }
+
+  private void scan(File file, Map<String, Long> state) {
+    if (file.isDirectory()) {
+      File[] children = file.listFiles();
+      if (children != null) {
+        for (File child : children) {
+          scan(child, state);
+        }
+      }
+    } else if (file.exists()) {
+      // Fold the length in so that same-second rewrites on coarse file systems still register.
+      state.put(file.getAbsolutePath(), file.lastModified() * 31 + file.length());
+    }
+  }
+}
@@ -19,6 +19,7 @@ package org.apache.shindig.common.util;
 
 import org.apache.shindig.protocol.RestfulCollection;
 
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
@@ -67,4 +68,45 @@ public final class FutureUtil {
       }
     };
   }
+
+  /**
+   * Process a {@link Future} wrapped {@link RestfulCollection} so that its entries
+   * are serialized to JSON with only the given fields.
+   * @param collection the collection to project
+   * @param fields the JSON names of the fields to write
+   * @return the {@link Future} wrapped collection
+   */
+  public static <T> Future<RestfulCollection<T>> projectCollection(
+      final Future<RestfulCollection<T>> collection, final Set<String> fields) {
+    return new Future<RestfulCollection<T>>() {
+      public boolean cancel(boolean mayInterruptIfRunning) {
+        return collection.cancel(mayInterruptIfRunning);
+      }
+
+      public RestfulCollection<T> get() throws InterruptedException, ExecutionException {
+        return project(collection.get());
+      }
+
+      public RestfulCollection<T> get(long timeout, TimeUnit unit)
+          throws InterruptedException, ExecutionException, TimeoutException {
+        return project(collection.get(timeout, unit));
+      }
+
+      public boolean isCancelled() {
+        return collection.isCancelled();
+      }
+
+      public boolean isDone() {
+        return collection.isDone();
+      }
+
+      private RestfulCollection<T> project(RestfulCollection<T> collection) {
+        if (collection != null && collection.getEntry() != null
+            && !(collection.getEntry() instanceof ProjectedList)) {
+          collection.setEntry(new ProjectedList<T>(collection.getEntry(), fields));
+        }
+        return collection;
+      }
+    };
+  }
 }
@@ -0,0 +1,138 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.apache.shindig.common.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of durations in nanoseconds, for reporting percentiles of latencies.
+ *
+ * Durations are counted in logarithmic buckets, four per power of two, so a percentile is reported
+ * as the upper bound of its bucket and is at most 25% above the true value. Durations up to a
+ * microsecond share the first bucket, and anything above about 4.6 minutes the last one. Recording
+ * is a few atomic increments and never allocates.
+ */
+public class LatencyHistogram {
+  private static final int SUB_BUCKET_BITS = 2;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  /** Durations below 2^MIN_EXPONENT nanoseconds go in the first bucket. */
+  private static final int MIN_EXPONENT = 10;
+  private static final int MAX_EXPONENT = 37;
+  static final int BUCKETS = (MAX_EXPONENT - MIN_EXPONENT + 1) * SUB_BUCKETS + 1;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong total = new AtomicLong();
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * Records one duration. Negative durations are counted as zero.
+   */
+  public void record(long nanos) {
+    if (nanos < 0) {
+      nanos = 0;
+    }
+    counts.incrementAndGet(bucket(nanos));
+    count.incrementAndGet();
+    total.addAndGet(nanos);
+    long current = max.get();
+    while (nanos > current && !max.compareAndSet(current, nanos)) {
+      current = max.get();
+    }
+  }
+
+  public long getCount() {
+    return count.get();
+  }
+
+  public long getTotalNanos() {
+    return total.get();
+  }
+
+  public long getMaxNanos() {
+    return max.get();
+  }
+
+  public long getMeanNanos() {
+    long n = count.get();
+    return n == 0 ? 0 : total.get() / n;
+  }
+
+  /**
+   * @param percentile Between 0 and 100.
+   * @return An upper bound of the duration under which the given percentage of the recorded
+   *     durations fall, or 0 if nothing has been recorded.
+   */
+  public long getPercentileNanos(double percentile) {
+    long n = 0;
+    long[] snapshot = new long[BUCKETS];
+    for (int i = 0; i < BUCKETS; ++i) {
+      snapshot[i] = counts.get(i);
+      n += snapshot[i];
+    }
+    if (n == 0) {
+      return 0;
+    }
+    long rank = (long) Math.ceil(n * Math.min(Math.max(percentile, 0), 100) / 100);
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; ++i) {
+      seen += snapshot[i];
+      if (seen >= Math.max(rank, 1)) {
+        return i == BUCKETS - 1 ? max.get() : Math.min(upperBound(i), max.get());
+      }
+    }
+    return max.get();
+  }
+
+  /**
+   * Clears all recorded durations. Durations recorded concurrently may be partly kept.
+   */
+  public void reset() {
+    for (int i = 0; i < BUCKETS; ++i) {
+      counts.set(i, 0);
+    }
+    count.set(0);
+    total.set(0);
+    max.set(0);
+  }
+
+  static int bucket(long nanos) {
+    int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+    if (exponent < MIN_EXPONENT) {
+      return 0;
+    }
+    if (exponent > MAX_EXPONENT) {
+      return BUCKETS - 1;
+    }
+    int sub = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - MIN_EXPONENT) * SUB_BUCKETS + sub + 1;
+  }
+
+  /**
+   * @return The smallest duration that is above every duration in the bucket.
+   */
+  static long upperBound(int bucket) {
+    if (bucket == 0) {
+      return 1L << MIN_EXPONENT;
+    }
+    int exponent = (bucket - 1) / SUB_BUCKETS + MIN_EXPONENT;
+    int sub = (bucket - 1) % SUB_BUCKETS;
+    return (long) (SUB_BUCKETS + sub + 1) << (exponent - SUB_BUCKET_BITS);
+  }
+}
@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.apache.shindig.common.util;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterators;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A read-only view of a list of beans that {@link org.apache.shindig.common.JsonSerializer}
+ * writes with only the given properties. The other getters of the beans are never called, so
+ * properties that are loaded on first use are not loaded. Everything else sees the beans
+ * unchanged.
+ */
+public final class ProjectedList<T> extends AbstractList<T> {
+  private final List<T> list;
+  private final Set<String> fields;
+
+  public ProjectedList(List<T> list, Set<String> fields) {
+    this.list = list;
+    this.fields = ImmutableSet.copyOf(fields);
+  }
+
+  /**
+   * @return the JSON names of the properties that are written
+   */
+  public Set<String> getFields() {
+    return fields;
+  }
+
+  @Override
+  public T get(int index) {
+    return list.get(index);
+  }
+
+  @Override
+  public Iterator<T> iterator() {
+    return Iterators.unmodifiableIterator(list.iterator());
+  }
+
+  @Override
+  public int size() {
+    return list.size();
+  }
+}
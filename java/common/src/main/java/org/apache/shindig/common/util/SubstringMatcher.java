@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.apache.shindig.common.util;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.MapMaker;
+import com.google.common.collect.Sets;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Finds whether a string contains any of a set of substrings, ignoring case, in a single pass
+ * over the string however many substrings there are.
+ *
+ * The substrings are compiled into an Aho-Corasick automaton, stored as a transition table over
+ * the characters that occur in them, so matching does not allocate. Characters are compared
+ * after {@link Character#toLowerCase(char)}. Matchers are immutable and thread safe, and the
+ * matcher for a given set of substrings is shared while it is in use.
+ */
+public final class SubstringMatcher {
+  private static final ConcurrentMap<List<String>, SubstringMatcher> COMPILED =
+      new MapMaker().softValues().makeMap();
+
+  private static final int ASCII = 128;
+
+  private final boolean matchesAll;
+  // Character class of each ASCII character, and of other characters found by binary search.
+  private final int[] asciiClasses;
+  private final char[] otherChars;
+  private final int[] otherClasses;
+  private final int classCount;
+  // Next state for each state and character class. Class 0 is every character that is not in
+  // any substring.
+  private final int[] transitions;
+  private final boolean[] accepting;
+
+  private SubstringMatcher(List<String> substrings) {
+    boolean all = false;
+    int[] ascii = new int[ASCII];
+    SortedSet<Character> nonAscii = Sets.newTreeSet();
+    int classes = 1;
+    int states = 1;
+    for (String s : substrings) {
+      all |= s.length() == 0;
+      states += s.length();
+      for (int i = 0; i < s.length(); ++i) {
+        char c = s.charAt(i);
+        if (c < ASCII) {
+          if (ascii[c] == 0) {
+            ascii[c] = classes++;
+          }
+        } else {
+          nonAscii.add(c);
+        }
+      }
+    }
+    char[] other = new char[nonAscii.size()];
+    int[] otherCls = new int[other.length];
+    int n = 0;
+    for (char c : nonAscii) {
+      other[n] = c;
+      otherCls[n++] = classes++;
+    }
+    this.matchesAll = all;
+    this.asciiClasses = ascii;
+    this.otherChars = other;
+    this.otherClasses = otherCls;
+    this.classCount = classes;
+
+    // Build the trie, with -1 for missing transitions.
+    int[] next = new int[states * classes];
+    Arrays.fill(next, -1);
+    boolean[] accept = new boolean[states];
+    int count = 1;
+    for (String s : substrings) {
+      int state = 0;
+      for (int i = 0; i < s.length(); ++i) {
+        int index = state * classes + classOf(s.charAt(i));
+        if (next[index] < 0) {
+          next[index] = count++;
+        }
+        state = next[index];
+      }
+      accept[state] = true;
+    }
+
+    // Turn the trie into a complete automaton breadth first, following failure links.
+    int[] fail = new int[count];
+    int[] queue = new int[count];
+    int head = 0;
+    int tail = 0;
+    for (int c = 0; c < classes; ++c) {
+      int child = next[c];
+      if (child < 0) {
+        next[c] = 0;
+      } else {
+        fail[child] = 0;
+        queue[tail++] = child;
+      }
+    }
+    while (head < tail) {
+      int state = queue[head++];
+      accept[state] |= accept[fail[state]];
+      for (int c = 0; c < classes; ++c) {
+        int index = state * classes + c;
+        int child = next[index];
+        int fallback = next[fail[state] * classes + c];
+        if (child < 0) {
+          next[index] = fallback;
+        } else {
+          fail[child] = fallback;
+          queue[tail++] = child;
+        }
+      }
+    }
+    this.transitions = new int[count * classes];
+    System.arraycopy(next, 0, transitions, 0, transitions.length);
+    this.accepting = new boolean[count];
+    System.arraycopy(accept, 0, accepting, 0, count);
+  }
+
+  /**
+   * @return A matcher for the given substrings, which need not be lower case.
+   */
+  public static SubstringMatcher compile(Collection<String> substrings) {
+    List<String> key = Lists.newArrayListWithCapacity(substrings.size());
+    for (String s : substrings) {
+      key.add(lowerCase(s));
+    }
+    key = ImmutableList.copyOf(key);
+    SubstringMatcher matcher = COMPILED.get(key);
+    if (matcher == null) {
+      matcher = new SubstringMatcher(key);
+      SubstringMatcher existing = COMPILED.putIfAbsent(key, matcher);
+      if (existing != null) {
+        matcher = existing;
+      }
+    }
+    return matcher;
+  }
+
+  /**
+   * @return True if the text contains any of the substrings, ignoring case.
+   */
+  public boolean matches(CharSequence text) {
+    if (matchesAll) {
+      return true;
+    }
+    int state = 0;
+    for (int i = 0, length = text.length(); i < length; ++i) {
+      state = transitions[state * classCount + classOf(Character.toLowerCase(text.charAt(i)))];
+      if (accepting[state]) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private int classOf(char c) {
+    if (c < ASCII) {
+      return asciiClasses[c];
+    }
+    int i = Arrays.binarySearch(otherChars, c);
+    return i < 0 ? 0 : otherClasses[i];
+  }
+
+  private static String lowerCase(String s) {
+    char[] chars = new char[s.length()];
+    for (int i = 0; i < chars.length; ++i) {
+      chars[i] = Character.toLowerCase(s.charAt(i));
+    }
+    return new String(chars);
+  }
+}
@@ -23,11 +23,14 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Base class for container configurations.
  */
 public abstract class AbstractContainerConfig implements ContainerConfig {
+  private final List<ConfigObserver> observers = new CopyOnWriteArrayList<ConfigObserver>();
+
   public String getString(String container, String property) {
     Object value = getProperty(container, property);
     if (value == null) {
@@ -79,4 +82,21 @@ public abstract class AbstractContainerConfig implements ContainerConfig {
   }
 
   public abstract Object getProperty(String container, String name);
+
+  /**
+   * Registers an observer to be notified whenever the configuration is reloaded. Configurations
+   * that never reload simply never notify.
+   */
+  public void addConfigObserver(ConfigObserver observer) {
+    observers.add(observer);
+  }
+
+  /**
+   * Notifies all registered observers that the given containers have changed.
+   */
+  protected void notifyConfigObservers(Collection<String> changed) {
+    for (ConfigObserver observer : observers) {
+      observer.containersChanged(this, changed);
+    }
+  }
 }
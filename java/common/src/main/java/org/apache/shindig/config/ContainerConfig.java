@@ -86,4 +86,16 @@ public interface ContainerConfig {
    * empty map if it is not defined or not a map.
    */
   <T> Map<String, T> getMap(String container, String name);
+
+  /**
+   * Receives notification after the configuration has been atomically replaced. Implementations
+   * that can reload accept observers through {@link AbstractContainerConfig#addConfigObserver}.
+   */
+  interface ConfigObserver {
+    /**
+     * @param config The configuration that changed.
+     * @param changed The containers that were added, removed, or whose properties changed.
+     */
+    void containersChanged(ContainerConfig config, Collection<String> changed);
+  }
 }
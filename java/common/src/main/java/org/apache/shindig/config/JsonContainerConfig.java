@@ -21,7 +21,9 @@ package org.apache.shindig.config;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.google.inject.name.Named;
@@ -43,6 +45,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
@@ -62,6 +65,11 @@ import javax.el.ValueExpression;
  *
  * String values may use expressions. The variable context defaults to the 'current' container,
  * but parent values may be accessed through the special "parent" property.
+ *
+ * The fully evaluated configuration is held as an immutable snapshot. {@link #reload()} builds a
+ * new snapshot from the original locations and swaps it in atomically, so readers always see a
+ * consistent configuration and never block on a reload. {@link #init()} is called for every
+ * snapshot, at construction and on each reload.
  */
 @Singleton
 public class JsonContainerConfig extends AbstractContainerConfig {
@@ -73,8 +81,12 @@ public class JsonContainerConfig extends AbstractContainerConfig {
   public static final String SERVER_PORT = "SERVER_PORT";
   public static final String SERVER_HOST = "SERVER_HOST";
 
-  private final Map<String, Map<String, Object>> config;
+  private volatile Map<String, Map<String, Object>> config;
+  // The snapshot that init() is building, seen only by the building thread.
+  private Map<String, Map<String, Object>> building;
+  private volatile Thread buildingThread;
   private final Expressions expressions;
+  private final String containers;
 
   private static final Pattern CRLF_PATTERN = Pattern.compile("[\r\n]+");
 
@@ -98,10 +110,10 @@ public class JsonContainerConfig extends AbstractContainerConfig {
     this.expressions = expressions;
     this.host = host;
     this.port = port;
+    this.containers = containers;
 
     JSONObject configJson = loadContainers(containers);
-    config = createContainers(configJson);
-    init();
+    config = build(createContainers(configJson));
   }
 
   /**
@@ -111,29 +123,102 @@ public class JsonContainerConfig extends AbstractContainerConfig {
     this.expressions = expressions;
     host = null;
     port = null;
-    config = createContainers(json);
-    init();
+    containers = null;
+    config = build(createContainers(json));
   }
 
   /**
-   * Initializes the configuration.  Called during construction.
+   * Initializes the configuration.  Called during construction, and again for each reload.
+   *
+   * While it runs, the accessors of this object return the configuration being initialized to the
+   * calling thread, and the current configuration to every other thread.
    */
   protected void init() {
-    for (Map.Entry<String, Map<String, Object>> configEntry : config.entrySet()) {
-      @SuppressWarnings("unchecked")
-      Map<String, Object> value = (Map<String, Object>) evaluateAll(configEntry.getValue());
-      configEntry.setValue(value);
+    building = evaluateContainers(building);
+  }
+
+  /**
+   * Runs {@link #init()} over a configuration returned by {@link #createContainers}.
+   *
+   * @return The snapshot to make current.
+   */
+  private synchronized Map<String, Map<String, Object>> build(
+      Map<String, Map<String, Object>> containers) {
+    building = containers;
+    buildingThread = Thread.currentThread();
+    try {
+      init();
+      return building;
+    } finally {
+      buildingThread = null;
+      building = null;
     }
   }
 
+  /**
+   * @return The configuration that the calling thread sees.
+   */
+  private Map<String, Map<String, Object>> snapshot() {
+    return buildingThread == Thread.currentThread() ? building : config;
+  }
+
+  /**
+   * Re-reads the configuration from the locations given at construction time and atomically
+   * replaces the current snapshot. If the new configuration fails to load, the current one is
+   * left untouched. Observers are notified only when at least one container actually changed.
+   *
+   * @return The containers that were added, removed or modified.
+   * @throws ContainerConfigException If the new configuration is invalid.
+   */
+  public Collection<String> reload() throws ContainerConfigException {
+    if (containers == null) {
+      return Collections.emptySet();
+    }
+
+    Map<String, Map<String, Object>> oldConfig = config;
+    Map<String, Map<String, Object>> newConfig =
+        build(createContainers(loadContainers(containers)));
+    config = newConfig;
+
+    Set<String> changed = Sets.newHashSet();
+    for (String container : Sets.union(oldConfig.keySet(), newConfig.keySet())) {
+      Map<String, Object> oldValue = oldConfig.get(container);
+      if (oldValue == null || !oldValue.equals(newConfig.get(container))) {
+        changed.add(container);
+      }
+    }
+
+    if (!changed.isEmpty()) {
+      LOG.info("Reloaded container config, changed containers: " + changed);
+      notifyConfigObservers(Collections.unmodifiableSet(changed));
+    }
+    return changed;
+  }
+
+  /**
+   * @return The file system locations the configuration was loaded from. Classpath resources
+   *     are not included since they can't change without a restart.
+   */
+  public List<File> getSourceFiles() {
+    List<File> files = Lists.newArrayList();
+    if (containers != null) {
+      for (String location : StringUtils.split(containers, FILE_SEPARATOR)) {
+        if (!location.startsWith("res://")) {
+          files.add(new File(location));
+        }
+      }
+    }
+    return files;
+  }
+
   @Override
   public Collection<String> getContainers() {
-    return Collections.unmodifiableSet(config.keySet());
+    return Collections.unmodifiableSet(snapshot().keySet());
   }
 
   @Override
   public Map<String, Object> getProperties(String container) {
-    return config.get(container);
+    return snapshot().get(container);
   }
 
   @Override
@@ -148,7 +233,7 @@ public class JsonContainerConfig extends AbstractContainerConfig {
       }
     }
 
-    Map<String, Object> containerData = config.get(container);
+    Map<String, Object> containerData = snapshot().get(container);
     if (containerData == null) {
       return null;
     }
@@ -156,18 +241,41 @@ public class JsonContainerConfig extends AbstractContainerConfig {
   }
 
   /**
-   * Initialize each container's configuration.
+   * Initialize each container's configuration. Expressions are resolved against the
+   * configuration being built rather than the live one, so that a reload never mixes old and new
+   * values.
    */
   private Map<String, Map<String, Object>> createContainers(JSONObject json) {
-    Map<String, Map<String, Object>> map = Maps.newHashMap();
+    final Map<String, Map<String, Object>> map = Maps.newHashMap();
+    ContainerConfig pending = new AbstractContainerConfig() {
+      @Override
+      public Object getProperty(String container, String property) {
+        Map<String, Object> containerData = map.get(container);
+        return containerData == null ? null : containerData.get(property);
+      }
+    };
     for (String container : JSONObject.getNames(json)) {
-      ELContext context = createExpressionContext(container);
+      ELContext context = expressions.newELContext(new ContainerConfigELResolver(pending, container));
       map.put(container, jsonToMap(json.optJSONObject(container), expressions, context));
     }
-
     return map;
   }
 
+  /**
+   * Evaluates all expressions of configuration returned by {@link #createContainers}.
+   *
+   * @return The immutable snapshot.
+   */
+  private Map<String, Map<String, Object>> evaluateContainers(
+      Map<String, Map<String, Object>> map) {
+    for (Map.Entry<String, Map<String, Object>> configEntry : map.entrySet()) {
+      @SuppressWarnings("unchecked")
+      Map<String, Object> value = (Map<String, Object>) evaluateAll(configEntry.getValue());
+      configEntry.setValue(value);
+    }
+    return ImmutableMap.copyOf(map);
+  }
+
   /**
    * Make Expressions available to subclasses so they can create ELContexts
    */
@@ -189,7 +189,7 @@ public class DataServiceServlet extends ApiServlet {
           servletRequest.getParameter("callback") : null;
 
       if (callback != null) writer.write(callback + '(');
-      writer.write(converter.convertToString(response));
+      converter.append(writer, response);
       if (callback != null) writer.write(");\n");
     } else {
       sendError(servletResponse, responseItem);
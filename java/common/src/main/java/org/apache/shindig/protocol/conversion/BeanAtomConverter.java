@@ -17,9 +17,8 @@
  */
 package org.apache.shindig.protocol.conversion;
 
-import org.apache.commons.betwixt.IntrospectionConfiguration;
+import org.apache.commons.betwixt.XMLIntrospector;
 import org.apache.commons.betwixt.io.BeanReader;
-import org.apache.commons.betwixt.io.BeanWriter;
 import org.apache.shindig.protocol.ContentTypes;
 
 import org.xml.sax.SAXException;
@@ -28,6 +27,7 @@ import java.beans.IntrospectionException;
 import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -38,60 +38,31 @@ import java.util.logging.Logger;
 public class BeanAtomConverter implements BeanConverter {
   private static final Logger LOG =
       Logger.getLogger(BeanAtomConverter.class.getName());
+  private static final String XML_HEAD = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>";
 
 
   public String getContentType() {
     return ContentTypes.OUTPUT_ATOM_CONTENT_TYPE;
   }
 
+  /**
+   * Shared by every conversion, so that each bean class is introspected once.
+   */
+  private final XMLIntrospector introspector = BeanXmlConverter.createIntrospector();
+
   public String convertToString(Object pojo) {
     return convertToXml(pojo);
   }
 
   public String convertToXml(Object obj) {
-    String xmlHead="<?xml version=\"1.0\" encoding=\"UTF-8\"?>";
     StringWriter outputWriter = new StringWriter();
-    BeanWriter writer = new BeanWriter(outputWriter);
-    IntrospectionConfiguration configuration = writer.getXMLIntrospector().getConfiguration();
-    configuration.setAttributesForPrimitives(false);
-    configuration.setWrapCollectionsInElement(true);
-
-    writer.getBindingConfiguration().setMapIDs(false);
-    // Print no line endings
-    writer.setEndOfLine("");
-    writer.setWriteEmptyElements(false);
-
-    // Still left to do:
-    //
-    // Fix map output with custom outputter:
-    // for a map with {key : value, key2 : value2} we need:
-    // <key>value</key> <key2>value2</key2>
-
-    // Supress empty lists
-
-    // Within a list the items need to be renamed - this probably means with need a .betwixt file
-
-    String toReturn = xmlHead;
-    try {
-      writer.write("response", obj);
-      toReturn =toReturn+ outputWriter.toString();
+    outputWriter.write(XML_HEAD);
+    if (BeanXmlConverter.write(introspector, outputWriter, obj)) {
+      String toReturn = outputWriter.toString();
       if (LOG.isLoggable(Level.FINEST)) LOG.finest("XML is: " + toReturn + "\n **** \n\n");
-
-    } catch (SAXException e) {
-      LOG.log(Level.SEVERE, e.getMessage(), e);
-    } catch (IOException e) {
-      LOG.log(Level.SEVERE, e.getMessage(), e);
-    } catch (IntrospectionException e) {
-      LOG.log(Level.SEVERE, e.getMessage(), e);
-    } finally {
-      try {
-        writer.close();
-      } catch (IOException e) {
-        if (LOG.isLoggable(Level.FINEST)) LOG.log(Level.FINEST, e.getMessage(), e);
-      }
+      return toReturn;
     }
-
-    return toReturn;
+    return XML_HEAD;
   }
 
   public static final String ERROR_MESSAGE_FMT = "Could not convert %s to %s";
@@ -113,7 +84,17 @@ public class BeanAtomConverter implements BeanConverter {
     }
   }
   
+  /**
+   * Writes the XML straight to the buffer when it is a Writer, instead of building it as a
+   * string first.
+   */
   public void append(Appendable buf, Object pojo) throws IOException {
-    buf.append(convertToString(pojo));
+    if (buf instanceof Writer) {
+      Writer writer = (Writer) buf;
+      writer.write(XML_HEAD);
+      BeanXmlConverter.write(introspector, writer, pojo);
+    } else {
+      buf.append(convertToString(pojo));
+    }
   }
 }
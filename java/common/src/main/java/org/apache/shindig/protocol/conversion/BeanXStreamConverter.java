@@ -30,11 +30,14 @@ import com.google.inject.Inject;
 import com.thoughtworks.xstream.converters.reflection.PureJavaReflectionProvider;
 import com.thoughtworks.xstream.converters.reflection.ReflectionProvider;
 import com.thoughtworks.xstream.io.HierarchicalStreamDriver;
+import com.thoughtworks.xstream.io.StreamException;
 import com.thoughtworks.xstream.io.xml.XppDriver;
 import com.thoughtworks.xstream.mapper.DefaultMapper;
 import com.thoughtworks.xstream.mapper.Mapper;
 
 import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.Map;
 import java.util.logging.Logger;
 import java.util.logging.Level;
@@ -88,7 +91,14 @@ public class BeanXStreamConverter implements BeanConverter {
   }
 
   public String convertToString(Object pojo) {
-    return convertToXml(pojo);
+    StringWriter out = new StringWriter();
+    writeXml(pojo, out);
+    String result = out.toString();
+
+    if (LOG.isLoggable(Level.FINE))
+      LOG.fine("Result is " + result);
+
+    return result;
   }
 
   /**
@@ -96,9 +106,9 @@ public class BeanXStreamConverter implements BeanConverter {
    * a thread at any one time. This only matters if this class is extended.
    *
    * @param obj
-   * @return The XML as a string
+   * @param out the writer the XML is written to as it is produced
    */
-  private String convertToXml(Object obj) {
+  private void writeXml(Object obj, Writer out) {
 
     writerStack.reset();
     if (obj instanceof Map<?, ?>) {
@@ -108,43 +118,46 @@ public class BeanXStreamConverter implements BeanConverter {
       if (m.size() == 1) {
         Object s = m.values().iterator().next();
         cc.mapper.setBaseObject(s); // thread safe method
-        String result = cc.xstream.toXML(s);
-
-        if (LOG.isLoggable(Level.FINE))
-          LOG.fine("Result is " + result);
-
-        return XML_DECL + "<response xmlns=\"http://ns.opensocial.org/2008/opensocial\">" + result + "</response>";
+        writeResponse(cc, s, out);
+        return;
       }
     } else if (obj instanceof RestfulCollection) {
       XStreamConfiguration.ConverterConfig cc = converterMap
           .get(XStreamConfiguration.ConverterSet.COLLECTION);
       cc.mapper.setBaseObject(obj); // thread safe method
-      String result = cc.xstream.toXML(obj);
-
-      if (LOG.isLoggable(Level.FINE))
-        LOG.fine("Result is " + result);
-
-      return XML_DECL + result;
+      write(out, XML_DECL);
+      cc.xstream.toXML(obj, out);
+      return;
     } else if (obj instanceof DataCollection) {
       XStreamConfiguration.ConverterConfig cc = converterMap
           .get(XStreamConfiguration.ConverterSet.MAP);
       cc.mapper.setBaseObject(obj); // thread safe method
-      String result = cc.xstream.toXML(obj);
-
-      if (LOG.isLoggable(Level.FINE))
-        LOG.fine("Result is " + result);
-
-      return XML_DECL + result;
+      write(out, XML_DECL);
+      cc.xstream.toXML(obj, out);
+      return;
     }
     XStreamConfiguration.ConverterConfig cc = converterMap
         .get(XStreamConfiguration.ConverterSet.DEFAULT);
 
     cc.mapper.setBaseObject(obj); // thread safe method
-    String result = cc.xstream.toXML(obj);
+    writeResponse(cc, obj, out);
+  }
 
-    if (LOG.isLoggable(Level.FINE))
-      LOG.fine("Result is " + result);
-    return XML_DECL + "<response xmlns=\"http://ns.opensocial.org/2008/opensocial\">" + result + "</response>";
+  private void writeResponse(XStreamConfiguration.ConverterConfig cc, Object obj, Writer out) {
+    write(out, XML_DECL + "<response xmlns=\"http://ns.opensocial.org/2008/opensocial\">");
+    cc.xstream.toXML(obj, out);
+    write(out, "</response>");
+  }
+
+  /**
+   * Writes literal markup, reporting failures the way XStream reports its own.
+   */
+  protected static void write(Writer out, String markup) {
+    try {
+      out.write(markup);
+    } catch (IOException e) {
+      throw new StreamException(e);
+    }
   }
 
   @SuppressWarnings("unchecked")
@@ -153,7 +166,31 @@ public class BeanXStreamConverter implements BeanConverter {
     return (T) cc.xstream.fromXML(xml);
   }
 
+  /**
+   * Writes the XML straight to the buffer when it is a Writer, such as the servlet response
+   * writer, instead of building it as a string first.
+   */
   public void append(Appendable buf, Object pojo) throws IOException {
-    buf.append(convertToString(pojo));
+    if (buf instanceof Writer) {
+      try {
+        writeXml(pojo, (Writer) buf);
+      } catch (StreamException e) {
+        throw unwrap(e);
+      }
+    } else {
+      buf.append(convertToString(pojo));
+    }
+  }
+
+  /**
+   * @return the IOException that caused a failure to write, or a new one describing it
+   */
+  protected static IOException unwrap(StreamException e) {
+    if (e.getCause() instanceof IOException) {
+      return (IOException) e.getCause();
+    }
+    IOException ioe = new IOException(e.getMessage());
+    ioe.initCause(e);
+    return ioe;
   }
 }
@@ -18,16 +18,23 @@
 package org.apache.shindig.protocol.conversion;
 
 import org.apache.commons.betwixt.IntrospectionConfiguration;
+import org.apache.commons.betwixt.XMLBeanInfo;
+import org.apache.commons.betwixt.XMLIntrospector;
 import org.apache.commons.betwixt.io.BeanReader;
 import org.apache.commons.betwixt.io.BeanWriter;
+import org.apache.commons.betwixt.registry.XMLBeanInfoRegistry;
 import org.apache.shindig.protocol.ContentTypes;
 
+import com.google.common.collect.MapMaker;
+
 import org.xml.sax.SAXException;
 
 import java.beans.IntrospectionException;
 import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.io.Writer;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -42,16 +49,46 @@ public class BeanXmlConverter implements BeanConverter {
     return ContentTypes.OUTPUT_XML_CONTENT_TYPE;
   }
 
+  /**
+   * Shared by every conversion, so that each bean class is introspected once.
+   */
+  private final XMLIntrospector introspector = createIntrospector();
+
   public String convertToString(Object pojo) {
     return convertToXml(pojo);
   }
 
   public String convertToXml(Object obj) {
     StringWriter outputWriter = new StringWriter();
-    BeanWriter writer = new BeanWriter(outputWriter);
-    IntrospectionConfiguration configuration = writer.getXMLIntrospector().getConfiguration();
+    String toReturn = null;
+    if (write(introspector, outputWriter, obj)) {
+      toReturn = outputWriter.toString();
+      if (LOG.isLoggable(Level.FINEST)) LOG.finest("XML is: " + toReturn + "\n **** \n\n");
+    }
+    return toReturn;
+  }
+
+  /**
+   * Creates an introspector configured for the converters, which caches the description of each
+   * bean class in a registry that is safe to share between threads.
+   */
+  static XMLIntrospector createIntrospector() {
+    XMLIntrospector introspector = new XMLIntrospector();
+    IntrospectionConfiguration configuration = introspector.getConfiguration();
     configuration.setAttributesForPrimitives(false);
     configuration.setWrapCollectionsInElement(true);
+    introspector.setRegistry(new ConcurrentXMLBeanInfoRegistry());
+    return introspector;
+  }
+
+  /**
+   * Writes a bean as a response element.
+   *
+   * @return false if the bean could not be written, which is logged.
+   */
+  static boolean write(XMLIntrospector introspector, Writer outputWriter, Object obj) {
+    BeanWriter writer = new BeanWriter(outputWriter);
+    writer.setXMLIntrospector(introspector);
 
     writer.getBindingConfiguration().setMapIDs(false);
     // Print no line endings
@@ -68,27 +105,17 @@ public class BeanXmlConverter implements BeanConverter {
 
     // Within a list the items need to be renamed - this probably means with need a .betwixt file
 
-    String toReturn = null;
     try {
       writer.write("response", obj);
-      toReturn = outputWriter.toString();
-      if (LOG.isLoggable(Level.FINEST)) LOG.finest("XML is: " + toReturn + "\n **** \n\n");
-
+      return true;
     } catch (SAXException e) {
       LOG.log(Level.SEVERE, e.getMessage(), e);
     } catch (IOException e) {
       LOG.log(Level.SEVERE, e.getMessage(), e);
     } catch (IntrospectionException e) {
       LOG.log(Level.SEVERE, e.getMessage(), e);
-    } finally {
-      try {
-        writer.close();
-      } catch (IOException e) {
-        if (LOG.isLoggable(Level.FINEST)) LOG.log(Level.FINEST, e.getMessage(), e);
-      }
     }
-
-    return toReturn;
+    return false;
   }
 
   @SuppressWarnings("unchecked")
@@ -109,7 +136,38 @@ public class BeanXmlConverter implements BeanConverter {
     }
   }
   
+  /**
+   * Writes the XML straight to the buffer when it is a Writer, instead of building it as a
+   * string first.
+   */
   public void append(Appendable buf, Object pojo) throws IOException {
-    buf.append(convertToString(pojo));
+    if (buf instanceof Writer) {
+      write(introspector, (Writer) buf, pojo);
+    } else {
+      buf.append(convertToString(pojo));
+    }
+  }
+
+  /**
+   * A registry of bean descriptions that can be shared between threads.
+   */
+  private static class ConcurrentXMLBeanInfoRegistry implements XMLBeanInfoRegistry {
+    private final ConcurrentMap<Class<?>, XMLBeanInfo> beanInfos = new MapMaker().makeMap();
+
+    @SuppressWarnings("unchecked")
+    public XMLBeanInfo get(Class forThisClass) {
+      return beanInfos.get(forThisClass);
+    }
+
+    @SuppressWarnings("unchecked")
+    public void put(Class forThisClass, XMLBeanInfo beanInfo) {
+      if (beanInfo != null) {
+        beanInfos.put(forThisClass, beanInfo);
+      }
+    }
+
+    public void flush() {
+      beanInfos.clear();
+    }
   }
 }
@@ -17,6 +17,7 @@
  */
 package org.apache.shindig.protocol.conversion.xstream;
 
+import com.google.common.collect.MapMaker;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.thoughtworks.xstream.mapper.Mapper;
@@ -25,6 +26,7 @@ import com.thoughtworks.xstream.mapper.MapperWrapper;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Logger;
 import java.util.logging.Level;
 
@@ -83,6 +85,21 @@ public class InterfaceClassMapper extends MapperWrapper {
    */
   private List<ImplicitCollectionFieldMapping> itemFieldMappings;
 
+  /**
+   * Element names already resolved for classes outside a root collection, keyed by class and
+   * then by parent element name ("" for none). The mappings are fixed on construction, so each
+   * class is only matched against them once.
+   */
+  private final ConcurrentMap<Class<?>, ConcurrentMap<String, String>> elementNames =
+      new MapMaker().makeMap();
+
+  /**
+   * Results of shouldSerializeMember, keyed by the class defining the field and then by field
+   * name.
+   */
+  private final ConcurrentMap<Class<?>, ConcurrentMap<String, Boolean>> serializedMembers =
+      new MapMaker().makeMap();
+
   /**
    * Create an Interface Class Mapper with a configuration.
    *
@@ -207,16 +224,32 @@ public class InterfaceClassMapper extends MapperWrapper {
       if (LOG.isLoggable(Level.FINE)) {
         LOG.fine("serializedClass(" + type + ')');
       }
-      for (ClassFieldMapping cfm : elementMappingList) {
-        if (cfm.matches(parentElementName, type)) {
-          if (LOG.isLoggable(Level.FINE)) {
-            LOG.fine("From MAP serializedClass(" + type + ")  =="
-                + cfm.getElementName());
-          }
-          return cfm.getElementName();
+      ConcurrentMap<String, String> names = getClassMap(elementNames, type);
+      String key = parentElementName == null ? "" : parentElementName;
+      String elementName = names.get(key);
+      if (elementName == null) {
+        elementName = findSerializedClass(parentElementName, type);
+        if (elementName != null) {
+          names.put(key, elementName);
         }
       }
+      return elementName;
+    }
+  }
 
+  /**
+   * Finds the element name for a class that is not the member of a root collection.
+   */
+  @SuppressWarnings("unchecked")
+  private String findSerializedClass(String parentElementName, Class type) {
+    for (ClassFieldMapping cfm : elementMappingList) {
+      if (cfm.matches(parentElementName, type)) {
+        if (LOG.isLoggable(Level.FINE)) {
+          LOG.fine("From MAP serializedClass(" + type + ")  =="
+              + cfm.getElementName());
+        }
+        return cfm.getElementName();
+      }
     }
 
     String fieldName = super.serializedClass(type);
@@ -227,6 +260,19 @@ public class InterfaceClassMapper extends MapperWrapper {
 
   }
 
+  private static <T> ConcurrentMap<String, T> getClassMap(
+      ConcurrentMap<Class<?>, ConcurrentMap<String, T>> cache, Class<?> type) {
+    ConcurrentMap<String, T> map = cache.get(type);
+    if (map == null) {
+      map = new MapMaker().makeMap();
+      ConcurrentMap<String, T> existing = cache.putIfAbsent(type, map);
+      if (existing != null) {
+        map = existing;
+      }
+    }
+    return map;
+  }
+
   /**
    * Checks to see if the field in a class should be serialized. This is
    * controlled buy the omitMMap Multimap which is keyed by the field name. Each entry
@@ -247,6 +293,17 @@ public class InterfaceClassMapper extends MapperWrapper {
   // API is not generic
   @Override
   public boolean shouldSerializeMember(Class definedIn, String fieldName) {
+    ConcurrentMap<String, Boolean> members = getClassMap(serializedMembers, definedIn);
+    Boolean serialize = members.get(fieldName);
+    if (serialize == null) {
+      serialize = findSerializeMember(definedIn, fieldName);
+      members.put(fieldName, serialize);
+    }
+    return serialize;
+  }
+
+  @SuppressWarnings("unchecked")
+  private boolean findSerializeMember(Class definedIn, String fieldName) {
     for (Class<?> omit : omitMMap.get(fieldName)) {
       if (omit.isAssignableFrom(definedIn)) {
         return false;
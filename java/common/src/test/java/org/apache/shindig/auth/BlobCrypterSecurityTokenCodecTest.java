@@ -19,11 +19,13 @@
 package org.apache.shindig.auth;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import org.apache.shindig.common.crypto.BasicBlobCrypter;
 import org.apache.shindig.common.crypto.BlobCrypter;
+import org.apache.shindig.common.crypto.BlobCrypterException;
 import org.apache.shindig.common.util.CharsetUtil;
 import org.apache.shindig.common.util.FakeTimeSource;
 import org.apache.shindig.config.AbstractContainerConfig;
@@ -47,6 +49,7 @@ public class BlobCrypterSecurityTokenCodecTest {
 
   private BlobCrypterSecurityTokenCodec codec;
   private final FakeTimeSource timeSource = new FakeTimeSource();
+  private int unwrapCount;
 
   @Before
   public void setUp() throws Exception {
@@ -68,6 +71,7 @@ public class BlobCrypterSecurityTokenCodecTest {
       }
     };
     codec = new CodecWithLoadStubbedOut(config);
+    codec.setTimeSource(timeSource);
   }
 
   protected String getContainerKey(String container) {
@@ -75,7 +79,13 @@ public class BlobCrypterSecurityTokenCodecTest {
   }
 
   protected BlobCrypter getBlobCrypter(String fileName) {
-    BasicBlobCrypter c = new BasicBlobCrypter(CharsetUtil.getUtf8Bytes(fileName));
+    BasicBlobCrypter c = new BasicBlobCrypter(CharsetUtil.getUtf8Bytes(fileName)) {
+      @Override
+      public Map<String, String> unwrap(String in, int maxAgeSec) throws BlobCrypterException {
+        unwrapCount++;
+        return super.unwrap(in, maxAgeSec);
+      }
+    };
     c.timeSource = timeSource;
     return c;
   }
@@ -184,6 +194,80 @@ public class BlobCrypterSecurityTokenCodecTest {
     }
   }
 
+  @Test
+  public void testVerifiedTokenIsReused() throws Exception {
+    BlobCrypterSecurityToken t = new BlobCrypterSecurityToken(
+        getBlobCrypter(getContainerKey("container")), "container", null);
+    t.setAppUrl("http://www.example.com/gadget.xml");
+    t.setOwnerId("owner");
+    t.setViewerId("viewer");
+    String encrypted = t.encrypt();
+
+    SecurityToken t1 = codec.createToken(ImmutableMap.of(
+        SecurityTokenCodec.SECURITY_TOKEN_NAME, encrypted,
+        SecurityTokenCodec.ACTIVE_URL_NAME, "http://www.example.com/one"));
+    timeSource.incrementSeconds(60);
+    SecurityToken t2 = codec.createToken(ImmutableMap.of(
+        SecurityTokenCodec.SECURITY_TOKEN_NAME, encrypted,
+        SecurityTokenCodec.ACTIVE_URL_NAME, "http://www.example.com/two"));
+
+    assertEquals(1, unwrapCount);
+    assertFalse(t1 == t2);
+    assertEquals("owner", t2.getOwnerId());
+    assertEquals("viewer", t2.getViewerId());
+    assertEquals("http://www.example.com/gadget.xml", t2.getAppUrl());
+    assertEquals("http://www.example.com/one", t1.getActiveUrl());
+    assertEquals("http://www.example.com/two", t2.getActiveUrl());
+  }
+
+  @Test
+  public void testCachedTokenExpires() throws Exception {
+    BlobCrypterSecurityToken t = new BlobCrypterSecurityToken(
+        getBlobCrypter(getContainerKey("container")), "container", null);
+    t.setOwnerId("owner");
+    String encrypted = t.encrypt();
+
+    codec.createToken(ImmutableMap.of(SecurityTokenCodec.SECURITY_TOKEN_NAME, encrypted));
+    timeSource.incrementSeconds(3600 + 181);
+    try {
+      codec.createToken(ImmutableMap.of(SecurityTokenCodec.SECURITY_TOKEN_NAME, encrypted));
+      fail("should have expired");
+    } catch (SecurityTokenException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("Blob expired"));
+    }
+    assertEquals(2, unwrapCount);
+  }
+
+  @Test
+  public void testCachedTokenReverifiedAfterExpiresAt() throws Exception {
+    BlobCrypterSecurityToken t = new BlobCrypterSecurityToken(
+        getBlobCrypter(getContainerKey("container")), "container", null);
+    t.setOwnerId("owner");
+    t.setExpiresAt(timeSource.currentTimeMillis() + 60 * 1000L);
+    String encrypted = t.encrypt();
+
+    codec.createToken(ImmutableMap.of(SecurityTokenCodec.SECURITY_TOKEN_NAME, encrypted));
+    codec.createToken(ImmutableMap.of(SecurityTokenCodec.SECURITY_TOKEN_NAME, encrypted));
+    assertEquals(1, unwrapCount);
+
+    timeSource.incrementSeconds(61);
+    codec.createToken(ImmutableMap.of(SecurityTokenCodec.SECURITY_TOKEN_NAME, encrypted));
+    assertEquals(2, unwrapCount);
+  }
+
+  @Test
+  public void testCacheCanBeDisabled() throws Exception {
+    codec.setTokenCacheCapacity(0);
+    BlobCrypterSecurityToken t = new BlobCrypterSecurityToken(
+        getBlobCrypter(getContainerKey("container")), "container", null);
+    t.setOwnerId("owner");
+    String encrypted = t.encrypt();
+
+    codec.createToken(ImmutableMap.of(SecurityTokenCodec.SECURITY_TOKEN_NAME, encrypted));
+    codec.createToken(ImmutableMap.of(SecurityTokenCodec.SECURITY_TOKEN_NAME, encrypted));
+    assertEquals(2, unwrapCount);
+  }
+
   @Test
   public void testMalformed() throws Exception {
     try {
@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.auth;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.shindig.common.testing.FakeHttpServletRequest;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+public class StashedBodyTest {
+
+  private static byte[] body(int length) {
+    byte[] bytes = new byte[length];
+    for (int i = 0; i < length; ++i) {
+      bytes[i] = (byte) i;
+    }
+    return bytes;
+  }
+
+  private static String contents(StashedBody body) throws IOException {
+    InputStream in = body.getInputStream();
+    try {
+      return new String(IOUtils.toByteArray(in), "ISO-8859-1");
+    } finally {
+      in.close();
+    }
+  }
+
+  @Test
+  public void smallBodyIsStashedAsArray() throws Exception {
+    FakeHttpServletRequest request = new FakeHttpServletRequest();
+    request.setPostData(body(100));
+
+    StashedBody body = StashedBody.stash(request, 1000, 10000);
+
+    assertTrue(body.isInMemory());
+    assertEquals(100, body.getLength());
+    assertArrayEquals(body(100), body.getBytes());
+    assertSame(body.getBytes(), request.getAttribute(AuthenticationHandler.STASHED_BODY));
+    assertSame(body.getBytes(), StashedBody.stash(request, 1000, 10000).getBytes());
+  }
+
+  @Test
+  public void unknownLengthIsReadToExactSize() throws Exception {
+    StashedBody body = StashedBody.read(new ByteArrayInputStream(body(20000)), -1, 100000, 200000);
+
+    assertTrue(body.isInMemory());
+    assertArrayEquals(body(20000), body.getBytes());
+  }
+
+  @Test
+  public void largeBodySpillsToFile() throws Exception {
+    FakeHttpServletRequest request = new FakeHttpServletRequest();
+    request.setPostData(body(5000));
+
+    StashedBody body = StashedBody.stash(request, 1000, 10000);
+
+    assertFalse(body.isInMemory());
+    assertEquals(5000, body.getLength());
+    assertSame(body, request.getAttribute(AuthenticationHandler.STASHED_BODY));
+    assertSame(body, StashedBody.get(request));
+    assertEquals(new String(body(5000), "ISO-8859-1"), contents(body));
+    assertArrayEquals(body(5000), body.getBytes());
+
+    body.release();
+    try {
+      body.getInputStream();
+      fail("Temporary file should have been deleted");
+    } catch (IOException e) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void unknownLengthSpillsAtThreshold() throws Exception {
+    StashedBody body = StashedBody.read(new ByteArrayInputStream(body(1001)), -1, 1000, 10000);
+    assertFalse(body.isInMemory());
+    assertArrayEquals(body(1001), body.getBytes());
+    body.release();
+
+    body = StashedBody.read(new ByteArrayInputStream(body(1000)), -1, 1000, 10000);
+    assertTrue(body.isInMemory());
+    assertArrayEquals(body(1000), body.getBytes());
+  }
+
+  @Test
+  public void declaredLengthOverLimitIsRejected() throws Exception {
+    FakeHttpServletRequest request = new FakeHttpServletRequest();
+    request.setPostData(body(5000));
+    try {
+      StashedBody.stash(request, 1000, 4000);
+      fail("Body is over the limit");
+    } catch (IOException e) {
+      // Expected.
+    }
+    assertNull(request.getAttribute(AuthenticationHandler.STASHED_BODY));
+  }
+
+  @Test
+  public void undeclaredLengthOverLimitIsRejected() throws Exception {
+    try {
+      StashedBody.read(new ByteArrayInputStream(body(500)), -1, 1000, 400);
+      fail("Body is over the limit");
+    } catch (IOException e) {
+      // Expected.
+    }
+    try {
+      StashedBody.read(new ByteArrayInputStream(body(5000)), -1, 1000, 4000);
+      fail("Body is over the limit");
+    } catch (IOException e) {
+      // Expected.
+    }
+  }
+
+  @Test
+  public void byteArrayAttributeIsStillSupported() throws Exception {
+    FakeHttpServletRequest request = new FakeHttpServletRequest();
+    byte[] bytes = body(10);
+    request.setAttribute(AuthenticationHandler.STASHED_BODY, bytes);
+
+    assertSame(bytes, StashedBody.get(request).getBytes());
+    assertNull(StashedBody.get(new FakeHttpServletRequest()));
+  }
+}
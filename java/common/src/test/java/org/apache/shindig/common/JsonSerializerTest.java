@@ -22,6 +22,7 @@ import static org.apache.shindig.common.JsonAssert.assertJsonEquals;
 import static org.junit.Assert.assertEquals;
 
 import org.apache.commons.lang.StringUtils;
+import org.apache.shindig.common.util.ProjectedList;
 import org.json.JSONArray;
 import org.json.JSONObject;
 import org.junit.Test;
@@ -168,6 +169,33 @@ public class JsonSerializerTest {
         JsonSerializer.serialize(pojo));
   }
 
+  public static class UnrequestedPojo {
+    public String getId() {
+      return "id-value";
+    }
+
+    public String getName() {
+      return "name-value";
+    }
+
+    public String getLoaded() {
+      throw new UnsupportedOperationException("Not requested");
+    }
+  }
+
+  @Test
+  public void serializeProjectedList() throws Exception {
+    ProjectedList<Object> list = new ProjectedList<Object>(
+        Arrays.<Object>asList(new UnrequestedPojo(), "plain", new UnrequestedPojo()),
+        ImmutableSet.of("id", "name", "missing"));
+
+    assertJsonEquals("[{id:'id-value',name:'name-value'},'plain',{id:'id-value',name:'name-value'}]",
+        JsonSerializer.serialize(list));
+    assertJsonEquals("{data:[{id:'id-value'}]}", JsonSerializer.serialize(ImmutableMap.of("data",
+        new ProjectedList<Object>(Arrays.<Object>asList(new UnrequestedPojo()),
+            ImmutableSet.of("id")))));
+  }
+
   @Test
   public void serializeMixedObjects() throws Exception {
     Map<String, ?> map = ImmutableMap.of(
@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.apache.shindig.common.servlet;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+
+import org.apache.shindig.common.testing.FakeHttpServletRequest;
+
+import org.junit.Test;
+
+import javax.servlet.FilterChain;
+import javax.servlet.http.HttpServletResponse;
+
+public class AdminServletFilterTest {
+  private final AdminServletFilter filter = new AdminServletFilter();
+  private final FakeHttpServletRequest request = new FakeHttpServletRequest();
+  private final HttpServletResponse response = createMock(HttpServletResponse.class);
+  private final FilterChain chain = createMock(FilterChain.class);
+
+  @Test
+  public void refusesEverythingWithoutKey() throws Exception {
+    filter.setAdminKey("");
+    request.setHeader(AdminServletFilter.KEY_HEADER, "");
+    response.sendError(HttpServletResponse.SC_FORBIDDEN, "Admin endpoints are disabled");
+    replay(response, chain);
+
+    filter.doFilter(request, response, chain);
+    verify(response, chain);
+  }
+
+  @Test
+  public void refusesWrongKey() throws Exception {
+    filter.setAdminKey("secret");
+    request.setHeader(AdminServletFilter.KEY_HEADER, "secreT");
+    response.sendError(HttpServletResponse.SC_FORBIDDEN, "Invalid admin key");
+    replay(response, chain);
+
+    filter.doFilter(request, response, chain);
+    verify(response, chain);
+  }
+
+  @Test
+  public void passesMatchingKey() throws Exception {
+    filter.setAdminKey("secret");
+    request.setHeader(AdminServletFilter.KEY_HEADER, "secret");
+    chain.doFilter(request, response);
+    replay(response, chain);
+
+    filter.doFilter(request, response, chain);
+    verify(response, chain);
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.shindig.common.util;
+
+import com.google.common.collect.Sets;
+
+import org.junit.Test;
+
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ContentFingerprintTest {
+  @Test
+  public void testFingerprintIsStableHex() {
+    String fingerprint = ContentFingerprint.of("<html><body>Hello</body></html>");
+    assertEquals(32, fingerprint.length());
+    assertTrue(fingerprint.matches("[0-9a-f]{32}"));
+    assertEquals(fingerprint, ContentFingerprint.of(new StringBuilder("<html><body>Hello</body></html>")));
+  }
+
+  @Test
+  public void testEveryLengthIsDistinct() {
+    // Covers every tail length, and a change in the last character of each.
+    Set<String> seen = Sets.newHashSet();
+    StringBuilder content = new StringBuilder();
+    for (int i = 0; i < 40; ++i) {
+      assertTrue(seen.add(ContentFingerprint.of(content)));
+      content.append('a');
+      String changed = content.substring(0, i) + 'b';
+      assertFalse(ContentFingerprint.of(content).equals(ContentFingerprint.of(changed)));
+    }
+  }
+
+  @Test
+  public void testMatchesSipHashReferenceVectors() {
+    // Reference SipHash-2-4-128 outputs, for the key 00..0f and the messages 00 01 02 ...
+    assertEquals("a3817f04ba25a8e66df67214c7550293", referenceHash(0));
+    assertEquals("8177228da4a45dc7fca38bdef60affe4", referenceHash(2));
+    assertEquals("31fcefac66d7de9c7ec7485fe4494902", referenceHash(14));
+    assertEquals("6ee2a4ca67b054bbfd3315bf85230577", referenceHash(16));
+    assertEquals("ea5c7f471faf6bde2b1ad7d4686d2287", referenceHash(30));
+  }
+
+  /** Hashes the bytes 00 01 02 ..., read as UTF-16LE, with the key 00..0f. */
+  private static String referenceHash(int bytes) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < bytes; i += 2) {
+      sb.append((char) (i | (i + 1) << 8));
+    }
+    return ContentFingerprint.hash(0x0706050403020100L, 0x0f0e0d0c0b0a0908L, sb, 0, sb.length());
+  }
+
+  @Test
+  public void testFingerprintDependsOnKey() {
+    String content = "<html><body>Hello</body></html>";
+    assertFalse(ContentFingerprint.hash(1, 2, content, 0, content.length())
+        .equals(ContentFingerprint.hash(1, 3, content, 0, content.length())));
+  }
+
+  @Test
+  public void testCharRangeMatchesString() {
+    char[] chars = "xxbody { color: red; }yy".toCharArray();
+    assertEquals(ContentFingerprint.of("body { color: red; }"),
+        ContentFingerprint.of(chars, 2, chars.length - 4));
+  }
+
+  @Test
+  public void testLargeContentIsMemoized() {
+    StringBuilder sb = new StringBuilder();
+    while (sb.length() < ContentFingerprint.MEMO_THRESHOLD) {
+      sb.append("<div>content</div>");
+    }
+    String content = sb.toString();
+    assertEquals(ContentFingerprint.of(sb), ContentFingerprint.of(content));
+    assertEquals(ContentFingerprint.of(content), ContentFingerprint.of(content));
+  }
+}
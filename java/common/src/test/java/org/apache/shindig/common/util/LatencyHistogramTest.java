@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+package org.apache.shindig.common.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+  @Test
+  public void testBucketsCoverEveryDuration() {
+    long previous = 0;
+    for (int i = 0; i < LatencyHistogram.BUCKETS - 1; ++i) {
+      long upper = LatencyHistogram.upperBound(i);
+      assertTrue(upper > previous);
+      assertEquals(i, LatencyHistogram.bucket(upper - 1));
+      assertEquals(i + 1, LatencyHistogram.bucket(upper));
+      // Each bucket is at most a quarter wider than its lower bound.
+      assertTrue(i == 0 || (upper - previous) * 4 <= previous);
+      previous = upper;
+    }
+    assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucket(Long.MAX_VALUE));
+  }
+
+  @Test
+  public void testPercentiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(0, histogram.getPercentileNanos(50));
+    for (int i = 1; i <= 100; ++i) {
+      histogram.record(i * 1000000L);
+    }
+    assertEquals(100, histogram.getCount());
+    assertEquals(50500000L, histogram.getMeanNanos());
+    assertEquals(100000000L, histogram.getMaxNanos());
+
+    long median = histogram.getPercentileNanos(50);
+    assertTrue(median >= 50000000L && median <= 50000000L * 5 / 4);
+    long p99 = histogram.getPercentileNanos(99);
+    assertTrue(p99 >= 99000000L && p99 <= 100000000L);
+    assertEquals(100000000L, histogram.getPercentileNanos(100));
+    assertEquals(histogram.getPercentileNanos(1), LatencyHistogram.upperBound(
+        LatencyHistogram.bucket(1000000L)));
+  }
+
+  @Test
+  public void testReset() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(-5);
+    histogram.record(Long.MAX_VALUE);
+    assertEquals(Long.MAX_VALUE, histogram.getPercentileNanos(100));
+    histogram.reset();
+    assertEquals(0, histogram.getCount());
+    assertEquals(0, histogram.getMaxNanos());
+    assertEquals(0, histogram.getPercentileNanos(99));
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.shindig.common.util;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SubstringMatcherTest {
+  @Test
+  public void testMatchesAnySubstringIgnoringCase() {
+    SubstringMatcher matcher = SubstringMatcher.compile(ImmutableList.of("he", "She", "his", "hers"));
+    assertTrue(matcher.matches("ushers"));
+    assertTrue(matcher.matches("USHE"));
+    assertTrue(matcher.matches("this"));
+    assertFalse(matcher.matches("hiss".substring(1)));
+    assertFalse(matcher.matches(""));
+    assertFalse(matcher.matches("hé"));
+  }
+
+  @Test
+  public void testOverlappingSubstrings() {
+    SubstringMatcher matcher = SubstringMatcher.compile(ImmutableList.of("abcd", "bc"));
+    assertTrue(matcher.matches("xabcx"));
+    matcher = SubstringMatcher.compile(ImmutableList.of("aab"));
+    assertTrue(matcher.matches("aaab"));
+    assertFalse(matcher.matches("abab"));
+  }
+
+  @Test
+  public void testNonAsciiAndEmpty() {
+    assertTrue(SubstringMatcher.compile(ImmutableList.of("cafÉ")).matches("/CAFé/x"));
+    assertTrue(SubstringMatcher.compile(ImmutableList.of("x", "")).matches("abc"));
+    assertFalse(SubstringMatcher.compile(ImmutableList.<String>of()).matches("abc"));
+  }
+
+  @Test
+  public void testCompiledMatcherIsShared() {
+    assertSame(SubstringMatcher.compile(ImmutableList.of("a", "b")),
+        SubstringMatcher.compile(ImmutableList.of("A", "b")));
+  }
+
+  @Test
+  public void testAgreesWithContains() {
+    Random random = new Random(1);
+    for (int round = 0; round < 200; ++round) {
+      List<String> substrings = Lists.newArrayList();
+      for (int i = random.nextInt(5); i >= 0; --i) {
+        substrings.add(randomString(random, 1 + random.nextInt(4)));
+      }
+      SubstringMatcher matcher = SubstringMatcher.compile(substrings);
+      for (int i = 0; i < 20; ++i) {
+        String text = randomString(random, random.nextInt(20));
+        assertEquals(substrings + " in " + text, containsAny(text, substrings),
+            matcher.matches(text));
+      }
+    }
+  }
+
+  private static String randomString(Random random, int length) {
+    char[] chars = new char[length];
+    for (int i = 0; i < length; ++i) {
+      chars[i] = "abcAB".charAt(random.nextInt(5));
+    }
+    return new String(chars);
+  }
+
+  private static boolean containsAny(String text, List<String> substrings) {
+    String lower = text.toLowerCase();
+    for (String s : substrings) {
+      if (lower.contains(s.toLowerCase())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Compares matching against a scan over each substring in turn, for a typical include list.
+   */
+  public static void main(String[] args) {
+    List<String> substrings = Lists.newArrayList();
+    for (int i = 0; i < 40; ++i) {
+      substrings.add("static" + i + ".example.com/");
+    }
+    List<String> urls = Lists.newArrayList();
+    for (int i = 0; i < 300; ++i) {
+      urls.add("http://www.example.org/images/gadget/resource-" + i + ".png?v=" + i);
+    }
+    SubstringMatcher matcher = SubstringMatcher.compile(substrings);
+    int rounds = 2000;
+    for (int pass = 0; pass < 3; ++pass) {
+      long start = System.nanoTime();
+      int found = 0;
+      for (int round = 0; round < rounds; ++round) {
+        for (String url : urls) {
+          String lower = url.toLowerCase();
+          for (String s : substrings) {
+            if (lower.contains(s)) {
+              ++found;
+              break;
+            }
+          }
+        }
+      }
+      long scan = System.nanoTime() - start;
+      start = System.nanoTime();
+      for (int round = 0; round < rounds; ++round) {
+        for (String url : urls) {
+          if (matcher.matches(url)) {
+            ++found;
+          }
+        }
+      }
+      long compiled = System.nanoTime() - start;
+      System.out.println("scan: " + scan / (rounds * urls.size()) + " ns/url, compiled: "
+          + compiled / (rounds * urls.size()) + " ns/url (" + found + ")");
+    }
+  }
+}
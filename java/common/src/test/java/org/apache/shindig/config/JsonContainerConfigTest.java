@@ -28,6 +28,7 @@ import java.io.File;
 import java.io.FileWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -36,6 +37,8 @@ import static org.apache.shindig.config.JsonContainerConfig.CONTAINER_KEY;
 import static org.apache.shindig.config.JsonContainerConfig.PARENT_KEY;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class JsonContainerConfigTest {
 
@@ -238,6 +241,82 @@ public class JsonContainerConfigTest {
     assertEquals(TOP_LEVEL_VALUE, config.getString(CHILD_CONTAINER, "parentExpression"));
   }
 
+  @Test
+  public void reloadSwapsConfigAndNotifiesChangedContainers() throws Exception {
+    JSONObject json = new JSONObject()
+        .put(CONTAINER_KEY, new String[]{CHILD_CONTAINER})
+        .put(PARENT_KEY, DEFAULT_CONTAINER)
+        .put(TOP_LEVEL_NAME, "before");
+    File childFile = createContainer(json);
+    File parentFile = createDefaultContainer();
+    JsonContainerConfig config = new JsonContainerConfig(childFile.getAbsolutePath() +
+        JsonContainerConfig.FILE_SEPARATOR + parentFile.getAbsolutePath(), Expressions.forTesting());
+
+    final List<String> notified = new ArrayList<String>();
+    config.addConfigObserver(new ContainerConfig.ConfigObserver() {
+      public void containersChanged(ContainerConfig source, Collection<String> changed) {
+        notified.addAll(changed);
+      }
+    });
+
+    // Nothing changed on disk: no notification.
+    assertTrue(config.reload().isEmpty());
+    assertTrue(notified.isEmpty());
+
+    BufferedWriter out = new BufferedWriter(new FileWriter(childFile));
+    out.write(json.put(TOP_LEVEL_NAME, "after").toString());
+    out.close();
+
+    assertEquals(Arrays.asList(CHILD_CONTAINER), new ArrayList<String>(config.reload()));
+    assertEquals(Arrays.asList(CHILD_CONTAINER), notified);
+    assertEquals("after", config.getString(CHILD_CONTAINER, TOP_LEVEL_NAME));
+    assertEquals(TOP_LEVEL_VALUE, config.getString(DEFAULT_CONTAINER, TOP_LEVEL_NAME));
+  }
+
+  @Test
+  public void reloadRunsInit() throws Exception {
+    JSONObject json = new JSONObject()
+        .put(CONTAINER_KEY, new String[]{DEFAULT_CONTAINER})
+        .put(TOP_LEVEL_NAME, "before");
+    File file = createContainer(json);
+    final List<String> initialized = new ArrayList<String>();
+    JsonContainerConfig config = new JsonContainerConfig(file.getAbsolutePath(),
+        Expressions.forTesting()) {
+      @Override
+      protected void init() {
+        super.init();
+        initialized.add(getString(DEFAULT_CONTAINER, TOP_LEVEL_NAME));
+      }
+    };
+    assertEquals(Arrays.asList("before"), initialized);
+
+    BufferedWriter out = new BufferedWriter(new FileWriter(file));
+    out.write(json.put(TOP_LEVEL_NAME, "after").toString());
+    out.close();
+    config.reload();
+
+    assertEquals(Arrays.asList("before", "after"), initialized);
+  }
+
+  @Test
+  public void reloadKeepsConfigOnError() throws Exception {
+    File file = createDefaultContainer();
+    JsonContainerConfig config = new JsonContainerConfig(file.getAbsolutePath(),
+        Expressions.forTesting());
+
+    BufferedWriter out = new BufferedWriter(new FileWriter(file));
+    out.write("{ not json");
+    out.close();
+
+    try {
+      config.reload();
+      fail("Expected reload to fail");
+    } catch (ContainerConfigException e) {
+      // Expected.
+    }
+    assertEquals(TOP_LEVEL_VALUE, config.getString(DEFAULT_CONTAINER, TOP_LEVEL_NAME));
+  }
+
   @Test
   public void nullEntryEvaluation() throws Exception {
     // We use a JSON Object here to guarantee that we're well formed up front.
@@ -31,6 +31,7 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.StringWriter;
 import java.util.Map;
 
 /**
@@ -56,6 +57,18 @@ public class BeanXmlConverterTest extends Assert {
     XMLAssert.assertXMLEqual(diff, true);
   }
 
+  @Test
+  public void testAppendWritesSameXml() throws Exception {
+    String xml = beanXmlConverter.convertToXml(car);
+    StringWriter out = new StringWriter();
+    beanXmlConverter.append(out, car);
+    assertEquals(xml, out.toString());
+
+    // A second conversion reuses the introspected description of the class
+    assertEquals(xml, beanXmlConverter.convertToXml(car));
+    assertEquals(xml, new BeanXmlConverter().convertToXml(car));
+  }
+
   @Test
   //@Ignore("unknown why this is disabled")
   public void testMapsToXml() throws Exception {
@@ -25,6 +25,7 @@ import com.google.inject.name.Named;
 import org.apache.shindig.common.cache.Cache;
 import org.apache.shindig.common.cache.CacheProvider;
 import org.apache.shindig.common.uri.Uri;
+import org.apache.shindig.common.util.ContentFingerprint;
 import org.apache.shindig.common.xml.XmlException;
 import org.apache.shindig.common.xml.XmlUtil;
 import org.apache.shindig.gadgets.http.RequestPipeline;
@@ -41,15 +42,19 @@ import java.util.concurrent.ExecutorService;
 public class DefaultGadgetSpecFactory extends AbstractSpecFactory<GadgetSpec>
     implements GadgetSpecFactory {
   public static final String CACHE_NAME = "gadgetSpecs";
+  public static final String CONTENT_CACHE_NAME = "gadgetSpecsByContent";
   public static final String RAW_GADGETSPEC_XML_PARAM_NAME = "rawxml";
   static final Uri RAW_GADGET_URI = Uri.parse("http://localhost/raw.xml");
 
+  private final Cache<String, GadgetSpec> contentCache;
+
   @Inject
   public DefaultGadgetSpecFactory(ExecutorService executor,
                                   RequestPipeline pipeline,
                                   CacheProvider cacheProvider,
                                   @Named("shindig.cache.xml.refreshInterval") long refresh) {
     super(GadgetSpec.class, executor, pipeline, makeCache(cacheProvider), refresh);
+    this.contentCache = cacheProvider.createCache(CONTENT_CACHE_NAME);
   }
 
   private static Cache<Uri, Object> makeCache(CacheProvider cacheProvider) {
@@ -90,7 +95,21 @@ public class DefaultGadgetSpecFactory extends AbstractSpecFactory<GadgetSpec>
         content.substring(0, BOM_ENTITY.length()).equalsIgnoreCase(BOM_ENTITY)) {
       content = content.substring(BOM_ENTITY.length());
     }
+    Uri specUri = query.getSpecUri();
+
+    // Identical source at the same path (typically query string variants of one url) shares a
+    // single parsed spec. The query is left out of the key since it can't affect how relative
+    // references in the spec are resolved.
+    String key = ContentFingerprint.of(content) + ' ' +
+        specUri.getScheme() + "://" + specUri.getAuthority() + specUri.getPath();
+    GadgetSpec spec = contentCache.getElement(key);
+    if (spec != null) {
+      return specUri.equals(spec.getUrl()) ? spec : new GadgetSpec(spec, specUri);
+    }
+
     Element element = XmlUtil.parse(content);
-    return new GadgetSpec(query.getSpecUri(), element, content);
+    spec = new GadgetSpec(specUri, element, content);
+    contentCache.addElement(key, spec);
+    return spec;
   }
 }
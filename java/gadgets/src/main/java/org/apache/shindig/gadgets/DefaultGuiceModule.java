@@ -32,6 +32,7 @@ import org.apache.commons.lang.StringUtils;
 
 import org.apache.shindig.gadgets.config.ConfigContributor;
 import org.apache.shindig.gadgets.config.CoreUtilConfigContributor;
+import org.apache.shindig.gadgets.config.HotReloadService;
 import org.apache.shindig.gadgets.config.OsapiServicesConfigContributor;
 import org.apache.shindig.gadgets.config.ShindigAuthConfigContributor;
 import org.apache.shindig.gadgets.config.XhrwrapperConfigContributor;
@@ -39,6 +40,7 @@ import org.apache.shindig.gadgets.http.HttpResponse;
 import org.apache.shindig.gadgets.http.InvalidationHandler;
 import org.apache.shindig.gadgets.parse.ParseModule;
 import org.apache.shindig.gadgets.preload.PreloadModule;
+import org.apache.shindig.gadgets.process.StartupWarmup;
 import org.apache.shindig.gadgets.render.RenderModule;
 import org.apache.shindig.gadgets.rewrite.RewriteModule;
 import org.apache.shindig.gadgets.servlet.GadgetsHandler;
@@ -105,6 +107,12 @@ public class DefaultGuiceModule extends AbstractModule {
     // We perform static injection on HttpResponse for cache TTLs.
     requestStaticInjection(HttpResponse.class);
 
+    // Watches container config and feature files when shindig.reload.check-interval-ms is set.
+    bind(HotReloadService.class).asEagerSingleton();
+
+    // Warms the caches for the gadgets listed in shindig.warmup.file.
+    bind(StartupWarmup.class).asEagerSingleton();
+
     //
     // 各種ガジェット等を然るべき場所へ Inject する。
     //
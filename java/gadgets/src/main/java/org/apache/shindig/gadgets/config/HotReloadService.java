@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.gadgets.config;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+
+import org.apache.shindig.common.util.FileWatcher;
+import org.apache.shindig.config.ContainerConfig;
+import org.apache.shindig.config.ContainerConfigException;
+import org.apache.shindig.config.JsonContainerConfig;
+import org.apache.shindig.gadgets.DefaultGuiceModule;
+import org.apache.shindig.gadgets.GadgetException;
+import org.apache.shindig.gadgets.features.FeatureRegistry;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Watches the files backing the container configuration and the feature registry, and reloads
+ * them in the background when they change.
+ *
+ * Reloads are performed by {@link JsonContainerConfig#reload()} and
+ * {@link FeatureRegistry#reload()}, which build a complete new snapshot before swapping it in
+ * and then notify their observers with the set of changed containers or features. Caches that
+ * derive from that data (JS versions, iframe URLs) register as observers and invalidate only
+ * what is affected; everything else, notably the HTTP and spec caches, stays warm.
+ *
+ * Watching is disabled unless shindig.reload.check-interval-ms is set to a positive value.
+ * Only file system locations are watched, since classpath resources can't change at runtime.
+ */
+@Singleton
+public class HotReloadService {
+  private static final Logger LOG = Logger.getLogger(HotReloadService.class.getName());
+
+  private final ContainerConfig containerConfig;
+  private final FeatureRegistry featureRegistry;
+  private final FileWatcher configWatcher;
+  private final FileWatcher featureWatcher;
+  private ScheduledExecutorService scheduler;
+
+  @Inject
+  public HotReloadService(ContainerConfig containerConfig, FeatureRegistry featureRegistry) {
+    this.containerConfig = containerConfig;
+    this.featureRegistry = featureRegistry;
+    List<File> configFiles = containerConfig instanceof JsonContainerConfig ?
+        ((JsonContainerConfig) containerConfig).getSourceFiles() : Collections.<File>emptyList();
+    this.configWatcher = new FileWatcher(configFiles);
+    this.featureWatcher = new FileWatcher(featureRegistry.getSourceFiles());
+  }
+
+  @Inject(optional = true)
+  public void setCheckInterval(@Named("shindig.reload.check-interval-ms") long checkIntervalMs) {
+    if (checkIntervalMs > 0) {
+      start(checkIntervalMs);
+    } else {
+      stop();
+    }
+  }
+
+  /**
+   * Starts polling for changes at the given interval, replacing any previous schedule.
+   */
+  public synchronized void start(long checkIntervalMs) {
+    stop();
+    if (configWatcher.getRoots().isEmpty() && featureWatcher.getRoots().isEmpty()) {
+      LOG.info("No file system locations to watch; hot reload disabled.");
+      return;
+    }
+    scheduler = Executors.newSingleThreadScheduledExecutor(DefaultGuiceModule.DAEMON_THREAD_FACTORY);
+    scheduler.scheduleWithFixedDelay(new Runnable() {
+      public void run() {
+        checkNow();
+      }
+    }, checkIntervalMs, checkIntervalMs, TimeUnit.MILLISECONDS);
+    LOG.info("Watching container config " + configWatcher.getRoots() + " and features " +
+        featureWatcher.getRoots() + " every " + checkIntervalMs + "ms");
+  }
+
+  /**
+   * Stops polling. Has no effect if polling was never started.
+   */
+  public synchronized void stop() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+      scheduler = null;
+    }
+  }
+
+  /**
+   * Checks the watched files once and reloads whatever changed. Features are reloaded before
+   * the container config, since config observers may consult the registry.
+   *
+   * @return True if anything was reloaded successfully.
+   */
+  public synchronized boolean checkNow() {
+    boolean reloaded = false;
+    if (featureWatcher.hasChanged()) {
+      reloaded |= reloadFeatures();
+    }
+    if (configWatcher.hasChanged()) {
+      reloaded |= reloadContainerConfig();
+    }
+    return reloaded;
+  }
+
+  /**
+   * Unconditionally reloads both the features and the container config.
+   *
+   * @return True if both reloads succeeded.
+   */
+  public synchronized boolean reloadAll() {
+    boolean features = reloadFeatures();
+    return reloadContainerConfig() && features;
+  }
+
+  private boolean reloadFeatures() {
+    try {
+      featureRegistry.reload();
+      return true;
+    } catch (GadgetException e) {
+      LOG.log(Level.WARNING, "Feature reload failed, keeping current features", e);
+    } catch (RuntimeException e) {
+      LOG.log(Level.WARNING, "Feature reload failed, keeping current features", e);
+    }
+    return false;
+  }
+
+  private boolean reloadContainerConfig() {
+    if (!(containerConfig instanceof JsonContainerConfig)) {
+      return false;
+    }
+    try {
+      ((JsonContainerConfig) containerConfig).reload();
+      return true;
+    } catch (ContainerConfigException e) {
+      LOG.log(Level.WARNING, "Container config reload failed, keeping current config", e);
+    } catch (RuntimeException e) {
+      LOG.log(Level.WARNING, "Container config reload failed, keeping current config", e);
+    }
+    return false;
+  }
+}
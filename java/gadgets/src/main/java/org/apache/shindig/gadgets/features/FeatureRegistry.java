@@ -49,6 +49,8 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 import java.util.logging.Level;
 
@@ -93,6 +95,10 @@ import java.util.logging.Level;
  * Mechanism for loading feature.xml files from a location keyed by a String.
  * That String might be the location of a text file which in turn contains
  * other feature file locations; a directory; or a feature.xml file itself.
+ *
+ * The registered feature graph may be rebuilt at runtime with {@link #reload()}. The new graph
+ * is fully built and validated before it replaces the current one, and only cached lookups
+ * involving changed features are discarded.
  */
 @Singleton
 public class FeatureRegistry {
@@ -105,9 +111,15 @@ public class FeatureRegistry {
   // Map keyed by FeatureNode object created as a lookup for transitive feature deps.
   private final Map<FeatureCacheKey, List<FeatureResource>> cache = new MapMaker().makeMap();
 
+  // Incremented by every reload that changes features, after the new graph is swapped in.
+  private final AtomicInteger generation = new AtomicInteger();
+
+  private final List<FeatureObserver> observers = new CopyOnWriteArrayList<FeatureObserver>();
+
   private final FeatureParser parser;
   private final FeatureResourceLoader resourceLoader;
-  private final ImmutableMap<String, FeatureNode> featureMap;
+  private final List<String> features;
+  private volatile ImmutableMap<String, FeatureNode> featureMap;
   
 
   
@@ -126,16 +138,102 @@ public class FeatureRegistry {
                          @Named("org.apache.shindig.features") List<String> features) throws GadgetException {
     this.parser = new FeatureParser();
     this.resourceLoader = resourceLoader;
+    this.features = features;
 
-    featureMap = register(features);
+    ImmutableMap<String, FeatureNode> newFeatureMap = register(features);
 
     // Connect the dependency graph made up of all features and validate there
     // are no circular deps.
-    connectDependencyGraph();
+    connectDependencyGraph(newFeatureMap);
+    featureMap = newFeatureMap;
 
     // Clear caches.
     cache.clear();
   }
+
+  /**
+   * Re-reads all features from the locations given at construction time and atomically
+   * replaces the current feature graph. If any feature fails to load or validate, the current
+   * graph is left untouched.
+   *
+   * A feature is considered changed if it was added, removed, or its definition or resource
+   * content differs, or if it depends (transitively) on a changed feature. Observers are only
+   * notified when something changed.
+   *
+   * @return The names of all changed features.
+   * @throws GadgetException If the new feature set is invalid.
+   */
+  public Set<String> reload() throws GadgetException {
+    ImmutableMap<String, FeatureNode> newFeatureMap = register(features);
+    connectDependencyGraph(newFeatureMap);
+
+    ImmutableMap<String, FeatureNode> oldFeatureMap = featureMap;
+    Set<String> changed = Sets.newHashSet();
+    for (String name : Sets.union(oldFeatureMap.keySet(), newFeatureMap.keySet())) {
+      FeatureNode oldNode = oldFeatureMap.get(name);
+      FeatureNode newNode = newFeatureMap.get(name);
+      if (oldNode == null || newNode == null || !oldNode.sameDefinition(newNode)) {
+        changed.add(name);
+      }
+    }
+    // Anything depending on a changed feature, in either graph, serves different JS as well.
+    addDependents(oldFeatureMap, changed);
+    addDependents(newFeatureMap, changed);
+
+    featureMap = newFeatureMap;
+    if (changed.isEmpty()) {
+      return changed;
+    }
+    generation.incrementAndGet();
+
+    // Since the changed set is closed over dependents, a cached lookup is only stale
+    // if it asked for a changed feature directly.
+    for (FeatureCacheKey key : cache.keySet()) {
+      if (!Collections.disjoint(key.needed, changed)) {
+        cache.remove(key);
+      }
+    }
+
+    LOG.info("Reloaded features, changed: " + changed);
+    Set<String> result = Collections.unmodifiableSet(changed);
+    for (FeatureObserver observer : observers) {
+      observer.featuresChanged(this, result);
+    }
+    return result;
+  }
+
+  /**
+   * Registers an observer to be notified whenever {@link #reload()} changes any feature.
+   */
+  public void addFeatureObserver(FeatureObserver observer) {
+    observers.add(observer);
+  }
+
+  /**
+   * @return The file system locations features are loaded from. Classpath resources are not
+   *     included since they can't change without a restart.
+   */
+  public List<File> getSourceFiles() {
+    List<File> files = Lists.newArrayList();
+    for (String location : features) {
+      Uri uriLoc = getComponentUri(location);
+      if (!RESOURCE_SCHEME.equals(uriLoc.getScheme())) {
+        files.add(new File(uriLoc.getPath()));
+      }
+    }
+    return files;
+  }
+
+  /**
+   * Receives notification after the feature graph has been replaced by {@link #reload()}.
+   */
+  public interface FeatureObserver {
+    /**
+     * @param registry The registry that changed.
+     * @param changed Names of added, removed or modified features, including their dependents.
+     */
+    void featuresChanged(FeatureRegistry registry, Set<String> changed);
+  }
   
   /**
    * Reads and registers all of the features in the directory, or the file, specified by
@@ -230,6 +328,7 @@ public class FeatureRegistry {
     if (useCache && cache.containsKey(cacheKey)) {
       return cache.get(cacheKey);
     }
+    int startGeneration = generation.get();
     
     List<FeatureNode> featureNodes = null;
     if (transitive) {
@@ -267,6 +366,11 @@ public class FeatureRegistry {
     List<FeatureResource> resources = resourcesBuilder.build();
     if (useCache && (unsupported == null || unsupported.isEmpty())) {
       cache.put(cacheKey, resources);
+      if (generation.get() != startGeneration) {
+        // A reload swapped the graph while these resources were built from the old one, and may
+        // have pruned the cache before the put above.
+        cache.remove(cacheKey);
+      }
     }
       
     return resources;
@@ -374,9 +478,11 @@ public class FeatureRegistry {
   
   private List<FeatureNode> getRequestedNodes(Collection<String> needed, List<String> unsupported) {
     List<FeatureNode> requested = Lists.newArrayList();
+    Map<String, FeatureNode> currentFeatures = featureMap;
     for (String featureName : needed) {
-      if (featureMap.containsKey(featureName)) {
-        requested.add(featureMap.get(featureName));
+      FeatureNode node = currentFeatures.get(featureName);
+      if (node != null) {
+        requested.add(node);
       } else {
         if (unsupported != null) unsupported.add(featureName);
       }
@@ -391,7 +497,18 @@ public class FeatureRegistry {
     return false;
   }
   
-  private void connectDependencyGraph() throws GadgetException {
+  private static void addDependents(Map<String, FeatureNode> graph, Set<String> changed) {
+    for (FeatureNode node : graph.values()) {
+      for (FeatureNode dep : node.getTransitiveDeps()) {
+        if (changed.contains(dep.name)) {
+          changed.add(node.name);
+          break;
+        }
+      }
+    }
+  }
+
+  private void connectDependencyGraph(Map<String, FeatureNode> featureMap) throws GadgetException {
     // Iterate through each raw dependency, adding the corresponding feature to the graph.
     // Collect as many feature dep tree errors as possible before erroring out.
     List<String> problems = Lists.newLinkedList();
@@ -554,6 +671,22 @@ public class FeatureRegistry {
     public List<FeatureResource> getResources() {
       return resources;
     }
+
+    private boolean sameDefinition(FeatureBundle other) {
+      if (!type.equals(other.type) || !attribs.equals(other.attribs) ||
+          resources.size() != other.resources.size()) {
+        return false;
+      }
+      for (int i = 0; i < resources.size(); ++i) {
+        FeatureResource mine = resources.get(i);
+        FeatureResource theirs = other.resources.get(i);
+        if (!Objects.equal(mine.getContent(), theirs.getContent()) ||
+            !Objects.equal(mine.getDebugContent(), theirs.getDebugContent())) {
+          return false;
+        }
+      }
+      return true;
+    }
   }
   
   private static final class FeatureNode {
@@ -581,6 +714,18 @@ public class FeatureRegistry {
     public List<String> getRawDeps() {
       return requestedDeps;
     }
+
+    private boolean sameDefinition(FeatureNode other) {
+      if (!requestedDeps.equals(other.requestedDeps) || bundles.size() != other.bundles.size()) {
+        return false;
+      }
+      for (int i = 0; i < bundles.size(); ++i) {
+        if (!bundles.get(i).sameDefinition(other.bundles.get(i))) {
+          return false;
+        }
+      }
+      return true;
+    }
     
     public void addDep(FeatureNode dep) {
       depList.add(dep);
@@ -45,7 +45,6 @@ import org.apache.http.client.params.ClientPNames;
 import org.apache.http.client.params.HttpClientParams;
 import org.apache.http.client.protocol.RequestAddCookies;
 import org.apache.http.client.protocol.ResponseProcessCookies;
-import org.apache.http.conn.ClientConnectionManager;
 import org.apache.http.conn.ConnectionPoolTimeoutException;
 import org.apache.http.conn.HttpHostConnectException;
 import org.apache.http.conn.params.ConnManagerParams;
@@ -102,12 +101,15 @@ public class BasicHttpFetcher implements HttpFetcher {
   private static final int DEFAULT_READ_TIMEOUT_MS = 5000;
   private static final int DEFAULT_MAX_OBJECT_SIZE = 0;  // no limit
   private static final long DEFAULT_SLOW_RESPONSE_WARNING = 10000;
+  private static final int MAX_TOTAL_CONNECTIONS = 1152;
 
   protected final HttpClient FETCHER;
+  private final ThreadSafeClientConnManager connectionManager;
 
   // mutable fields must be volatile
   private volatile int maxObjSize;
   private volatile long slowResponseWarning;
+  private volatile HttpMetrics metrics;
 
   private static final Logger LOG = Logger.getLogger(BasicHttpFetcher.class.getName());
 
@@ -148,7 +150,7 @@ public class BasicHttpFetcher implements HttpFetcher {
     ConnManagerParams.setTimeout(params, connectionTimeoutMs);
 
     // These are probably overkill for most sites.
-    ConnManagerParams.setMaxTotalConnections(params, 1152);
+    ConnManagerParams.setMaxTotalConnections(params, MAX_TOTAL_CONNECTIONS);
     ConnManagerParams.setMaxConnectionsPerRoute(params, new ConnPerRouteBean(256));
 
     HttpProtocolParams.setVersion(params, HttpVersion.HTTP_1_1);
@@ -167,8 +169,8 @@ public class BasicHttpFetcher implements HttpFetcher {
     schemeRegistry.register(new Scheme("http", PlainSocketFactory.getSocketFactory(), 80));
     schemeRegistry.register(new Scheme("https", SSLSocketFactory.getSocketFactory(), 443));
 
-    ClientConnectionManager cm = new ThreadSafeClientConnManager(params, schemeRegistry);
-    DefaultHttpClient client = new DefaultHttpClient(cm, params);
+    connectionManager = new ThreadSafeClientConnManager(params, schemeRegistry);
+    DefaultHttpClient client = new DefaultHttpClient(connectionManager, params);
 
     // Set proxy if set via guice.
     if (!StringUtils.isEmpty(basicHttpFetcherProxy)) {
@@ -368,6 +370,9 @@ public class BasicHttpFetcher implements HttpFetcher {
 
       // Find timeout exceptions, respond accordingly
       if (TIMEOUT_EXCEPTIONS.contains(e.getClass())) {
+        if (e instanceof ConnectionPoolTimeoutException && metrics != null) {
+          metrics.recordPoolTimeout();
+        }
         LOG.info("Timeout for " + request.getUri() + " Exception: " + e.getClass().getName() + " - " + e.getMessage() + " - " + (now - started) + "ms");
         return HttpResponse.timeout();
       }
@@ -420,6 +425,15 @@ public class BasicHttpFetcher implements HttpFetcher {
     this.slowResponseWarning = slowResponseWarning;
   }
 
+  /**
+   * Reports the connection pool and pool timeouts to the request pipeline metrics.
+   */
+  @Inject(optional = true)
+  public void setMetrics(HttpMetrics metrics) {
+    this.metrics = metrics;
+    metrics.setConnectionPool(connectionManager, MAX_TOTAL_CONNECTIONS);
+  }
+
   /**
    * Change the global connection timeout for all new fetchs.
    *
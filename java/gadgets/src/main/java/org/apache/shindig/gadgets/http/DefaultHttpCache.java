@@ -32,24 +32,47 @@ public class DefaultHttpCache extends AbstractHttpCache {
   public static final String CACHE_NAME = "httpResponses";
 
   private final Cache<String, HttpResponse> cache;
+  private PersistentResponseStore store;
 
   @Inject
   public DefaultHttpCache(CacheProvider cacheProvider) {
     cache = cacheProvider.createCache(CACHE_NAME);
   }
 
+  /**
+   * Adds a persistent tier under the cache, if the store is configured with a directory.
+   * Responses missing from the cache are looked up in the store and added back to the cache.
+   */
+  @Inject(optional = true)
+  public void setPersistentStore(PersistentResponseStore store) {
+    this.store = store.isEnabled() ? store : null;
+  }
+
   @Override
   protected HttpResponse getResponseImpl(String key) {
-    return cache.getElement(key);
+    HttpResponse response = cache.getElement(key);
+    if (response == null && store != null) {
+      response = store.get(key);
+      if (response != null) {
+        cache.addElement(key, response);
+      }
+    }
+    return response;
   }
 
   @Override
   protected void addResponseImpl(String key, HttpResponse response) {
     cache.addElement(key, response);
+    if (store != null) {
+      store.put(key, response);
+    }
   }
 
   @Override
   protected HttpResponse removeResponseImpl(String key) {
+    if (store != null) {
+      store.remove(key);
+    }
     return cache.removeElement(key);
   }
 }
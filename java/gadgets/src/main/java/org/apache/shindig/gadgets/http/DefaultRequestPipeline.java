@@ -25,6 +25,7 @@ import com.google.inject.name.Named;
 
 import org.apache.shindig.common.util.Utf8UrlCoder;
 import org.apache.shindig.gadgets.GadgetException;
+import org.apache.shindig.gadgets.http.HttpMetrics.CacheLookup;
 import org.apache.shindig.gadgets.oauth.OAuthRequest;
 import org.apache.shindig.gadgets.rewrite.ResponseRewriterRegistry;
 import org.apache.shindig.gadgets.rewrite.RewritingException;
@@ -41,6 +42,7 @@ public class DefaultRequestPipeline implements RequestPipeline {
   private final ResponseRewriterRegistry responseRewriterRegistry;
   private final InvalidationService invalidationService;
   private final HttpResponseMetadataHelper metadataHelper;
+  private HttpMetrics metrics;
 
   @Inject
   public DefaultRequestPipeline(HttpFetcher httpFetcher,
@@ -58,6 +60,11 @@ public class DefaultRequestPipeline implements RequestPipeline {
     this.metadataHelper = metadataHelper;
   }
 
+  @Inject(optional = true)
+  public void setMetrics(HttpMetrics metrics) {
+    this.metrics = metrics;
+  }
+
   public HttpResponse execute(HttpRequest request) throws GadgetException {
     normalizeProtocol(request);
     HttpResponse invalidatedResponse = null;
@@ -67,33 +74,45 @@ public class DefaultRequestPipeline implements RequestPipeline {
       HttpResponse cachedResponse = httpCache.getResponse(request);
       // Note that we don't remove invalidated entries from the cache as we want them to be
       // available in the event of a backend fetch failure
+      CacheLookup lookup = CacheLookup.MISS;
       if (cachedResponse != null) {
         if (!cachedResponse.isStale()) {
           if(invalidationService.isValid(request, cachedResponse)) {
+            recordCacheLookup(CacheLookup.HIT);
             return cachedResponse;
           } else {
             invalidatedResponse = cachedResponse;
+            lookup = CacheLookup.INVALIDATED_HIT;
           }
         } else {
+          lookup = CacheLookup.STALE_HIT;
           if (!cachedResponse.isError()) {
             // Remember good but stale cached response, to be served if server unavailable
             staleResponse = cachedResponse;
           }
         }
       }
+      recordCacheLookup(lookup);
     }
 
     HttpResponse fetchedResponse = null;
-    switch (request.getAuthType()) {
-      case NONE:
-        fetchedResponse = httpFetcher.fetch(request);
-        break;
-      case SIGNED:
-      case OAUTH:
-        fetchedResponse = oauthRequestProvider.get().fetch(request);
-        break;
-      default:
-        return HttpResponse.error();
+    long fetchStart = metrics != null ? metrics.startFetch() : 0;
+    try {
+      switch (request.getAuthType()) {
+        case NONE:
+          fetchedResponse = httpFetcher.fetch(request);
+          break;
+        case SIGNED:
+        case OAUTH:
+          fetchedResponse = oauthRequestProvider.get().fetch(request);
+          break;
+        default:
+          return HttpResponse.error();
+      }
+    } finally {
+      if (metrics != null) {
+        metrics.endFetch(request, fetchedResponse, fetchStart);
+      }
     }
 
     if (fetchedResponse.isError() && invalidatedResponse != null) {
@@ -109,10 +128,15 @@ public class DefaultRequestPipeline implements RequestPipeline {
     }
     
     if (!fetchedResponse.isError() && !request.getIgnoreCache() && request.getCacheTtl() != 0) {
+      long rewriteStart = System.nanoTime();
       try {
         fetchedResponse = responseRewriterRegistry.rewriteHttpResponse(request, fetchedResponse);
       } catch (RewritingException e) {
         throw new GadgetException(GadgetException.Code.INTERNAL_SERVER_ERROR, e, e.getHttpStatusCode());
+      } finally {
+        if (metrics != null) {
+          metrics.recordRewrite(System.nanoTime() - rewriteStart);
+        }
       }
     }
     
@@ -128,6 +152,12 @@ public class DefaultRequestPipeline implements RequestPipeline {
     return fetchedResponse;
   }
 
+  private void recordCacheLookup(CacheLookup lookup) {
+    if (metrics != null) {
+      metrics.recordCacheLookup(lookup);
+    }
+  }
+
   protected void normalizeProtocol(HttpRequest request) throws GadgetException {
     // Normalize the protocol part of the URI
     if (request.getUri().getScheme()== null) {
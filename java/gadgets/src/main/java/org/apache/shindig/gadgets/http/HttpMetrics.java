@@ -0,0 +1,304 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.apache.shindig.gadgets.http;
+
+import org.apache.shindig.common.util.LatencyHistogram;
+
+import com.google.common.collect.MapMaker;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters and latency histograms for the request pipeline.
+ *
+ * {@link DefaultRequestPipeline} records the outcome of each cache lookup, the latency of each
+ * fetch by origin host and status class, the bytes sent and received, and the time spent in the
+ * pre-cache response rewriters. {@link BasicHttpFetcher} reports its connection pool. Everything
+ * is lock free, and fetch latencies are kept for a bounded number of hosts; other hosts are
+ * counted under {@link #OTHER_HOSTS}.
+ *
+ * The metrics are reported as JSON by the http metrics admin servlet, and registered with the
+ * platform MBean server as {@link #OBJECT_NAME} when JMX is enabled.
+ */
+@Singleton
+public class HttpMetrics implements HttpMetricsMBean {
+  private static final Logger LOG = Logger.getLogger(HttpMetrics.class.getName());
+
+  public static final String OBJECT_NAME = "org.apache.shindig:type=HttpMetrics";
+
+  /** The key under which hosts beyond the limit are aggregated. */
+  public static final String OTHER_HOSTS = "*";
+
+  static final int MAX_HOSTS = 1000;
+
+  /** The outcome of looking a request up in the cache. */
+  public enum CacheLookup {
+    /** A fresh and valid response was served from the cache. */
+    HIT,
+    /** A stale response was found, and the request was fetched again. */
+    STALE_HIT,
+    /** A fresh response was found but had been invalidated, and the request was fetched again. */
+    INVALIDATED_HIT,
+    /** Nothing was found. */
+    MISS
+  }
+
+  private final AtomicLong[] lookups = new AtomicLong[CacheLookup.values().length];
+  private final LatencyHistogram fetchLatency = new LatencyHistogram();
+  private final ConcurrentMap<String, ConcurrentMap<String, LatencyHistogram>> hostLatencies =
+      new MapMaker().makeMap();
+  private final AtomicLong fetchErrors = new AtomicLong();
+  private final AtomicLong bytesIn = new AtomicLong();
+  private final AtomicLong bytesOut = new AtomicLong();
+  private final LatencyHistogram rewriteLatency = new LatencyHistogram();
+  private final AtomicInteger activeFetches = new AtomicInteger();
+  private final AtomicLong poolTimeouts = new AtomicLong();
+  private volatile ThreadSafeClientConnManager connectionPool;
+  private volatile int maxConnections;
+
+  public HttpMetrics() {
+    for (int i = 0; i < lookups.length; ++i) {
+      lookups[i] = new AtomicLong();
+    }
+  }
+
+  /**
+   * Registers the metrics with the platform MBean server, replacing any registered before.
+   */
+  @Inject(optional = true)
+  public void setJmxEnabled(@Named("shindig.http.metrics.jmx.enabled") boolean jmxEnabled) {
+    if (!jmxEnabled) {
+      return;
+    }
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName name = new ObjectName(OBJECT_NAME);
+      if (server.isRegistered(name)) {
+        // Left behind by an earlier instance, such as one of a redeployed web application.
+        server.unregisterMBean(name);
+      }
+      server.registerMBean(this, name);
+    } catch (JMException e) {
+      LOG.log(Level.WARNING, "Unable to register http metrics with JMX", e);
+    }
+  }
+
+  public void recordCacheLookup(CacheLookup lookup) {
+    lookups[lookup.ordinal()].incrementAndGet();
+  }
+
+  /**
+   * Marks the start of a fetch.
+   *
+   * @return The value to pass to {@link #endFetch}.
+   */
+  public long startFetch() {
+    activeFetches.incrementAndGet();
+    return System.nanoTime();
+  }
+
+  /**
+   * Records a fetch started by {@link #startFetch}.
+   *
+   * @param response The response, or null if the fetch failed with an exception.
+   */
+  public void endFetch(HttpRequest request, HttpResponse response, long start) {
+    long elapsed = System.nanoTime() - start;
+    activeFetches.decrementAndGet();
+    fetchLatency.record(elapsed);
+    String statusClass;
+    if (response == null) {
+      fetchErrors.incrementAndGet();
+      statusClass = "error";
+    } else {
+      statusClass = (response.getHttpStatusCode() / 100) + "xx";
+      bytesIn.addAndGet(response.getContentLength());
+    }
+    bytesOut.addAndGet(Math.max(request.getPostBodyLength(), 0));
+    String host = request.getUri().getAuthority();
+    getHistogram(getHost(host == null ? OTHER_HOSTS : host), statusClass).record(elapsed);
+  }
+
+  public void recordRewrite(long nanos) {
+    rewriteLatency.record(nanos);
+  }
+
+  public void recordPoolTimeout() {
+    poolTimeouts.incrementAndGet();
+  }
+
+  /**
+   * Sets the connection pool of the fetcher.
+   */
+  public void setConnectionPool(ThreadSafeClientConnManager connectionPool, int maxConnections) {
+    this.connectionPool = connectionPool;
+    this.maxConnections = maxConnections;
+  }
+
+  public long getCacheLookups(CacheLookup lookup) {
+    return lookups[lookup.ordinal()].get();
+  }
+
+  public long getCacheHits() {
+    return getCacheLookups(CacheLookup.HIT);
+  }
+
+  public long getCacheStaleHits() {
+    return getCacheLookups(CacheLookup.STALE_HIT);
+  }
+
+  public long getCacheInvalidatedHits() {
+    return getCacheLookups(CacheLookup.INVALIDATED_HIT);
+  }
+
+  public long getCacheMisses() {
+    return getCacheLookups(CacheLookup.MISS);
+  }
+
+  public double getCacheHitRate() {
+    long total = 0;
+    for (AtomicLong count : lookups) {
+      total += count.get();
+    }
+    return total == 0 ? 0 : (double) getCacheHits() / total;
+  }
+
+  public long getFetches() {
+    return fetchLatency.getCount();
+  }
+
+  public long getFetchErrors() {
+    return fetchErrors.get();
+  }
+
+  public double getFetchLatencyMeanMs() {
+    return toMillis(fetchLatency.getMeanNanos());
+  }
+
+  public double getFetchLatencyP50Ms() {
+    return toMillis(fetchLatency.getPercentileNanos(50));
+  }
+
+  public double getFetchLatencyP99Ms() {
+    return toMillis(fetchLatency.getPercentileNanos(99));
+  }
+
+  /**
+   * @return The fetch latencies by origin host and then status class, such as "2xx" or "error".
+   */
+  public Map<String, Map<String, LatencyHistogram>> getFetchLatencies() {
+    return Collections.<String, Map<String, LatencyHistogram>>unmodifiableMap(hostLatencies);
+  }
+
+  public long getBytesIn() {
+    return bytesIn.get();
+  }
+
+  public long getBytesOut() {
+    return bytesOut.get();
+  }
+
+  public LatencyHistogram getRewriteLatency() {
+    return rewriteLatency;
+  }
+
+  public double getRewriteMeanMs() {
+    return toMillis(rewriteLatency.getMeanNanos());
+  }
+
+  public int getActiveFetches() {
+    return activeFetches.get();
+  }
+
+  public int getPooledConnections() {
+    ThreadSafeClientConnManager pool = connectionPool;
+    return pool == null ? 0 : pool.getConnectionsInPool();
+  }
+
+  public int getMaxConnections() {
+    return maxConnections;
+  }
+
+  public long getPoolTimeouts() {
+    return poolTimeouts.get();
+  }
+
+  /**
+   * Clears all counters and histograms, except the gauges of active fetches and the pool.
+   */
+  public void reset() {
+    for (AtomicLong count : lookups) {
+      count.set(0);
+    }
+    fetchLatency.reset();
+    hostLatencies.clear();
+    fetchErrors.set(0);
+    bytesIn.set(0);
+    bytesOut.set(0);
+    rewriteLatency.reset();
+    poolTimeouts.set(0);
+  }
+
+  private ConcurrentMap<String, LatencyHistogram> getHost(String host) {
+    ConcurrentMap<String, LatencyHistogram> statuses = hostLatencies.get(host);
+    if (statuses == null) {
+      if (hostLatencies.size() >= MAX_HOSTS) {
+        host = OTHER_HOSTS;
+      }
+      statuses = new MapMaker().makeMap();
+      ConcurrentMap<String, LatencyHistogram> existing = hostLatencies.putIfAbsent(host, statuses);
+      if (existing != null) {
+        statuses = existing;
+      }
+    }
+    return statuses;
+  }
+
+  private static LatencyHistogram getHistogram(ConcurrentMap<String, LatencyHistogram> statuses,
+      String statusClass) {
+    LatencyHistogram histogram = statuses.get(statusClass);
+    if (histogram == null) {
+      histogram = new LatencyHistogram();
+      LatencyHistogram existing = statuses.putIfAbsent(statusClass, histogram);
+      if (existing != null) {
+        histogram = existing;
+      }
+    }
+    return histogram;
+  }
+
+  private static double toMillis(long nanos) {
+    return Math.round(nanos / 1000.0) / 1000.0;
+  }
+}
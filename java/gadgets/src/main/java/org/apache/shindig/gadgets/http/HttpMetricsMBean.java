@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.apache.shindig.gadgets.http;
+
+/**
+ * JMX view of {@link HttpMetrics}. Latencies are in milliseconds.
+ */
+public interface HttpMetricsMBean {
+  long getCacheHits();
+
+  long getCacheStaleHits();
+
+  long getCacheInvalidatedHits();
+
+  long getCacheMisses();
+
+  /**
+   * @return The fraction of cache lookups that were fresh hits, or 0 if there were none.
+   */
+  double getCacheHitRate();
+
+  long getFetches();
+
+  long getFetchErrors();
+
+  double getFetchLatencyMeanMs();
+
+  double getFetchLatencyP50Ms();
+
+  double getFetchLatencyP99Ms();
+
+  long getBytesIn();
+
+  long getBytesOut();
+
+  double getRewriteMeanMs();
+
+  int getActiveFetches();
+
+  int getPooledConnections();
+
+  int getMaxConnections();
+
+  long getPoolTimeouts();
+
+  void reset();
+}
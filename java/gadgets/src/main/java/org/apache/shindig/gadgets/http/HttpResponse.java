@@ -20,7 +20,6 @@ package org.apache.shindig.gadgets.http;
 import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
-import com.google.common.collect.Lists;
 import com.google.common.collect.MapMaker;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
@@ -30,11 +29,13 @@ import com.google.inject.name.Named;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.shindig.common.servlet.HttpUtil;
+import org.apache.shindig.common.util.ContentFingerprint;
 import org.apache.shindig.common.util.DateUtil;
 import org.apache.shindig.common.util.TimeSource;
 import org.apache.shindig.gadgets.encoding.EncodingDetector;
 
 import java.io.ByteArrayInputStream;
+import java.io.DataOutput;
 import java.io.Externalizable;
 import java.io.IOException;
 import java.io.InputStream;
@@ -162,6 +163,7 @@ public final class HttpResponse implements Externalizable {
   private static final Map<String, Charset> encodingToCharset = new MapMaker().makeMap();
 
   private String responseString;
+  private String contentFingerprint;
   private long date;
   private Charset encoding;
   private Map<String, String> metadata;
@@ -282,6 +284,17 @@ public final class HttpResponse implements Externalizable {
     return responseString;
   }
 
+  /**
+   * @return A {@link ContentFingerprint} of the body as returned by {@link #getResponseAsString},
+   *     computed once per response.
+   */
+  public String getContentFingerprint() {
+    if (contentFingerprint == null) {
+      contentFingerprint = ContentFingerprint.of(getResponseAsString());
+    }
+    return contentFingerprint;
+  }
+
   /**
    * @return All headers for this object.
    */
@@ -481,6 +494,26 @@ public final class HttpResponse implements Externalizable {
     return timestamp;
   }
 
+  /**
+   * @return The time the response was created, or the trusted value of its Date header, in
+   *     milliseconds. Cache expiration is measured from this time.
+   */
+  long getDate() {
+    return date;
+  }
+
+  /**
+   * Sets the date of a response read back from storage, where the drift check has replaced an
+   * old Date header with the current time. Only for responses that haven't been shared yet.
+   */
+  void restoreDate(long storedDate) {
+    date = storedDate;
+    Multimap<String, String> headerCopy = newHeaderMultimap();
+    headerCopy.putAll(headers);
+    headerCopy.replaceValues("Date", ImmutableList.of(DateUtil.formatRfc1123Date(storedDate)));
+    headers = Multimaps.unmodifiableMultimap(headerCopy);
+  }
+
   /**
    * returns the default TTL for responses.  Used mainly by tests because Guice static injects TTL values.
    *
@@ -594,7 +627,7 @@ public final class HttpResponse implements Externalizable {
   }
 
   /**
-   * Expected layout:
+   * Reads the format written by {@link HttpResponseCodec}, or the previous format:
    *
    * int - status code
    * Map<String, List<String>> - headers
@@ -603,7 +636,18 @@ public final class HttpResponse implements Externalizable {
    */
   @SuppressWarnings("unchecked")
   public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
-    httpStatusCode = in.readInt();
+    int first = in.readInt();
+    if (first == HttpResponseCodec.MAGIC) {
+      HttpResponse response = HttpResponseCodec.readFields(in);
+      httpStatusCode = response.httpStatusCode;
+      headers = response.headers;
+      responseBytes = response.responseBytes;
+      date = response.date;
+      encoding = response.encoding;
+      metadata = Collections.emptyMap();
+      return;
+    }
+    httpStatusCode = first;
 
     // We store the multimap as a Map<String,List<String>> to insulate us from google-collections API churn
     // And to remain backwards compatible
@@ -633,15 +677,11 @@ public final class HttpResponse implements Externalizable {
   }
 
   public void writeExternal(ObjectOutput out) throws IOException {
-    out.writeInt(httpStatusCode);
-    // Write out multimap as a map (see above)
-    Map<String,List<String>> map = Maps.newHashMap();
-    for (String key : headers.keySet()) {
-      map.put(key, Lists.newArrayList(headers.get(key)));
-    }
-    out.writeObject(Maps.newHashMap(map));
-    out.writeInt(responseBytes.length);
-    out.write(responseBytes);
+    writeTo(out);
+  }
+
+  void writeTo(DataOutput out) throws IOException {
+    HttpResponseCodec.write(out, httpStatusCode, headers, responseBytes);
   }
 
 
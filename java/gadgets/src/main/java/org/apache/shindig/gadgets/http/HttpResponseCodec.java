@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.apache.shindig.gadgets.http;
+
+import org.apache.shindig.common.util.BinaryCodec;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Multimap;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Versioned binary form of {@link HttpResponse}, used by its {@link java.io.Externalizable}
+ * implementation and therefore by every cache tier that serializes responses.
+ *
+ * Layout, after a magic number and a format version byte:
+ *
+ * varint - status code
+ * varint - number of header names, then for each name:
+ *   varint - index + 1 of a common header name, or 0 followed by the name as a string
+ *   varint - number of values, then each value as a string
+ * bytes - the body, raw
+ *
+ * Strings and byte arrays are length-prefixed, see {@link BinaryCodec}. Metadata is not written,
+ * as it never was by the previous format.
+ */
+public final class HttpResponseCodec {
+  private HttpResponseCodec() {}
+
+  /**
+   * Starts the current format. The previous format started with the status code, which is never
+   * this large, so both can be read.
+   */
+  static final int MAGIC = 0x53485250;
+
+  static final int VERSION = 1;
+
+  /**
+   * Header names written as a single byte. Only ever append to this list; changing existing
+   * entries requires a new format version.
+   */
+  private static final List<String> HEADER_NAMES = ImmutableList.of(
+      "Accept-Ranges", "Access-Control-Allow-Origin", "Age", "Cache-Control", "Connection",
+      "Content-Disposition", "Content-Encoding", "Content-Language", "Content-Length",
+      "Content-Type", "Date", "ETag", "Expires", "Keep-Alive", "Last-Modified", "Location", "P3P",
+      "Pragma", "Server", "Set-Cookie", "Transfer-Encoding", "Vary", "X-Content-Type-Options",
+      "X-Powered-By");
+
+  private static final Map<String, Integer> HEADER_CODES;
+  static {
+    ImmutableMap.Builder<String, Integer> codes = ImmutableMap.builder();
+    for (int i = 0; i < HEADER_NAMES.size(); ++i) {
+      codes.put(HEADER_NAMES.get(i), i + 1);
+    }
+    HEADER_CODES = codes.build();
+  }
+
+  /**
+   * Writes a response.
+   */
+  public static void write(DataOutput out, HttpResponse response) throws IOException {
+    response.writeTo(out);
+  }
+
+  /**
+   * Reads a response written by {@link #write}.
+   */
+  public static HttpResponse read(DataInput in) throws IOException {
+    if (in.readInt() != MAGIC) {
+      throw new IOException("Not a serialized HttpResponse");
+    }
+    return readFields(in);
+  }
+
+  static void write(DataOutput out, int httpStatusCode, Multimap<String, String> headers,
+      byte[] body) throws IOException {
+    out.writeInt(MAGIC);
+    out.writeByte(VERSION);
+    BinaryCodec.writeVarInt(out, httpStatusCode);
+    Map<String, Collection<String>> map = headers.asMap();
+    BinaryCodec.writeVarInt(out, map.size());
+    for (Map.Entry<String, Collection<String>> entry : map.entrySet()) {
+      Integer code = HEADER_CODES.get(entry.getKey());
+      if (code != null) {
+        BinaryCodec.writeVarInt(out, code);
+      } else {
+        BinaryCodec.writeVarInt(out, 0);
+        BinaryCodec.writeString(out, entry.getKey());
+      }
+      BinaryCodec.writeVarInt(out, entry.getValue().size());
+      for (String value : entry.getValue()) {
+        BinaryCodec.writeString(out, value);
+      }
+    }
+    BinaryCodec.writeBytes(out, body);
+  }
+
+  /**
+   * Reads the rest of a response, after its magic number.
+   */
+  static HttpResponse readFields(DataInput in) throws IOException {
+    BinaryCodec.readVersion(in, VERSION);
+    HttpResponseBuilder builder = new HttpResponseBuilder();
+    builder.setHttpStatusCode(BinaryCodec.readVarInt(in));
+    int names = BinaryCodec.readVarInt(in);
+    for (int i = 0; i < names; ++i) {
+      int code = BinaryCodec.readVarInt(in);
+      String name;
+      if (code == 0) {
+        name = BinaryCodec.readString(in);
+      } else if (code <= HEADER_NAMES.size()) {
+        name = HEADER_NAMES.get(code - 1);
+      } else {
+        throw new IOException("Unknown header name " + code);
+      }
+      int values = BinaryCodec.readVarInt(in);
+      for (int j = 0; j < values; ++j) {
+        builder.addHeader(name, BinaryCodec.readString(in));
+      }
+    }
+    byte[] body = BinaryCodec.readBytes(in);
+    if (body != null) {
+      builder.setResponseNoCopy(body);
+    }
+    return builder.create();
+  }
+}
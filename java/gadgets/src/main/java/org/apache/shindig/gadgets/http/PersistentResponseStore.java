@@ -0,0 +1,862 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.apache.shindig.gadgets.http;
+
+import org.apache.shindig.common.util.BinaryCodec;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.commons.lang.StringUtils;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * A persistent tier under {@link DefaultHttpCache}, so that cached responses survive restarts.
+ *
+ * Responses are appended to a log of segment files in a directory, and found through an
+ * in-memory index of the latest record of each key. The index is built in the background when
+ * the store is created, by reading only the record headers; until then every lookup is a miss,
+ * and responses stored or removed meanwhile are removed from the loaded index. Bodies are read
+ * when they are requested. Removals are appended too.
+ *
+ * A response is kept for the stale retention period after its cache expiration, since the
+ * request pipeline falls back to stale responses when a fetch fails. Whether a response is stale
+ * is decided by the caller, as for responses cached in memory; its date is stored so that it
+ * isn't reset by the drift check when it is read back. When the active segment is full a
+ * new one is started. The oldest segment is then compacted in the background, as long as less
+ * than half of it is live and unexpired: its remaining records are copied forward and the file is
+ * deleted. Oldest segments are dropped whole while the log is over its maximum size.
+ *
+ * Space for each record is reserved under the store's lock, in the order of the updates, and the
+ * record is written after the lock is released. A record can't be read until it is written.
+ *
+ * Each record is:
+ *
+ * int - length of the rest of the record
+ * int - CRC32 of the rest of the record, checked when the record is read
+ * byte - PUT or REMOVE
+ * string - key
+ * long - time after which the record can be dropped
+ * long - for PUT only, the date of the response, from which its expiration is measured
+ * bytes - for PUT only, the response as written by {@link HttpResponseCodec}
+ *
+ * A record cut short, or never written, because of a crash ends the log, and its segment is
+ * truncated when loaded. The directory is locked while in use; a store that can't lock it, or
+ * hits any other error while loading, is disabled. The store is closed when the JVM shuts down.
+ */
+@Singleton
+public class PersistentResponseStore {
+  private static final Logger LOG = Logger.getLogger(PersistentResponseStore.class.getName());
+
+  private static final byte PUT = 1;
+  private static final byte REMOVE = 2;
+
+  private static final String SEGMENT_PREFIX = "segment-";
+  private static final String SEGMENT_SUFFIX = ".log";
+  private static final String LOCK_FILE = "lock";
+
+  /** Length and checksum before each record. */
+  private static final int HEADER_SIZE = 8;
+
+  /** How long {@link #close} waits for a running load or compaction. */
+  private static final long CLOSE_TIMEOUT_SECONDS = 10;
+
+  private final File directory;
+  private final long segmentSize;
+  private final long maxSize;
+  private final long staleRetention;
+  private final Future<?> loading;
+
+  // All guarded by this.
+  private final Map<String, Location> index = Maps.newHashMap();
+  private final LinkedList<Segment> segments = Lists.newLinkedList();
+  private final Set<String> updatedWhileLoading = Sets.newHashSet();
+  private boolean loaded;
+  private boolean failed;
+  private FileLock lock;
+  private ExecutorService compactor;
+  private boolean compacting;
+  private Thread shutdownHook;
+
+  /**
+   * @param directory Where segments are kept. Empty to disable the store.
+   * @param segmentSize Size at which a new segment is started.
+   * @param maxSize Size beyond which the oldest segments are dropped.
+   * @param staleRetention How long responses are kept after they expire, in milliseconds.
+   */
+  @Inject
+  public PersistentResponseStore(
+      @Named("shindig.cache.http.persistent.directory") String directory,
+      @Named("shindig.cache.http.persistent.segmentSize") long segmentSize,
+      @Named("shindig.cache.http.persistent.maxSize") long maxSize,
+      @Named("shindig.cache.http.persistent.staleRetention") long staleRetention) {
+    this.directory = StringUtils.isBlank(directory) ? null : new File(directory);
+    this.segmentSize = segmentSize;
+    this.maxSize = maxSize;
+    this.staleRetention = staleRetention;
+    if (this.directory != null) {
+      final String threadName = "PersistentResponseStore compactor " + directory;
+      compactor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, threadName);
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+      loading = compactor.submit(new Runnable() {
+        public void run() {
+          load();
+        }
+      });
+    } else {
+      failed = true;
+      loading = null;
+    }
+  }
+
+  public boolean isEnabled() {
+    return directory != null;
+  }
+
+  /**
+   * Waits until the store is loaded, or has failed to load.
+   */
+  void awaitLoad() throws InterruptedException, ExecutionException {
+    if (loading != null) {
+      loading.get();
+    }
+  }
+
+  /**
+   * Waits until the compactions scheduled so far have run.
+   */
+  void awaitCompaction() throws InterruptedException, ExecutionException {
+    ExecutorService runningCompactor;
+    synchronized (this) {
+      runningCompactor = compactor;
+    }
+    if (runningCompactor != null) {
+      runningCompactor.submit(new Runnable() {
+        public void run() {
+          // Runs after the tasks already queued.
+        }
+      }).get();
+    }
+  }
+
+  /**
+   * @return The response stored for the key, or null if there is none, it can't be read, or the
+   *     store isn't loaded yet.
+   */
+  public HttpResponse get(String key) {
+    Location location;
+    synchronized (this) {
+      if (!loaded || failed) {
+        return null;
+      }
+      location = index.get(key);
+      if (location == null || !location.written) {
+        return null;
+      }
+      if (location.retainUntil < now()) {
+        drop(key, location);
+        return null;
+      }
+    }
+
+    // Read outside the lock. A segment deleted by a concurrent compaction fails the read, which
+    // is reported as a miss.
+    try {
+      byte[] record = location.segment.read(location.offset, location.length);
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+      in.readInt();
+      int checksum = in.readInt();
+      if (checksum != checksum(record, HEADER_SIZE, record.length - HEADER_SIZE)) {
+        throw new IOException("Checksum mismatch");
+      }
+      in.readByte();
+      BinaryCodec.readString(in);
+      in.readLong();
+      long date = in.readLong();
+      HttpResponse response = HttpResponseCodec.read(in);
+      response.restoreDate(date);
+      return response;
+    } catch (IOException e) {
+      LOG.log(Level.FINE, "Unreadable cached response for " + key, e);
+      synchronized (this) {
+        if (index.get(key) == location) {
+          drop(key, location);
+        }
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Stores a response, unless it must not be cached.
+   */
+  public void put(String key, HttpResponse response) {
+    long expiration = response.getCacheExpiration();
+    if (expiration == -1) {
+      return;
+    }
+    Location location = null;
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream(response.getContentLength() + 512);
+      DataOutputStream out = startRecord(bytes, PUT, key, expiration + staleRetention);
+      out.writeLong(response.getDate());
+      HttpResponseCodec.write(out, response);
+      byte[] record = finishRecord(bytes, out);
+      synchronized (this) {
+        if (!isReady(key)) {
+          return;
+        }
+        location = reserve(record.length, expiration + staleRetention);
+        location.segment.live += location.length;
+        Location old = index.put(key, location);
+        if (old != null) {
+          old.segment.live -= old.length;
+        }
+      }
+      write(location, record);
+    } catch (IOException e) {
+      synchronized (this) {
+        if (location != null && index.get(key) == location) {
+          drop(key, location);
+        }
+        if (failed) {
+          // Closed while writing.
+          return;
+        }
+      }
+      LOG.log(Level.WARNING, "Failed to store cached response for " + key, e);
+    }
+  }
+
+  /**
+   * Removes the response stored for the key.
+   */
+  public void remove(String key) {
+    try {
+      byte[] record = removeRecord(key);
+      Location removal;
+      synchronized (this) {
+        if (!isReady(key)) {
+          return;
+        }
+        Location old = index.remove(key);
+        if (old == null) {
+          return;
+        }
+        old.segment.live -= old.length;
+        removal = reserve(record.length, 0);
+      }
+      write(removal, record);
+    } catch (IOException e) {
+      synchronized (this) {
+        if (failed) {
+          return;
+        }
+      }
+      LOG.log(Level.WARNING, "Failed to remove cached response for " + key, e);
+    }
+  }
+
+  /**
+   * Waits for a running load or compaction, then closes the segments. The store can't be used
+   * afterwards.
+   */
+  public void close() {
+    ExecutorService runningCompactor;
+    synchronized (this) {
+      runningCompactor = compactor;
+      compactor = null;
+      // Stops a running load or compaction at its next step.
+      failed = true;
+    }
+    if (runningCompactor != null) {
+      runningCompactor.shutdown();
+      try {
+        runningCompactor.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    synchronized (this) {
+      for (Segment segment : segments) {
+        segment.close();
+      }
+      segments.clear();
+      index.clear();
+      updatedWhileLoading.clear();
+      releaseLock(lock);
+      lock = null;
+      if (shutdownHook != null && Thread.currentThread() != shutdownHook) {
+        try {
+          Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+          // Already shutting down.
+        }
+      }
+      shutdownHook = null;
+    }
+  }
+
+  private static DataOutputStream startRecord(ByteArrayOutputStream bytes, byte type, String key,
+      long retainUntil) throws IOException {
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeInt(0);
+    out.writeInt(0);
+    out.writeByte(type);
+    BinaryCodec.writeString(out, key);
+    out.writeLong(retainUntil);
+    return out;
+  }
+
+  private static byte[] finishRecord(ByteArrayOutputStream bytes, DataOutputStream out)
+      throws IOException {
+    out.flush();
+    byte[] record = bytes.toByteArray();
+    ByteBuffer header = ByteBuffer.wrap(record, 0, HEADER_SIZE);
+    header.putInt(record.length - HEADER_SIZE);
+    header.putInt(checksum(record, HEADER_SIZE, record.length - HEADER_SIZE));
+    return record;
+  }
+
+  private static byte[] removeRecord(String key) {
+    try {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      return finishRecord(bytes, startRecord(bytes, REMOVE, key, 0));
+    } catch (IOException e) {
+      // Not thrown when writing to memory.
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static int checksum(byte[] bytes, int offset, int length) {
+    CRC32 crc = new CRC32();
+    crc.update(bytes, offset, length);
+    return (int) crc.getValue();
+  }
+
+  private static long now() {
+    return HttpResponse.getTimeSource().currentTimeMillis();
+  }
+
+  private static void releaseLock(FileLock directoryLock) {
+    if (directoryLock != null) {
+      try {
+        directoryLock.release();
+        directoryLock.channel().close();
+      } catch (IOException e) {
+        // Released when the process exits anyway.
+      }
+    }
+  }
+
+  /**
+   * Writes a record whose space was reserved, outside the lock.
+   */
+  private void write(Location location, byte[] record) throws IOException {
+    boolean written = false;
+    try {
+      location.segment.write(location.offset, record);
+      written = true;
+    } finally {
+      synchronized (this) {
+        location.written = written;
+        if (--location.segment.writing == 0 && !segments.isEmpty()
+            && location.segment == segments.getFirst()) {
+          // Its compaction was put off.
+          scheduleCompaction();
+        }
+      }
+    }
+  }
+
+  private void drop(String key, Location location) {
+    index.remove(key);
+    location.segment.live -= location.length;
+  }
+
+  /**
+   * Whether the key can be updated. Keys updated while the store is loading are remembered, so
+   * that older loaded records for them are removed.
+   */
+  private boolean isReady(String key) {
+    if (failed) {
+      return false;
+    }
+    if (!loaded) {
+      updatedWhileLoading.add(key);
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Builds the index on the compactor thread. Segments are scanned without holding the lock, and
+   * only published once all of them have loaded.
+   */
+  private void load() {
+    FileLock directoryLock = null;
+    Map<String, Location> loadedIndex = Maps.newHashMap();
+    LinkedList<Segment> loadedSegments = Lists.newLinkedList();
+    try {
+      if (!directory.isDirectory() && !directory.mkdirs()) {
+        throw new IOException("Can't create " + directory);
+      }
+      FileChannel lockChannel =
+          new RandomAccessFile(new File(directory, LOCK_FILE), "rw").getChannel();
+      try {
+        directoryLock = lockChannel.tryLock();
+      } finally {
+        if (directoryLock == null) {
+          lockChannel.close();
+        }
+      }
+      if (directoryLock == null) {
+        throw new IOException("Locked by another process");
+      }
+
+      String[] names = directory.list();
+      List<Integer> ids = Lists.newArrayList();
+      for (String name : names) {
+        if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+          try {
+            ids.add(Integer.valueOf(name.substring(SEGMENT_PREFIX.length(),
+                name.length() - SEGMENT_SUFFIX.length())));
+          } catch (NumberFormatException e) {
+            // Not ours.
+          }
+        }
+      }
+      Integer[] sorted = ids.toArray(new Integer[ids.size()]);
+      Arrays.sort(sorted);
+      long now = now();
+      for (int id : sorted) {
+        Segment segment = new Segment(directory, id);
+        loadedSegments.add(segment);
+        scan(segment, loadedIndex, now);
+      }
+      if (loadedSegments.isEmpty()) {
+        loadedSegments.add(new Segment(directory, 0));
+      }
+    } catch (IOException e) {
+      loadFailed(e, directoryLock, loadedSegments);
+      return;
+    } catch (RuntimeException e) {
+      // Such as OverlappingFileLockException, when this process already holds the lock.
+      loadFailed(e, directoryLock, loadedSegments);
+      return;
+    }
+
+    Map<Location, byte[]> removals = Maps.newLinkedHashMap();
+    synchronized (this) {
+      if (failed) {
+        // Closed while loading.
+        closeAll(directoryLock, loadedSegments);
+        return;
+      }
+      index.putAll(loadedIndex);
+      segments.addAll(loadedSegments);
+      lock = directoryLock;
+      loaded = true;
+      shutdownHook = new Thread() {
+        @Override
+        public void run() {
+          close();
+        }
+      };
+      Runtime.getRuntime().addShutdownHook(shutdownHook);
+
+      // Records loaded for keys updated meanwhile are out of date.
+      for (String key : updatedWhileLoading) {
+        Location old = index.remove(key);
+        if (old != null) {
+          old.segment.live -= old.length;
+          byte[] record = removeRecord(key);
+          try {
+            removals.put(reserve(record.length, 0), record);
+          } catch (IOException e) {
+            LOG.log(Level.WARNING, "Failed to remove cached response for " + key, e);
+          }
+        }
+      }
+      updatedWhileLoading.clear();
+      scheduleCompaction();
+      if (LOG.isLoggable(Level.INFO)) {
+        LOG.info("Loaded " + index.size() + " cached responses from " + directory);
+      }
+    }
+    for (Map.Entry<Location, byte[]> removal : removals.entrySet()) {
+      try {
+        write(removal.getKey(), removal.getValue());
+      } catch (IOException e) {
+        LOG.log(Level.WARNING, "Failed to remove cached response", e);
+      }
+    }
+  }
+
+  private void loadFailed(Exception e, FileLock directoryLock, List<Segment> loadedSegments) {
+    LOG.log(Level.WARNING, "Persistent HTTP cache disabled: can't load " + directory, e);
+    closeAll(directoryLock, loadedSegments);
+    synchronized (this) {
+      failed = true;
+      updatedWhileLoading.clear();
+      if (compactor != null) {
+        // Can't wait for itself; nothing else runs on it.
+        compactor.shutdown();
+        compactor = null;
+      }
+    }
+  }
+
+  private static void closeAll(FileLock directoryLock, List<Segment> loadedSegments) {
+    for (Segment segment : loadedSegments) {
+      segment.close();
+    }
+    releaseLock(directoryLock);
+  }
+
+  /**
+   * Adds the records of a segment to the index, truncating it before a partial record.
+   */
+  private static void scan(Segment segment, Map<String, Location> index, long now)
+      throws IOException {
+    long length = segment.size;
+    long position = 0;
+    CountingInputStream counter = new CountingInputStream(
+        new BufferedInputStream(new FileInputStream(segment.file)));
+    DataInputStream in = new DataInputStream(counter);
+    try {
+      while (length - position >= HEADER_SIZE) {
+        int recordLength = in.readInt();
+        in.readInt();
+        if (recordLength <= 0 || position + HEADER_SIZE + recordLength > length) {
+          break;
+        }
+        long start = counter.getByteCount();
+        byte type = in.readByte();
+        String key = BinaryCodec.readString(in);
+        long retainUntil = in.readLong();
+        skipFully(in, recordLength - (counter.getByteCount() - start));
+
+        Location old = index.remove(key);
+        if (old != null) {
+          old.segment.live -= old.length;
+        }
+        int total = HEADER_SIZE + recordLength;
+        if (type == PUT && retainUntil >= now) {
+          index.put(key, new Location(segment, position, total, retainUntil, true));
+          segment.live += total;
+        }
+        position += total;
+      }
+    } catch (EOFException e) {
+      // Partial record.
+    } finally {
+      in.close();
+    }
+    if (position < length) {
+      LOG.warning("Truncating " + segment.file + " after a partial record at " + position);
+      segment.truncate(position);
+    }
+  }
+
+  private static void skipFully(DataInputStream in, long count) throws IOException {
+    while (count > 0) {
+      int skipped = in.skipBytes((int) Math.min(count, Integer.MAX_VALUE));
+      if (skipped <= 0) {
+        throw new EOFException();
+      }
+      count -= skipped;
+    }
+  }
+
+  /**
+   * Reserves space for a record at the end of the log, to be written outside the lock.
+   */
+  private Location reserve(int length, long retainUntil) throws IOException {
+    Segment active = segments.getLast();
+    if (active.size > 0 && active.size + length > segmentSize) {
+      active = new Segment(directory, active.id + 1);
+      segments.add(active);
+      scheduleCompaction();
+    }
+    long offset = active.reserve(length);
+    active.writing++;
+    return new Location(active, offset, length, retainUntil, false);
+  }
+
+  private void scheduleCompaction() {
+    if (!compacting && compactor != null && segments.size() > 1) {
+      compacting = true;
+      compactor.execute(new Runnable() {
+        public void run() {
+          compact();
+        }
+      });
+    }
+  }
+
+  /**
+   * Drops the oldest segments while the log is too large, then compacts the oldest segment
+   * while less than half of it is live. Runs on the compactor thread.
+   */
+  private void compact() {
+    try {
+      while (compactOldest()) {
+        // Next segment.
+      }
+    } catch (IOException e) {
+      compactionFailed(e);
+    } catch (RuntimeException e) {
+      compactionFailed(e);
+    }
+  }
+
+  private synchronized void compactionFailed(Exception e) {
+    compacting = false;
+    // Closing the store fails a running compaction too.
+    if (!failed) {
+      LOG.log(Level.WARNING, "Failed to compact " + directory, e);
+    }
+  }
+
+  /**
+   * Drops or compacts the oldest segment, if it is due. Expired records are dropped first. The
+   * index is only consulted and updated under the lock; records are read and written outside it.
+   * Only records that are still current when space for the copies is reserved are copied, so a
+   * copy never follows a later update of its key in the log. A record that is replaced or removed
+   * after that keeps its new location.
+   *
+   * @return Whether another segment may be due.
+   */
+  private boolean compactOldest() throws IOException {
+    Segment oldest;
+    Map<String, Location> moving = Maps.newLinkedHashMap();
+    synchronized (this) {
+      if (failed || segments.size() < 2) {
+        compacting = false;
+        return false;
+      }
+      oldest = segments.getFirst();
+      if (oldest.writing > 0) {
+        // Compacted after the next segment is started.
+        compacting = false;
+        return false;
+      }
+      long now = now();
+      for (Iterator<Map.Entry<String, Location>> it = index.entrySet().iterator(); it.hasNext();) {
+        Map.Entry<String, Location> entry = it.next();
+        Location location = entry.getValue();
+        if (location.retainUntil < now) {
+          it.remove();
+          location.segment.live -= location.length;
+        } else if (location.segment == oldest) {
+          moving.put(entry.getKey(), location);
+        }
+      }
+
+      long total = 0;
+      for (Segment segment : segments) {
+        total += segment.size;
+      }
+      boolean evict = total > maxSize;
+      if (!evict && oldest.live * 2 >= oldest.size) {
+        compacting = false;
+        return false;
+      }
+      if (evict) {
+        index.keySet().removeAll(moving.keySet());
+        moving.clear();
+      }
+    }
+
+    Segment active = null;
+    long offset = 0;
+    if (!moving.isEmpty()) {
+      Map<String, byte[]> records = Maps.newHashMap();
+      for (Map.Entry<String, Location> entry : moving.entrySet()) {
+        Location location = entry.getValue();
+        records.put(entry.getKey(), oldest.read(location.offset, location.length));
+      }
+
+      int movingSize = 0;
+      synchronized (this) {
+        if (failed) {
+          return false;
+        }
+        for (Iterator<Map.Entry<String, Location>> it = moving.entrySet().iterator();
+            it.hasNext();) {
+          Map.Entry<String, Location> entry = it.next();
+          if (index.get(entry.getKey()) == entry.getValue()) {
+            movingSize += entry.getValue().length;
+          } else {
+            it.remove();
+          }
+        }
+        if (movingSize > 0) {
+          active = segments.getLast();
+          offset = active.reserve(movingSize);
+        }
+      }
+      if (movingSize > 0) {
+        ByteArrayOutputStream copies = new ByteArrayOutputStream(movingSize);
+        for (String key : moving.keySet()) {
+          copies.write(records.get(key));
+        }
+        active.write(offset, copies.toByteArray());
+      }
+    }
+
+    synchronized (this) {
+      if (failed) {
+        return false;
+      }
+      for (Map.Entry<String, Location> entry : moving.entrySet()) {
+        Location location = entry.getValue();
+        if (index.get(entry.getKey()) == location) {
+          index.put(entry.getKey(),
+              new Location(active, offset, location.length, location.retainUntil, true));
+          active.live += location.length;
+        }
+        offset += location.length;
+      }
+      segments.remove(oldest);
+    }
+    oldest.delete();
+    return true;
+  }
+
+  private static final class Location {
+    final Segment segment;
+    final long offset;
+    final int length;
+    final long retainUntil;
+    /** Whether the record can be read. Guarded by the store. */
+    boolean written;
+
+    Location(Segment segment, long offset, int length, long retainUntil, boolean written) {
+      this.segment = segment;
+      this.offset = offset;
+      this.length = length;
+      this.retainUntil = retainUntil;
+      this.written = written;
+    }
+  }
+
+  private static final class Segment {
+    final int id;
+    final File file;
+    final FileChannel channel;
+    // Guarded by the store.
+    long size;
+    long live;
+    /** Records reserved but not yet written. */
+    int writing;
+
+    Segment(File directory, int id) throws IOException {
+      this.id = id;
+      this.file = new File(directory, SEGMENT_PREFIX + id + SEGMENT_SUFFIX);
+      this.channel = new RandomAccessFile(file, "rw").getChannel();
+      this.size = channel.size();
+    }
+
+    /**
+     * Makes room for records that are written later, possibly after other records are reserved.
+     */
+    long reserve(int length) {
+      long offset = size;
+      size += length;
+      return offset;
+    }
+
+    void write(long offset, byte[] records) throws IOException {
+      ByteBuffer buffer = ByteBuffer.wrap(records);
+      while (buffer.hasRemaining()) {
+        channel.write(buffer, offset + buffer.position());
+      }
+    }
+
+    byte[] read(long offset, int length) throws IOException {
+      ByteBuffer buffer = ByteBuffer.allocate(length);
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer, offset + buffer.position()) < 0) {
+          throw new EOFException();
+        }
+      }
+      return buffer.array();
+    }
+
+    void truncate(long length) throws IOException {
+      channel.truncate(length);
+      size = length;
+    }
+
+    void close() {
+      try {
+        channel.close();
+      } catch (IOException e) {
+        // Nothing more to do with it.
+      }
+    }
+
+    void delete() {
+      close();
+      if (!file.delete()) {
+        LOG.warning("Failed to delete " + file);
+      }
+    }
+  }
+}
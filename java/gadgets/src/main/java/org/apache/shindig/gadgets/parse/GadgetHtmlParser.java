@@ -24,7 +24,7 @@ import com.google.inject.Provider;
 
 import org.apache.shindig.common.cache.Cache;
 import org.apache.shindig.common.cache.CacheProvider;
-import org.apache.shindig.common.util.HashUtil;
+import org.apache.shindig.common.util.ContentFingerprint;
 import org.apache.shindig.gadgets.GadgetException;
 import org.apache.shindig.gadgets.parse.nekohtml.NekoSimplifiedHtmlParser;
 import org.w3c.dom.Attr;
@@ -83,7 +83,7 @@ public abstract class GadgetHtmlParser {
     boolean shouldCache = shouldCache();
     if (shouldCache) {
       // TODO - Consider using the source if its under a certain size
-      key = HashUtil.checksum(source.getBytes());
+      key = ContentFingerprint.of(source);
       document = documentCache.getElement(key);
     }
 
@@ -232,7 +232,7 @@ public abstract class GadgetHtmlParser {
     boolean shouldCache = shouldCache();
     String key = null;
     if (shouldCache) {
-      key = HashUtil.checksum(source.getBytes());
+      key = ContentFingerprint.of(source);
       DocumentFragment cachedFragment = fragmentCache.getElement(key);
       if (cachedFragment != null) {
         copyFragment(cachedFragment, result);
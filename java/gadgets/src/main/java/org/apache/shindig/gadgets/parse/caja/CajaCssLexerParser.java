@@ -19,7 +19,7 @@ package org.apache.shindig.gadgets.parse.caja;
 
 import org.apache.shindig.common.cache.Cache;
 import org.apache.shindig.common.cache.CacheProvider;
-import org.apache.shindig.common.util.HashUtil;
+import org.apache.shindig.common.util.ContentFingerprint;
 import org.apache.shindig.gadgets.GadgetException;
 import org.apache.shindig.gadgets.http.HttpResponse;
 
@@ -69,7 +69,7 @@ public class CajaCssLexerParser {
     String key = null;
     if (shouldCache) {
       // TODO - Consider using the source if its under a certain size
-      key = HashUtil.checksum(content.getBytes());
+      key = ContentFingerprint.of(content);
       parsedCss = parsedCssCache.getElement(key);
     }
     if (parsedCss == null) {
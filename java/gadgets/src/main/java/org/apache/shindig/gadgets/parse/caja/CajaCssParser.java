@@ -20,7 +20,7 @@ package org.apache.shindig.gadgets.parse.caja;
 import org.apache.shindig.common.cache.Cache;
 import org.apache.shindig.common.cache.CacheProvider;
 import org.apache.shindig.common.uri.Uri;
-import org.apache.shindig.common.util.HashUtil;
+import org.apache.shindig.common.util.ContentFingerprint;
 import org.apache.shindig.gadgets.GadgetException;
 import org.apache.shindig.gadgets.http.HttpResponse;
 
@@ -60,11 +60,15 @@ public class CajaCssParser {
 
   private static final String PARSED_CSS = "parsedCss";
 
+  private static final String PARSED_CSS_TEMPLATES = "parsedCssTemplates";
+
   private Cache<String, CssTree.StyleSheet> parsedCssCache;
+  private Cache<String, CssTemplate> templateCache;
 
   @Inject
   public void setCacheProvider(CacheProvider cacheProvider) {
     parsedCssCache = cacheProvider.createCache(PARSED_CSS);
+    templateCache = cacheProvider.createCache(PARSED_CSS_TEMPLATES);
   }
 
   /**
@@ -84,7 +88,7 @@ public class CajaCssParser {
     String key = null;
     if (shouldCache) {
       // TODO - Consider using the source if its under a certain size
-      key = HashUtil.checksum(content.getBytes());
+      key = ContentFingerprint.of(content);
       parsedCss = parsedCssCache.getElement(key);
     }
     if (parsedCss == null) {
@@ -105,6 +109,36 @@ public class CajaCssParser {
     return parsedCss;
   }
 
+  /**
+   * Parse CSS content into a template whose URLs can be rewritten without a tree. Templates are
+   * immutable, so cached ones are shared rather than cloned.
+   *
+   * @return The template, or null if the content can only be handled as a tree.
+   */
+  public CssTemplate parseTemplate(String content, Uri source) throws GadgetException {
+    boolean shouldCache = templateCache != null && templateCache.getCapacity() != 0;
+    String key = null;
+    if (shouldCache) {
+      key = ContentFingerprint.of(content);
+      CssTemplate template = templateCache.getElement(key);
+      if (template != null) {
+        return template;
+      }
+    }
+    CssTemplate template;
+    try {
+      template = CssTemplate.create(parseImpl(content, source), this);
+    } catch (ParseException pe) {
+      // Bad input; not server's fault.
+      throw new GadgetException(GadgetException.Code.CSS_PARSE_ERROR, pe,
+          HttpResponse.SC_BAD_REQUEST);
+    }
+    if (shouldCache && template != null) {
+      templateCache.addElement(key, template);
+    }
+    return template;
+  }
+
   private CssTree.StyleSheet parseImpl(String css, Uri source)
       throws ParseException {
     InputSource inputSource = new InputSource(source.toJavaUri());
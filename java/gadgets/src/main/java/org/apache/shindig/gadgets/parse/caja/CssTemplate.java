@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.apache.shindig.gadgets.parse.caja;
+
+import com.google.caja.parser.AncestorChain;
+import com.google.caja.parser.Visitor;
+import com.google.caja.parser.css.CssTree;
+import com.google.common.collect.Lists;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * An immutable, serialized form of a parsed stylesheet with the positions of its URLs recorded,
+ * so that it can be cached and shared without cloning a Caja tree for every use.
+ *
+ * The stylesheet is rendered once with each URL replaced by a marker, and the markers are then
+ * located in the output. Rendering the template is a single pass over the text that copies the
+ * text between URLs and splices in a rewritten value for each of them, optionally leaving out
+ * whole @import statements.
+ */
+public final class CssTemplate {
+  private static final Random MARKER_RANDOM = new Random();
+
+  private final String text;
+  // Three positions per URL: where its value goes in the text, and the start and end of the
+  // enclosing @import statement, or -1 if the URL is not imported.
+  private final int[] positions;
+  private final String[] uris;
+
+  private CssTemplate(String text, int[] positions, String[] uris) {
+    this.text = text;
+    this.positions = positions;
+    this.uris = uris;
+  }
+
+  /**
+   * Rewrites URLs of a template.
+   */
+  public interface UriRewriter {
+    /**
+     * @return The value to use for the URL, which is escaped as needed.
+     */
+    String rewrite(String uri);
+  }
+
+  /**
+   * Creates a template from a stylesheet, which is modified in the process and should be
+   * discarded afterwards.
+   *
+   * @return The template, or null if the rendered URLs could not be located.
+   */
+  static CssTemplate create(CssTree.StyleSheet styleSheet, CajaCssParser parser) {
+    final String prefix = "shindig" + Long.toHexString(MARKER_RANDOM.nextLong()) + '-';
+    final List<String> uris = Lists.newArrayList();
+    final List<Boolean> imported = Lists.newArrayList();
+    final List<CssTree.UriLiteral> skip = Lists.newLinkedList();
+
+    styleSheet.acceptPreOrder(new Visitor() {
+      public boolean visit(AncestorChain<?> chain) {
+        if (chain.node instanceof CssTree.Import) {
+          CssTree.UriLiteral uriLiteral = ((CssTree.Import) chain.node).getUri();
+          skip.add(uriLiteral);
+          mark(uriLiteral, true);
+        } else if (chain.node instanceof CssTree.UriLiteral && !skip.contains(chain.node)) {
+          mark((CssTree.UriLiteral) chain.node, false);
+        }
+        return true;
+      }
+
+      private void mark(CssTree.UriLiteral uriLiteral, boolean isImport) {
+        uris.add(uriLiteral.getValue());
+        imported.add(isImport);
+        uriLiteral.setValue(prefix + uris.size() + '-');
+      }
+    }, null);
+
+    String rendered = parser.serialize(styleSheet);
+    StringBuilder text = new StringBuilder(rendered.length());
+    int[] positions = new int[uris.size() * 3];
+    int copied = 0;
+    for (int i = 0; i < uris.size(); ++i) {
+      String marker = prefix + (i + 1) + '-';
+      int start = rendered.indexOf(marker, copied);
+      if (start < 0) {
+        return null;
+      }
+      int end = start + marker.length();
+      // Positions in the output are shifted by the markers already cut out of it.
+      int shift = text.length() - copied;
+      int statementStart = -1;
+      int statementEnd = -1;
+      if (imported.get(i)) {
+        int keyword = rendered.lastIndexOf("@import", start);
+        int semicolon = rendered.indexOf(';', end);
+        if (keyword < copied || semicolon < 0) {
+          return null;
+        }
+        statementEnd = semicolon + 1;
+        while (statementEnd < rendered.length()
+            && Character.isWhitespace(rendered.charAt(statementEnd))) {
+          ++statementEnd;
+        }
+        statementStart = keyword + shift;
+        statementEnd = statementEnd - marker.length() + shift;
+      }
+      text.append(rendered, copied, start);
+      positions[i * 3] = text.length();
+      positions[i * 3 + 1] = statementStart;
+      positions[i * 3 + 2] = statementEnd;
+      copied = end;
+    }
+    text.append(rendered, copied, rendered.length());
+    return new CssTemplate(text.toString(), positions, uris.toArray(new String[uris.size()]));
+  }
+
+  /**
+   * Writes the stylesheet with each URL replaced by the value given by the rewriter.
+   *
+   * @param extractImports If true, leave out @import statements and return their URLs instead
+   *     of rewriting them.
+   * @return The URLs of the extracted imports, or an empty list.
+   */
+  public List<String> render(Writer writer, UriRewriter rewriter, boolean extractImports)
+      throws IOException {
+    List<String> imports = Lists.newLinkedList();
+    int copied = 0;
+    for (int i = 0; i < uris.length; ++i) {
+      int statementStart = positions[i * 3 + 1];
+      if (extractImports && statementStart >= 0) {
+        writer.write(text, copied, statementStart - copied);
+        copied = positions[i * 3 + 2];
+        imports.add(uris[i]);
+      } else {
+        int position = positions[i * 3];
+        writer.write(text, copied, position - copied);
+        char quote = position > 0 ? text.charAt(position - 1) : 0;
+        writeEscaped(writer, rewriter.rewrite(uris[i]), quote == '\'' || quote == '"' ? quote : 0);
+        copied = position;
+      }
+    }
+    writer.write(text, copied, text.length() - copied);
+    return imports;
+  }
+
+  /**
+   * Escapes a URL for use inside a CSS string quoted with the given character, or inside an
+   * unquoted url() if quote is 0.
+   */
+  private static void writeEscaped(Writer writer, String value, char quote) throws IOException {
+    int copied = 0;
+    for (int i = 0; i < value.length(); ++i) {
+      char c = value.charAt(i);
+      boolean escape = c == '\\' || c < 0x20 || c == 0x7f
+          || (quote != 0 ? c == quote
+              : c == '\'' || c == '"' || c == '(' || c == ')' || c == ' ');
+      if (escape) {
+        writer.write(value, copied, i - copied);
+        writer.write('\\');
+        writer.write(Integer.toHexString(c));
+        writer.write(' ');
+        copied = i + 1;
+      }
+    }
+    writer.write(value, copied, value.length() - copied);
+  }
+}
@@ -38,18 +38,30 @@ import javax.el.CompositeELResolver;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.inject.Inject;
+import com.google.inject.name.Named;
 
 /**
- * Runs data pipelining, chaining dependencies among batches as needed.
+ * Runs data pipelining, chaining dependencies among requests as needed.
+ *
+ * Requests whose expressions can be evaluated up front are started immediately. Whenever a
+ * request completes, its result is made available to expressions and the requests still waiting
+ * are evaluated again; any that can now be evaluated start right away, without waiting for
+ * unrelated requests. Social requests that become ready together are still sent as one batch.
+ *
+ * The length of a dependency chain is limited by shindig.pipeline.max-depth. A request that
+ * hasn't completed shindig.pipeline.request-timeout-ms after it was started is abandoned, and
+ * requests depending on it are left for the client. Timeouts can't interrupt the request that
+ * {@link ConcurrentPreloaderService} runs in the calling thread, so they only take effect once
+ * that request returns.
  */
 public class PipelineExecutor {
-  // TODO: support configuration
-  private static final int MAX_BATCH_COUNT = 3;
   private static final Logger LOG = Logger.getLogger(PipelineExecutor.class.getName());
 
   private final PipelinedDataPreloader preloader;
   private final PreloaderService preloaderService;
   private final Expressions expressions;
+  private int maxDepth = 3;
+  private long requestTimeoutMs = 0;
 
   @Inject
   public PipelineExecutor(PipelinedDataPreloader preloader,
@@ -60,6 +72,19 @@ public class PipelineExecutor {
     this.expressions = expressions;
   }
 
+  @Inject(optional = true)
+  public void setMaxDepth(@Named("shindig.pipeline.max-depth") int maxDepth) {
+    this.maxDepth = maxDepth;
+  }
+
+  /**
+   * @param requestTimeoutMs Time allowed for each request, or 0 to wait indefinitely.
+   */
+  @Inject(optional = true)
+  public void setRequestTimeout(@Named("shindig.pipeline.request-timeout-ms") long requestTimeoutMs) {
+    this.requestTimeoutMs = requestTimeoutMs;
+  }
+
   /**
    * Results from a full pipeline execution.
    */
@@ -96,80 +121,224 @@ public class PipelineExecutor {
    * @return results from the pipeline, or null if there are no results
    */
   public Results execute(GadgetContext context, Collection<PipelinedData> pipelines) {
-    List<Object> results = Lists.newArrayList();
-    Map<String, Object> elResults = Maps.newHashMap();
-    CompositeELResolver rootObjects = new CompositeELResolver();
-    rootObjects.add(new GadgetELResolver(context));
-    rootObjects.add(new RootELResolver(elResults));
-
-    List<PipelineState> pipelineStates = Lists.newArrayList();
-    for (PipelinedData pipeline : pipelines) {
-      PipelinedData.Batch batch = pipeline.getBatch(expressions, rootObjects);
-      pipelineStates.add(new PipelineState(pipeline, batch));
+    Execution execution = new Execution(context);
+    execution.start(pipelines);
+    return execution.await();
+  }
+
+  /**
+   * State of a single call to {@link #execute}. All fields are guarded by the execution itself,
+   * since requests complete, and start their dependents, on the preloader service's threads.
+   */
+  private class Execution {
+    private final GadgetContext context;
+    private final Map<String, Object> elResults = Maps.newHashMap();
+    private final CompositeELResolver rootObjects = new CompositeELResolver();
+    private final List<PipelineState> pipelineStates = Lists.newArrayList();
+    private final List<PipelineTask> started = Lists.newArrayList();
+    private int inFlight;
+
+    Execution(GadgetContext context) {
+      this.context = context;
+      rootObjects.add(new GadgetELResolver(context));
+      rootObjects.add(new RootELResolver(elResults));
     }
 
-    int batchCount = 0;
-    while (true) {
+    void start(Collection<PipelinedData> pipelines) {
       List<Callable<PreloadedData>> tasks = Lists.newArrayList();
-      for (PipelineState pipeline : pipelineStates) {
-        if (pipeline.batch != null) {
-          tasks.addAll(preloader.createPreloadTasks(context, pipeline.batch));
+      synchronized (this) {
+        for (PipelinedData pipeline : pipelines) {
+          PipelinedData.Batch batch = pipeline.getBatch(expressions, rootObjects);
+          pipelineStates.add(new PipelineState(pipeline, batch));
+        }
+        for (PipelineState pipeline : pipelineStates) {
+          if (pipeline.batch != null) {
+            tasks.addAll(createTasks(pipeline, 1));
+          }
         }
       }
+      submit(tasks);
+    }
 
-      if (tasks.isEmpty()) {
-        break;
-      }
-
-      Collection<PreloadedData> preloads = preloaderService.preload(tasks);
-      for (PreloadedData preloaded : preloads) {
+    /**
+     * Records the result of a request, then starts every request that it unblocked.
+     */
+    void complete(PipelineTask task, Collection<Object> entries) {
+      List<Callable<PreloadedData>> tasks = Lists.newArrayList();
+      synchronized (this) {
+        if (task.abandoned) {
+          return;
+        }
         try {
-          for (Object entry : preloaded.toJson()) {
-            results.add(entry);
-
-            String id = (String) JsonUtil.getProperty(entry, "id");
+          task.entries = entries;
+          inFlight--;
+          if (entries != null) {
+            for (Object entry : entries) {
+              addResult(entry);
+            }
+          }
 
-            Object data = JsonUtil.getProperty(entry, "result");
-            if (data == null) {
-              // For backward compatiblity, check maybe return old 'data' field:
-              data = JsonUtil.getProperty(entry, "data");
+          int depth = task.depth + 1;
+          for (PipelineState pipeline : pipelineStates) {
+            if (pipeline.batch == null || pipeline.incomplete) {
+              continue;
+            }
+            try {
+              pipeline.batch = pipeline.batch.getNextBatch(rootObjects);
+            } catch (RuntimeException e) {
+              // Leave the rest of this pipeline to the client; the other pipelines carry on.
+              LOG.log(Level.WARNING, "Failed to evaluate pipelined data for " + context.getUrl(), e);
+              pipeline.incomplete = true;
+              continue;
             }
-            if (data != null) {
-              elResults.put(id, data);
-            } else {
-              Object error = JsonUtil.getProperty(entry, "error");
-              if (error != null) {
-                elResults.put(id, error);
+            if (pipeline.batch != null && !pipeline.batch.getPreloads().isEmpty()) {
+              if (depth > maxDepth) {
+                pipeline.incomplete = true;
+              } else {
+                tasks.addAll(createTasks(pipeline, depth));
+              }
+            }
+          }
+        } finally {
+          notifyAll();
+        }
+      }
+      submit(tasks);
+    }
+
+    /**
+     * Waits until no requests are running, abandoning any that exceed the request timeout.
+     */
+    synchronized Results await() {
+      try {
+        while (inFlight > 0) {
+          if (requestTimeoutMs <= 0) {
+            wait();
+            continue;
+          }
+          long now = System.currentTimeMillis();
+          long nextDeadline = Long.MAX_VALUE;
+          for (PipelineTask task : started) {
+            if (task.isRunning()) {
+              if (task.deadline <= now) {
+                LOG.info("Abandoning pipelined request after " + requestTimeoutMs + "ms for " +
+                    context.getUrl());
+                task.abandoned = true;
+                task.pipeline.incomplete = true;
+                inFlight--;
+              } else {
+                nextDeadline = Math.min(nextDeadline, task.deadline);
               }
             }
           }
-        } catch (PreloadException pe) {
-          // This will be thrown in the event of some unexpected exception. We can move on.
-          LOG.log(Level.WARNING, "Unexpected error when preloading", pe);
+          if (inFlight > 0) {
+            wait(nextDeadline - now);
+          }
         }
+      } catch (InterruptedException ie) {
+        // Do NOT Propagate the interrupt
+        throw new RuntimeException("Preloading was interrupted by thread termination", ie);
       }
 
-      // Advance to the next batch
+      // Report results in the order the requests were started, regardless of completion order.
+      List<Object> results = Lists.newArrayList();
+      for (PipelineTask task : started) {
+        if (task.entries != null) {
+          results.addAll(task.entries);
+        }
+      }
+
+      List<PipelinedData> remainingPipelines = Lists.newArrayList();
       for (PipelineState pipeline : pipelineStates) {
-        if (pipeline.batch != null) {
-          pipeline.batch = pipeline.batch.getNextBatch(rootObjects);
+        if (pipeline.batch != null || pipeline.incomplete) {
+          remainingPipelines.add(pipeline.pipeline);
         }
       }
 
-      batchCount++;
-      if (batchCount == MAX_BATCH_COUNT) {
-        break;
+      return new Results(remainingPipelines, results, elResults);
+    }
+
+    private List<PipelineTask> createTasks(PipelineState pipeline, int depth) {
+      List<PipelineTask> tasks = Lists.newArrayList();
+      long deadline = requestTimeoutMs > 0 ?
+          System.currentTimeMillis() + requestTimeoutMs : Long.MAX_VALUE;
+      for (Callable<PreloadedData> task : preloader.createPreloadTasks(context, pipeline.batch)) {
+        tasks.add(new PipelineTask(this, pipeline, task, depth, deadline));
+      }
+      started.addAll(tasks);
+      inFlight += tasks.size();
+      return tasks;
+    }
+
+    private void submit(List<Callable<PreloadedData>> tasks) {
+      if (!tasks.isEmpty()) {
+        // Results are delivered through complete(), so the returned preloads aren't needed.
+        preloaderService.preload(tasks);
       }
     }
 
-    List<PipelinedData> remainingPipelines = Lists.newArrayList();
-    for (PipelineState pipeline : pipelineStates) {
-      if (pipeline.batch != null) {
-        remainingPipelines.add(pipeline.pipeline);
+    private void addResult(Object entry) {
+      String id = (String) JsonUtil.getProperty(entry, "id");
+
+      Object data = JsonUtil.getProperty(entry, "result");
+      if (data == null) {
+        // For backward compatiblity, check maybe return old 'data' field:
+        data = JsonUtil.getProperty(entry, "data");
+      }
+      if (data != null) {
+        elResults.put(id, data);
+      } else {
+        Object error = JsonUtil.getProperty(entry, "error");
+        if (error != null) {
+          elResults.put(id, error);
+        }
       }
     }
+  }
+
+  /** A single preload task, reporting its result to the execution that started it */
+  private static class PipelineTask implements Callable<PreloadedData> {
+    private final Execution execution;
+    private final PipelineState pipeline;
+    private final Callable<PreloadedData> delegate;
+    private final int depth;
+    private final long deadline;
+    private Collection<Object> entries;
+    private boolean done;
+    private boolean abandoned;
 
-    return new Results(remainingPipelines, results, elResults);
+    PipelineTask(Execution execution, PipelineState pipeline, Callable<PreloadedData> delegate,
+        int depth, long deadline) {
+      this.execution = execution;
+      this.pipeline = pipeline;
+      this.delegate = delegate;
+      this.depth = depth;
+      this.deadline = deadline;
+    }
+
+    boolean isRunning() {
+      return !done && !abandoned;
+    }
+
+    public PreloadedData call() throws Exception {
+      PreloadedData preloaded = null;
+      Collection<Object> json = null;
+      try {
+        preloaded = delegate.call();
+        json = preloaded.toJson();
+      } catch (PreloadException pe) {
+        // This will be thrown in the event of some unexpected exception. We can move on.
+        LOG.log(Level.WARNING, "Unexpected error when preloading", pe);
+      } catch (Exception e) {
+        LOG.log(Level.WARNING, "Unexpected error when preloading", new PreloadException(e));
+      } finally {
+        synchronized (execution) {
+          done = true;
+        }
+        execution.complete(this, json);
+      }
+      return preloaded;
+    }
   }
 
   /** State of one of the pipelines */
@@ -181,5 +350,8 @@ public class PipelineExecutor {
 
     public final PipelinedData pipeline;
     public PipelinedData.Batch batch;
+
+    /** Set when requests were cut off by the maximum depth or the request timeout */
+    public boolean incomplete;
   }
 }
@@ -25,6 +25,7 @@ import org.apache.shindig.gadgets.GadgetContext;
 import org.apache.shindig.gadgets.GadgetException;
 import org.apache.shindig.gadgets.GadgetSpecFactory;
 import org.apache.shindig.gadgets.features.FeatureRegistry;
+import org.apache.shindig.gadgets.render.RenderTrace;
 import org.apache.shindig.gadgets.spec.GadgetSpec;
 import org.apache.shindig.gadgets.spec.View;
 import org.apache.shindig.gadgets.variables.VariableSubstituter;
@@ -101,12 +102,24 @@ public class Processor {
       // ModulePref にはどんなことが定義されているか？タイトルは何か？ どういう Content があるか？ それらの
       // view は何か？等々。
       //
-      GadgetSpec spec = gadgetSpecFactory.getGadgetSpec(context);
+      RenderTrace trace = RenderTrace.current();
+      long start = trace.start();
+      GadgetSpec spec;
+      try {
+        spec = gadgetSpecFactory.getGadgetSpec(context);
+      } finally {
+        trace.end("spec", start);
+      }
       
       //
       // Gadget XML 中の __MSG_変数名__ などを変数の値で置き換える。
       //
-      spec = substituter.substitute(context, spec);
+      start = trace.start();
+      try {
+        spec = substituter.substitute(context, spec);
+      } finally {
+        trace.end("substitute", start);
+      }
 
       //
       // Gadget オブジェクトにすべてまとめ上げる。
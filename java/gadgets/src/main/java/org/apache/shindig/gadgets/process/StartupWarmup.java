@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.gadgets.process;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+
+import org.apache.shindig.common.uri.Uri;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs a warm-up job when the server starts, using the gadget urls listed in the file named by
+ * shindig.warmup.file.
+ *
+ * If shindig.warmup.startup-timeout-ms is positive, injector creation (and so servlet context
+ * startup) blocks until the job finishes or the timeout expires, which keeps the node out of
+ * rotation until its caches are warm. Otherwise the job runs in the background and
+ * {@link #isComplete()} can be used as a readiness check.
+ */
+@Singleton
+public class StartupWarmup {
+  private static final Logger LOG = Logger.getLogger(StartupWarmup.class.getName());
+
+  private final WarmupService warmupService;
+  private volatile WarmupService.Job job;
+
+  @Inject
+  public StartupWarmup(WarmupService warmupService) {
+    this.warmupService = warmupService;
+  }
+
+  @Inject(optional = true)
+  public void warmUp(@Named("shindig.warmup.file") String file,
+                     @Named("shindig.warmup.startup-timeout-ms") long timeoutMs) {
+    if (file == null || file.length() == 0) {
+      return;
+    }
+    List<Uri> urls;
+    Reader reader = null;
+    try {
+      reader = new FileReader(new File(file));
+      urls = WarmupService.readUrls(reader);
+    } catch (IOException e) {
+      LOG.log(Level.WARNING, "Unable to read warm-up list " + file, e);
+      return;
+    } finally {
+      if (reader != null) {
+        try {
+          reader.close();
+        } catch (IOException e) {
+          // ignore
+        }
+      }
+    }
+
+    job = warmupService.start(urls);
+    if (timeoutMs > 0) {
+      try {
+        if (!job.await(timeoutMs)) {
+          LOG.warning("Startup warm-up still running after " + timeoutMs + "ms, continuing startup");
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * @return True if no startup warm-up was configured, or if it has finished.
+   */
+  public boolean isComplete() {
+    return job == null || job.isDone();
+  }
+}
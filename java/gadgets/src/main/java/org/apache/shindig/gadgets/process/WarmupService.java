@@ -0,0 +1,335 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.gadgets.process;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.shindig.common.uri.Uri;
+import org.apache.shindig.config.ContainerConfig;
+import org.apache.shindig.gadgets.DefaultGuiceModule;
+import org.apache.shindig.gadgets.Gadget;
+import org.apache.shindig.gadgets.GadgetContext;
+import org.apache.shindig.gadgets.GadgetException;
+import org.apache.shindig.gadgets.features.FeatureRegistry;
+import org.apache.shindig.gadgets.render.HtmlRenderer;
+import org.apache.shindig.gadgets.render.RenderingException;
+import org.apache.shindig.gadgets.rewrite.TemplateRewriter;
+import org.apache.shindig.gadgets.spec.Feature;
+import org.apache.shindig.gadgets.spec.GadgetSpec;
+import org.apache.shindig.gadgets.spec.View;
+import org.apache.shindig.gadgets.templates.TemplateLibraryFactory;
+import org.apache.shindig.gadgets.uri.JsUriManager;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Fills the spec, message bundle, template library and feature caches for a list of gadgets, so
+ * that the first users after a deploy don't pay for those fetches one after another.
+ *
+ * Each gadget is processed once for every configured container and every locale in
+ * shindig.warmup.locales. Processing goes through the same {@link Processor} used for rendering,
+ * which fetches the spec and the message bundles, then loads any template libraries the gadget
+ * requires, resolves its feature JS and computes the versioned JS url. If shindig.warmup.render is
+ * set the default view is also rendered, which warms the caches used by the rewriters; the
+ * rendered output itself isn't kept.
+ *
+ * Work is spread over shindig.warmup.threads worker threads, which also bounds the number of
+ * concurrent fetches against gadget hosts. Only one job runs at a time; its progress is available
+ * from {@link #getCurrentJob()}.
+ */
+@Singleton
+public class WarmupService {
+  private static final Logger LOG = Logger.getLogger(WarmupService.class.getName());
+  private static final char COMMENT_MARKER = '#';
+
+  private final Processor processor;
+  private final FeatureRegistry featureRegistry;
+  private final JsUriManager jsUriManager;
+  private final TemplateLibraryFactory libraryFactory;
+  private final Provider<HtmlRenderer> htmlRenderer;
+  private final ContainerConfig containerConfig;
+
+  private int threads = 4;
+  private List<Locale> locales = ImmutableList.of(GadgetSpec.DEFAULT_LOCALE);
+  private boolean render = false;
+  private volatile Job currentJob;
+
+  @Inject
+  public WarmupService(Processor processor,
+                       FeatureRegistry featureRegistry,
+                       JsUriManager jsUriManager,
+                       TemplateLibraryFactory libraryFactory,
+                       Provider<HtmlRenderer> htmlRenderer,
+                       ContainerConfig containerConfig) {
+    this.processor = processor;
+    this.featureRegistry = featureRegistry;
+    this.jsUriManager = jsUriManager;
+    this.libraryFactory = libraryFactory;
+    this.htmlRenderer = htmlRenderer;
+    this.containerConfig = containerConfig;
+  }
+
+  @Inject(optional = true)
+  public void setThreads(@Named("shindig.warmup.threads") int threads) {
+    this.threads = Math.max(1, threads);
+  }
+
+  /**
+   * @param locales Comma separated list of locales, in language_COUNTRY form.
+   */
+  @Inject(optional = true)
+  public void setLocales(@Named("shindig.warmup.locales") String locales) {
+    List<Locale> parsed = Lists.newArrayList();
+    for (String locale : StringUtils.split(locales, ", ")) {
+      String[] parts = locale.split("_", 2);
+      parsed.add(new Locale(parts[0], parts.length == 2 ? parts[1] : "ALL"));
+    }
+    if (!parsed.isEmpty()) {
+      this.locales = ImmutableList.copyOf(parsed);
+    }
+  }
+
+  @Inject(optional = true)
+  public void setRender(@Named("shindig.warmup.render") boolean render) {
+    this.render = render;
+  }
+
+  /**
+   * @return The most recently started job, or null if none has been started.
+   */
+  public Job getCurrentJob() {
+    return currentJob;
+  }
+
+  /**
+   * Reads gadget urls from the given reader, one per line. Blank lines and lines starting with
+   * '#' are ignored.
+   */
+  public static List<Uri> readUrls(Reader reader) throws IOException {
+    return readUrls(reader, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Reads at most limit gadget urls from the given reader, ignoring the rest.
+   */
+  public static List<Uri> readUrls(Reader reader, int limit) throws IOException {
+    List<Uri> urls = Lists.newArrayList();
+    BufferedReader in = new BufferedReader(reader);
+    String line;
+    while (urls.size() < limit && (line = in.readLine()) != null) {
+      line = line.trim();
+      if (line.length() == 0 || line.charAt(0) == COMMENT_MARKER) {
+        continue;
+      }
+      urls.add(Uri.parse(line));
+    }
+    return urls;
+  }
+
+  /**
+   * Starts warming the given gadgets in the background.
+   *
+   * @return The new job.
+   * @throws IllegalStateException If a job is already running.
+   */
+  public synchronized Job start(Collection<Uri> urls) {
+    if (currentJob != null && !currentJob.isDone()) {
+      throw new IllegalStateException("A warm-up job is already running");
+    }
+    Collection<String> containers = containerConfig.getContainers();
+    final Job job = new Job(urls.size() * containers.size() * locales.size());
+    currentJob = job;
+
+    ExecutorService executor =
+        Executors.newFixedThreadPool(threads, DefaultGuiceModule.DAEMON_THREAD_FACTORY);
+    for (final Uri url : urls) {
+      for (final String container : containers) {
+        for (final Locale locale : locales) {
+          executor.execute(new Runnable() {
+            public void run() {
+              job.finish(warm(new WarmupContext(url, container, locale)));
+            }
+          });
+        }
+      }
+    }
+    executor.shutdown();
+    LOG.info("Warming " + urls.size() + " gadgets for containers " + containers + " and locales " +
+        locales + " on " + threads + " threads");
+    return job;
+  }
+
+  /**
+   * Warms the caches for a single gadget, container and locale.
+   *
+   * @return True if the gadget was processed successfully.
+   */
+  boolean warm(GadgetContext context) {
+    try {
+      Gadget gadget = processor.process(context);
+      loadTemplateLibraries(gadget);
+
+      Collection<String> features = gadget.getDirectFeatureDeps();
+      featureRegistry.getFeatureResources(context, features, Lists.<String>newArrayList());
+      jsUriManager.makeExternJsUri(gadget, features);
+
+      View view = gadget.getCurrentView();
+      if (render && view != null && view.getType() == View.ContentType.HTML) {
+        htmlRenderer.get().render(gadget);
+      }
+      return true;
+    } catch (ProcessingException e) {
+      logFailure(context, e);
+    } catch (GadgetException e) {
+      logFailure(context, e);
+    } catch (RenderingException e) {
+      logFailure(context, e);
+    } catch (RuntimeException e) {
+      logFailure(context, e);
+    }
+    return false;
+  }
+
+  private static void logFailure(GadgetContext context, Exception e) {
+    LOG.log(Level.INFO, "Warm-up failed for " + context.getUrl() + " in " +
+        context.getContainer() + '/' + context.getLocale() + ": " + e.getMessage());
+  }
+
+  private void loadTemplateLibraries(Gadget gadget) throws GadgetException {
+    Feature feature = gadget.getSpec().getModulePrefs().getFeatures()
+        .get(TemplateRewriter.TEMPLATES_FEATURE_NAME);
+    if (feature == null) {
+      return;
+    }
+    Collection<String> libraries = feature.getParams().get(TemplateRewriter.REQUIRE_LIBRARY_PARAM);
+    if (libraries != null) {
+      GadgetContext context = gadget.getContext();
+      for (String library : libraries) {
+        libraryFactory.loadTemplateLibrary(context, context.getUrl().resolve(Uri.parse(library.trim())));
+      }
+    }
+  }
+
+  /**
+   * Progress of a warm-up job. Every (gadget, container, locale) combination counts as one task.
+   */
+  public static class Job {
+    private final int total;
+    private final long startTime = System.currentTimeMillis();
+    private final AtomicInteger succeeded = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final CountDownLatch done;
+    private volatile long endTime;
+
+    Job(int total) {
+      this.total = total;
+      this.done = new CountDownLatch(total);
+      if (total == 0) {
+        endTime = startTime;
+      }
+    }
+
+    void finish(boolean success) {
+      (success ? succeeded : failed).incrementAndGet();
+      done.countDown();
+      if (done.getCount() == 0) {
+        endTime = System.currentTimeMillis();
+        LOG.info("Warm-up finished: " + succeeded.get() + " succeeded, " + failed.get() +
+            " failed in " + getElapsedMs() + "ms");
+      }
+    }
+
+    public int getTotal() {
+      return total;
+    }
+
+    public int getSucceeded() {
+      return succeeded.get();
+    }
+
+    public int getFailed() {
+      return failed.get();
+    }
+
+    public boolean isDone() {
+      return done.getCount() == 0;
+    }
+
+    /**
+     * @return Time spent so far, or the total time once the job is done.
+     */
+    public long getElapsedMs() {
+      return (isDone() ? endTime : System.currentTimeMillis()) - startTime;
+    }
+
+    /**
+     * Waits for the job to finish.
+     *
+     * @return True if the job finished within the timeout.
+     */
+    public boolean await(long timeoutMs) throws InterruptedException {
+      return done.await(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private static class WarmupContext extends GadgetContext {
+    private final Uri url;
+    private final String container;
+    private final Locale locale;
+
+    WarmupContext(Uri url, String container, Locale locale) {
+      this.url = url;
+      this.container = container;
+      this.locale = locale;
+    }
+
+    @Override
+    public Uri getUrl() {
+      return url;
+    }
+
+    @Override
+    public String getContainer() {
+      return container;
+    }
+
+    @Override
+    public Locale getLocale() {
+      return locale;
+    }
+  }
+}
@@ -18,6 +18,7 @@
  */
 package org.apache.shindig.gadgets.render;
 
+import org.apache.shindig.common.xml.DomUtil;
 import org.apache.shindig.gadgets.Gadget;
 import org.apache.shindig.gadgets.GadgetException;
 import org.apache.shindig.gadgets.parse.GadgetHtmlParser;
@@ -27,20 +28,38 @@ import org.apache.shindig.gadgets.rewrite.GadgetRewriter;
 import org.apache.shindig.gadgets.rewrite.MutableContent;
 import org.apache.shindig.gadgets.rewrite.RewritingException;
 import org.apache.shindig.gadgets.spec.View;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
 
 import java.util.Collection;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Logger;
 
+import com.google.common.collect.ForwardingCollection;
+import com.google.common.collect.ImmutableList;
 import com.google.inject.Inject;
+import com.google.inject.name.Named;
 
 /**
  * Handles producing output markup for a gadget based on the provided context.
  */
 public class HtmlRenderer {
+  private static final Logger LOG = Logger.getLogger(HtmlRenderer.class.getName());
   public static final String PATH_PARAM = "path";
+  private static final String BODY_MARKER_PREFIX = "shindigBodyStart";
+  private static final Random MARKER_RANDOM = new Random();
   private final PreloaderService preloader;
   private final ProxyRenderer proxyRenderer;
   private final GadgetRewritersProvider gadgetRewritersProvider;
   private final GadgetHtmlParser htmlParser;
+  private ExecutorService executor;
+  private long preloadTimeoutMs = 0;
 
   @Inject
   public HtmlRenderer(PreloaderService preloader,
@@ -53,52 +72,174 @@ public class HtmlRenderer {
     this.htmlParser = htmlParser;
   }
 
+  /**
+   * Sets the executor that preloads are started from, so that rendering doesn't wait for them
+   * until their data is injected. Without one, preloading is done before rendering.
+   */
+  @Inject
+  public void setExecutor(ExecutorService executor) {
+    this.executor = executor;
+  }
+
+  /**
+   * @param preloadTimeoutMs Time allowed for preloads started from the executor, after which the
+   *     gadget is rendered without them, or 0 to wait indefinitely.
+   */
+  @Inject(optional = true)
+  public void setPreloadTimeout(@Named("shindig.pipeline.request-timeout-ms") long preloadTimeoutMs) {
+    this.preloadTimeoutMs = preloadTimeoutMs;
+  }
+
   /**
    * Render the gadget into a string by performing the following steps:
    *
    * - Retrieve gadget specification information (GadgetSpec, MessageBundle, etc.)
    *
-   * - Fetch any preloaded data needed to handle the request, as handled by Preloader.
+   * - Start fetching any preloaded data needed to handle the request, as handled by Preloader.
    *
    * - Perform rewriting operations on the output content, handled by Rewriter.
    *
+   * Only the injection of the preloaded data depends on the preloads, so fetching the view
+   * content, parsing it and the rewriting that comes before that injection all happen while the
+   * preloads are in flight.
+   *
    * @param gadget The gadget for the rendering operation.
    * @return The rendered gadget content
    * @throws RenderingException if any issues arise that prevent rendering.
    */
   public String render(Gadget gadget) throws RenderingException {
+    // Preload 処理をする。
+    //
+    // Gadget XML の ModulePrefs/Preload 要素があった場合、それの href 属性の URL に
+    // アクセスしてリモートサーバからデータをプリロードしておく。キャッシュがあればそれを使う。
+    //
+    // We always execute these preloads, they have nothing to do with the cache output.
+    gadget.setPreloads(startPreloads(gadget));
+
+    MutableContent mc = rewrite(gadget);
+    RenderTrace trace = RenderTrace.current();
+    long start = trace.start();
     try {
-      View view = gadget.getCurrentView();
+      return mc.getContent();
+    } finally {
+      trace.end("serialize", start);
+    }
+  }
+
+  /**
+   * Render the gadget like {@link #render}, but split the output at the start of the body so that
+   * the head can be sent while the preloads are still in flight. They are waited for by
+   * {@link StreamingContent#getPreloadScript()}.
+   *
+   * Sanitized gadgets get no preloaded data in their output, so they are rendered as a whole.
+   *
+   * @param gadget The gadget for the rendering operation.
+   * @return The rendered gadget content, in parts.
+   * @throws RenderingException if any issues arise that prevent rendering.
+   */
+  public StreamingContent renderStreaming(Gadget gadget) throws RenderingException {
+    if (gadget.sanitizeOutput()) {
+      return new StreamingContent(render(gadget));
+    }
 
-      // Preload 処理をする。
-      //
-      // Gadget XML の ModulePrefs/Preload 要素があった場合、それの href 属性の URL に
-      // アクセスしてリモートサーバからデータをプリロードしておく。キャッシュがあればそれを使う。
-      //
-      // We always execute these preloads, they have nothing to do with the cache output.
-      Collection<PreloadedData> preloads = preloader.preload(gadget);
-      gadget.setPreloads(preloads);
+    // The head is rendered with no preloaded data, which the preload script replaces.
+    Collection<PreloadedData> preloads = startPreloads(gadget);
+    gadget.setPreloads(ImmutableList.<PreloadedData>of());
+    MutableContent mc = rewrite(gadget);
+
+    // Mark the start of the body with a text node, which every serializer writes as is.
+    String marker = BODY_MARKER_PREFIX + Long.toHexString(MARKER_RANDOM.nextLong());
+    Document document = mc.getDocument();
+    if (document != null) {
+      Node body = DomUtil.getFirstNamedChildNode(document.getDocumentElement(), "body");
+      if (body != null) {
+        body.insertBefore(document.createTextNode(marker), body.getFirstChild());
+        mc.documentChanged();
+      }
+    }
+    RenderTrace trace = RenderTrace.current();
+    long start = trace.start();
+    String content;
+    try {
+      content = mc.getContent();
+    } finally {
+      trace.end("serialize", start);
+    }
+    int split = content.indexOf(marker);
+    if (split < 0) {
+      // Nowhere to split, so the preloaded data goes after the document.
+      return new StreamingContent(content, "", preloads);
+    }
+    return new StreamingContent(content.substring(0, split),
+        content.substring(split + marker.length()), preloads);
+  }
+
+  /**
+   * Starts the gadget's preloads.
+   *
+   * @return The preloads, which block when read until they are available.
+   */
+  private Collection<PreloadedData> startPreloads(final Gadget gadget) {
+    if (executor == null) {
+      RenderTrace trace = RenderTrace.current();
+      long start = trace.start();
+      try {
+        return preloader.preload(gadget);
+      } finally {
+        trace.end("preload", start);
+      }
+    }
+    // The preloader runs one of the preloads in the thread that calls it, which must not be the
+    // rendering thread.
+    Future<Collection<PreloadedData>> future =
+        executor.submit(new Callable<Collection<PreloadedData>>() {
+          public Collection<PreloadedData> call() {
+            return preloader.preload(gadget);
+          }
+        });
+    long deadline = preloadTimeoutMs > 0 ?
+        System.currentTimeMillis() + preloadTimeoutMs : Long.MAX_VALUE;
+    return new PendingPreloads(future, deadline, gadget);
+  }
+
+  /**
+   * Fetches the view's content and runs the gadget rewriters over it.
+   */
+  private MutableContent rewrite(Gadget gadget) throws RenderingException {
+    RenderTrace trace = RenderTrace.current();
+    try {
+      View view = gadget.getCurrentView();
 
       String content;
 
-      if (view.getHref() == null) {
-        content = getViewContent(gadget, view);
-      } else {
-        //
-        // プロキシ経由のコンテンツ処理。
-        // Content 要素に href 属性があった場合には、それに指定された URL にアクセスして
-        // それのレスポンス内容をコンテンツとする。キャッシュがあればそれを使う。
-        //
-        content = proxyRenderer.render(gadget);
+      long start = trace.start();
+      try {
+        if (view.getHref() == null) {
+          content = getViewContent(gadget, view);
+        } else {
+          //
+          // プロキシ経由のコンテンツ処理。
+          // Content 要素に href 属性があった場合には、それに指定された URL にアクセスして
+          // それのレスポンス内容をコンテンツとする。キャッシュがあればそれを使う。
+          //
+          content = proxyRenderer.render(gadget);
+        }
+      } finally {
+        trace.end("content", start);
       }
 
       MutableContent mc = new MutableContent(htmlParser, content);
       for (GadgetRewriter rewriter : 
           gadgetRewritersProvider.getRewriters(gadget.getContext())) {
-        rewriter.rewrite(gadget, mc);
+        start = trace.start();
+        try {
+          rewriter.rewrite(gadget, mc);
+        } finally {
+          trace.endRewriter(rewriter, start);
+        }
       }
       
-      return mc.getContent();
+      return mc;
     } catch (GadgetException e) {
       throw new RenderingException(e.getMessage(), e, e.getHttpStatusCode());
     } catch (RewritingException e) {
@@ -109,4 +250,55 @@ public class HtmlRenderer {
   protected String getViewContent(Gadget gadget, View view) {
     return view.getContent();
   }
+
+  /**
+   * Preloads that are started by another thread. Preloads that haven't completed by the deadline
+   * are treated as if the gadget had none.
+   */
+  private static class PendingPreloads extends ForwardingCollection<PreloadedData> {
+    private final Future<Collection<PreloadedData>> future;
+    private final long deadline;
+    private final Gadget gadget;
+    private Collection<PreloadedData> preloads;
+
+    PendingPreloads(Future<Collection<PreloadedData>> future, long deadline, Gadget gadget) {
+      this.future = future;
+      this.deadline = deadline;
+      this.gadget = gadget;
+    }
+
+    @Override
+    protected synchronized Collection<PreloadedData> delegate() {
+      if (preloads == null) {
+        preloads = await();
+      }
+      return preloads;
+    }
+
+    private Collection<PreloadedData> await() {
+      try {
+        if (deadline == Long.MAX_VALUE) {
+          return future.get();
+        }
+        long remaining = Math.max(deadline - System.currentTimeMillis(), 0);
+        return future.get(remaining, TimeUnit.MILLISECONDS);
+      } catch (TimeoutException e) {
+        LOG.info("Rendering without preloads that timed out for " + gadget.getContext().getUrl());
+        future.cancel(false);
+        return ImmutableList.of();
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        throw new RuntimeException(cause);
+      } catch (InterruptedException e) {
+        // Do NOT Propagate the interrupt
+        throw new RuntimeException("Preloading was interrupted by thread termination", e);
+      }
+    }
+  }
 }
@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.apache.shindig.gadgets.render;
+
+import org.apache.shindig.common.uri.Uri;
+import org.apache.shindig.common.util.LatencyHistogram;
+
+import com.google.common.collect.MapMaker;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Samples gadget renderings with a {@link RenderTrace}, and aggregates the time of each phase per
+ * gadget url into histograms.
+ *
+ * Sampling is off by default. Histograms are kept for a bounded number of gadget urls; once that
+ * many have been seen, renderings of other gadgets are counted under {@link #OTHER_GADGETS}.
+ */
+@Singleton
+public class RenderTimings {
+  /** The phase that covers a whole rendering. */
+  public static final String TOTAL = "total";
+
+  /** The key under which gadgets beyond the limit are aggregated. */
+  public static final String OTHER_GADGETS = "*";
+
+  static final int MAX_GADGETS = 1000;
+
+  private final ConcurrentMap<String, ConcurrentMap<String, LatencyHistogram>> gadgets =
+      new MapMaker().makeMap();
+  private final Random random = new Random();
+  private volatile double sampleRate;
+  private volatile boolean serverTiming;
+
+  /**
+   * @param sampleRate The fraction of renderings to trace, from 0 (none) to 1 (all).
+   */
+  @Inject(optional = true)
+  public void setSampleRate(@Named("shindig.render-timing.sample-rate") double sampleRate) {
+    this.sampleRate = sampleRate;
+  }
+
+  /**
+   * @param serverTiming Whether traced renderings report their phases in a Server-Timing header.
+   */
+  @Inject(optional = true)
+  public void setServerTiming(@Named("shindig.render-timing.server-timing") boolean serverTiming) {
+    this.serverTiming = serverTiming;
+  }
+
+  public double getSampleRate() {
+    return sampleRate;
+  }
+
+  public boolean isServerTimingEnabled() {
+    return serverTiming;
+  }
+
+  /**
+   * Begins a trace of the current thread if the rendering is sampled.
+   *
+   * @return The trace, or null if the rendering is not sampled.
+   */
+  public RenderTrace startTrace() {
+    double rate = sampleRate;
+    if (rate <= 0 || (rate < 1 && random.nextDouble() >= rate)) {
+      return null;
+    }
+    return RenderTrace.begin();
+  }
+
+  /**
+   * Finishes a trace begun by {@link #startTrace()} and adds it to the gadget's histograms.
+   */
+  public void finishTrace(RenderTrace trace, Uri gadgetUrl) {
+    trace.finish();
+    ConcurrentMap<String, LatencyHistogram> phases =
+        getPhases(gadgetUrl == null ? OTHER_GADGETS : gadgetUrl.toString());
+    for (Map.Entry<String, Long> phase : trace.getPhases().entrySet()) {
+      getHistogram(phases, phase.getKey()).record(phase.getValue());
+    }
+    getHistogram(phases, TOTAL).record(trace.getTotalNanos());
+  }
+
+  /**
+   * @return The histograms of each phase, by gadget url.
+   */
+  public Map<String, Map<String, LatencyHistogram>> getTimings() {
+    return Collections.<String, Map<String, LatencyHistogram>>unmodifiableMap(gadgets);
+  }
+
+  /**
+   * Discards all histograms.
+   */
+  public void reset() {
+    gadgets.clear();
+  }
+
+  private ConcurrentMap<String, LatencyHistogram> getPhases(String gadget) {
+    ConcurrentMap<String, LatencyHistogram> phases = gadgets.get(gadget);
+    if (phases == null) {
+      if (gadgets.size() >= MAX_GADGETS) {
+        gadget = OTHER_GADGETS;
+      }
+      phases = new MapMaker().makeMap();
+      ConcurrentMap<String, LatencyHistogram> existing = gadgets.putIfAbsent(gadget, phases);
+      if (existing != null) {
+        phases = existing;
+      }
+    }
+    return phases;
+  }
+
+  private static LatencyHistogram getHistogram(ConcurrentMap<String, LatencyHistogram> phases,
+      String phase) {
+    LatencyHistogram histogram = phases.get(phase);
+    if (histogram == null) {
+      histogram = new LatencyHistogram();
+      LatencyHistogram existing = phases.putIfAbsent(phase, histogram);
+      if (existing != null) {
+        histogram = existing;
+      }
+    }
+    return histogram;
+  }
+}
@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.apache.shindig.gadgets.render;
+
+import com.google.common.collect.Maps;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The time spent in each phase of rendering one gadget, recorded by the thread that renders it.
+ *
+ * A trace is begun by {@link RenderTimings} for sampled requests. Code on the rendering path
+ * times a phase with
+ *
+ * <pre>
+ *   RenderTrace trace = RenderTrace.current();
+ *   long start = trace.start();
+ *   try {
+ *     ...
+ *   } finally {
+ *     trace.end("phase", start);
+ *   }
+ * </pre>
+ *
+ * Phases may nest, and each records only its own time, without that of the phases nested in it.
+ * Phases with the same name add up. When no trace has been begun the current trace does nothing,
+ * so timing costs one thread local lookup per phase.
+ */
+public final class RenderTrace {
+  private static final ThreadLocal<RenderTrace> CURRENT = new ThreadLocal<RenderTrace>();
+  private static final RenderTrace NONE = new RenderTrace(false);
+
+  private final boolean enabled;
+  private final long startNanos;
+  private final Map<String, Long> phases = Maps.newLinkedHashMap();
+  private long totalNanos = -1;
+  /** The time taken by the nested phases of each open phase. */
+  private long[] nested = new long[8];
+  private int depth;
+
+  private RenderTrace(boolean enabled) {
+    this.enabled = enabled;
+    this.startNanos = enabled ? System.nanoTime() : 0;
+  }
+
+  /**
+   * Begins a trace of the current thread.
+   */
+  static RenderTrace begin() {
+    RenderTrace trace = new RenderTrace(true);
+    CURRENT.set(trace);
+    return trace;
+  }
+
+  /**
+   * @return The trace of the current thread, which does nothing if none has been begun.
+   */
+  public static RenderTrace current() {
+    RenderTrace trace = CURRENT.get();
+    return trace != null ? trace : NONE;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Starts a phase.
+   *
+   * @return The value to pass to {@link #end}.
+   */
+  public long start() {
+    if (!enabled) {
+      return 0;
+    }
+    if (depth == nested.length) {
+      long[] grown = new long[depth * 2];
+      System.arraycopy(nested, 0, grown, 0, depth);
+      nested = grown;
+    }
+    nested[depth++] = 0;
+    return System.nanoTime();
+  }
+
+  /**
+   * Ends the phase most recently started.
+   */
+  public void end(String phase, long start) {
+    if (!enabled || depth == 0) {
+      return;
+    }
+    long elapsed = System.nanoTime() - start;
+    long own = elapsed - nested[--depth];
+    if (depth > 0) {
+      nested[depth - 1] += elapsed;
+    }
+    Long previous = phases.get(phase);
+    phases.put(phase, previous == null ? own : previous + own);
+  }
+
+  /**
+   * Ends the phase of a rewriter, named "rewrite." and the rewriter's class name.
+   */
+  public void endRewriter(Object rewriter, long start) {
+    if (enabled) {
+      String name = rewriter.getClass().getSimpleName();
+      end("rewrite." + (name.length() > 0 ? name : rewriter.getClass().getName()), start);
+    }
+  }
+
+  /**
+   * Ends the trace, and detaches it from the current thread.
+   */
+  void finish() {
+    if (!enabled) {
+      return;
+    }
+    if (totalNanos < 0) {
+      totalNanos = System.nanoTime() - startNanos;
+    }
+    if (CURRENT.get() == this) {
+      CURRENT.remove();
+    }
+  }
+
+  /**
+   * @return The time of each phase in nanoseconds, in the order the phases first ended.
+   */
+  public Map<String, Long> getPhases() {
+    return Collections.unmodifiableMap(phases);
+  }
+
+  /**
+   * @return The time from the start of the trace until it was finished, or until now.
+   */
+  public long getTotalNanos() {
+    return totalNanos >= 0 ? totalNanos : System.nanoTime() - startNanos;
+  }
+
+  /**
+   * @return The phases formatted as the value of a Server-Timing header, in milliseconds.
+   */
+  public String toServerTiming() {
+    StringBuilder sb = new StringBuilder();
+    for (Map.Entry<String, Long> phase : phases.entrySet()) {
+      appendTiming(sb, phase.getKey(), phase.getValue());
+    }
+    appendTiming(sb, "total", getTotalNanos());
+    return sb.toString();
+  }
+
+  private static void appendTiming(StringBuilder sb, String name, long nanos) {
+    if (sb.length() > 0) {
+      sb.append(", ");
+    }
+    // Milliseconds with three decimals, without the locale dependence of String.format.
+    long micros = nanos / 1000;
+    long fraction = micros % 1000;
+    sb.append(name).append(";dur=").append(micros / 1000).append('.');
+    if (fraction < 100) {
+      sb.append('0');
+    }
+    if (fraction < 10) {
+      sb.append('0');
+    }
+    sb.append(fraction);
+  }
+}
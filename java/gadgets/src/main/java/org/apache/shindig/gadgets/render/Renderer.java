@@ -29,6 +29,7 @@ import org.apache.shindig.gadgets.process.Processor;
 import org.apache.shindig.gadgets.spec.View;
 
 import com.google.inject.Inject;
+import com.google.inject.name.Named;
 
 import javax.servlet.http.HttpServletResponse;
 import java.util.List;
@@ -44,6 +45,7 @@ public class Renderer {
   private final HtmlRenderer renderer;
   private final ContainerConfig containerConfig;
   private final LockedDomainService lockedDomainService;
+  private boolean streaming;
 
   @Inject
   public Renderer(Processor processor,
@@ -56,6 +58,14 @@ public class Renderer {
     this.lockedDomainService = lockedDomainService;
   }
 
+  /**
+   * Enables streamed output, in which the head of the document is sent before preloading.
+   */
+  @Inject(optional = true)
+  public void setStreaming(@Named("shindig.gadget-rendering.streaming") boolean streaming) {
+    this.streaming = streaming;
+  }
+
   /**
    * Attempts to render the requested gadget.
    *
@@ -90,7 +100,7 @@ public class Renderer {
         return RenderingResults.error("Invalid domain", HttpServletResponse.SC_BAD_REQUEST);
       }
 
-      return RenderingResults.ok(renderer.render(gadget));
+      return renderContent(gadget);
     } catch (RenderingException e) {
       return logError(context.getUrl(), e.getHttpStatusCode(), e);
     } catch (ProcessingException e) {
@@ -104,6 +114,16 @@ public class Renderer {
     }
   }
 
+  /**
+   * Renders the content of a gadget that has been validated, streamed if enabled.
+   */
+  protected RenderingResults renderContent(Gadget gadget) throws RenderingException {
+    if (streaming) {
+      return RenderingResults.ok(renderer.renderStreaming(gadget));
+    }
+    return RenderingResults.ok(renderer.render(gadget));
+  }
+
   private RenderingResults logError(Uri gadgetUrl, int statusCode, Throwable t) {
     LOG.info("Failed to render gadget " + gadgetUrl + ": " + t.getMessage());
     return RenderingResults.error(t.getMessage(), statusCode);
@@ -407,18 +407,32 @@ public class RenderingGadgetRewriter implements GadgetRewriter {
    * If preloading fails for any reason, we just output an empty object.
    */
   protected void injectPreloads(Gadget gadget, Node scriptTag) {
+    Text text = scriptTag.getOwnerDocument().createTextNode(
+        getPreloadsScript(gadget.getPreloads()));
+    scriptTag.appendChild(text);
+  }
+
+  /**
+   * @return The statement that hands the preloaded data to gadgets.io. Preloads that failed
+   *     unexpectedly are left out.
+   */
+  static String getPreloadsScript(Collection<PreloadedData> preloads) {
     List<Object> preload = Lists.newArrayList();
-    for (PreloadedData preloaded : gadget.getPreloads()) {
-      try {
-        preload.addAll(preloaded.toJson());
-      } catch (PreloadException pe) {
-        // This will be thrown in the event of some unexpected exception. We can move on.
-        LOG.log(Level.WARNING, "Unexpected error when preloading", pe);
+    // Reading the preloads waits for those still in flight.
+    RenderTrace trace = RenderTrace.current();
+    long start = trace.start();
+    try {
+      for (PreloadedData preloaded : preloads) {
+        try {
+          preload.addAll(preloaded.toJson());
+        } catch (PreloadException pe) {
+          // This will be thrown in the event of some unexpected exception. We can move on.
+          LOG.log(Level.WARNING, "Unexpected error when preloading", pe);
+        }
       }
+    } finally {
+      trace.end("preload", start);
     }
-    Text text = scriptTag.getOwnerDocument().createTextNode("gadgets.io.preloaded_=");
-    text.appendData(JsonSerializer.serialize(preload));
-    text.appendData(";");
-    scriptTag.appendChild(text);
+    return "gadgets.io.preloaded_=" + JsonSerializer.serialize(preload) + ';';
   }
 }
@@ -30,15 +30,17 @@ import javax.servlet.http.HttpServletResponse;
 public final class RenderingResults {
   private final Status status;
   private final String content;
+  private final StreamingContent streamingContent;
   private final String errorMessage;
   private final int httpStatusCode;
 
   private final Uri redirect;
 
-  private RenderingResults(Status status, String content, String errorMessage,
-      int httpStatusCode, Uri redirect) {
+  private RenderingResults(Status status, String content, StreamingContent streamingContent,
+      String errorMessage, int httpStatusCode, Uri redirect) {
     this.status = status;
     this.content = content;
+    this.streamingContent = streamingContent;
     this.errorMessage = errorMessage;
     this.httpStatusCode = httpStatusCode;
     
@@ -46,17 +48,22 @@ public final class RenderingResults {
   }
 
   public static RenderingResults ok(String content) {
-    return new RenderingResults(Status.OK, content, null, HttpServletResponse.SC_OK, null);
+    return new RenderingResults(Status.OK, content, null, null, HttpServletResponse.SC_OK, null);
+  }
+
+  public static RenderingResults ok(StreamingContent content) {
+    Preconditions.checkNotNull(content);
+    return new RenderingResults(Status.OK, null, content, null, HttpServletResponse.SC_OK, null);
   }
 
   public static RenderingResults error(String errorMessage, int httpStatusCode) {
-    return new RenderingResults(Status.ERROR, null, errorMessage, httpStatusCode, null);
+    return new RenderingResults(Status.ERROR, null, null, errorMessage, httpStatusCode, null);
   }
 
   public static RenderingResults mustRedirect(Uri redirect) {
     Preconditions.checkNotNull(redirect);
-    return new RenderingResults(Status.MUST_REDIRECT, null, null, HttpServletResponse.SC_FOUND,
-        redirect);
+    return new RenderingResults(Status.MUST_REDIRECT, null, null, null,
+        HttpServletResponse.SC_FOUND, redirect);
   }
 
   /**
@@ -67,13 +74,26 @@ public final class RenderingResults {
   }
 
   /**
-   * @return The content to render. Only available when status is OK.
+   * @return The content to render. Only available when status is OK. For streamed content this
+   *     blocks until preloading has completed.
    */
   public String getContent() {
     Preconditions.checkState(status == Status.OK, "Only available when status is OK.");
+    if (streamingContent != null) {
+      return streamingContent.toString();
+    }
     return content;
   }
 
+  /**
+   * @return The content to render in parts, or null if it is only available as a whole. Only
+   *     available when status is OK.
+   */
+  public StreamingContent getStreamingContent() {
+    Preconditions.checkState(status == Status.OK, "Only available when status is OK.");
+    return streamingContent;
+  }
+
   /**
    * @return The error message for rendering. Only available when status is ERROR.
    */
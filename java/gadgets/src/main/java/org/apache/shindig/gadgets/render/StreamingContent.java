@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.apache.shindig.gadgets.render;
+
+import org.apache.shindig.gadgets.preload.PreloadedData;
+
+import java.util.Collection;
+
+/**
+ * Gadget output that is sent in parts, so that the browser can start on the head of the document
+ * while preloads are still being fetched.
+ *
+ * The head is everything up to and including the body start tag, with the feature libraries, base
+ * tag and configuration injected by {@link RenderingGadgetRewriter}; its preloaded data is left
+ * empty. {@link #getPreloadScript()} waits for the preloads, and the script it returns replaces
+ * the preloaded data. It goes before the rest of the body, so that scripts in the body see the
+ * same data as they do in output that isn't streamed.
+ */
+public class StreamingContent {
+  private final String head;
+  private final String body;
+  private final Collection<PreloadedData> preloads;
+  private String preloadScript;
+
+  /**
+   * Creates content that can't be split, and is sent as a whole.
+   */
+  public StreamingContent(String content) {
+    this(content, "", null);
+  }
+
+  /**
+   * @param preloads The gadget's preloads, which may still be in flight.
+   */
+  public StreamingContent(String head, String body, Collection<PreloadedData> preloads) {
+    this.head = head;
+    this.body = body;
+    this.preloads = preloads;
+    this.preloadScript = preloads == null ? "" : null;
+  }
+
+  /**
+   * @return The part of the output that can be sent at once.
+   */
+  public String getHead() {
+    return head;
+  }
+
+  /**
+   * Waits for every preload to complete.
+   *
+   * @return The script block with the preloaded data, or an empty string if there is none.
+   */
+  public synchronized String getPreloadScript() {
+    if (preloadScript == null) {
+      preloadScript = "<script>" + RenderingGadgetRewriter.getPreloadsScript(preloads) +
+          "</script>";
+    }
+    return preloadScript;
+  }
+
+  /**
+   * @return The part of the output that follows the preloaded data.
+   */
+  public String getBody() {
+    return body;
+  }
+
+  /**
+   * @return The complete output. Blocks until preloading has completed.
+   */
+  @Override
+  public String toString() {
+    return head + getPreloadScript() + body;
+  }
+}
@@ -27,6 +27,7 @@ import com.google.inject.name.Named;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.shindig.common.uri.Uri;
+import org.apache.shindig.common.util.SubstringMatcher;
 import org.apache.shindig.gadgets.GadgetContext;
 import org.apache.shindig.gadgets.GadgetException;
 import org.apache.shindig.gadgets.GadgetSpecFactory;
@@ -310,6 +311,9 @@ public class ContentRewriterFeature {
         }
         bundle.pattern = Pattern.compile(bundle.param);
       }
+      if (bundle.options == PatternOptions.STRINGS) {
+        bundle.matcher = SubstringMatcher.compile(bundle.matches);
+      }
       return bundle;
     }
     
@@ -318,6 +322,7 @@ public class ContentRewriterFeature {
       private PatternOptions options;
       private Pattern pattern;
       private Collection<String> matches;
+      private SubstringMatcher matcher;
     }
 
     protected boolean shouldInclude(String url) {
@@ -338,12 +343,7 @@ public class ContentRewriterFeature {
         return bundle.pattern.matcher(url).find();
       case STRINGS:
         // "*" is handled by ALL
-        String urllc = url.toLowerCase();
-        for (String substr : bundle.matches) {
-          if (urllc.contains(substr))
-            return true;
-        }
-        return false;
+        return bundle.matcher.matches(url);
       }
       return false;
     }
@@ -20,12 +20,14 @@ package org.apache.shindig.gadgets.rewrite;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.shindig.common.uri.Uri;
+import org.apache.shindig.gadgets.Gadget;
 import org.apache.shindig.gadgets.GadgetContext;
 import org.apache.shindig.gadgets.GadgetException;
 import org.apache.shindig.gadgets.http.HttpRequest;
 import org.apache.shindig.gadgets.http.HttpResponse;
 import org.apache.shindig.gadgets.http.HttpResponseBuilder;
 import org.apache.shindig.gadgets.parse.caja.CajaCssParser;
+import org.apache.shindig.gadgets.parse.caja.CssTemplate;
 import org.apache.shindig.gadgets.uri.ProxyUriManager;
 import org.w3c.dom.Element;
 
@@ -59,6 +61,7 @@ public class CssResponseRewriter implements ResponseRewriter {
   private final CajaCssParser cssParser;
   private final ProxyUriManager proxyUriManager;
   private final ContentRewriterFeature.Factory rewriterFeatureFactory;
+  private CssRewriteCache rewriteCache;
 
   @Inject
   public CssResponseRewriter(CajaCssParser cssParser,
@@ -68,6 +71,11 @@ public class CssResponseRewriter implements ResponseRewriter {
     this.rewriterFeatureFactory = rewriterFeatureFactory;
   }
 
+  @Inject
+  public void setRewriteCache(CssRewriteCache rewriteCache) {
+    this.rewriteCache = rewriteCache;
+  }
+
   public void rewrite(HttpRequest request, HttpResponseBuilder original) throws RewritingException {
     ContentRewriterFeature.Config config = rewriterFeatureFactory.get(request);
     if (!RewriterUtils.isCss(request, original)) {
@@ -99,12 +107,10 @@ public class CssResponseRewriter implements ResponseRewriter {
     try {
       String original = IOUtils.toString(content);
       try {
-        CssTree.StyleSheet stylesheet = cssParser.parseDom(original, source);
-        List<String> stringList = rewrite(stylesheet, source, uriMaker, extractImports,
-            gadgetContext);
-        // Serialize the stylesheet
-        cssParser.serialize(stylesheet, writer);
-        return stringList;
+        CssRewriteCache.Entry rewritten =
+            rewriteCss(original, source, uriMaker, extractImports, gadgetContext);
+        writer.write(rewritten.content);
+        return Lists.newLinkedList(rewritten.imports);
       } catch (GadgetException ge) {
         if (ge.getCause() instanceof ParseException) {
           LOG.log(Level.WARNING,
@@ -133,18 +139,19 @@ public class CssResponseRewriter implements ResponseRewriter {
   public List<String> rewrite(Element styleNode, Uri source, UriMaker uriMaker,
       boolean extractImports, GadgetContext gadgetContext) throws RewritingException {
     try {
-      CssTree.StyleSheet stylesheet =
-        cssParser.parseDom(styleNode.getTextContent(), source);
-      List<String> imports = rewrite(stylesheet, source, uriMaker, extractImports, gadgetContext);
+      CssRewriteCache.Entry rewritten =
+          rewriteCss(styleNode.getTextContent(), source, uriMaker, extractImports, gadgetContext);
+      String content = rewritten.content;
       // Write the rewritten CSS back into the element
-      String content = cssParser.serialize(stylesheet);
       if (StringUtils.isEmpty(content) || StringUtils.isWhitespace(content)) {
         // Remove the owning node
         styleNode.getParentNode().removeChild(styleNode);
       } else {
         styleNode.setTextContent(content);
       }
-      return imports;
+      return Lists.newLinkedList(rewritten.imports);
+    } catch (IOException ioe) {
+      throw new RewritingException(ioe, HttpResponse.SC_INTERNAL_SERVER_ERROR);
     } catch (GadgetException ge) {
       if (ge.getCause() instanceof ParseException) {
         LOG.log(Level.WARNING,
@@ -156,6 +163,40 @@ public class CssResponseRewriter implements ResponseRewriter {
     }
   }
 
+  /**
+   * Rewrite CSS text, or take the result from the rewrite cache.
+   */
+  private CssRewriteCache.Entry rewriteCss(String original, Uri source, UriMaker uriMaker,
+      boolean extractImports, GadgetContext gadgetContext) throws GadgetException, IOException {
+    String key = null;
+    if (rewriteCache != null) {
+      key = rewriteCache.makeKey(original, source, uriMaker.config, gadgetContext,
+          extractImports);
+      if (key != null) {
+        CssRewriteCache.Entry cached = rewriteCache.get(key);
+        if (cached != null) {
+          return cached;
+        }
+      }
+    }
+    StringWriter writer = new StringWriter((original.length() * 110) / 100);
+    List<String> imports;
+    CssTemplate template = cssParser.parseTemplate(original, source);
+    if (template != null) {
+      imports = template.render(writer, uriRewriter(uriMaker, source, gadgetContext),
+          extractImports);
+    } else {
+      CssTree.StyleSheet stylesheet = cssParser.parseDom(original, source);
+      imports = rewrite(stylesheet, source, uriMaker, extractImports, gadgetContext);
+      cssParser.serialize(stylesheet, writer);
+    }
+    CssRewriteCache.Entry rewritten = new CssRewriteCache.Entry(writer.toString(), imports);
+    if (key != null) {
+      rewriteCache.put(key, rewritten);
+    }
+    return rewritten;
+  }
+
   /**
    * Rewrite the CSS DOM in place.
    * @param styleSheet To rewrite
@@ -169,6 +210,7 @@ public class CssResponseRewriter implements ResponseRewriter {
       final UriMaker uriMaker, final boolean extractImports, final GadgetContext gadgetContext) {
     final List<String> imports = Lists.newLinkedList();
     final List<CssTree.UriLiteral> skip = Lists.newLinkedList();
+    final CssTemplate.UriRewriter rewriter = uriRewriter(uriMaker, source, gadgetContext);
 
     styleSheet.acceptPreOrder(new Visitor() {
       public boolean visit(AncestorChain<?> chain) {
@@ -180,14 +222,12 @@ public class CssResponseRewriter implements ResponseRewriter {
             imports.add(uriLiteral.getValue());
             ((AbstractParseTreeNode) chain.getParentNode()).removeChild(chain.node);
           } else {
-            String rewritten = rewriteUri(uriMaker, uriLiteral.getValue(), source, gadgetContext);
-            uriLiteral.setValue(rewritten);
+            uriLiteral.setValue(rewriter.rewrite(uriLiteral.getValue()));
           }
         } else if (chain.node instanceof CssTree.UriLiteral &&
             !skip.contains(chain.node)) {
           CssTree.UriLiteral uriDecl = (CssTree.UriLiteral) chain.node;
-          String rewritten = rewriteUri(uriMaker, uriDecl.getValue(), source, gadgetContext);
-          uriDecl.setValue(rewritten);
+          uriDecl.setValue(rewriter.rewrite(uriDecl.getValue()));
         }
         return true;
       }}, null);
@@ -195,8 +235,23 @@ public class CssResponseRewriter implements ResponseRewriter {
     return imports;
   }
 
+  private static CssTemplate.UriRewriter uriRewriter(final UriMaker uriMaker, final Uri source,
+      final GadgetContext gadgetContext) {
+    return new CssTemplate.UriRewriter() {
+      // Created on first use, and shared by all URLs of the stylesheet.
+      private Gadget gadget;
+
+      public String rewrite(String uri) {
+        if (gadget == null) {
+          gadget = DomWalker.makeGadget(gadgetContext);
+        }
+        return rewriteUri(uriMaker, uri, source, gadget);
+      }
+    };
+  }
+
   private static String rewriteUri(UriMaker uriMaker, String input, Uri context,
-      GadgetContext gadgetContext) {
+      Gadget gadget) {
     Uri inboundUri = null;
     try {
       inboundUri = Uri.parse(input);
@@ -208,7 +263,7 @@ public class CssResponseRewriter implements ResponseRewriter {
       inboundUri = context.resolve(inboundUri);
     }
     ProxyUriManager.ProxyUri proxyUri =
-        new ProxyUriManager.ProxyUri(DomWalker.makeGadget(gadgetContext), inboundUri);
+        new ProxyUriManager.ProxyUri(gadget, inboundUri);
     return uriMaker.make(proxyUri, context).toString();
   }
 
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.apache.shindig.gadgets.rewrite;
+
+import org.apache.shindig.common.cache.Cache;
+import org.apache.shindig.common.cache.CacheProvider;
+import org.apache.shindig.common.uri.Uri;
+import org.apache.shindig.common.util.ContentFingerprint;
+import org.apache.shindig.gadgets.GadgetContext;
+import org.apache.shindig.gadgets.uri.UriCommon.Param;
+
+import com.google.common.collect.ImmutableList;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the output of {@link CssResponseRewriter}, so that a stylesheet or style block is
+ * rewritten once however many proxied responses and rendered gadgets include it.
+ *
+ * The rewritten CSS is fully determined by the CSS source, the URI it is resolved against, the
+ * rewriter config and the parts of the gadget context that are copied into proxied URLs, which
+ * together form the key.
+ */
+@Singleton
+public class CssRewriteCache {
+  public static final String CACHE_NAME = "rewrittenCss";
+
+  private final Cache<String, Entry> cache;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  @Inject
+  public CssRewriteCache(CacheProvider cacheProvider) {
+    this.cache = cacheProvider.createCache(CACHE_NAME);
+  }
+
+  /**
+   * @return The key of a rewrite, or null if rewrites aren't cached.
+   */
+  String makeKey(String content, Uri source, ContentRewriterFeature.Config config,
+      GadgetContext context, boolean extractImports) {
+    if (cache.getCapacity() == 0) {
+      return null;
+    }
+    StringBuilder key = new StringBuilder(256);
+    key.append(ContentFingerprint.of(content))
+       .append(extractImports ? " i " : " r ")
+       .append(config.getFingerprint()).append(' ')
+       .append(context.getContainer()).append(' ')
+       .append(context.getDebug() ? '1' : '0')
+       .append(context.getIgnoreCache() ? '1' : '0').append(' ')
+       .append(context.getParameter(Param.REFRESH.getKey())).append(' ')
+       .append(context.getUrl()).append(' ')
+       .append(source);
+    return key.toString();
+  }
+
+  /**
+   * @return The cached rewrite, or null.
+   */
+  Entry get(String key) {
+    Entry entry = cache.getElement(key);
+    if (entry == null) {
+      misses.incrementAndGet();
+    } else {
+      hits.incrementAndGet();
+    }
+    return entry;
+  }
+
+  void put(String key, Entry entry) {
+    cache.addElement(key, entry);
+  }
+
+  /**
+   * @return The number of rewrites answered from the cache.
+   */
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  /**
+   * @return The number of rewrites that had to be done.
+   */
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  /**
+   * A rewritten stylesheet and the imports extracted from it.
+   */
+  static final class Entry {
+    final String content;
+    final List<String> imports;
+
+    Entry(String content, List<String> imports) {
+      this.content = content;
+      this.imports = ImmutableList.copyOf(imports);
+    }
+  }
+}
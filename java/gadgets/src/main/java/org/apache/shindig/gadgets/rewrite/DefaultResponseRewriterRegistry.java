@@ -21,6 +21,7 @@ import org.apache.shindig.gadgets.http.HttpRequest;
 import org.apache.shindig.gadgets.http.HttpResponse;
 import org.apache.shindig.gadgets.http.HttpResponseBuilder;
 import org.apache.shindig.gadgets.parse.GadgetHtmlParser;
+import org.apache.shindig.gadgets.render.RenderTrace;
 
 import java.util.Collections;
 import java.util.List;
@@ -53,8 +54,14 @@ public class DefaultResponseRewriterRegistry implements ResponseRewriterRegistry
       throws RewritingException {
     HttpResponseBuilder builder = new HttpResponseBuilder(htmlParser, resp);
 
+    RenderTrace trace = RenderTrace.current();
     for (ResponseRewriter rewriter : rewriters) {
-      rewriter.rewrite(req, builder);
+      long start = trace.start();
+      try {
+        rewriter.rewrite(req, builder);
+      } finally {
+        trace.endRewriter(rewriter, start);
+      }
     }
     
     // Returns the original HttpResponse if no changes have been made.
@@ -23,10 +23,12 @@ import com.google.common.collect.Maps;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.shindig.common.util.CharsetUtil;
+import org.apache.shindig.common.util.ContentFingerprint;
 import org.apache.shindig.gadgets.GadgetException;
 import org.apache.shindig.gadgets.http.HttpResponse;
 import org.apache.shindig.gadgets.parse.GadgetHtmlParser;
 import org.apache.shindig.gadgets.parse.HtmlSerialization;
+import org.apache.shindig.gadgets.render.RenderTrace;
 import org.w3c.dom.Document;
 
 import java.io.ByteArrayInputStream;
@@ -58,6 +60,8 @@ public class MutableContent {
 
   private Document document;
   private int numChanges;
+  private String fingerprint;
+  private int fingerprintChanges = -1;
   private final GadgetHtmlParser contentParser;
   private Map<String, Object> pipelinedData;
 
@@ -119,6 +123,23 @@ public class MutableContent {
     return content;
   }
 
+  /**
+   * Retrieves a {@link ContentFingerprint} of the current content, suitable as a cache key for
+   * work derived from it. The value is kept until the content changes, and unchanged content
+   * taken from an {@link HttpResponse} shares the fingerprint memoized on the response.
+   */
+  public String getContentFingerprint() {
+    if (fingerprint == null || fingerprintChanges != numChanges) {
+      if (content == null && contentSource != null) {
+        fingerprint = contentSource.getContentFingerprint();
+      } else {
+        fingerprint = ContentFingerprint.of(getContent());
+      }
+      fingerprintChanges = numChanges;
+    }
+    return fingerprint;
+  }
+
   /**
    * Sets the object's content as a raw String. Note, this operation
    * may clear the document if the content has changed
@@ -236,12 +257,16 @@ public class MutableContent {
     if (document != null) {
       return document;
     }
+    RenderTrace trace = RenderTrace.current();
+    long start = trace.start();
     try {
       document = contentParser.parseDom(getContent());
       document.setUserData(MUTABLE_CONTENT_LISTENER, this, null);
     } catch (GadgetException e) {
       logger.log(Level.WARNING, "Got GadgetException when parsing content", e);
       return null;
+    } finally {
+      trace.end("parse", start);
     }
     return document;
   }
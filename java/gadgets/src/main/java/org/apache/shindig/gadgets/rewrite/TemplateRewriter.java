@@ -79,7 +79,7 @@ public class TemplateRewriter implements GadgetRewriter {
   static final String DISABLE_AUTO_PROCESSING_PARAM = "disableAutoProcessing";
   
   /** Specifies what template libraries to load */
-  static final String REQUIRE_LIBRARY_PARAM = "requireLibrary";
+  public static final String REQUIRE_LIBRARY_PARAM = "requireLibrary";
   
   /** Enable client support? **/
   static final String CLIENT_SUPPORT_PARAM = "client";
@@ -42,12 +42,14 @@ import com.google.caja.reporting.MessageQueue;
 import com.google.caja.reporting.RenderContext;
 import com.google.caja.reporting.SimpleMessageQueue;
 import com.google.caja.reporting.SnippetProducer;
+import com.google.common.base.Charsets;
 import com.google.common.collect.Maps;
 import com.google.inject.Inject;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.shindig.common.cache.Cache;
 import org.apache.shindig.common.cache.CacheProvider;
+import org.apache.shindig.common.util.CharsetUtil;
 import org.apache.shindig.common.util.HashUtil;
 import org.apache.shindig.common.uri.Uri;
 import org.apache.shindig.gadgets.Gadget;
@@ -71,15 +73,20 @@ import java.util.logging.Logger;
 
 /**
  * A GadgetRewriter based on caja technology
+ *
+ * Cajoled documents are cached serialized, as UTF-8 bytes of the final HTML including the
+ * compiled script and compiler messages, and are put back into the content as a string. A
+ * {@link CajoledOutputStore} may be configured as a shared tier under the local cache.
  */
 public class CajaContentRewriter implements GadgetRewriter {
   public static final String CAJOLED_DOCUMENTS = "cajoledDocuments";
 
   private static final Logger LOG = Logger.getLogger(CajaContentRewriter.class.getName());
 
-  private final Cache<String, Element> cajoledCache;
+  private final Cache<String, byte[]> cajoledCache;
   private final RequestPipeline requestPipeline;
   private final HtmlSerializer htmlSerializer;
+  private CajoledOutputStore sharedStore;
 
   @Inject
   public CajaContentRewriter(CacheProvider cacheProvider, RequestPipeline requestPipeline,
@@ -90,6 +97,14 @@ public class CajaContentRewriter implements GadgetRewriter {
     this.htmlSerializer = htmlSerializer;
   }
 
+  /**
+   * Adds a shared tier under the local cache, if the store is enabled.
+   */
+  @Inject(optional = true)
+  public void setSharedStore(CajoledOutputStore sharedStore) {
+    this.sharedStore = sharedStore.isEnabled() ? sharedStore : null;
+  }
+
   public void rewrite(Gadget gadget, MutableContent mc) {
     if (!cajaEnabled(gadget)) return;
 
@@ -99,107 +114,128 @@ public class CajaContentRewriter implements GadgetRewriter {
 
     // Serialize outside of MutableContent, to prevent a re-parse.
     String docContent = HtmlSerialization.serialize(doc);
-    String cacheKey = HashUtil.checksum(docContent.getBytes());
+    // Relative URIs in the output are resolved against the gadget. The key is also used by the
+    // shared store, so it must be the same on every server.
+    String cacheKey =
+        HashUtil.checksum(CharsetUtil.getUtf8Bytes(docContent)) + ' ' + gadgetContext.getUrl();
+
+    if (!debug) {
+      byte[] cached = getCached(cacheKey);
+      if (cached != null) {
+        mc.setContentBytes(cached, Charsets.UTF_8);
+        return;
+      }
+    }
+
     Node root = doc.createDocumentFragment();
     root.appendChild(doc.getDocumentElement());
-
     Node cajoledData = null;
-    if (cajoledCache != null && !debug) {
-      Element cajoledOutput = cajoledCache.getElement(cacheKey);
-      if (cajoledOutput != null) {
-        cajoledData = doc.adoptNode(cajoledOutput);
-        createContainerFor(doc, cajoledData);
-        mc.documentChanged();
+
+    UriFetcher fetcher = makeFetcher(gadget);
+    UriPolicy policy = makePolicy(gadget);
+    URI javaGadgetUri = gadgetContext.getUrl().toJavaUri();
+    MessageQueue mq = new SimpleMessageQueue();
+    MessageContext context = new MessageContext();
+    PluginMeta meta = new PluginMeta(fetcher, policy);
+    PluginCompiler compiler = makePluginCompiler(meta, mq);
+
+    compiler.setMessageContext(context);
+
+    /**
+     * TODO(jasvir): This can provide support for debugging with 
+     * cajita-debugmode.js but cajita-debugmode.js should be loaded
+     * iff url param debug=1
+     * 
+     *      if (debug) {
+     *        compiler.setGoals(compiler.getGoals()
+     *            .without(PipelineMaker.ONE_CAJOLED_MODULE)
+     *            .with(PipelineMaker.ONE_CAJOLED_MODULE_DEBUG));
+     *      }
+     */
+    
+    InputSource is = new InputSource(javaGadgetUri);
+    boolean safe = false;
+
+    compiler.addInput(new Dom(root), javaGadgetUri);
+
+    try {
+      if (!compiler.run()) {
+        throw new GadgetRewriteException("Gadget has compile errors");
       }
-    }
+      StringBuilder scriptBody = new StringBuilder();
+      CajoledModule cajoled = compiler.getJavascript();
+      TokenConsumer tc = debug
+          ? new JsPrettyPrinter(new Concatenator(scriptBody))
+          : new JsMinimalPrinter(new Concatenator(scriptBody));
+      cajoled.render(new RenderContext(tc)
+        .withAsciiOnly(true)
+        .withEmbeddable(true));
 
-    if (cajoledData == null) {
-      UriFetcher fetcher = makeFetcher(gadget);
-      UriPolicy policy = makePolicy(gadget);
-      URI javaGadgetUri = gadgetContext.getUrl().toJavaUri();
-      MessageQueue mq = new SimpleMessageQueue();
-      MessageContext context = new MessageContext();
-      PluginMeta meta = new PluginMeta(fetcher, policy);
-      PluginCompiler compiler = makePluginCompiler(meta, mq);
-
-      compiler.setMessageContext(context);
-
-      /**
-       * TODO(jasvir): This can provide support for debugging with 
-       * cajita-debugmode.js but cajita-debugmode.js should be loaded
-       * iff url param debug=1
-       * 
-       *      if (debug) {
-       *        compiler.setGoals(compiler.getGoals()
-       *            .without(PipelineMaker.ONE_CAJOLED_MODULE)
-       *            .with(PipelineMaker.ONE_CAJOLED_MODULE_DEBUG));
-       *      }
-       */
+      tc.noMoreTokens();
       
-      InputSource is = new InputSource(javaGadgetUri);
-      boolean safe = false;
+      Node html = compiler.getStaticHtml();
 
-      compiler.addInput(new Dom(root), javaGadgetUri);
+      Element script = doc.createElementNS(
+          Namespaces.HTML_NAMESPACE_URI, "script");
+      script.setAttributeNS(
+          Namespaces.HTML_NAMESPACE_URI, "type", "text/javascript");
+      script.appendChild(doc.createTextNode(scriptBody.toString()));
+      
 
-      try {
-        if (!compiler.run()) {
-          throw new GadgetRewriteException("Gadget has compile errors");
-        }
-        StringBuilder scriptBody = new StringBuilder();
-        CajoledModule cajoled = compiler.getJavascript();
-        TokenConsumer tc = debug
-            ? new JsPrettyPrinter(new Concatenator(scriptBody))
-            : new JsMinimalPrinter(new Concatenator(scriptBody));
-        cajoled.render(new RenderContext(tc)
-          .withAsciiOnly(true)
-          .withEmbeddable(true));
-
-        tc.noMoreTokens();
-        
-        Node html = compiler.getStaticHtml();
-
-        Element script = doc.createElementNS(
-            Namespaces.HTML_NAMESPACE_URI, "script");
-        script.setAttributeNS(
-            Namespaces.HTML_NAMESPACE_URI, "type", "text/javascript");
-        script.appendChild(doc.createTextNode(scriptBody.toString()));
-        
-
-        Element cajoledOutput = doc.createElement("div");
-        cajoledOutput.setAttribute("id", "cajoled-output");
-        cajoledOutput.setAttribute("classes", "g___");
-        cajoledOutput.setAttribute("style", "position: relative;");
-
-        cajoledOutput.appendChild(doc.adoptNode(html));
-        cajoledOutput.appendChild(tameCajaClientApi(doc));
-        cajoledOutput.appendChild(doc.adoptNode(script));
-
-        Element messagesNode = formatErrors(doc, is, docContent, mq,
-            /* is invisible */ false);
-        cajoledOutput.appendChild(messagesNode);
-        if (cajoledCache != null && !debug) {
-          cajoledCache.addElement(cacheKey, cajoledOutput);
-        }
-        safe = true;
-        cajoledData = cajoledOutput;
-        createContainerFor(doc, cajoledData);
-        mc.documentChanged();
-        safe = true;
-        HtmlSerialization.attach(doc, htmlSerializer, null);
-      } catch (GadgetRewriteException e) {
-        // There were cajoling errors
-        // Content is only used to produce useful snippets with error messages
-        createContainerFor(doc,
-            formatErrors(doc, is, docContent, mq, true /* visible */));
-        logException(e, mq);
-        safe = true;
-      } finally {
-        if (!safe) {
-          // Fail safe
-          mc.setContent("");
-          return;
-        }
+      Element cajoledOutput = doc.createElement("div");
+      cajoledOutput.setAttribute("id", "cajoled-output");
+      cajoledOutput.setAttribute("classes", "g___");
+      cajoledOutput.setAttribute("style", "position: relative;");
+
+      cajoledOutput.appendChild(doc.adoptNode(html));
+      cajoledOutput.appendChild(tameCajaClientApi(doc));
+      cajoledOutput.appendChild(doc.adoptNode(script));
+
+      Element messagesNode = formatErrors(doc, is, docContent, mq,
+          /* is invisible */ false);
+      cajoledOutput.appendChild(messagesNode);
+      safe = true;
+      cajoledData = cajoledOutput;
+      createContainerFor(doc, cajoledData);
+      mc.documentChanged();
+      safe = true;
+      HtmlSerialization.attach(doc, htmlSerializer, null);
+      if (!debug) {
+        putCached(cacheKey, CharsetUtil.getUtf8Bytes(mc.getContent()));
       }
+    } catch (GadgetRewriteException e) {
+      // There were cajoling errors
+      // Content is only used to produce useful snippets with error messages
+      createContainerFor(doc,
+          formatErrors(doc, is, docContent, mq, true /* visible */));
+      logException(e, mq);
+      safe = true;
+    } finally {
+      if (!safe) {
+        // Fail safe
+        mc.setContent("");
+        return;
+      }
+    }
+  }
+
+  private byte[] getCached(String key) {
+    byte[] cached = cajoledCache != null ? cajoledCache.getElement(key) : null;
+    if (cached == null && sharedStore != null) {
+      cached = sharedStore.get(key);
+      if (cached != null && cajoledCache != null) {
+        cajoledCache.addElement(key, cached);
+      }
+    }
+    return cached;
+  }
+
+  private void putCached(String key, byte[] output) {
+    if (cajoledCache != null) {
+      cajoledCache.addElement(key, output);
+    }
+    if (sharedStore != null) {
+      sharedStore.put(key, output);
     }
   }
 
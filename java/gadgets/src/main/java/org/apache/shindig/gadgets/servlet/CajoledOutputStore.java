@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.apache.shindig.gadgets.servlet;
+
+import com.google.inject.ImplementedBy;
+
+/**
+ * A store for cajoled output shared by the servers of a deployment, under the local cache of
+ * {@link CajaContentRewriter}, so that a gadget is cajoled once rather than once per server.
+ *
+ * Output is the serialized HTML of the cajoled document, including the compiled script and
+ * compiler messages, as UTF-8 bytes.
+ */
+@ImplementedBy(DirectoryCajoledOutputStore.class)
+public interface CajoledOutputStore {
+
+  /**
+   * @return false if the store is not configured, in which case it is not used.
+   */
+  boolean isEnabled();
+
+  /**
+   * @return The output stored for the key, or null.
+   */
+  byte[] get(String key);
+
+  /**
+   * Stores output for the key. Failures are logged and otherwise ignored.
+   */
+  void put(String key, byte[] output);
+}
@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.apache.shindig.gadgets.servlet;
+
+import org.apache.shindig.common.util.BinaryCodec;
+import org.apache.shindig.common.util.CharsetUtil;
+import org.apache.shindig.common.util.HashUtil;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A {@link CajoledOutputStore} that keeps one file per entry in a directory. The directory may
+ * be local, or a file system mounted by every server of a deployment.
+ *
+ * Files are written under a temporary name and renamed into place, so readers never see partial
+ * entries. Entries older than the maximum age are ignored and deleted when read; other cleanup,
+ * such as after upgrading Caja, is left to the operator.
+ *
+ * Each file is:
+ *
+ * int - MAGIC
+ * byte - format version
+ * string - key, checked when the entry is read
+ * bytes - cajoled output
+ */
+@Singleton
+public class DirectoryCajoledOutputStore implements CajoledOutputStore {
+  private static final Logger LOG = Logger.getLogger(DirectoryCajoledOutputStore.class.getName());
+
+  static final int MAGIC = 0x53484341;
+  private static final int VERSION = 1;
+  private static final String SUFFIX = ".cajoled";
+
+  private final File directory;
+  private final long maxAge;
+
+  /**
+   * @param directory Where entries are kept. Empty to disable the store.
+   * @param maxAge How long entries are used, in milliseconds.
+   */
+  @Inject
+  public DirectoryCajoledOutputStore(
+      @Named("shindig.caja.cache.directory") String directory,
+      @Named("shindig.caja.cache.maxAge") long maxAge) {
+    this.directory = StringUtils.isBlank(directory) ? null : new File(directory);
+    this.maxAge = maxAge;
+    if (this.directory != null && !this.directory.isDirectory() && !this.directory.mkdirs()) {
+      LOG.warning("Can't create cajoled output directory " + directory);
+    }
+  }
+
+  public boolean isEnabled() {
+    return directory != null;
+  }
+
+  private File fileFor(String key) {
+    return new File(directory, HashUtil.checksum(CharsetUtil.getUtf8Bytes(key)) + SUFFIX);
+  }
+
+  public byte[] get(String key) {
+    File file = fileFor(key);
+    long modified = file.lastModified();
+    if (modified == 0) {
+      return null;
+    }
+    if (modified + maxAge < System.currentTimeMillis()) {
+      file.delete();
+      return null;
+    }
+    DataInputStream in = null;
+    try {
+      in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+      if (in.readInt() != MAGIC) {
+        throw new IOException("Not a cajoled output file");
+      }
+      BinaryCodec.readVersion(in, VERSION);
+      if (!key.equals(BinaryCodec.readString(in))) {
+        return null;
+      }
+      return BinaryCodec.readBytes(in);
+    } catch (IOException e) {
+      LOG.log(Level.INFO, "Unable to read cajoled output " + file, e);
+      return null;
+    } finally {
+      IOUtils.closeQuietly(in);
+    }
+  }
+
+  public void put(String key, byte[] output) {
+    File temp = null;
+    DataOutputStream out = null;
+    try {
+      temp = File.createTempFile("cajoled", ".tmp", directory);
+      out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+      out.writeInt(MAGIC);
+      out.writeByte(VERSION);
+      BinaryCodec.writeString(out, key);
+      BinaryCodec.writeBytes(out, output);
+      out.close();
+      out = null;
+      File file = fileFor(key);
+      if (!temp.renameTo(file)) {
+        // Some platforms don't replace existing files.
+        file.delete();
+        if (!temp.renameTo(file)) {
+          throw new IOException("Can't rename " + temp + " to " + file);
+        }
+      }
+      temp = null;
+    } catch (IOException e) {
+      LOG.log(Level.INFO, "Unable to store cajoled output", e);
+    } finally {
+      IOUtils.closeQuietly(out);
+      if (temp != null) {
+        temp.delete();
+      }
+    }
+  }
+}
@@ -22,8 +22,11 @@ import org.apache.shindig.common.servlet.InjectedServlet;
 import org.apache.shindig.common.uri.UriBuilder;
 import org.apache.shindig.gadgets.GadgetContext;
 import org.apache.shindig.gadgets.http.HttpRequest;
+import org.apache.shindig.gadgets.render.RenderTimings;
+import org.apache.shindig.gadgets.render.RenderTrace;
 import org.apache.shindig.gadgets.render.Renderer;
 import org.apache.shindig.gadgets.render.RenderingResults;
+import org.apache.shindig.gadgets.render.StreamingContent;
 import org.apache.shindig.gadgets.uri.IframeUriManager;
 import org.apache.shindig.gadgets.uri.UriStatus;
 import org.apache.shindig.gadgets.uri.UriCommon.Param;
@@ -34,6 +37,7 @@ import org.apache.commons.lang.StringEscapeUtils;
 import org.apache.commons.lang.StringUtils;
 
 import java.io.IOException;
+import java.io.PrintWriter;
 import java.util.logging.Logger;
 
 import javax.servlet.ServletConfig;
@@ -54,6 +58,7 @@ public class GadgetRenderingServlet extends InjectedServlet {
 
   private transient Renderer renderer;
   private transient IframeUriManager iframeUriManager;
+  private transient RenderTimings renderTimings;
 
   @Inject
   public void setRenderer(Renderer renderer) {
@@ -67,6 +72,12 @@ public class GadgetRenderingServlet extends InjectedServlet {
     this.iframeUriManager = iframeUriManager;
   }
 
+  @Inject
+  public void setRenderTimings(RenderTimings renderTimings) {
+    checkInitialized();
+    this.renderTimings = renderTimings;
+  }
+
   @Override
   protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
     // If an If-Modified-Since header is ever provided, we always say
@@ -101,10 +112,28 @@ public class GadgetRenderingServlet extends InjectedServlet {
     resp.setCharacterEncoding("UTF-8");
 
     GadgetContext context = new HttpGadgetContext(req);
-    RenderingResults results = renderer.render(context);
+    RenderTrace trace = renderTimings == null ? null : renderTimings.startTrace();
+    try {
+      RenderingResults results = renderer.render(context);
+      if (trace != null && renderTimings.isServerTimingEnabled()) {
+        // Only covers the phases that are complete before any output is written.
+        resp.setHeader("Server-Timing", trace.toServerTiming());
+      }
 
-    // process the rendering results
-    postGadgetRendering(new PostGadgetRenderingParams(req, resp, urlstatus, context, results));
+      // process the rendering results
+      long start = trace == null ? 0 : trace.start();
+      try {
+        postGadgetRendering(new PostGadgetRenderingParams(req, resp, urlstatus, context, results));
+      } finally {
+        if (trace != null) {
+          trace.end("output", start);
+        }
+      }
+    } finally {
+      if (trace != null) {
+        renderTimings.finishTrace(trace, context.getUrl());
+      }
+    }
   }
 
   /**
@@ -151,7 +180,18 @@ public class GadgetRenderingServlet extends InjectedServlet {
       }
       HttpUtil.setCachingHeaders(resp, ttl, true);
     }
-    resp.getWriter().print(params.getResults().getContent());
+    StreamingContent streamingContent = params.getResults().getStreamingContent();
+    if (streamingContent == null) {
+      resp.getWriter().print(params.getResults().getContent());
+      return;
+    }
+    // Send the head at once, so that the browser can fetch the feature libraries while the
+    // preloads are fetched here.
+    PrintWriter writer = resp.getWriter();
+    writer.print(streamingContent.getHead());
+    writer.flush();
+    writer.print(streamingContent.getPreloadScript());
+    writer.print(streamingContent.getBody());
   }
 
   protected void onErrorRenderingResultsStatus(PostGadgetRenderingParams params)
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.apache.shindig.gadgets.servlet;
+
+import com.google.inject.Inject;
+
+import org.apache.shindig.common.servlet.HttpUtil;
+import org.apache.shindig.common.servlet.InjectedServlet;
+import org.apache.shindig.common.util.LatencyHistogram;
+import org.apache.shindig.gadgets.http.HttpMetrics;
+import org.apache.shindig.gadgets.http.HttpMetrics.CacheLookup;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Admin endpoint for the request pipeline metrics.
+ *
+ * GET reports the outcomes of cache lookups, the fetch latencies by origin host and status
+ * class, the bytes fetched, the time spent rewriting responses before caching them and the state
+ * of the connection pool. POST clears the counters and histograms.
+ *
+ * The report reveals which hosts are fetched. The default web.xml maps this servlet behind the
+ * admin filter, for POST as well as GET.
+ */
+public class HttpMetricsServlet extends InjectedServlet {
+
+  private static final long serialVersionUID = -4712032695106428715L;
+
+  private transient HttpMetrics metrics;
+
+  @Inject
+  public void setMetrics(HttpMetrics metrics) {
+    checkInitialized();
+    this.metrics = metrics;
+  }
+
+  @Override
+  protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+    JSONObject json = new JSONObject();
+    try {
+      JSONObject cache = new JSONObject();
+      for (CacheLookup lookup : CacheLookup.values()) {
+        cache.put(lookup.name().toLowerCase(), metrics.getCacheLookups(lookup));
+      }
+      cache.put("hitRate", metrics.getCacheHitRate());
+
+      JSONObject hosts = new JSONObject();
+      for (Map.Entry<String, Map<String, LatencyHistogram>> host :
+          metrics.getFetchLatencies().entrySet()) {
+        JSONObject statuses = new JSONObject();
+        for (Map.Entry<String, LatencyHistogram> status : host.getValue().entrySet()) {
+          statuses.put(status.getKey(), RenderTimingServlet.toJson(status.getValue()));
+        }
+        hosts.put(host.getKey(), statuses);
+      }
+
+      JSONObject pool = new JSONObject()
+          .put("active", metrics.getActiveFetches())
+          .put("pooled", metrics.getPooledConnections())
+          .put("max", metrics.getMaxConnections())
+          .put("timeouts", metrics.getPoolTimeouts());
+
+      json.put("cache", cache)
+          .put("fetches", metrics.getFetches())
+          .put("fetchErrors", metrics.getFetchErrors())
+          .put("hosts", hosts)
+          .put("bytesIn", metrics.getBytesIn())
+          .put("bytesOut", metrics.getBytesOut())
+          .put("rewrite", RenderTimingServlet.toJson(metrics.getRewriteLatency()))
+          .put("connectionPool", pool);
+    } catch (JSONException e) {
+      // Only thrown for non-finite numbers.
+      throw new IOException(e.getMessage());
+    }
+    HttpUtil.setNoCache(resp);
+    resp.setContentType("application/json; charset=utf-8");
+    resp.getWriter().write(json.toString());
+  }
+
+  @Override
+  protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+    metrics.reset();
+    HttpUtil.setNoCache(resp);
+    resp.setStatus(HttpServletResponse.SC_NO_CONTENT);
+  }
+}
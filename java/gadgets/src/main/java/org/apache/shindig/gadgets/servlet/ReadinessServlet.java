@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.gadgets.servlet;
+
+import com.google.inject.Inject;
+
+import org.apache.shindig.common.servlet.HttpUtil;
+import org.apache.shindig.common.servlet.InjectedServlet;
+import org.apache.shindig.gadgets.process.StartupWarmup;
+
+import java.io.IOException;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Readiness check for load balancers: GET answers 503 until the startup warm-up has finished,
+ * and 200 afterwards. Unlike {@link WarmupServlet} it reports nothing else and changes nothing,
+ * so it is mapped without the admin filter.
+ */
+public class ReadinessServlet extends InjectedServlet {
+
+  private static final long serialVersionUID = 4718214626379580514L;
+
+  private transient StartupWarmup startupWarmup;
+
+  @Inject
+  public void setStartupWarmup(StartupWarmup startupWarmup) {
+    checkInitialized();
+    this.startupWarmup = startupWarmup;
+  }
+
+  @Override
+  protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+    boolean ready = startupWarmup.isComplete();
+    resp.setStatus(ready ? HttpServletResponse.SC_OK : HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+    HttpUtil.setNoCache(resp);
+    resp.setContentType("text/plain; charset=utf-8");
+    resp.getWriter().write(ready ? "ready" : "warming up");
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.apache.shindig.gadgets.servlet;
+
+import com.google.inject.Inject;
+
+import org.apache.shindig.common.servlet.HttpUtil;
+import org.apache.shindig.common.servlet.InjectedServlet;
+import org.apache.shindig.common.util.LatencyHistogram;
+import org.apache.shindig.gadgets.render.RenderTimings;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Admin endpoint for the render timings of sampled gadget renderings.
+ *
+ * GET reports, for each gadget url and each rendering phase, the number of sampled renderings and
+ * the mean, median, 90th and 99th percentile and maximum time in milliseconds. A url parameter
+ * limits the report to one gadget. POST discards the timings collected so far.
+ *
+ * The report reveals which gadgets are rendered. The default web.xml maps this servlet behind the
+ * admin filter, for POST as well as GET.
+ */
+public class RenderTimingServlet extends InjectedServlet {
+
+  private static final long serialVersionUID = 2946209871551409373L;
+
+  static final String URL_PARAM = "url";
+
+  private transient RenderTimings renderTimings;
+
+  @Inject
+  public void setRenderTimings(RenderTimings renderTimings) {
+    checkInitialized();
+    this.renderTimings = renderTimings;
+  }
+
+  @Override
+  protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+    String url = req.getParameter(URL_PARAM);
+    JSONObject json = new JSONObject();
+    try {
+      JSONObject gadgets = new JSONObject();
+      for (Map.Entry<String, Map<String, LatencyHistogram>> gadget :
+          renderTimings.getTimings().entrySet()) {
+        if (url != null && !url.equals(gadget.getKey())) {
+          continue;
+        }
+        JSONObject phases = new JSONObject();
+        for (Map.Entry<String, LatencyHistogram> phase : gadget.getValue().entrySet()) {
+          phases.put(phase.getKey(), toJson(phase.getValue()));
+        }
+        gadgets.put(gadget.getKey(), phases);
+      }
+      json.put("sampleRate", renderTimings.getSampleRate())
+          .put("gadgets", gadgets);
+    } catch (JSONException e) {
+      // Only thrown for non-finite numbers.
+      throw new IOException(e.getMessage());
+    }
+    HttpUtil.setNoCache(resp);
+    resp.setContentType("application/json; charset=utf-8");
+    resp.getWriter().write(json.toString());
+  }
+
+  @Override
+  protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+    renderTimings.reset();
+    HttpUtil.setNoCache(resp);
+    resp.setStatus(HttpServletResponse.SC_NO_CONTENT);
+  }
+
+  static JSONObject toJson(LatencyHistogram histogram) throws JSONException {
+    return new JSONObject()
+        .put("count", histogram.getCount())
+        .put("meanMs", toMillis(histogram.getMeanNanos()))
+        .put("p50Ms", toMillis(histogram.getPercentileNanos(50)))
+        .put("p90Ms", toMillis(histogram.getPercentileNanos(90)))
+        .put("p99Ms", toMillis(histogram.getPercentileNanos(99)))
+        .put("maxMs", toMillis(histogram.getMaxNanos()));
+  }
+
+  private static double toMillis(long nanos) {
+    // Rounded to microseconds.
+    return Math.round(nanos / 1000.0) / 1000.0;
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.gadgets.servlet;
+
+import com.google.common.collect.Lists;
+import com.google.inject.Inject;
+import com.google.inject.name.Named;
+
+import org.apache.shindig.common.servlet.HttpUtil;
+import org.apache.shindig.common.servlet.InjectedServlet;
+import org.apache.shindig.common.uri.Uri;
+import org.apache.shindig.gadgets.process.StartupWarmup;
+import org.apache.shindig.gadgets.process.WarmupService;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Admin endpoint for the warm-up service.
+ *
+ * GET reports the progress of the current warm-up job as JSON, and answers 503 until the startup
+ * warm-up has finished. POST starts a new job for the gadget urls given as url parameters, or one
+ * per line in a text/plain body, at most shindig.warmup.max-urls of them per job.
+ *
+ * The default web.xml maps this servlet behind the admin filter, since it makes the server fetch
+ * any url it is given. Load balancers use {@link ReadinessServlet} instead, which needs no key.
+ */
+public class WarmupServlet extends InjectedServlet {
+
+  private static final long serialVersionUID = -6328725412391274527L;
+
+  static final String URL_PARAM = "url";
+  private static final int DEFAULT_MAX_URLS = 100;
+
+  private transient WarmupService warmupService;
+  private transient StartupWarmup startupWarmup;
+  private int maxUrls = DEFAULT_MAX_URLS;
+
+  @Inject
+  public void setWarmupService(WarmupService warmupService) {
+    checkInitialized();
+    this.warmupService = warmupService;
+  }
+
+  @Inject
+  public void setStartupWarmup(StartupWarmup startupWarmup) {
+    checkInitialized();
+    this.startupWarmup = startupWarmup;
+  }
+
+  @Inject(optional = true)
+  public void setMaxUrls(@Named("shindig.warmup.max-urls") int maxUrls) {
+    checkInitialized();
+    this.maxUrls = maxUrls;
+  }
+
+  @Override
+  protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+    resp.setStatus(startupWarmup.isComplete() ?
+        HttpServletResponse.SC_OK : HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+    writeJob(resp, warmupService.getCurrentJob());
+  }
+
+  @Override
+  protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+    List<Uri> urls = Lists.newArrayList();
+    try {
+      String[] params = req.getParameterValues(URL_PARAM);
+      if (params != null) {
+        for (String param : params) {
+          urls.add(Uri.parse(param.trim()));
+        }
+      } else {
+        // One more than allowed, so that too long lists are refused rather than truncated.
+        urls.addAll(WarmupService.readUrls(req.getReader(), maxUrls + 1));
+      }
+    } catch (IllegalArgumentException e) {
+      resp.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+      return;
+    }
+    if (urls.isEmpty()) {
+      resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "No gadget urls given");
+      return;
+    }
+    if (urls.size() > maxUrls) {
+      resp.sendError(HttpServletResponse.SC_BAD_REQUEST,
+          "At most " + maxUrls + " gadget urls may be given");
+      return;
+    }
+
+    WarmupService.Job job;
+    try {
+      job = warmupService.start(urls);
+    } catch (IllegalStateException e) {
+      resp.sendError(HttpServletResponse.SC_CONFLICT, e.getMessage());
+      return;
+    }
+    resp.setStatus(HttpServletResponse.SC_ACCEPTED);
+    writeJob(resp, job);
+  }
+
+  private void writeJob(HttpServletResponse resp, WarmupService.Job job) throws IOException {
+    JSONObject json = new JSONObject();
+    try {
+      if (job != null) {
+        json.put("total", job.getTotal())
+            .put("succeeded", job.getSucceeded())
+            .put("failed", job.getFailed())
+            .put("done", job.isDone())
+            .put("elapsedMs", job.getElapsedMs());
+      }
+    } catch (JSONException e) {
+      // Only thrown for non-finite numbers.
+      throw new IOException(e.getMessage());
+    }
+    HttpUtil.setNoCache(resp);
+    resp.setContentType("application/json; charset=utf-8");
+    resp.getWriter().write(json.toString());
+  }
+}
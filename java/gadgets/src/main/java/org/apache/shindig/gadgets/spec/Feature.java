@@ -125,7 +125,7 @@ public class Feature {
       throw new SpecParserException(
           (required ? "Require" : "Optional") +"@feature is required.");
     }
-    this.name = name;
+    this.name = SpecInterner.intern(name);
     NodeList children = feature.getElementsByTagName("Param");
     if (children.getLength() > 0) {
       ImmutableMultimap.Builder<String, String> params = ImmutableMultimap.builder();
@@ -136,7 +136,7 @@ public class Feature {
         if (paramName == null) {
           throw new SpecParserException("Param@name is required");
         }
-        params.put(paramName, param.getTextContent());
+        params.put(SpecInterner.intern(paramName), param.getTextContent());
       }
       this.params = params.build();
     } else {
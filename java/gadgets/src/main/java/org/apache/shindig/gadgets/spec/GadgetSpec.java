@@ -32,6 +32,9 @@ import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
+import java.io.NotSerializableException;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -59,7 +62,9 @@ import java.util.Map;
  *
  * @see <a href="http://www.opensocial.org/Technical-Resources/opensocial-spec-v08/gadget-spec">gadgets spec</a>
  */
-public class GadgetSpec {
+public class GadgetSpec implements Serializable {
+  private static final long serialVersionUID = 1L;
+
   public static final String DEFAULT_VIEW = "default";
   public static final Locale DEFAULT_LOCALE = new Locale("all", "ALL");
 
@@ -77,6 +82,7 @@ public class GadgetSpec {
 
     // This might not be good enough; should we take message bundle changes into account?
     this.checksum = HashUtil.checksum(original.getBytes());
+    this.source = original;
 
     NodeList children = doc.getChildNodes();
 
@@ -104,7 +110,7 @@ public class GadgetSpec {
       if ("Content".equals(name)) {
         String viewNames = XmlUtil.getAttribute(element, "view", "default");
         for (String view : StringUtils.split(viewNames, ',')) {
-          view = view.trim();
+          view = SpecInterner.intern(view.trim());
           List<Element> viewElements = views.get(view);
           if (viewElements == null) {
             viewElements = Lists.newLinkedList();
@@ -141,6 +147,23 @@ public class GadgetSpec {
     this(url, XmlUtil.parseSilent(xml), xml);
   }
 
+  /**
+   * Creates a spec for a different url that shares the parsed content of an existing spec. Only
+   * valid when the source of both specs is identical and relative references in it resolve the
+   * same way against both urls.
+   *
+   * @param spec The spec to share content with.
+   * @param url The url the new spec was retrieved from.
+   */
+  public GadgetSpec(GadgetSpec spec, Uri url) {
+    this.url = url;
+    checksum = spec.checksum;
+    source = spec.source;
+    modulePrefs = spec.modulePrefs;
+    userPrefs = spec.userPrefs;
+    views = spec.views;
+  }
+
   /**
    * Constructs a GadgetSpec for substitute calls.
    * @param spec
@@ -148,9 +171,19 @@ public class GadgetSpec {
   private GadgetSpec(GadgetSpec spec) {
     url = spec.url;
     checksum = spec.checksum;
+    source = null;
     attributes.putAll(spec.attributes);
   }
 
+  /**
+   * The unparsed XML, from which the spec is rebuilt when it is deserialized. Null for specs with
+   * substitutions applied, which are not serializable.
+   */
+  private final String source;
+  String getSource() {
+    return source;
+  }
+
   /**
    * The url for this gadget spec.
    */
@@ -267,4 +300,11 @@ public class GadgetSpec {
     buf.append("</Module>");
     return buf.toString();
   }
+
+  private Object writeReplace() throws ObjectStreamException {
+    if (source == null) {
+      throw new NotSerializableException("Substituted gadget spec for " + url);
+    }
+    return new SpecCodec.SerializedForm(this);
+  }
 }
@@ -21,6 +21,7 @@ import org.apache.shindig.common.JsonSerializer;
 import org.apache.shindig.common.xml.XmlException;
 import org.apache.shindig.common.xml.XmlUtil;
 import org.apache.shindig.gadgets.parse.DefaultHtmlSerializer;
+import org.apache.shindig.gadgets.variables.Substitutions;
 
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
@@ -30,13 +31,16 @@ import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
 import java.io.IOException;
+import java.io.Serializable;
 import java.io.StringWriter;
 import java.util.Map;
 
 /**
  * Represents a messagebundle structure.
  */
-public class MessageBundle {
+public class MessageBundle implements Serializable {
+  private static final long serialVersionUID = 1L;
+
   public static final MessageBundle EMPTY = new MessageBundle();
 
   private static final DefaultHtmlSerializer htmlSerializer = new DefaultHtmlSerializer();
@@ -46,6 +50,9 @@ public class MessageBundle {
   /* lazily created cache of the json-encoded form of the bundle */
   private String jsonString;
 
+  /* lazily created cache of the messages keyed by their __MSG_ placeholder */
+  private Map<String, String> placeholders;
+
    /**
    * Constructs a message bundle from input xml (fetched from an external file).
    *
@@ -102,9 +109,18 @@ public class MessageBundle {
     languageDirection = dir != null ? dir : "ltr";
   }
 
+  /**
+   * Constructs a message bundle from deserialized content.
+   */
+  MessageBundle(Map<String, String> map, String languageDirection) {
+    messages = ImmutableMap.copyOf(map);
+    this.languageDirection = languageDirection;
+  }
+
   private MessageBundle() {
     this.messages = ImmutableMap.of();
     jsonString = "{}";
+    placeholders = ImmutableMap.of();
     languageDirection = "ltr";
   }
 
@@ -135,6 +151,17 @@ public class MessageBundle {
     return jsonString;
   }
 
+  /**
+   * @return The messages keyed by their full hangman placeholder, ready for
+   *     {@link Substitutions#addPlaceholders(Map)}.
+   */
+  public Map<String, String> getPlaceholders() {
+    if (placeholders == null) {
+      placeholders = Substitutions.toPlaceholders(Substitutions.Type.MESSAGE, messages);
+    }
+    return placeholders;
+  }
+
   /**
    * Extracts messages from an element.
    * @param element Xml dom containing mesage bundle nodes
@@ -187,4 +214,8 @@ public class MessageBundle {
     buf.append("</messagebundle>");
     return buf.toString();
   }
+
+  private Object writeReplace() {
+    return new SpecCodec.SerializedForm(this);
+  }
 }
@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.apache.shindig.gadgets.spec;
+
+import org.apache.shindig.common.uri.Uri;
+import org.apache.shindig.common.util.BinaryCodec;
+import org.apache.shindig.common.xml.XmlException;
+import org.apache.shindig.common.xml.XmlUtil;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Map;
+
+/**
+ * Versioned binary forms of the parsed {@link GadgetSpec} and {@link MessageBundle} values kept
+ * in caches, used in place of their Java serialization.
+ *
+ * A gadget spec is written as its url and unparsed XML, and parsed again when read; its parsed
+ * form is a DOM-derived object graph that is larger than its source. A message bundle is written
+ * as its language direction and its messages.
+ */
+public final class SpecCodec {
+  private SpecCodec() {}
+
+  static final int VERSION = 1;
+
+  private static final int GADGET_SPEC = 1;
+  private static final int MESSAGE_BUNDLE = 2;
+
+  /**
+   * Writes a gadget spec.
+   *
+   * @throws IOException If the spec has substitutions applied.
+   */
+  public static void write(DataOutput out, GadgetSpec spec) throws IOException {
+    String source = spec.getSource();
+    if (source == null) {
+      throw new IOException("Substituted gadget spec for " + spec.getUrl());
+    }
+    out.writeByte(VERSION);
+    BinaryCodec.writeString(out, spec.getUrl().toString());
+    BinaryCodec.writeString(out, source);
+  }
+
+  /**
+   * Reads a gadget spec written by {@link #write(DataOutput, GadgetSpec)}.
+   */
+  public static GadgetSpec readGadgetSpec(DataInput in) throws IOException {
+    BinaryCodec.readVersion(in, VERSION);
+    Uri url = Uri.parse(BinaryCodec.readString(in));
+    String source = BinaryCodec.readString(in);
+    try {
+      return new GadgetSpec(url, XmlUtil.parse(source), source);
+    } catch (XmlException e) {
+      throw new IOException("Malformed gadget spec for " + url + ": " + e.getMessage());
+    } catch (SpecParserException e) {
+      throw new IOException("Invalid gadget spec for " + url + ": " + e.getMessage());
+    }
+  }
+
+  /**
+   * Writes a message bundle.
+   */
+  public static void write(DataOutput out, MessageBundle bundle) throws IOException {
+    out.writeByte(VERSION);
+    BinaryCodec.writeString(out, bundle.getLanguageDirection());
+    BinaryCodec.writeStringMap(out, bundle.getMessages());
+  }
+
+  /**
+   * Reads a message bundle written by {@link #write(DataOutput, MessageBundle)}. A bundle that
+   * can't be told apart from {@link MessageBundle#EMPTY} is read as it, since merging bundles
+   * only skips the language direction of that instance.
+   */
+  public static MessageBundle readMessageBundle(DataInput in) throws IOException {
+    BinaryCodec.readVersion(in, VERSION);
+    String languageDirection = BinaryCodec.readString(in);
+    Map<String, String> messages = BinaryCodec.readStringMap(in);
+    if (messages.isEmpty() && "ltr".equals(languageDirection)) {
+      return MessageBundle.EMPTY;
+    }
+    return new MessageBundle(messages, languageDirection);
+  }
+
+  /**
+   * The serialized form of gadget specs and message bundles.
+   */
+  public static final class SerializedForm implements Externalizable {
+    private static final long serialVersionUID = 1L;
+
+    private Object value;
+
+    public SerializedForm() {}
+
+    SerializedForm(Object value) {
+      this.value = value;
+    }
+
+    public void writeExternal(ObjectOutput out) throws IOException {
+      if (value instanceof GadgetSpec) {
+        out.writeByte(GADGET_SPEC);
+        write(out, (GadgetSpec) value);
+      } else {
+        out.writeByte(MESSAGE_BUNDLE);
+        write(out, (MessageBundle) value);
+      }
+    }
+
+    public void readExternal(ObjectInput in) throws IOException {
+      int type = in.readUnsignedByte();
+      if (type == GADGET_SPEC) {
+        value = readGadgetSpec(in);
+      } else if (type == MESSAGE_BUNDLE) {
+        value = readMessageBundle(in);
+      } else {
+        throw new IOException("Unknown serialized spec type " + type);
+      }
+    }
+
+    private Object readResolve() {
+      return value;
+    }
+  }
+}
@@ -0,0 +1,37 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.gadgets.spec;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+/**
+ * Shares the short identifiers that repeat across gadget specs, such as feature, view, param and
+ * pref names, so that every cached spec doesn't hold its own copy. Entries are weakly held and
+ * disappear once no spec refers to them.
+ */
+final class SpecInterner {
+  private static final Interner<String> INTERNER = Interners.newWeakInterner();
+
+  private SpecInterner() {}
+
+  static String intern(String value) {
+    return value == null ? null : INTERNER.intern(value);
+  }
+}
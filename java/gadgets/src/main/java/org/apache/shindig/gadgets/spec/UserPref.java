@@ -170,7 +170,7 @@ public class UserPref {
     if (name == null) {
       throw new SpecParserException("UserPref@name is required.");
     }
-    this.name = name;
+    this.name = SpecInterner.intern(name);
 
     displayName = XmlUtil.getAttribute(element, "display_name", name);
     defaultValue = XmlUtil.getAttribute(element, "default_value", "");
@@ -25,6 +25,9 @@ import org.apache.shindig.gadgets.features.FeatureResource;
 import org.apache.shindig.gadgets.uri.IframeUriManager.Versioner;
 
 import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import java.util.Set;
 
 /**
  * Simple, but naive, implementation of an IFRAME version generator that
@@ -41,17 +44,33 @@ import com.google.inject.Inject;
  * referenced gadget from the GadgetSpecFactory. Such an implementation's
  * performance is highly installation-specific, however, so is left as
  * an exercise to integrators to achieve effectively.
+ *
+ * The checksum is recomputed whenever the feature registry reloads changed features.
  */
-public class AllJsIframeVersioner implements Versioner {
-  private final String allJsChecksum;
+@Singleton
+public class AllJsIframeVersioner implements Versioner, FeatureRegistry.FeatureObserver {
+  private volatile String allJsChecksum;
   
   @Inject
   public AllJsIframeVersioner(FeatureRegistry registry) {
+    allJsChecksum = computeChecksum(registry);
+  }
+
+  @Inject
+  public void observeFeatureChanges(FeatureRegistry registry) {
+    registry.addFeatureObserver(this);
+  }
+
+  public void featuresChanged(FeatureRegistry registry, Set<String> changed) {
+    allJsChecksum = computeChecksum(registry);
+  }
+
+  private static String computeChecksum(FeatureRegistry registry) {
     StringBuilder jsBuf = new StringBuilder();
     for (FeatureResource resource : registry.getAllFeatures()) {
       jsBuf.append(resource.getContent()).append(resource.getDebugContent());
     }
-    allJsChecksum = HashUtil.checksum(jsBuf.toString().getBytes());
+    return HashUtil.checksum(jsBuf.toString().getBytes());
   }
 
   public String version(Uri gadgetUri, String container) {
@@ -21,17 +21,22 @@ package org.apache.shindig.gadgets.uri;
 import com.google.common.collect.Lists;
 import com.google.inject.ImplementedBy;
 import com.google.inject.Inject;
+import com.google.inject.Singleton;
 import com.google.inject.name.Named;
 
 import org.apache.shindig.auth.SecurityToken;
 import org.apache.shindig.auth.SecurityTokenCodec;
 import org.apache.shindig.auth.SecurityTokenException;
+import org.apache.shindig.common.cache.Cache;
+import org.apache.shindig.common.cache.CacheProvider;
 import org.apache.shindig.common.uri.Uri;
 import org.apache.shindig.common.uri.UriBuilder;
+import org.apache.shindig.config.AbstractContainerConfig;
 import org.apache.shindig.config.ContainerConfig;
 import org.apache.shindig.gadgets.Gadget;
 import org.apache.shindig.gadgets.GadgetContext;
 import org.apache.shindig.gadgets.UserPrefs;
+import org.apache.shindig.gadgets.features.FeatureRegistry;
 import org.apache.shindig.gadgets.spec.UserPref;
 import org.apache.shindig.gadgets.spec.View;
 import org.apache.shindig.gadgets.uri.UriCommon.Param;
@@ -39,11 +44,21 @@ import org.apache.shindig.gadgets.uri.UriCommon.Param;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Default implementetion of an IframeUriManager which references the /ifr endpoint.
+ *
+ * The parts of the URI that only depend on the gadget spec, container and view - the base path,
+ * the locked and unlocked hosts and the version - are cached per spec, container and view when a
+ * {@link CacheProvider} is injected, so rendering URIs for a page of gadgets doesn't repeat the
+ * config lookups, locked-domain hashing and versioning. Cached parts are discarded whenever the
+ * container config or the feature registry is reloaded.
  */
-public class DefaultIframeUriManager implements IframeUriManager {
+@Singleton
+public class DefaultIframeUriManager implements IframeUriManager,
+    ContainerConfig.ConfigObserver, FeatureRegistry.FeatureObserver {
   // By default, fills in values that could otherwise be templated for client population.
   private static final boolean DEFAULT_USE_TEMPLATES = false;
   static final String IFRAME_BASE_PATH_KEY = "gadgets.uri.iframe.basePath";
@@ -53,6 +68,7 @@ public class DefaultIframeUriManager implements IframeUriManager {
   public static final String SECURITY_TOKEN_ALWAYS_KEY = "gadgets.uri.iframe.alwaysAppendSecurityToken";
   public static final String LOCKED_DOMAIN_FEATURE_NAME = "locked-domain";
   public static final String SECURITY_TOKEN_FEATURE_NAME = "security-token";
+  public static final String CACHE_NAME = "iframeUriPrefixes";
   private boolean ldEnabled = true;
   private TemplatingSignal tplSignal = null;
   private Versioner versioner = null;
@@ -61,7 +77,10 @@ public class DefaultIframeUriManager implements IframeUriManager {
   private final LockedDomainPrefixGenerator ldGen;
   private final SecurityTokenCodec securityTokenCodec;
 
-  private final List<String> ldSuffixes;
+  private volatile List<String> ldSuffixes;
+  private Cache<String, Prefix> prefixCache = null;
+  // Incremented on every reload; cached prefixes of earlier generations are ignored.
+  private final AtomicInteger generation = new AtomicInteger();
 
   @Inject
   public DefaultIframeUriManager(ContainerConfig config,
@@ -70,13 +89,39 @@ public class DefaultIframeUriManager implements IframeUriManager {
     this.config = config;
     this.ldGen = ldGen;
     this.securityTokenCodec = securityTokenCodec;
-    
+    this.ldSuffixes = loadLockedDomainSuffixes();
+  }
+
+  private List<String> loadLockedDomainSuffixes() {
     Collection<String> containers = config.getContainers();
     List<String> ldSuffixes = Lists.newArrayListWithCapacity(containers.size());
     for (String container : containers) {
       ldSuffixes.add(getReqVal(container, LOCKED_DOMAIN_SUFFIX_KEY));
     }
-    this.ldSuffixes = Collections.unmodifiableList(ldSuffixes);
+    return Collections.unmodifiableList(ldSuffixes);
+  }
+
+  @Inject(optional = true)
+  public void setCacheProvider(CacheProvider cacheProvider) {
+    prefixCache = cacheProvider.createCache(CACHE_NAME);
+  }
+
+  @Inject
+  public void observeChanges(FeatureRegistry registry) {
+    if (config instanceof AbstractContainerConfig) {
+      ((AbstractContainerConfig) config).addConfigObserver(this);
+    }
+    registry.addFeatureObserver(this);
+  }
+
+  public void containersChanged(ContainerConfig config, Collection<String> changed) {
+    generation.incrementAndGet();
+    ldSuffixes = loadLockedDomainSuffixes();
+  }
+
+  public void featuresChanged(FeatureRegistry registry, Set<String> changed) {
+    // Features decide whether a gadget is locked, and may feed the versioner.
+    generation.incrementAndGet();
   }
   
   @Inject(optional = true)
@@ -101,6 +146,7 @@ public class DefaultIframeUriManager implements IframeUriManager {
     
     GadgetContext context = gadget.getContext();
     String container = context.getContainer();
+    Prefix prefix = getPrefix(gadget, view, container);
     
     if (View.ContentType.URL.equals(view.getType())) {
       // A. type=url. Initializes all except standard parameters.
@@ -110,15 +156,14 @@ public class DefaultIframeUriManager implements IframeUriManager {
       uri = new UriBuilder();
 
       // 1. Set base path.
-      uri.setPath(getReqVal(container, IFRAME_BASE_PATH_KEY));
+      uri.setPath(prefix.getPath(container));
     
       // 2. Set host/authority.
       String host;
-      if (usingLockedDomain(gadget, container)) {
-        host = ldGen.getLockedDomainPrefix(gadget.getSpec().getUrl()) +
-            getReqVal(container, LOCKED_DOMAIN_SUFFIX_KEY);
+      if (ldEnabled && !lockedDomainExclusion() && prefix.lockedHost != null) {
+        host = prefix.lockedHost;
       } else {
-        host = getReqVal(container, UNLOCKED_DOMAIN_KEY);
+        host = prefix.getUnlockedHost(container);
       }
       uri.setAuthority(host);
     
@@ -155,8 +200,7 @@ public class DefaultIframeUriManager implements IframeUriManager {
 
     if (versioner != null) {
       // Added on the query string, obviously not templated.
-      addParam(uri, Param.VERSION.getKey(),
-          versioner.version(gadget.getSpec().getUrl(), container), false, false);
+      addParam(uri, Param.VERSION.getKey(), prefix.version, false, false);
     }
     
     if (wantsSecurityToken(gadget)) {
@@ -289,15 +333,7 @@ public class DefaultIframeUriManager implements IframeUriManager {
     }
   }
   
-  private boolean usingLockedDomain(Gadget gadget, String container) {
-    if (!ldEnabled) {
-      return false;
-    }
-    
-    if (lockedDomainExclusion()) {
-      return false;
-    }
-    
+  private boolean wantsLockedDomain(Gadget gadget, String container) {
     if (config.getBool(container, LOCKED_DOMAIN_REQUIRED_KEY)) {
       return true;
     }
@@ -306,13 +342,75 @@ public class DefaultIframeUriManager implements IframeUriManager {
   }
   
   private String getReqVal(String container, String key) {
-    String val = config.getString(container, key);
+    return checkReqVal(container, key, config.getString(container, key));
+  }
+
+  private static String checkReqVal(String container, String key, String val) {
     if (val == null) {
       throw new RuntimeException("Missing required container config param, key: "
           + key + ", container: " + container);
     }
     return val;
   }
+
+  private Prefix getPrefix(Gadget gadget, View view, String container) {
+    int currentGeneration = generation.get();
+    String key = null;
+    if (prefixCache != null) {
+      GadgetContext context = gadget.getContext();
+      key = container + ' ' + view.getName() + ' ' + gadget.getSpec().getChecksum() + ' ' +
+          context.getUrl();
+      Prefix prefix = prefixCache.getElement(key);
+      if (prefix != null && prefix.generation == currentGeneration) {
+        return prefix;
+      }
+    }
+    Prefix prefix = new Prefix(gadget, view, container, currentGeneration);
+    if (key != null) {
+      prefixCache.addElement(key, prefix);
+    }
+    return prefix;
+  }
+
+  /**
+   * The parts of a rendering URI that only depend on the spec, container and view. Per request
+   * overrides, such as {@link #lockedDomainExclusion()} and {@link #getScheme}, are still applied
+   * to every URI.
+   */
+  private final class Prefix {
+    private final int generation;
+    private final String path;
+    private final String lockedHost;
+    private final String unlockedHost;
+    private final String version;
+
+    private Prefix(Gadget gadget, View view, String container, int generation) {
+      this.generation = generation;
+      if (View.ContentType.URL.equals(view.getType())) {
+        path = null;
+        lockedHost = null;
+        unlockedHost = null;
+      } else {
+        path = config.getString(container, IFRAME_BASE_PATH_KEY);
+        if (ldEnabled && wantsLockedDomain(gadget, container)) {
+          lockedHost = ldGen.getLockedDomainPrefix(gadget.getSpec().getUrl()) +
+              getReqVal(container, LOCKED_DOMAIN_SUFFIX_KEY);
+        } else {
+          lockedHost = null;
+        }
+        unlockedHost = config.getString(container, UNLOCKED_DOMAIN_KEY);
+      }
+      version = versioner != null ? versioner.version(gadget.getSpec().getUrl(), container) : null;
+    }
+
+    private String getPath(String container) {
+      return checkReqVal(container, IFRAME_BASE_PATH_KEY, path);
+    }
+
+    private String getUnlockedHost(String container) {
+      return checkReqVal(container, UNLOCKED_DOMAIN_KEY, unlockedHost);
+    }
+  }
   
   @ImplementedBy(DefaultTemplatingSignal.class)
   public static interface TemplatingSignal {
@@ -19,6 +19,7 @@
 package org.apache.shindig.gadgets.uri;
 
 import java.util.Collection;
+import java.util.Set;
 
 import org.apache.shindig.common.uri.Uri;
 import org.apache.shindig.common.util.HashUtil;
@@ -28,8 +29,9 @@ import org.apache.shindig.gadgets.features.FeatureRegistry;
 import org.apache.shindig.gadgets.features.FeatureResource;
 import org.apache.shindig.gadgets.uri.JsUriManager.Versioner;
 
-import com.google.common.collect.Maps;
+import com.google.common.collect.MapMaker;
 import com.google.inject.Inject;
+import com.google.inject.Singleton;
 
 import java.util.List;
 import java.util.Map;
@@ -38,15 +40,28 @@ import java.util.Map;
  * Straightforward versioner for collections of requested features to extern.
  * This implementation covers non-dynamic JS use cases pretty well, so it's set
  * as the default implementation for the system.
+ *
+ * Computed versions are dropped whenever the registry reloads changed features.
  */
-public class DefaultJsVersioner implements Versioner {
+@Singleton
+public class DefaultJsVersioner implements Versioner, FeatureRegistry.FeatureObserver {
   private final FeatureRegistry registry;
   private final Map<List<FeatureResource>, String> versionCache;
   
   @Inject
   public DefaultJsVersioner(FeatureRegistry registry) {
     this.registry = registry;
-    this.versionCache = Maps.newHashMap();
+    this.versionCache = new MapMaker().makeMap();
+  }
+
+  @Inject
+  public void observeFeatureChanges(FeatureRegistry featureRegistry) {
+    featureRegistry.addFeatureObserver(this);
+  }
+
+  public void featuresChanged(FeatureRegistry featureRegistry, Set<String> changed) {
+    // Keys are the registry's resource lists, which are rebuilt for changed features anyway.
+    versionCache.clear();
   }
 
   public String version(Uri gadgetUri, final String container, Collection<String> extern) {
@@ -43,6 +43,6 @@ public class MessageSubstituter implements Substituter {
     MessageBundle bundle = messageBundleFactory.getBundle(spec, context.getLocale(),
         context.getIgnoreCache(), context.getContainer());
         
-    substituter.addSubstitutions(Substitutions.Type.MESSAGE, bundle.getMessages());
+    substituter.addPlaceholders(bundle.getPlaceholders());
   }
 }
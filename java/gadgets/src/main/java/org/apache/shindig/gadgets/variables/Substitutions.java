@@ -19,6 +19,7 @@ package org.apache.shindig.gadgets.variables;
 
 import org.apache.shindig.common.uri.Uri;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 
 import java.util.Map;
@@ -105,6 +106,34 @@ public class Substitutions {
     }
   }
 
+  /**
+   * Adds substitutions that are already keyed by their full placeholder, as produced by
+   * {@link #toPlaceholders(Type, Map)}.
+   *
+   * @param placeholders
+   */
+  public void addPlaceholders(Map<String, String> placeholders) {
+    for (Map.Entry<String, String> entry : placeholders.entrySet()) {
+      substitutions.put(entry.getKey(), substituteString(entry.getValue()));
+    }
+  }
+
+  /**
+   * Keys the given entries by their full placeholder for the given type. The result may be
+   * computed once and passed to {@link #addPlaceholders(Map)} for every request.
+   *
+   * @param type
+   * @param entries
+   * @return An immutable map of placeholders to values.
+   */
+  public static Map<String, String> toPlaceholders(Type type, Map<String, String> entries) {
+    ImmutableMap.Builder<String, String> placeholders = ImmutableMap.builder();
+    for (Map.Entry<String, String> entry : entries.entrySet()) {
+      placeholders.put(type.prefix + entry.getKey(), entry.getValue());
+    }
+    return placeholders.build();
+  }
+
   private void performSubstitutions(String input, StringBuilder output, boolean isNested) {
     int lastPosition = 0, i;
     while ((i = input.indexOf("__", lastPosition)) != -1) {
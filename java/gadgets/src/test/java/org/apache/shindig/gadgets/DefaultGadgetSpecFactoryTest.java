@@ -19,8 +19,11 @@
 package org.apache.shindig.gadgets;
 
 import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.isA;
 import static org.easymock.EasyMock.replay;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 
 import org.apache.shindig.common.cache.CacheProvider;
 import org.apache.shindig.common.cache.LruCacheProvider;
@@ -260,6 +263,48 @@ public class DefaultGadgetSpecFactoryTest {
     assertEquals(ALT_LOCAL_CONTENT, spec.getView(GadgetSpec.DEFAULT_VIEW).getContent());
   }
 
+  @Test
+  public void identicalContentSharesParsedSpec() throws Exception {
+    Uri variantUrl = Uri.parse(SPEC_URL + "?v=2");
+    expect(pipeline.execute(isA(HttpRequest.class)))
+        .andReturn(new HttpResponse(LOCAL_SPEC_XML)).times(2);
+    replay(pipeline);
+
+    GadgetSpec spec = specFactory.getGadgetSpec(createContext(SPEC_URL, true));
+    GadgetSpec variant = specFactory.getGadgetSpec(createContext(variantUrl, true));
+
+    assertEquals(SPEC_URL, spec.getUrl());
+    assertEquals(variantUrl, variant.getUrl());
+    assertSame(spec.getModulePrefs(), variant.getModulePrefs());
+    assertSame(spec.getView(GadgetSpec.DEFAULT_VIEW), variant.getView(GadgetSpec.DEFAULT_VIEW));
+  }
+
+  @Test
+  public void identicalContentAtSameUrlReturnsSameSpec() throws Exception {
+    expect(pipeline.execute(isA(HttpRequest.class)))
+        .andReturn(new HttpResponse(LOCAL_SPEC_XML)).times(2);
+    replay(pipeline);
+
+    GadgetSpec spec = specFactory.getGadgetSpec(createContext(SPEC_URL, true));
+    assertSame(spec, specFactory.getGadgetSpec(createContext(SPEC_URL, true)));
+  }
+
+  @Test
+  public void identicalContentAtDifferentPathNotShared() throws Exception {
+    Uri otherUrl = Uri.parse("http://example.org/other/gadget.xml");
+    expect(pipeline.execute(isA(HttpRequest.class)))
+        .andReturn(new HttpResponse(LOCAL_SPEC_XML)).times(2);
+    replay(pipeline);
+
+    GadgetSpec spec = specFactory.getGadgetSpec(createContext(SPEC_URL, true));
+    GadgetSpec other = specFactory.getGadgetSpec(createContext(otherUrl, true));
+
+    assertNotSame(spec.getModulePrefs(), other.getModulePrefs());
+    // Names are still shared between the two copies.
+    assertSame(spec.getViews().keySet().iterator().next(),
+        other.getViews().keySet().iterator().next());
+  }
+
   @Test
   public void ttlPropagatesToPipeline() throws Exception {
     CapturingPipeline capturingPipeline = new CapturingPipeline();
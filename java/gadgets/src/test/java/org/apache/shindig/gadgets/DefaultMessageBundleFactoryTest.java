@@ -23,7 +23,9 @@ import static org.easymock.EasyMock.isA;
 import static org.easymock.EasyMock.verify;
 import static org.easymock.EasyMock.replay;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 import org.apache.shindig.common.cache.Cache;
 import org.apache.shindig.common.cache.CacheProvider;
@@ -38,6 +40,7 @@ import org.apache.shindig.gadgets.http.HttpResponseBuilder;
 import org.apache.shindig.gadgets.http.RequestPipeline;
 import org.apache.shindig.gadgets.spec.GadgetSpec;
 import org.apache.shindig.gadgets.spec.MessageBundle;
+import org.apache.shindig.gadgets.variables.Substitutions;
 
 import org.easymock.EasyMock;
 import org.junit.Test;
@@ -272,10 +275,54 @@ public class DefaultMessageBundleFactoryTest {
     assertEquals(bundle0.getMessages().get(MSG_0_NAME), bundle1.getMessages().get(MSG_0_NAME));
   }
 
+  @Test
+  public void resolvedBundleServedFromCache() throws Exception {
+    HttpResponse response = new HttpResponse(BASIC_BUNDLE);
+    expect(pipeline.execute(isA(HttpRequest.class))).andReturn(response).once();
+    replay(pipeline);
+
+    MessageBundle bundle0 = bundleFactory.getBundle(gadgetSpec, LOCALE, false, ContainerConfig.DEFAULT_CONTAINER);
+    MessageBundle bundle1 = bundleFactory.getBundle(gadgetSpec, LOCALE, false, ContainerConfig.DEFAULT_CONTAINER);
+    MessageBundle other = bundleFactory.getBundle(gadgetSpec, LOCALE, false, "other");
+
+    verify(pipeline);
+
+    assertSame(bundle0, bundle1);
+    assertSame(bundle0.toJSONString(), bundle1.toJSONString());
+    assertNotSame(bundle0, other);
+    assertEquals(bundle0.getMessages(), other.getMessages());
+    assertEquals(MSG_0_VALUE, bundle0.getPlaceholders().get("__MSG_" + MSG_0_NAME));
+  }
+
+  @Test
+  public void resolvedBundleSharedWithSubstitutedSpec() throws Exception {
+    HttpResponse response = new HttpResponse(BASIC_BUNDLE);
+    expect(pipeline.execute(isA(HttpRequest.class))).andReturn(response).once();
+    replay(pipeline);
+
+    MessageBundle bundle = bundleFactory.getBundle(gadgetSpec, LOCALE, false, ContainerConfig.DEFAULT_CONTAINER);
+    GadgetSpec substituted = gadgetSpec.substitute(new Substitutions());
+    MessageBundle substitutedBundle = bundleFactory.getBundle(substituted, LOCALE, false, ContainerConfig.DEFAULT_CONTAINER);
+
+    verify(pipeline);
+    assertSame(bundle, substitutedBundle);
+  }
+
+  @Test
+  public void resolvedBundleNotSharedAcrossSpecInstances() throws Exception {
+    MessageBundle bundle = bundleFactory.getBundle(gadgetSpec, LANG_LOCALE, false, ContainerConfig.DEFAULT_CONTAINER);
+    GadgetSpec refreshed = new GadgetSpec(SPEC_URI, BASIC_SPEC.replace(MSG_1_VALUE, "changed"));
+    MessageBundle refreshedBundle = bundleFactory.getBundle(refreshed, LANG_LOCALE, false, ContainerConfig.DEFAULT_CONTAINER);
+
+    assertEquals(MSG_1_VALUE, bundle.getMessages().get(MSG_1_NAME));
+    assertEquals("changed", refreshedBundle.getMessages().get(MSG_1_NAME));
+  }
+
   @Test
   public void ignoreCacheDoesNotStore() throws Exception {
     bundleFactory.getBundle(gadgetSpec, new Locale("all", "ALL"), true, ContainerConfig.DEFAULT_CONTAINER);
     assertEquals(0, cache.getSize());
+    assertEquals(0, cacheProvider.createCache(DefaultMessageBundleFactory.RESOLVED_CACHE_NAME).getSize());
   }
 
   @Test
@@ -294,12 +341,14 @@ public class DefaultMessageBundleFactoryTest {
 
     final AtomicLong time = new AtomicLong();
 
-    bundleFactory.cache.setTimeSource(new TimeSource() {
+    TimeSource timeSource = new TimeSource() {
       @Override
       public long currentTimeMillis() {
         return time.get();
       }
-    });
+    };
+    bundleFactory.cache.setTimeSource(timeSource);
+    bundleFactory.resolvedCache.setTimeSource(timeSource);
 
     time.set(System.currentTimeMillis());
 
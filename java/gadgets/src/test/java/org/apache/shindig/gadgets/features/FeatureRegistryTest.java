@@ -19,6 +19,7 @@ package org.apache.shindig.gadgets.features;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
@@ -37,11 +38,13 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 public class FeatureRegistryTest {
@@ -636,6 +639,58 @@ public class FeatureRegistryTest {
     assertEquals("attrib-three", lastAttribs.get("three"));
   }
   
+  @Test
+  public void reloadReplacesOnlyChangedFeatures() throws Exception {
+    Uri nodepUri = expectResource(xml(NODEP_TPL, "gadget", null, "nodep"));
+    Uri midAUri = expectResource(xml(MID_A_TPL, "gadget", null, "mid_a"));
+    Uri bottomUri = expectResource(xml(BOTTOM_TPL, "gadget", null, "bottom"));
+    Uri txtFile = expectResource(nodepUri.toString() + '\n' + midAUri.toString() + '\n' +
+        bottomUri.toString(), ".txt");
+    registry = new TestFeatureRegistry(txtFile.toString());
+
+    final List<String> notified = Lists.newArrayList();
+    registry.addFeatureObserver(new FeatureRegistry.FeatureObserver() {
+      public void featuresChanged(FeatureRegistry source, Set<String> changed) {
+        notified.addAll(changed);
+      }
+    });
+
+    GadgetContext ctx = getCtx(RenderingContext.GADGET, null);
+    List<FeatureResource> nodep = registry.getFeatureResources(ctx, Lists.newArrayList("nodep"), null);
+    List<FeatureResource> midA = registry.getFeatureResources(ctx, Lists.newArrayList("mid_a"), null);
+
+    // Unchanged definitions: nothing reported, caches kept.
+    assertTrue(registry.reload().isEmpty());
+    assertTrue(notified.isEmpty());
+
+    resourceMock.put(bottomUri.getPath(), xml(BOTTOM_TPL, "gadget", null, "bottom2"));
+    assertEquals(ImmutableSet.of("bottom", "mid_a"), registry.reload());
+    assertEquals(ImmutableSet.of("bottom", "mid_a"), ImmutableSet.copyOf(notified));
+
+    assertSame(nodep, registry.getFeatureResources(ctx, Lists.newArrayList("nodep"), null));
+    List<FeatureResource> reloaded =
+        registry.getFeatureResources(ctx, Lists.newArrayList("mid_a"), null);
+    assertNotSame(midA, reloaded);
+    assertEquals("bottom2", reloaded.get(0).getContent());
+    assertEquals("mid_a", reloaded.get(1).getContent());
+  }
+
+  @Test
+  public void reloadKeepsFeaturesOnError() throws Exception {
+    Uri nodepUri = expectResource(xml(NODEP_TPL, "gadget", null, "nodep"));
+    Uri txtFile = expectResource(nodepUri.toString(), ".txt");
+    registry = new TestFeatureRegistry(txtFile.toString());
+
+    resourceMock.put(nodepUri.getPath(), xml(BAD_DEP_TPL, "gadget", null, "bad"));
+    try {
+      registry.reload();
+      fail("Expected reload to fail");
+    } catch (GadgetException e) {
+      assertEquals(GadgetException.Code.INVALID_CONFIG, e.getCode());
+    }
+    assertEquals(ImmutableSet.of("nodep"), registry.getAllFeatureNames());
+  }
+
   private GadgetContext getCtx(final RenderingContext rctx, final String container) {
     return getCtx(rctx, container, false);
   }
@@ -18,14 +18,24 @@
 package org.apache.shindig.gadgets.http;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import org.apache.shindig.common.cache.Cache;
 import org.apache.shindig.common.cache.CacheProvider;
 import org.apache.shindig.common.cache.LruCacheProvider;
 import org.apache.shindig.common.uri.Uri;
+import org.apache.shindig.common.util.FakeTimeSource;
+import org.apache.shindig.common.util.TimeSource;
 
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
 import org.junit.Test;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
 /**
  * Tests for basic content cache
  */
@@ -73,4 +83,229 @@ public class DefaultHttpCacheTest {
 
     assertEquals(0, cache.getSize());
   }
+
+  private File directory;
+
+  @After
+  public void tearDown() throws IOException {
+    if (directory != null) {
+      FileUtils.deleteDirectory(directory);
+    }
+  }
+
+  private File createDirectory() throws IOException {
+    directory = File.createTempFile("httpcache", "");
+    directory.delete();
+    directory.mkdirs();
+    return directory;
+  }
+
+  private static DefaultHttpCache createPersistentCache(PersistentResponseStore store) {
+    DefaultHttpCache httpCache = new DefaultHttpCache(new LruCacheProvider(10));
+    httpCache.setPersistentStore(store);
+    return httpCache;
+  }
+
+  private static PersistentResponseStore createStore(File directory) throws Exception {
+    return createStore(directory, 1024 * 1024, 1000L);
+  }
+
+  private static PersistentResponseStore createStore(File directory, long segmentSize,
+      long staleRetention) throws Exception {
+    PersistentResponseStore store = new PersistentResponseStore(
+        directory.getPath(), segmentSize, 10 * 1024 * 1024, staleRetention);
+    store.awaitLoad();
+    return store;
+  }
+
+  @Test
+  public void persistentResponsesSurviveRestart() throws Exception {
+    File directory = createDirectory();
+    HttpRequest request = new HttpRequest(DEFAULT_URI);
+    HttpRequest removed = new HttpRequest(Uri.parse("http://example.org/removed.txt"));
+    HttpResponse response = new HttpResponseBuilder()
+        .setResponseString("response")
+        .setCacheTtl(60)
+        .create();
+
+    PersistentResponseStore store = createStore(directory);
+    DefaultHttpCache httpCache = createPersistentCache(store);
+    httpCache.addResponse(request, response);
+    httpCache.addResponse(removed, response);
+    httpCache.removeResponse(removed);
+    store.close();
+
+    store = createStore(directory);
+    httpCache = createPersistentCache(store);
+    assertEquals(response, httpCache.getResponse(request));
+    assertNull(httpCache.getResponse(removed));
+    store.close();
+  }
+
+  @Test
+  public void persistentResponsesAreDroppedAfterRetention() throws Exception {
+    File directory = createDirectory();
+    FakeTimeSource timeSource = new FakeTimeSource();
+    HttpResponse.setTimeSource(timeSource);
+    try {
+      HttpRequest request = new HttpRequest(DEFAULT_URI);
+      HttpResponse response = new HttpResponseBuilder()
+          .setResponseString("response")
+          .setCacheTtl(60)
+          .create();
+
+      PersistentResponseStore store = createStore(directory);
+      createPersistentCache(store).addResponse(request, response);
+      store.close();
+
+      // Stale responses are still returned during the retention period.
+      timeSource.incrementSeconds(60);
+      store = createStore(directory);
+      HttpResponse stale = createPersistentCache(store).getResponse(request);
+      assertEquals(response, stale);
+      assertTrue(stale.isStale());
+      store.close();
+
+      timeSource.incrementSeconds(2);
+      store = createStore(directory);
+      assertNull(createPersistentCache(store).getResponse(request));
+      store.close();
+    } finally {
+      HttpResponse.setTimeSource(new TimeSource());
+    }
+  }
+
+  @Test
+  public void persistentResponsesKeepTheirDate() throws Exception {
+    File directory = createDirectory();
+    FakeTimeSource timeSource = new FakeTimeSource();
+    HttpResponse.setTimeSource(timeSource);
+    try {
+      HttpRequest request = new HttpRequest(DEFAULT_URI);
+      HttpResponse response = new HttpResponseBuilder()
+          .setResponseString("response")
+          .setCacheTtl(60)
+          .create();
+      long oneDay = 24L * 60L * 60L * 1000L;
+
+      PersistentResponseStore store = createStore(directory, 1024 * 1024, oneDay);
+      createPersistentCache(store).addResponse(request, response);
+      store.close();
+
+      // Beyond the date drift limit, which must not reset the date to the time of the reload.
+      timeSource.incrementSeconds(5 * 60);
+      store = createStore(directory, 1024 * 1024, oneDay);
+      HttpResponse stale = createPersistentCache(store).getResponse(request);
+      assertEquals(response.getCacheExpiration(), stale.getCacheExpiration());
+      assertEquals(response.getHeader("Date"), stale.getHeader("Date"));
+      assertTrue(stale.isStale());
+      store.close();
+    } finally {
+      HttpResponse.setTimeSource(new TimeSource());
+    }
+  }
+
+  @Test
+  public void updatesWhileLoadingReplaceLoadedResponses() throws Exception {
+    File directory = createDirectory();
+    HttpResponse older = new HttpResponseBuilder()
+        .setResponseString("older")
+        .setCacheTtl(60)
+        .create();
+    HttpResponse newer = new HttpResponseBuilder()
+        .setResponseString("newer")
+        .setCacheTtl(60)
+        .create();
+
+    PersistentResponseStore store = createStore(directory);
+    store.put("key", older);
+    store.close();
+
+    store = new PersistentResponseStore(directory.getPath(), 1024 * 1024, 10 * 1024 * 1024, 1000L);
+    synchronized (store) {
+      // Holds back the end of the load, which is a miss until then.
+      store.put("key", newer);
+      assertNull(store.get("key"));
+    }
+    store.awaitLoad();
+    HttpResponse loaded = store.get("key");
+    assertTrue(loaded == null || loaded.equals(newer));
+    store.close();
+
+    store = createStore(directory);
+    loaded = store.get("key");
+    assertTrue(loaded == null || loaded.equals(newer));
+    store.close();
+  }
+
+  @Test
+  public void partialRecordIsTruncated() throws Exception {
+    File directory = createDirectory();
+    HttpRequest request = new HttpRequest(DEFAULT_URI);
+    HttpResponse response = new HttpResponseBuilder()
+        .setResponseString("response")
+        .setCacheTtl(60)
+        .create();
+
+    PersistentResponseStore store = createStore(directory);
+    createPersistentCache(store).addResponse(request, response);
+    store.close();
+
+    File segment = new File(directory, "segment-0.log");
+    long length = segment.length();
+    FileOutputStream out = new FileOutputStream(segment, true);
+    out.write(new byte[] {0, 0, 1, 0, 1, 2, 3});
+    out.close();
+
+    store = createStore(directory);
+    assertEquals(response, createPersistentCache(store).getResponse(request));
+    assertEquals(length, segment.length());
+    store.close();
+  }
+
+  @Test
+  public void storeLockedInThisProcessIsDisabled() throws Exception {
+    File directory = createDirectory();
+    HttpRequest request = new HttpRequest(DEFAULT_URI);
+    HttpResponse response = new HttpResponseBuilder()
+        .setResponseString("response")
+        .setCacheTtl(60)
+        .create();
+
+    PersistentResponseStore store = createStore(directory);
+    createPersistentCache(store).addResponse(request, response);
+
+    // The lock is already held by this JVM, so the second store is disabled rather than broken.
+    PersistentResponseStore locked = createStore(directory);
+    DefaultHttpCache httpCache = createPersistentCache(locked);
+    httpCache.addResponse(new HttpRequest(Uri.parse("http://example.org/other.txt")), response);
+    assertNull(locked.get(httpCache.createKey(request)));
+    locked.close();
+
+    assertEquals(response, createPersistentCache(store).getResponse(request));
+    store.close();
+  }
+
+  @Test
+  public void overwrittenResponsesAreCompacted() throws Exception {
+    File directory = createDirectory();
+    HttpRequest request = new HttpRequest(DEFAULT_URI);
+    PersistentResponseStore store = createStore(directory, 1024, 1000L);
+    DefaultHttpCache httpCache = createPersistentCache(store);
+    HttpResponse response = null;
+    for (int i = 0; i < 100; ++i) {
+      response = new HttpResponseBuilder()
+          .setResponseString("response " + i)
+          .setCacheTtl(60)
+          .create();
+      httpCache.addResponse(request, response);
+    }
+    store.awaitCompaction();
+    store.close();
+
+    assertTrue(directory.list().length <= 3);
+    store = createStore(directory);
+    assertEquals(response, createPersistentCache(store).getResponse(request));
+    store.close();
+  }
 }
@@ -18,6 +18,7 @@
 package org.apache.shindig.gadgets.http;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 import com.google.common.collect.Maps;
 import com.google.inject.Provider;
@@ -25,6 +26,7 @@ import com.google.inject.Provider;
 import org.apache.shindig.common.uri.Uri;
 import org.apache.shindig.gadgets.AuthType;
 import org.apache.shindig.gadgets.GadgetException;
+import org.apache.shindig.gadgets.http.HttpMetrics.CacheLookup;
 import org.apache.shindig.gadgets.oauth.OAuthRequest;
 import org.apache.shindig.gadgets.rewrite.DefaultResponseRewriterRegistry;
 import org.junit.Test;
@@ -220,6 +222,45 @@ public class DefaultRequestPipelineTest {
     assertEquals(0, cache.writeCount);
   }
 
+  @Test
+  public void metricsAreRecorded() throws Exception {
+    HttpMetrics metrics = new HttpMetrics();
+    DefaultRequestPipeline pipeline = new DefaultRequestPipeline(fetcher, cache, oauth,
+        new DefaultResponseRewriterRegistry(null, null), new NoOpInvalidationService(), helper);
+    pipeline.setMetrics(metrics);
+    HttpRequest request = new HttpRequest(DEFAULT_URI).setAuthType(AuthType.NONE);
+    fetcher.response = new HttpResponse("response");
+
+    pipeline.execute(request);
+    pipeline.execute(request);
+    cache.data.put(DEFAULT_URI, new HttpResponseBuilder().setStrictNoCache().create());
+    pipeline.execute(request);
+
+    assertEquals(1, metrics.getCacheHits());
+    assertEquals(1, metrics.getCacheStaleHits());
+    assertEquals(1, metrics.getCacheMisses());
+    assertEquals(0, metrics.getCacheInvalidatedHits());
+    assertEquals(2, metrics.getFetches());
+    assertEquals(2 * "response".length(), metrics.getBytesIn());
+    assertEquals(2, metrics.getFetchLatencies().get("example.org").get("2xx").getCount());
+    assertEquals(2, metrics.getRewriteLatency().getCount());
+    assertEquals(0, metrics.getActiveFetches());
+
+    fetcher.response = null;
+    try {
+      pipeline.execute(request.setIgnoreCache(true));
+    } catch (GadgetException e) {
+      // Expected.
+    }
+    assertEquals(1, metrics.getFetchErrors());
+    assertEquals(1, metrics.getFetchLatencies().get("example.org").get("error").getCount());
+    assertEquals(0, metrics.getActiveFetches());
+
+    metrics.reset();
+    assertEquals(0, metrics.getCacheLookups(CacheLookup.HIT));
+    assertNull(metrics.getFetchLatencies().get("example.org"));
+  }
+
   public static class FakeHttpFetcher implements HttpFetcher {
     protected HttpRequest request;
     protected HttpResponse response;
@@ -21,15 +21,24 @@ import org.apache.shindig.common.util.DateUtil;
 import org.apache.shindig.common.util.FakeTimeSource;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 
 public class HttpResponseTest extends Assert {
   private static final byte[] UTF8_DATA = {
@@ -554,4 +563,118 @@ public class HttpResponseTest extends Assert {
 
     assertEquals(expectedResponse, deserialized);
   }
+
+  @Test
+  public void testCodecRoundTrip() throws Exception {
+    HttpResponse response = new HttpResponseBuilder()
+        .addHeader("Content-Type", "text/html; charset=UTF-8")
+        .addHeader("X-Custom", "one")
+        .addHeader("X-Custom", "two")
+        .addHeader("Cache-Control", "public,max-age=60")
+        .setHttpStatusCode(200)
+        .setResponseString("<html>\u4F60\u597D</html>")
+        .create();
+
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    HttpResponseCodec.write(new DataOutputStream(baos), response);
+    HttpResponse read = HttpResponseCodec.read(
+        new DataInputStream(new ByteArrayInputStream(baos.toByteArray())));
+
+    assertEquals(response, read);
+    assertEquals(response.getResponseAsString(), read.getResponseAsString());
+    assertEquals(Arrays.asList("one", "two"), read.getHeaders("X-Custom"));
+    assertEquals("public,max-age=60", read.getHeader("Cache-Control"));
+  }
+
+  @Test
+  public void testPreviousSerializedFormIsRead() throws Exception {
+    HttpResponse response = new HttpResponseBuilder()
+        .addHeader("Foo", "bar")
+        .addHeader("Foo", "baz")
+        .setHttpStatusCode(204)
+        .setResponseString("This is the response string")
+        .create();
+
+    assertEquals(response, readExternal(writePreviousForm(response)));
+  }
+
+  @Test
+  public void testSerializedFormIsSmallerThanPreviousForm() throws Exception {
+    HttpResponse response = benchmarkResponse();
+    byte[] current = writeExternal(response);
+
+    assertEquals(response, readExternal(current));
+    assertTrue(current.length < writePreviousForm(response).length);
+  }
+
+  private static byte[] writeExternal(HttpResponse response) throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(baos);
+    response.writeExternal(out);
+    out.close();
+    return baos.toByteArray();
+  }
+
+  /**
+   * Writes a response the way it was externalized before {@link HttpResponseCodec}.
+   */
+  private static byte[] writePreviousForm(HttpResponse response) throws IOException {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(baos);
+    out.writeInt(response.getHttpStatusCode());
+    Map<String, List<String>> map = Maps.newHashMap();
+    for (String key : response.getHeaders().keySet()) {
+      map.put(key, Lists.newArrayList(response.getHeaders(key)));
+    }
+    out.writeObject(Maps.newHashMap(map));
+    byte[] body = IOUtils.toByteArray(response.getResponse());
+    out.writeInt(body.length);
+    out.write(body);
+    out.close();
+    return baos.toByteArray();
+  }
+
+  private static HttpResponse readExternal(byte[] bytes) throws Exception {
+    HttpResponse response = new HttpResponse();
+    response.readExternal(new ObjectInputStream(new ByteArrayInputStream(bytes)));
+    return response;
+  }
+
+  private static HttpResponse benchmarkResponse() {
+    return new HttpResponseBuilder()
+        .addHeader("Content-Type", "text/javascript; charset=UTF-8")
+        .addHeader("Cache-Control", "public,max-age=3600")
+        .addHeader("Expires", "Thu, 01 Jan 2037 00:00:00 GMT")
+        .addHeader("Last-Modified", "Thu, 01 Jan 2009 00:00:00 GMT")
+        .addHeader("ETag", "\"abcdef0123456789\"")
+        .addHeader("Vary", "Accept-Encoding")
+        .setHttpStatusCode(200)
+        .setResponseString(StringUtils.repeat("var x = 1;\n", 200))
+        .create();
+  }
+
+  /**
+   * Compares the time and size of externalizing a response in the current and in the previous
+   * form.
+   */
+  public static void main(String[] args) throws Exception {
+    int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+    HttpResponse response = benchmarkResponse();
+
+    byte[] previous = writePreviousForm(response);
+    long start = System.nanoTime();
+    for (int i = 0; i < iterations; ++i) {
+      readExternal(writePreviousForm(response));
+    }
+    System.out.println("Previous form: " + previous.length + " bytes, "
+        + (System.nanoTime() - start) / iterations + " ns per round trip");
+
+    byte[] current = writeExternal(response);
+    start = System.nanoTime();
+    for (int i = 0; i < iterations; ++i) {
+      readExternal(writeExternal(response));
+    }
+    System.out.println("Current form: " + current.length + " bytes, "
+        + (System.nanoTime() - start) / iterations + " ns per round trip");
+  }
 }
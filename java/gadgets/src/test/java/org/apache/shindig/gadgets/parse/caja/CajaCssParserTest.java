@@ -19,11 +19,16 @@ package org.apache.shindig.gadgets.parse.caja;
 
 import com.google.caja.parser.css.CssTree;
 
+import com.google.common.collect.Lists;
+
+import org.apache.commons.lang.StringUtils;
 import org.apache.shindig.common.cache.LruCacheProvider;
+import org.apache.shindig.common.uri.Uri;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.StringWriter;
 import java.util.List;
 
 /**
@@ -127,4 +132,44 @@ public class CajaCssParserTest extends Assert {
     assertEquals(1, selectorList.size());
     assertSame(CssTree.SimpleSelector.class, selectorList.get(0).getClass());
   }
+
+  private static final Uri SOURCE = Uri.parse("http://www.example.org/style.css");
+
+  private static final CssTemplate.UriRewriter PROXY = new CssTemplate.UriRewriter() {
+    public String rewrite(String uri) {
+      return "http://proxy/?url=" + uri;
+    }
+  };
+
+  @Test
+  public void testTemplateIsSharedAndRewritten() throws Exception {
+    String original = "@import url('other.css');\n"
+        + "span { background-image:url('image.gif'); }";
+    CssTemplate template = cajaCssParser.parseTemplate(original, SOURCE);
+    assertSame(template, cajaCssParser.parseTemplate(original, SOURCE));
+
+    StringWriter writer = new StringWriter();
+    assertTrue(template.render(writer, PROXY, false).isEmpty());
+    String rewritten = StringUtils.deleteWhitespace(writer.toString());
+    assertTrue(rewritten.contains("@importurl('http://proxy/?url=other.css');"));
+    assertTrue(rewritten.contains("url('http://proxy/?url=image.gif')"));
+
+    writer = new StringWriter();
+    assertEquals(Lists.newArrayList("other.css"), template.render(writer, PROXY, true));
+    rewritten = StringUtils.deleteWhitespace(writer.toString());
+    assertFalse(rewritten.contains("@import"));
+    assertTrue(rewritten.contains("url('http://proxy/?url=image.gif')"));
+  }
+
+  @Test
+  public void testTemplateEscapesRewrittenUri() throws Exception {
+    CssTemplate template = cajaCssParser.parseTemplate("a { background:url('x.gif'); }", SOURCE);
+    StringWriter writer = new StringWriter();
+    template.render(writer, new CssTemplate.UriRewriter() {
+      public String rewrite(String uri) {
+        return "it's.gif";
+      }
+    }, false);
+    assertTrue(writer.toString().contains("url('it\\27 s.gif')"));
+  }
 }
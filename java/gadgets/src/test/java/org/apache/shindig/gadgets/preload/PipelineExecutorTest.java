@@ -49,7 +49,10 @@ import org.w3c.dom.Element;
 
 import java.util.Collection;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
@@ -83,6 +86,21 @@ public class PipelineExecutorTest {
     + "  <os:PeopleRequest key=\"me\" userId=\"${json.user}\"/>"
     + "</Content>";
 
+  // Two independent requests, and a third that depends only on the second
+  private static final String INDEPENDENT_CHAINS_CONTENT =
+    "<Content xmlns:os=\"http://ns.opensocial.org/2008/markup\">"
+    + "  <os:HttpRequest key=\"slow\" href=\"slow.json\"/>"
+    + "  <os:HttpRequest key=\"fast\" href=\"fast.json\"/>"
+    + "  <os:PeopleRequest key=\"me\" userId=\"${fast.user}\"/>"
+    + "</Content>";
+
+  // Two requests, the second of which can't be evaluated with the result of the first
+  private static final String FAILING_SECOND_BATCH_CONTENT =
+    "<Content xmlns:os=\"http://ns.opensocial.org/2008/markup\">"
+    + "  <os:PeopleRequest key=\"me\" userId=\"${json.user * 2}\"/>"
+    + "  <os:HttpRequest key=\"json\" href=\"test.json\"/>"
+    + "</Content>";
+
   @Before
   public void setUp() throws Exception {
     control = EasyMock.createStrictControl();
@@ -283,6 +301,123 @@ public class PipelineExecutorTest {
     control.verify();
   }
 
+  @Test
+  public void dependentStartsWithoutWaitingForSibling() throws Exception {
+    PipelinedData pipeline = getPipelinedData(INDEPENDENT_CHAINS_CONTENT);
+
+    final CountDownLatch meStarted = new CountDownLatch(1);
+    final AtomicBoolean slowWaited = new AtomicBoolean();
+    final Callable<PreloadedData> fastTask = createPreloadTask("fast", "{result: {user: 'x'}}");
+    final Callable<PreloadedData> meTask = createPreloadTask("me", "{result: {id: 'x'}}");
+    final Callable<PreloadedData> slowTask = createPreloadTask("slow", "{result: {}}");
+
+    // The slow request only finishes once the request depending on its sibling has started,
+    // which would never happen if requests were run in rounds.
+    Callable<PreloadedData> blockingSlowTask = new Callable<PreloadedData>() {
+      public PreloadedData call() throws Exception {
+        slowWaited.set(meStarted.await(5, TimeUnit.SECONDS));
+        return slowTask.call();
+      }
+    };
+    Callable<PreloadedData> signallingMeTask = new Callable<PreloadedData>() {
+      public PreloadedData call() throws Exception {
+        meStarted.countDown();
+        return meTask.call();
+      }
+    };
+
+    expect(preloader.createPreloadTasks(same(context), eqBatch(0, 2)))
+        .andReturn(ImmutableList.of(blockingSlowTask, fastTask));
+    expect(preloader.createPreloadTasks(same(context), eqBatch(1, 0)))
+        .andReturn(ImmutableList.of(signallingMeTask));
+
+    control.replay();
+
+    PipelineExecutor.Results results = executor.execute(context, ImmutableList.of(pipeline));
+
+    assertTrue(slowWaited.get());
+    // Results are reported in the order the requests were started.
+    JsonAssert.assertJsonEquals("[{id: 'slow', result: {}}, {id: 'fast', result: {user: 'x'}}," +
+        "{id: 'me', result: {id: 'x'}}]",
+        JsonSerializer.serialize(results.results));
+    assertTrue(results.remainingPipelines.isEmpty());
+
+    control.verify();
+  }
+
+  @Test
+  public void executeStopsAtMaxDepth() throws Exception {
+    PipelinedData pipeline = getPipelinedData(TWO_BATCH_CONTENT);
+    executor.setMaxDepth(1);
+
+    context = new GadgetContext() {
+      @Override
+      public String getParameter(String property) {
+        if ("view-params".equals(property)) {
+          return "{'file': 'test.json'}";
+        }
+        return null;
+      }
+    };
+
+    expect(preloader.createPreloadTasks(same(context), eqBatch(0, 1)))
+        .andReturn(ImmutableList.of(createPreloadTask("json", "{result: {user: 'canonical'}}")));
+
+    control.replay();
+
+    PipelineExecutor.Results results = executor.execute(context, ImmutableList.of(pipeline));
+
+    assertEquals(ImmutableSet.of("json"), results.keyedResults.keySet());
+    assertEquals(ImmutableList.of(pipeline), ImmutableList.copyOf(results.remainingPipelines));
+
+    control.verify();
+  }
+
+  @Test
+  public void executeAbandonsRequestsAfterTimeout() throws Exception {
+    PipelinedData pipeline = getPipelinedData(CONTENT);
+    executor.setRequestTimeout(50);
+
+    final CountDownLatch release = new CountDownLatch(1);
+    final Callable<PreloadedData> slowTask = createPreloadTask("me", "{result: {}}");
+    Callable<PreloadedData> hangingTask = new Callable<PreloadedData>() {
+      public PreloadedData call() throws Exception {
+        release.await(5, TimeUnit.SECONDS);
+        return slowTask.call();
+      }
+    };
+
+    expect(preloader.createPreloadTasks(same(context), eqBatch(1, 1)))
+        .andReturn(ImmutableList.of(hangingTask, createPreloadTask("json", "{result: {}}")));
+
+    control.replay();
+
+    PipelineExecutor.Results results = executor.execute(context, ImmutableList.of(pipeline));
+    release.countDown();
+
+    assertEquals(ImmutableSet.of("json"), results.keyedResults.keySet());
+    assertEquals(ImmutableList.of(pipeline), ImmutableList.copyOf(results.remainingPipelines));
+
+    control.verify();
+  }
+
+  @Test
+  public void executeWithFailingSecondBatch() throws Exception {
+    PipelinedData pipeline = getPipelinedData(FAILING_SECOND_BATCH_CONTENT);
+
+    expect(preloader.createPreloadTasks(same(context), eqBatch(0, 1)))
+        .andReturn(ImmutableList.of(createPreloadTask("json", "{result: {user: 'canonical'}}")));
+
+    control.replay();
+
+    PipelineExecutor.Results results = executor.execute(context, ImmutableList.of(pipeline));
+
+    assertEquals(ImmutableSet.of("json"), results.keyedResults.keySet());
+    assertEquals(ImmutableList.of(pipeline), ImmutableList.copyOf(results.remainingPipelines));
+
+    control.verify();
+  }
+
   /** Match a batch with the specified count of social and HTTP data items */
   private PipelinedData.Batch eqBatch(int socialCount, int httpCount) {
     reportMatcher(new BatchMatcher(socialCount, httpCount));
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.gadgets.process;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.shindig.common.uri.Uri;
+import org.apache.shindig.config.ContainerConfig;
+import org.apache.shindig.config.JsonContainerConfig;
+import org.apache.shindig.expressions.Expressions;
+import org.apache.shindig.gadgets.Gadget;
+import org.apache.shindig.gadgets.GadgetContext;
+import org.apache.shindig.gadgets.GadgetException;
+import org.apache.shindig.gadgets.features.FeatureRegistry;
+import org.apache.shindig.gadgets.spec.GadgetSpec;
+import org.apache.shindig.gadgets.uri.JsUriManager;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+public class WarmupServiceTest {
+  private static final Uri GOOD_URL = Uri.parse("http://example.org/good.xml");
+  private static final Uri BAD_URL = Uri.parse("http://example.org/bad.xml");
+  private static final String GADGET =
+      "<Module><ModulePrefs title='foo'/><Content type='html'>hello</Content></Module>";
+
+  private final FakeProcessor processor = new FakeProcessor();
+  private WarmupService service;
+
+  @Before
+  public void setUp() throws Exception {
+    JSONObject config = new JSONObject("{'default':{'gadgets.container':['default']}," +
+        "'other':{'gadgets.container':['other']}}");
+    ContainerConfig containerConfig = new JsonContainerConfig(config, Expressions.forTesting());
+    FeatureRegistry registry = createNiceMock(FeatureRegistry.class);
+    JsUriManager jsUriManager = createNiceMock(JsUriManager.class);
+    replay(registry, jsUriManager);
+    service = new WarmupService(processor, registry, jsUriManager, null, null, containerConfig);
+    service.setThreads(2);
+  }
+
+  @Test
+  public void warmsEveryContainerAndLocale() throws Exception {
+    service.setLocales("en_US, fr");
+    WarmupService.Job job = service.start(ImmutableList.of(GOOD_URL));
+
+    assertTrue(job.await(10000));
+    assertEquals(4, job.getTotal());
+    assertEquals(4, job.getSucceeded());
+    assertEquals(0, job.getFailed());
+    assertEquals(Sets.newHashSet("default/en_US", "default/fr_ALL", "other/en_US", "other/fr_ALL"),
+        processor.processed);
+  }
+
+  @Test
+  public void failuresAreCounted() throws Exception {
+    WarmupService.Job job = service.start(ImmutableList.of(GOOD_URL, BAD_URL));
+
+    assertTrue(job.await(10000));
+    assertTrue(job.isDone());
+    assertEquals(2, job.getSucceeded());
+    assertEquals(2, job.getFailed());
+    assertEquals(job, service.getCurrentJob());
+  }
+
+  @Test
+  public void emptyJobIsDone() throws Exception {
+    WarmupService.Job job = service.start(Collections.<Uri>emptyList());
+    assertTrue(job.isDone());
+    assertEquals(0, job.getTotal());
+  }
+
+  @Test
+  public void readUrlsSkipsBlanksAndComments() throws Exception {
+    List<Uri> urls = WarmupService.readUrls(new StringReader(
+        "# gadgets\n" + GOOD_URL + "\n\n  " + BAD_URL + "  \n"));
+    assertEquals(Lists.newArrayList(GOOD_URL, BAD_URL), urls);
+  }
+
+  private static class FakeProcessor extends Processor {
+    private final Set<String> processed = Collections.synchronizedSet(Sets.<String>newHashSet());
+
+    public FakeProcessor() {
+      super(null, null, null, null, null);
+    }
+
+    @Override
+    public Gadget process(GadgetContext context) throws ProcessingException {
+      if (BAD_URL.equals(context.getUrl())) {
+        throw new ProcessingException("broken", 500);
+      }
+      Locale locale = context.getLocale();
+      processed.add(context.getContainer() + '/' + locale.getLanguage() + '_' + locale.getCountry());
+      try {
+        GadgetSpec spec = new GadgetSpec(context.getUrl(), GADGET);
+        return new Gadget().setContext(context).setSpec(spec).setCurrentView(spec.getView(GadgetSpec.DEFAULT_VIEW));
+      } catch (GadgetException e) {
+        throw new ProcessingException(e.getMessage(), e, 500);
+      }
+    }
+  }
+}
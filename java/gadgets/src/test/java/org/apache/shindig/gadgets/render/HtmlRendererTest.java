@@ -19,6 +19,7 @@
 package org.apache.shindig.gadgets.render;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import org.apache.shindig.auth.AnonymousSecurityToken;
@@ -28,6 +29,8 @@ import org.apache.shindig.common.xml.XmlUtil;
 import org.apache.shindig.gadgets.Gadget;
 import org.apache.shindig.gadgets.GadgetContext;
 import org.apache.shindig.gadgets.GadgetException;
+import org.apache.shindig.gadgets.parse.ParseModule;
+import org.apache.shindig.gadgets.parse.nekohtml.NekoSimplifiedHtmlParser;
 import org.apache.shindig.gadgets.preload.PreloadedData;
 import org.apache.shindig.gadgets.preload.PreloaderService;
 import org.apache.shindig.gadgets.rewrite.CaptureRewriter;
@@ -40,8 +43,11 @@ import org.junit.Test;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 
 /**
  * Tests for HtmlRenderer
@@ -113,6 +119,59 @@ public class HtmlRendererTest {
     assertTrue("Rewriting not performed.", captureRewriter.viewWasRewritten());
   }
 
+  @Test
+  public void renderDoesNotWaitForPreloads() throws Exception {
+    renderer.setExecutor(Executors.newSingleThreadExecutor());
+    preloaderService.latch = new CountDownLatch(1);
+
+    String content = renderer.render(makeGadget(BASIC_HTML_CONTENT));
+
+    assertEquals(BASIC_HTML_CONTENT, content);
+    assertFalse("Rendering waited for preloads.", preloaderService.wasPreloaded);
+    preloaderService.latch.countDown();
+  }
+
+  @Test
+  public void renderStreamingSendsHeadBeforePreloading() throws Exception {
+    renderer = new HtmlRenderer(preloaderService, proxyRenderer,
+        new GadgetRewritersProvider(ImmutableList.<GadgetRewriter>of()),
+        new NekoSimplifiedHtmlParser(new ParseModule.DOMImplementationProvider().get()));
+    renderer.setExecutor(Executors.newSingleThreadExecutor());
+    preloaderService.latch = new CountDownLatch(1);
+    preloaderService.preloads = ImmutableList.<PreloadedData>of(new PreloadedData() {
+      public Collection<Object> toJson() {
+        return ImmutableList.<Object>of(ImmutableMap.of("id", "data"));
+      }
+    });
+
+    StreamingContent content = renderer.renderStreaming(makeGadget(BASIC_HTML_CONTENT));
+
+    assertEquals("<html><head></head><body>", content.getHead());
+    assertEquals(BASIC_HTML_CONTENT + "</body></html>", content.getBody());
+    preloaderService.latch.countDown();
+    assertEquals("<script>gadgets.io.preloaded_=[{\"id\":\"data\"}];</script>",
+        content.getPreloadScript());
+    assertTrue("Preloading not performed.", preloaderService.wasPreloaded);
+    assertEquals(content.getHead() + content.getPreloadScript() + content.getBody(),
+        content.toString());
+  }
+
+  @Test
+  public void renderStreamingGoesOnWithoutPreloadsThatTimeOut() throws Exception {
+    renderer = new HtmlRenderer(preloaderService, proxyRenderer,
+        new GadgetRewritersProvider(ImmutableList.<GadgetRewriter>of()),
+        new NekoSimplifiedHtmlParser(new ParseModule.DOMImplementationProvider().get()));
+    renderer.setExecutor(Executors.newSingleThreadExecutor());
+    renderer.setPreloadTimeout(10);
+    preloaderService.latch = new CountDownLatch(1);
+
+    StreamingContent content = renderer.renderStreaming(makeGadget(BASIC_HTML_CONTENT));
+
+    assertEquals("<script>gadgets.io.preloaded_=[];</script>", content.getPreloadScript());
+    assertFalse("Rendering waited for preloads.", preloaderService.wasPreloaded);
+    preloaderService.latch.countDown();
+  }
+
   private static class FakeProxyRenderer extends ProxyRenderer {
     public FakeProxyRenderer() {
       super(null, null, null);
@@ -125,13 +184,21 @@ public class HtmlRendererTest {
   }
   
   private static class FakePreloaderService implements PreloaderService {
-    protected boolean wasPreloaded;
+    protected volatile boolean wasPreloaded;
     protected Collection<PreloadedData> preloads;
+    protected volatile CountDownLatch latch;
 
     protected FakePreloaderService() {
     }
 
     public Collection<PreloadedData> preload(Gadget gadget) {
+      if (latch != null) {
+        try {
+          latch.await();
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+      }
       wasPreloaded = true;
       return preloads;
     }
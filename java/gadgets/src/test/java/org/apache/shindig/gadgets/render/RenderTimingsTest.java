@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.apache.shindig.gadgets.render;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.shindig.common.uri.Uri;
+import org.apache.shindig.common.util.LatencyHistogram;
+
+import com.google.common.collect.ImmutableList;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Map;
+
+public class RenderTimingsTest {
+  private static final Uri GADGET_URL = Uri.parse("http://example.org/gadget.xml");
+
+  private final RenderTimings timings = new RenderTimings();
+
+  @After
+  public void tearDown() {
+    RenderTrace.current().finish();
+  }
+
+  @Test
+  public void samplingIsOffByDefault() {
+    assertNull(timings.startTrace());
+    RenderTrace trace = RenderTrace.current();
+    assertFalse(trace.isEnabled());
+    trace.end("phase", trace.start());
+    assertTrue(trace.getPhases().isEmpty());
+  }
+
+  @Test
+  public void nestedPhasesAreExcluded() throws Exception {
+    timings.setSampleRate(1);
+    RenderTrace trace = timings.startTrace();
+    assertSame(trace, RenderTrace.current());
+
+    long outer = trace.start();
+    long inner = trace.start();
+    Thread.sleep(20);
+    trace.end("inner", inner);
+    trace.end("outer", outer);
+    trace.endRewriter(this, trace.start());
+
+    Map<String, Long> phases = trace.getPhases();
+    assertEquals(ImmutableList.of("inner", "outer", "rewrite.RenderTimingsTest"),
+        ImmutableList.copyOf(phases.keySet()));
+    assertTrue(phases.get("inner") >= 20000000L);
+    assertTrue(phases.get("outer") < phases.get("inner"));
+    assertTrue(trace.toServerTiming().matches(
+        "inner;dur=\\d+\\.\\d{3}, outer;dur=\\d+\\.\\d{3}, " +
+        "rewrite.RenderTimingsTest;dur=\\d+\\.\\d{3}, total;dur=\\d+\\.\\d{3}"));
+
+    timings.finishTrace(trace, GADGET_URL);
+    assertFalse(RenderTrace.current().isEnabled());
+
+    Map<String, LatencyHistogram> histograms = timings.getTimings().get(GADGET_URL.toString());
+    assertEquals(1, histograms.get("inner").getCount());
+    assertEquals(1, histograms.get(RenderTimings.TOTAL).getCount());
+    assertTrue(histograms.get(RenderTimings.TOTAL).getMaxNanos() >= phases.get("inner"));
+
+    timings.reset();
+    assertTrue(timings.getTimings().isEmpty());
+  }
+
+  @Test
+  public void gadgetsBeyondLimitAreAggregated() {
+    timings.setSampleRate(1);
+    for (int i = 0; i <= RenderTimings.MAX_GADGETS; ++i) {
+      timings.finishTrace(timings.startTrace(), Uri.parse("http://example.org/" + i + ".xml"));
+    }
+    assertEquals(RenderTimings.MAX_GADGETS + 1, timings.getTimings().size());
+    timings.finishTrace(timings.startTrace(), Uri.parse("http://example.org/other.xml"));
+    assertEquals(RenderTimings.MAX_GADGETS + 1, timings.getTimings().size());
+    assertEquals(2, timings.getTimings().get(RenderTimings.OTHER_GADGETS)
+        .get(RenderTimings.TOTAL).getCount());
+  }
+}
@@ -21,6 +21,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
+import org.apache.shindig.common.cache.LruCacheProvider;
 import org.apache.shindig.common.uri.Uri;
 import org.apache.shindig.config.AbstractContainerConfig;
 import org.apache.shindig.config.ContainerConfig;
@@ -276,4 +277,31 @@ public class CssResponseRewriterTest extends RewriterTestBase {
         StringUtils.deleteWhitespace(sw.toString()));
     assertEquals(Lists.newArrayList("www.example.org/some.css"), stringList);
   }
+
+  @Test
+  public void testRewriteIsCached() throws Exception {
+    CssRewriteCache rewriteCache = new CssRewriteCache(new LruCacheProvider(10));
+    rewriter.setRewriteCache(rewriteCache);
+    String original = "div { background-image:url('http://a.b.com/bullet.gif'); }";
+    String rewritten = "div {background-image:url('//www.test.com/dir/proxy?container=default"
+        + "&gadget=http%3A%2F%2Fwww.w3c.org&debug=0&nocache=0"
+        + "&url=http%3A%2F%2Fa.b.com%2Fbullet.gif');}";
+
+    validateRewritten(original, rewritten);
+    assertEquals(0, rewriteCache.getHitCount());
+    validateRewritten(original, rewritten);
+    assertEquals(1, rewriteCache.getHitCount());
+
+    // A different container is rewritten separately.
+    HttpResponseBuilder response = new HttpResponseBuilder().setHeader("Content-Type", "text/css");
+    response.setContent(original);
+    HttpRequest request = new HttpRequest(dummyUri);
+    request.setContainer(MOCK_CONTAINER);
+    rewriter.rewrite(request, response);
+    assertEquals(1, rewriteCache.getHitCount());
+    assertEquals(2, rewriteCache.getMissCount());
+    assertEquals(StringUtils.deleteWhitespace(replaceDefaultWithMockServer(rewritten)
+        .replace("container=default", "container=" + MOCK_CONTAINER)),
+        StringUtils.deleteWhitespace(response.getContent()));
+  }
 }
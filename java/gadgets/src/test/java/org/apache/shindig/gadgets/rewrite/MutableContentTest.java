@@ -22,6 +22,9 @@ import com.google.common.base.Charsets;
 import org.apache.commons.io.IOUtils;
 import org.apache.shindig.common.PropertiesModule;
 import org.apache.shindig.common.util.CharsetUtil;
+import org.apache.shindig.common.util.ContentFingerprint;
+import org.apache.shindig.gadgets.http.HttpResponse;
+import org.apache.shindig.gadgets.http.HttpResponseBuilder;
 import org.apache.shindig.gadgets.parse.GadgetHtmlParser;
 import org.apache.shindig.gadgets.parse.ParseModule;
 
@@ -129,4 +132,26 @@ public class MutableContentTest {
     // GadgetHtmlNode hasn't changed because string hasn't changed
     assertSame(document, mhc.getDocument());
   }
+
+  @Test
+  public void fingerprintFollowsContent() throws Exception {
+    String fingerprint = mhc.getContentFingerprint();
+    assertEquals(ContentFingerprint.of("DEFAULT VIEW"), fingerprint);
+    assertSame(fingerprint, mhc.getContentFingerprint());
+
+    mhc.setContent("NEW CONTENT");
+    assertEquals(ContentFingerprint.of("NEW CONTENT"), mhc.getContentFingerprint());
+
+    Document document = mhc.getDocument();
+    document.getFirstChild().getFirstChild().setTextContent("FOO CONTENT");
+    MutableContent.notifyEdit(document);
+    assertEquals(ContentFingerprint.of(mhc.getContent()), mhc.getContentFingerprint());
+  }
+
+  @Test
+  public void fingerprintIsSharedWithResponse() throws Exception {
+    HttpResponse response = new HttpResponseBuilder().setResponseString("RESPONSE").create();
+    MutableContent content = new MutableContent(null, response);
+    assertSame(response.getContentFingerprint(), content.getContentFingerprint());
+  }
 }
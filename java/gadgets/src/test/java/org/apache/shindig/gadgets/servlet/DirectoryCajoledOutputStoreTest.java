@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.apache.shindig.gadgets.servlet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+public class DirectoryCajoledOutputStoreTest {
+  private static final byte[] OUTPUT = "<div id=\"cajoled-output\"></div>".getBytes();
+
+  private File directory;
+
+  @Before
+  public void setUp() throws IOException {
+    directory = File.createTempFile("cajoled", "");
+    directory.delete();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    FileUtils.deleteDirectory(directory);
+  }
+
+  @Test
+  public void outputIsSharedBetweenStores() {
+    DirectoryCajoledOutputStore store =
+        new DirectoryCajoledOutputStore(directory.getPath(), 60000L);
+    assertTrue(store.isEnabled());
+    assertNull(store.get("key"));
+    store.put("key", OUTPUT);
+
+    DirectoryCajoledOutputStore other =
+        new DirectoryCajoledOutputStore(directory.getPath(), 60000L);
+    assertArrayEquals(OUTPUT, other.get("key"));
+    assertNull(other.get("other key"));
+    assertEquals(1, directory.list().length);
+  }
+
+  @Test
+  public void expiredOutputIsDropped() {
+    DirectoryCajoledOutputStore store = new DirectoryCajoledOutputStore(directory.getPath(), -1L);
+    store.put("key", OUTPUT);
+    assertNull(store.get("key"));
+    assertEquals(0, directory.list().length);
+  }
+
+  @Test
+  public void emptyDirectoryDisablesStore() {
+    assertFalse(new DirectoryCajoledOutputStore("", 60000L).isEnabled());
+  }
+}
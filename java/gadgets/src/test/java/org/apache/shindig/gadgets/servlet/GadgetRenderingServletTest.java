@@ -22,22 +22,31 @@ import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.isA;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import org.apache.shindig.common.servlet.HttpServletResponseRecorder;
 import org.apache.shindig.common.uri.Uri;
+import org.apache.shindig.common.util.LatencyHistogram;
 import org.apache.shindig.gadgets.GadgetContext;
 import org.apache.shindig.gadgets.http.HttpRequest;
+import org.apache.shindig.gadgets.preload.PreloadedData;
+import org.apache.shindig.gadgets.render.RenderTimings;
 import org.apache.shindig.gadgets.render.Renderer;
 import org.apache.shindig.gadgets.render.RenderingResults;
+import org.apache.shindig.gadgets.render.StreamingContent;
 import org.apache.shindig.gadgets.uri.IframeUriManager;
 import org.apache.shindig.gadgets.uri.UriStatus;
 import org.apache.shindig.gadgets.uri.UriCommon.Param;
 
+import com.google.common.collect.ImmutableList;
+
 import org.easymock.IMocksControl;
 import org.easymock.EasyMock;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Map;
+
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -107,6 +116,43 @@ public class GadgetRenderingServletTest {
     assertEquals("working", recorder.getResponseAsString());
   }
 
+  @Test
+  public void streamingResponse() throws Exception {
+    servlet.setRenderer(renderer);
+    StreamingContent content = new StreamingContent("<html><body>", "working</body></html>",
+        ImmutableList.<PreloadedData>of());
+    expect(renderer.render(isA(GadgetContext.class)))
+        .andReturn(RenderingResults.ok(content));
+    control.replay();
+
+    servlet.doGet(request, recorder);
+
+    assertEquals(HttpServletResponse.SC_OK, recorder.getHttpStatusCode());
+    assertEquals("<html><body><script>gadgets.io.preloaded_=[];</script>working</body></html>",
+        recorder.getResponseAsString());
+  }
+
+  @Test
+  public void sampledRenderingIsTimed() throws Exception {
+    RenderTimings timings = new RenderTimings();
+    timings.setSampleRate(1);
+    timings.setServerTiming(true);
+    servlet.setRenderer(renderer);
+    servlet.setRenderTimings(timings);
+    expect(request.getParameter(Param.URL.getKey())).andReturn("http://example.org/gadget.xml");
+    expect(renderer.render(isA(GadgetContext.class)))
+        .andReturn(RenderingResults.ok("working"));
+    control.replay();
+
+    servlet.doGet(request, recorder);
+
+    assertEquals("working", recorder.getResponseAsString());
+    assertTrue(recorder.getHeader("Server-Timing").startsWith("total;dur="));
+    Map<String, LatencyHistogram> phases = timings.getTimings().get("http://example.org/gadget.xml");
+    assertEquals(1, phases.get("output").getCount());
+    assertEquals(1, phases.get(RenderTimings.TOTAL).getCount());
+  }
+
   @Test
   public void errorsPassedThrough() throws Exception {
     servlet.setRenderer(renderer);
@@ -27,6 +27,12 @@ import org.apache.shindig.gadgets.variables.Substitutions.Type;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
 public class GadgetSpecTest extends Assert {
   private static final Uri SPEC_URL = Uri.parse("http://example.org/g.xml");
 
@@ -61,6 +67,37 @@ public class GadgetSpecTest extends Assert {
     assertEquals(HashUtil.checksum(xml.getBytes()), spec.getChecksum());
   }
 
+  @Test
+  public void testSerialization() throws Exception {
+    String xml = "<Module>" +
+                 "<ModulePrefs title=\"title\"/>" +
+                 "<Content type=\"html\">Hello!</Content>" +
+                 "</Module>";
+    GadgetSpec spec = new GadgetSpec(SPEC_URL, XmlUtil.parse(xml), xml);
+
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(baos);
+    out.writeObject(spec);
+    out.close();
+    GadgetSpec deserialized = (GadgetSpec) new ObjectInputStream(
+        new ByteArrayInputStream(baos.toByteArray())).readObject();
+
+    assertEquals(SPEC_URL, deserialized.getUrl());
+    assertEquals(spec.getChecksum(), deserialized.getChecksum());
+    assertEquals("title", deserialized.getModulePrefs().getTitle());
+    assertEquals("Hello!", deserialized.getView(GadgetSpec.DEFAULT_VIEW).getContent());
+  }
+
+  @Test(expected=NotSerializableException.class)
+  public void testSubstitutedSpecIsNotSerializable() throws Exception {
+    String xml = "<Module>" +
+                 "<ModulePrefs title=\"__MSG_title__\"/>" +
+                 "<Content type=\"html\">Hello!</Content>" +
+                 "</Module>";
+    GadgetSpec spec = new GadgetSpec(SPEC_URL, xml).substitute(new Substitutions());
+    new ObjectOutputStream(new ByteArrayOutputStream()).writeObject(spec);
+  }
+
   @Test
   public void testMultipleContentSections() throws Exception {
     String xml = "<Module>" +
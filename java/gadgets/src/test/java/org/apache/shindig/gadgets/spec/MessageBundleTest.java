@@ -33,6 +33,10 @@ import org.junit.Before;
 import org.junit.Test;
 import org.w3c.dom.Element;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.Map;
 
 public class MessageBundleTest {
@@ -73,6 +77,34 @@ public class MessageBundleTest {
     assertEquals(MESSAGES, bundle.getMessages());
   }
 
+  @Test
+  public void serializedBundleKeepsMessagesAndDirection() throws Exception {
+    MessageBundle bundle = new MessageBundle(XmlUtil.parse(PARENT_LOCALE));
+
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(baos);
+    out.writeObject(bundle);
+    out.close();
+    MessageBundle deserialized = (MessageBundle) new ObjectInputStream(
+        new ByteArrayInputStream(baos.toByteArray())).readObject();
+
+    assertEquals(bundle.getMessages(), deserialized.getMessages());
+    assertEquals("rtl", deserialized.getLanguageDirection());
+  }
+
+  @Test
+  public void serializedEmptyBundleKeepsMergedDirection() throws Exception {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(baos);
+    out.writeObject(MessageBundle.EMPTY);
+    out.close();
+    MessageBundle deserialized = (MessageBundle) new ObjectInputStream(
+        new ByteArrayInputStream(baos.toByteArray())).readObject();
+
+    MessageBundle parent = new MessageBundle(XmlUtil.parse(PARENT_LOCALE));
+    assertEquals("rtl", new MessageBundle(parent, deserialized).getLanguageDirection());
+  }
+
   @Test
   public void duplicateKeyIgnored() throws Exception {
     String duplicateKeyXml =
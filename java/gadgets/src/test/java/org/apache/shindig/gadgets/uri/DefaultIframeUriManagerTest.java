@@ -42,6 +42,7 @@ import com.google.common.collect.Maps;
 
 import org.apache.shindig.auth.BasicSecurityTokenCodec;
 import org.apache.shindig.auth.SecurityTokenCodec;
+import org.apache.shindig.common.cache.LruCacheProvider;
 import org.apache.shindig.common.uri.Uri;
 import org.apache.shindig.common.uri.UriBuilder;
 import org.apache.shindig.config.ContainerConfig;
@@ -51,8 +52,10 @@ import org.apache.shindig.gadgets.uri.UriCommon.Param;
 import org.junit.Test;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class DefaultIframeUriManagerTest extends UriManagerTestBase {
   private static final String LD_PREFIX = "LOCKED";
@@ -423,6 +426,40 @@ public class DefaultIframeUriManagerTest extends UriManagerTestBase {
     assertEquals(version, uri.getQueryParameter(Param.VERSION.getKey()));
   }
   
+  @Test
+  public void prefixIsCachedUntilReload() {
+    final AtomicInteger versions = new AtomicInteger();
+    Gadget gadget = mockGadget(LOCKED_DOMAIN_FEATURE_NAME);
+    TestDefaultIframeUriManager manager = makeManager(false, false);
+    manager.setCacheProvider(new LruCacheProvider(10));
+    manager.setVersioner(new IframeUriManager.Versioner() {
+      public String version(Uri gadgetUri, String container) {
+        return "v" + versions.incrementAndGet();
+      }
+
+      public UriStatus validate(Uri gadgetUri, String container, String value) {
+        return UriStatus.VALID_VERSIONED;
+      }
+    });
+
+    Uri first = manager.makeRenderingUri(gadget);
+    assertEquals(first, manager.makeRenderingUri(gadget));
+    assertEquals(1, versions.get());
+    assertEquals(LD_PREFIX + LD_SUFFIX, first.getAuthority());
+
+    // Overrides still apply to cached prefixes.
+    manager.setLdExclusion(true);
+    assertEquals(UNLOCKED_DOMAIN, manager.makeRenderingUri(gadget).getAuthority());
+    manager.setLdExclusion(false);
+
+    manager.featuresChanged(null, Collections.<String>emptySet());
+    assertEquals("v2", new UriBuilder(manager.makeRenderingUri(gadget))
+        .getQueryParameter(Param.VERSION.getKey()));
+    manager.containersChanged(null, Collections.singleton(CONTAINER));
+    manager.makeRenderingUri(gadget);
+    assertEquals(3, versions.get());
+  }
+
   @Test
   public void userPrefsAddedQuery() {
     // Scenario exercises all prefs cases: overridden/known key, unknown key, missing key
@@ -126,6 +126,7 @@ public class UriManagerTestBase {
     
     // Link all the mocks together
     expect(spec.getModulePrefs()).andReturn(modulePrefs).anyTimes();
+    expect(spec.getChecksum()).andReturn("checksum").anyTimes();
     expect(gadget.getCurrentView()).andReturn(view).anyTimes();
     expect(gadget.getSpec()).andReturn(spec).anyTimes();
     expect(gadget.getContext()).andReturn(context).anyTimes();
@@ -1146,10 +1146,10 @@ public class PersonDb implements Person, DbObject {
 
   @PrePersist
   public void populateDbFields() {
-    drinkerDb = drinker.toString();
-    genderDb = gender.toString();
-    networkPresenceDb = networkPresence.toString();
-    smokerDb = smoker.toString();
+    drinkerDb = drinker == null ? null : drinker.getValue().name();
+    genderDb = gender == null ? null : gender.name();
+    networkPresenceDb = networkPresence == null ? null : networkPresence.getValue().name();
+    smokerDb = smoker == null ? null : smoker.getValue().name();
 
     List<String> lookingFor = Lists.newArrayList();
     for (Enum<LookingFor> np : this.lookingFor) {
@@ -1212,15 +1212,12 @@ public class PersonDb implements Person, DbObject {
   @PostLoad
   public void loadTransientFields() {
 
-    drinkerDb = drinker.toString();
-    genderDb = gender.toString();
-    networkPresenceDb = networkPresence.toString();
-    smokerDb = smoker.toString();
-
-    drinker = new EnumDb<Drinker>(Drinker.valueOf(drinkerDb));
-    gender = Gender.valueOf(genderDb);
-    networkPresence = new EnumDb<NetworkPresence>(NetworkPresence.valueOf(networkPresenceDb));
-    smoker = new EnumDb<Smoker>(Smoker.valueOf(smokerDb));
+    // the columns hold the enum names written by populateDbFields()
+    drinker = drinkerDb == null ? null : new EnumDb<Drinker>(Drinker.valueOf(drinkerDb));
+    gender = genderDb == null ? null : Gender.valueOf(genderDb);
+    networkPresence = networkPresenceDb == null ? null
+        : new EnumDb<NetworkPresence>(NetworkPresence.valueOf(networkPresenceDb));
+    smoker = smokerDb == null ? null : new EnumDb<Smoker>(Smoker.valueOf(smokerDb));
 
     List<String> lookingFor = Lists.newArrayList();
     this.activities = Lists.newArrayList();
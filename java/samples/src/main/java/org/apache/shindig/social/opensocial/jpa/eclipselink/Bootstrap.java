@@ -17,6 +17,9 @@
  */
 package org.apache.shindig.social.opensocial.jpa.eclipselink;
 
+import static org.eclipse.persistence.config.PersistenceUnitProperties.CACHE_SHARED_DEFAULT;
+import static org.eclipse.persistence.config.PersistenceUnitProperties.CACHE_SIZE_DEFAULT;
+import static org.eclipse.persistence.config.PersistenceUnitProperties.CACHE_TYPE_DEFAULT;
 import static org.eclipse.persistence.config.PersistenceUnitProperties.JDBC_DRIVER;
 import static org.eclipse.persistence.config.PersistenceUnitProperties.JDBC_PASSWORD;
 import static org.eclipse.persistence.config.PersistenceUnitProperties.JDBC_READ_CONNECTIONS_MIN;
@@ -57,6 +60,9 @@ public class Bootstrap {
   private static final String DB_PASSWORD = "db.password";
   private static final String DB_MIN_WRITE = "db.write.min";
   private static final String DB_MIN_NUM_READ = "db.read.min";
+  private static final String DB_CACHE_SHARED = "db.cache.shared";
+  private static final String DB_CACHE_TYPE = "db.cache.type";
+  private static final String DB_CACHE_SIZE = "db.cache.size";
   private static final Logger LOG = Logger.getLogger(Boolean.class.getName());
   private String minWrite;
   private String minRead;
@@ -64,6 +70,9 @@ public class Bootstrap {
   private String dbUser;
   private String dbUrl;
   private String dbDriver;
+  private String cacheShared = "true";
+  private String cacheType = "SoftWeak";
+  private String cacheSize = "1000";
   private EntityManager entityManager;
 
   @Inject
@@ -83,6 +92,23 @@ public class Bootstrap {
 
   }
 
+  /**
+   * Configures the shared (second level) entity cache.
+   *
+   * @param cacheShared false to disable the shared cache
+   * @param cacheType the EclipseLink cache type, such as Full, Weak, Soft, SoftWeak or HardWeak
+   * @param cacheSize the initial size of the cache of each entity
+   */
+  @Inject(optional = true)
+  public void setCache(@Named(DB_CACHE_SHARED)
+  String cacheShared, @Named(DB_CACHE_TYPE)
+  String cacheType, @Named(DB_CACHE_SIZE)
+  String cacheSize) {
+    this.cacheShared = cacheShared;
+    this.cacheType = cacheType;
+    this.cacheSize = cacheSize;
+  }
+
   public void init(String unitName) {
 
     Map<String, String> properties = Maps.newHashMap();
@@ -104,6 +130,11 @@ public class Bootstrap {
     properties.put(LOGGING_THREAD, "false");
     properties.put(LOGGING_SESSION, "false");
 
+    // Configure the shared entity cache, which keeps read-mostly entities between requests
+    properties.put(CACHE_SHARED_DEFAULT, cacheShared);
+    properties.put(CACHE_TYPE_DEFAULT, cacheType);
+    properties.put(CACHE_SIZE_DEFAULT, cacheSize);
+
     // Ensure that no server-platform is configured
     properties.put(TARGET_SERVER, TargetServer.None);
 
@@ -146,12 +146,12 @@ public class ActivityServiceDb implements ActivityService {
     case all:
       // select all contacts
       sb.append("");
-      lastPos = JPQLUtils.addInClause(sb, "p", "id", lastPos, paramList.size());
+      lastPos = JPQLUtils.addInClause(sb, "p", "id", lastPos, paramList);
       break;
     case friends:
       // select all friends (subset of contacts)
       sb.append(ActivityDb.JPQL_FINDACTIVITY_BY_FRIENDS);
-      lastPos = JPQLUtils.addInClause(sb, "p", "id", lastPos, paramList.size());
+      lastPos = JPQLUtils.addInClause(sb, "p", "id", lastPos, paramList);
       sb.append(")) ");
       // TODO Group by doesn't work in HSQLDB or Derby - causes a "Not in aggregate function or group by clause" jdbc exception
       // sb.append(" group by p ");
@@ -160,7 +160,7 @@ public class ActivityServiceDb implements ActivityService {
       // select those in the group
       // TODO Needs implementing and then have a unit test created to test it.
       sb.append("");
-      lastPos = JPQLUtils.addInClause(sb, "p", "id", lastPos, paramList.size());
+      lastPos = JPQLUtils.addInClause(sb, "p", "id", lastPos, paramList);
       sb.append(" and g.id = ?").append(lastPos);
       lastPos++;
       break;
@@ -170,30 +170,23 @@ public class ActivityServiceDb implements ActivityService {
     case self:
       // select self
       sb.append(ActivityDb.JPQL_FINDACTIVITY);
-      lastPos = JPQLUtils.addInClause(sb, "a", "userId", lastPos, paramList.size());
+      lastPos = JPQLUtils.addInClause(sb, "a", "userId", lastPos, paramList);
       break;
     default:
       throw new ProtocolException(HttpServletResponse.SC_BAD_REQUEST, "Group ID not recognized");
 
     }
     
-    // Get total results, that is count the total number of rows for this query
-    Long totalResults = JPQLUtils.getTotalResults(entityManager, sb.toString(), paramList);
-    
     // Execute paginated query
-    if (totalResults > 0) {
-      plist = JPQLUtils.getListQuery(entityManager, sb.toString(), paramList, options);
-    }
+    plist = JPQLUtils.getListQuery(entityManager, sb.toString(), paramList, options);
 
     if (plist == null) {
       plist = Lists.newArrayList();
     }
 
-    plist = JPQLUtils.getListQuery(entityManager, sb.toString(), paramList, null);
-
-    if (plist == null) {
-      plist = new ArrayList<Activity>();
-    }
+    // Get total results, only counting the rows when the page doesn't tell
+    Long totalResults = JPQLUtils.getTotalResults(entityManager, sb.toString(), paramList,
+        options, plist.size());
 
     // all of the above could equally have been placed into a thread to overlay the
     // db wait times.
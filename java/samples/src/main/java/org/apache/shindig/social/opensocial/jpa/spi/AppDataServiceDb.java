@@ -140,20 +140,20 @@ public class AppDataServiceDb implements AppDataService {
     case all:
       // userId translates into all contacts
       sb.append(ApplicationDataMapDb.FINDBY_ALL_GROUP);
-      lastParam = JPQLUtils.addInClause(sb, "am", "personId", lastParam, paramList.size());
+      lastParam = JPQLUtils.addInClause(sb, "am", "personId", lastParam, paramList);
       break;
     case deleted:
       // ignored
       break;
     case friends:
       sb.append(ApplicationDataMapDb.FINDBY_FRIENDS_GROUP);
-      lastParam = JPQLUtils.addInClause(sb, "p", "id", lastParam, paramList.size());
+      lastParam = JPQLUtils.addInClause(sb, "p", "id", lastParam, paramList);
       sb.append(')');
       // userId translates into all friends
       break;
     case groupId:
       sb.append(ApplicationDataMapDb.FINDBY_GROUP_GROUP);
-      lastParam = JPQLUtils.addInClause(sb, "am", "personId", lastParam, paramList.size());
+      lastParam = JPQLUtils.addInClause(sb, "am", "personId", lastParam, paramList);
       sb.append(" and g.id = ?").append(lastParam);
       paramList.add(groupId.getGroupId());
       lastParam++;
@@ -162,7 +162,7 @@ public class AppDataServiceDb implements AppDataService {
     default: // including self
       // userId is the user Id
       sb.append(ApplicationDataMapDb.FINDBY_SELF_GROUP);
-      lastParam = JPQLUtils.addInClause(sb, "am", "personId", lastParam, paramList.size());
+      lastParam = JPQLUtils.addInClause(sb, "am", "personId", lastParam, paramList);
       break;
 
     }
@@ -52,6 +52,31 @@ public class JPQLUtils {
     return firstField + nfields;
   }
 
+  /**
+   * Append an in clause for the given values, using positional parameters. The values are padded
+   * to the next power of two by repeating the last one, so that lists of similar sizes produce the
+   * same query string and share the provider's parsed query and prepared statement caches.
+   *
+   * @param sb the query builder buffer
+   * @param alias the alias to use for the property
+   * @param inField the infield name
+   * @param firstField the position of the first parameter
+   * @param values the parameter values, which are padded in place
+   * @return the position of the next parameter
+   */
+  public static <T> int addInClause(StringBuilder sb, String alias, String inField, int firstField,
+      List<T> values) {
+    int size = values.size();
+    if (size > 1) {
+      int padded = Integer.highestOneBit(size - 1) << 1;
+      T last = values.get(size - 1);
+      for (int i = size; i < padded; i++) {
+        values.add(last);
+      }
+    }
+    return addInClause(sb, alias, inField, firstField, values.size());
+  }
+
   /**
    * Perform a JPAQ, and return a typed list.
    *
@@ -67,14 +92,17 @@ public class JPQLUtils {
     Query q = createQuery(entityManager, query, parametersValues);
     if (collectionOptions != null) {
       q.setFirstResult(collectionOptions.getFirst());
-      q.setMaxResults(collectionOptions.getMax());
+      // A max of 0 means no limit.
+      if (collectionOptions.getMax() > 0) {
+        q.setMaxResults(collectionOptions.getMax());
+      }
     }
     return (List<T>) q.getResultList();
   }
 
 
   /**
-   * Performs a 'select count(*)' on the given query
+   * Performs a 'select count' of the selected entity on the given query
    *
    * @param entityManager
    * @param query
@@ -94,11 +122,41 @@ public class JPQLUtils {
         throw new ProtocolException(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Invalid query [" + query + ']');
       }
     }
-    query = "select count(*) " + query.substring(fromIndex, query.length());
+    // JPQL only counts a path, so count the selected entity; count(*) is a Hibernate extension
+    String selected = "*";
+    if (queryInUpperCase.startsWith("SELECT ")) {
+      selected = query.substring("SELECT ".length(), fromIndex).trim();
+    }
+    query = "select count(" + selected + ") " + query.substring(fromIndex, query.length());
     Query q = createQuery(entityManager, query, parametersValues);
     return (Long) q.getSingleResult();
   }
 
+  /**
+   * Gets the total number of results for a paged query, after the page has been read. If the page
+   * is the last one, the total follows from its size; otherwise a count query is run.
+   *
+   * @param entityManager
+   * @param query the query without an order clause
+   * @param parametersValues
+   * @param collectionOptions the options used for paging, or null if the query was not paged
+   * @param pageSize the number of results in the page
+   * @return the total number of results
+   */
+  public static Long getTotalResults(EntityManager entityManager, String query,
+      List<?> parametersValues, CollectionOptions collectionOptions, int pageSize) {
+    if (collectionOptions == null) {
+      return Long.valueOf(pageSize);
+    }
+    int max = collectionOptions.getMax();
+    boolean lastPage = max <= 0 || pageSize < max;
+    // An empty page past the first one says nothing about how many results precede it.
+    if (lastPage && (pageSize > 0 || collectionOptions.getFirst() == 0)) {
+      return Long.valueOf(collectionOptions.getFirst() + pageSize);
+    }
+    return getTotalResults(entityManager, query, parametersValues);
+  }
+
   /**
    * Create JPA Query
    *
@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.apache.shindig.social.opensocial.jpa.spi;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+
+import org.apache.shindig.social.opensocial.jpa.PersonDb;
+import org.apache.shindig.social.opensocial.model.Person;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.persistence.EntityManager;
+
+/**
+ * Chooses which associations of {@link PersonDb} are loaded with a page of people, from the
+ * fields that were requested.
+ *
+ * Single valued associations are join fetched by the query that reads the page. Collections
+ * can't be join fetched without breaking paging, so each requested collection is loaded for the
+ * whole page with one extra query, instead of one query per person when the collection is first
+ * read. Associations that were not requested are left to load lazily, if at all.
+ */
+public class PersonFetchPlan {
+
+  /** Single valued associations, by field name. */
+  private static final Map<String, String> JOINS = ImmutableMap.of(
+      Person.Field.NAME.toString(), "name",
+      Person.Field.BODY_TYPE.toString(), "bodyType",
+      Person.Field.CURRENT_LOCATION.toString(), "currentLocation");
+
+  /** Collection associations, by field name. */
+  private static final Map<String, String> COLLECTIONS = new ImmutableMap.Builder<String, String>()
+      .put(Person.Field.ACCOUNTS.toString(), "accounts")
+      .put(Person.Field.ADDRESSES.toString(), "addresses")
+      .put(Person.Field.EMAILS.toString(), "emails")
+      .put(Person.Field.IMS.toString(), "ims")
+      .put(Person.Field.ORGANIZATIONS.toString(), "organizations")
+      .put(Person.Field.PHONE_NUMBERS.toString(), "phoneNumbers")
+      .put(Person.Field.PHOTOS.toString(), "photos")
+      .put(Person.Field.URLS.toString(), "urls")
+      .build();
+
+  private static final String FROM_PERSON = "from PersonDb p ";
+
+  private static final String ECLIPSELINK_PACKAGE = "org.eclipse.persistence.";
+
+  private final List<String> joins;
+  private final List<String> collections;
+
+  private PersonFetchPlan(List<String> joins, List<String> collections) {
+    this.joins = joins;
+    this.collections = collections;
+  }
+
+  /**
+   * Creates the plan for the requested fields. An empty or null set requests every field.
+   */
+  public static PersonFetchPlan forFields(Set<String> fields) {
+    boolean all = fields == null || fields.isEmpty();
+    List<String> joins = Lists.newArrayList();
+    for (Map.Entry<String, String> entry : JOINS.entrySet()) {
+      if (all || fields.contains(entry.getKey())) {
+        joins.add(entry.getValue());
+      }
+    }
+    List<String> collections = Lists.newArrayList();
+    for (Map.Entry<String, String> entry : COLLECTIONS.entrySet()) {
+      if (all || fields.contains(entry.getKey())) {
+        collections.add(entry.getValue());
+      }
+    }
+    return new PersonFetchPlan(ImmutableList.copyOf(joins), ImmutableList.copyOf(collections));
+  }
+
+  /**
+   * @return the collection associations loaded by {@link #fetchCollections}
+   */
+  public List<String> getCollections() {
+    return collections;
+  }
+
+  /**
+   * Adds join fetches for the single valued associations to a query that selects "p" from
+   * "PersonDb p". Subqueries are left unchanged. The result must not be used as a count query.
+   *
+   * @param query the JPQL query
+   * @return the query with join fetches
+   */
+  public String addJoins(String query) {
+    int pos = query.indexOf(FROM_PERSON);
+    if (joins.isEmpty() || pos < 0) {
+      return query;
+    }
+    StringBuilder sb = new StringBuilder(query.length() + joins.size() * 32);
+    pos += FROM_PERSON.length();
+    sb.append(query, 0, pos);
+    for (String join : joins) {
+      sb.append("left join fetch p.").append(join).append(' ');
+    }
+    sb.append(query, pos, query.length());
+    return sb.toString();
+  }
+
+  /**
+   * Loads the planned collections of a page of people that are managed by the entity manager.
+   * Pages of a single person are left alone, since loading lazily takes as many queries.
+   *
+   * EclipseLink doesn't merge join fetched collections into instances it already manages, so
+   * the extra queries would be wasted there and its entity managers are left alone too.
+   *
+   * @param entityManager the entity manager the people were read with
+   * @param people the page of people
+   */
+  public void fetchCollections(EntityManager entityManager, List<? extends Person> people) {
+    if (collections.isEmpty() || people.size() < 2 || isEclipseLink(entityManager)) {
+      return;
+    }
+    List<Long> objectIds = Lists.newArrayListWithExpectedSize(people.size());
+    for (Person person : people) {
+      if (person instanceof PersonDb) {
+        objectIds.add(((PersonDb) person).getObjectId());
+      }
+    }
+    for (String collection : collections) {
+      // The fetched collections are merged into the instances already in the persistence
+      // context, so the results themselves are not needed.
+      StringBuilder sb = new StringBuilder("select distinct p from PersonDb p left join fetch p.");
+      sb.append(collection).append(" where ");
+      List<Long> params = Lists.newArrayList(objectIds);
+      JPQLUtils.addInClause(sb, "p", "objectId", 1, params);
+      JPQLUtils.getListQuery(entityManager, sb.toString(), params, null);
+    }
+  }
+
+  private static boolean isEclipseLink(EntityManager entityManager) {
+    return entityManager.getDelegate().getClass().getName().startsWith(ECLIPSELINK_PACKAGE);
+  }
+}
@@ -74,10 +74,11 @@ public class PersonServiceDb implements PersonService {
     // by the group id, the final set is filtered
     // using the collectionOptions and return the fields requested.
 
-    // not dealing with the collection options at the moment, and not the fields because they are
-    // either lazy or at no extra costs, the consumer will either access the properties or not
+    // filters, sort order and paging are pushed into the query, and the fields choose which
+    // associations are fetched with the page, see PersonFetchPlan
     List<Person> plist = null;
     int lastPos = 1;
+    PersonFetchPlan fetchPlan = PersonFetchPlan.forFields(fields);
     Long totalResults = null;
 
     StringBuilder sb = new StringBuilder();
@@ -88,12 +89,12 @@ public class PersonServiceDb implements PersonService {
     case all:
       // select all contacts
       sb.append(PersonDb.JPQL_FINDALLPERSON);
-      lastPos = JPQLUtils.addInClause(sb, "p", "id", lastPos, paramList.size());
+      lastPos = JPQLUtils.addInClause(sb, "p", "id", lastPos, paramList);
       break;
     case friends:
       // select all friends (subset of contacts)
       sb.append(PersonDb.JPQL_FINDPERSON_BY_FRIENDS);
-      lastPos = JPQLUtils.addInClause(sb, "p", "id", lastPos, paramList.size());
+      lastPos = JPQLUtils.addInClause(sb, "p", "id", lastPos, paramList);
       sb.append(") ");
       // TODO Group by doesn't work in HSQLDB or Derby - causes a "Not in aggregate function or group by clause" jdbc exception
       // sb.append(" group by p ");
@@ -101,7 +102,7 @@ public class PersonServiceDb implements PersonService {
     case groupId:
       // select those in the group
       sb.append(PersonDb.JPQL_FINDPERSON_BY_GROUP);
-      lastPos = JPQLUtils.addInClause(sb, "p", "id", lastPos, paramList.size());
+      lastPos = JPQLUtils.addInClause(sb, "p", "id", lastPos, paramList);
       sb.append(" and g.id = ?").append(lastPos);
       lastPos++;
       break;
@@ -111,7 +112,7 @@ public class PersonServiceDb implements PersonService {
     case self:
       // select self
       sb.append(PersonDb.JPQL_FINDPERSON);
-      lastPos = JPQLUtils.addInClause(sb, "p", "id", lastPos, paramList.size());
+      lastPos = JPQLUtils.addInClause(sb, "p", "id", lastPos, paramList);
       break;
     default:
       throw new ProtocolException(HttpServletResponse.SC_BAD_REQUEST, "Group ID not recognized");
@@ -119,32 +120,34 @@ public class PersonServiceDb implements PersonService {
     }
 
     if (GroupId.Type.self.equals(groupId.getType())) {
-      plist = JPQLUtils.getListQuery(entiyManager, sb.toString(), paramList, collectionOptions);
+      plist = JPQLUtils.getListQuery(entiyManager, fetchPlan.addJoins(sb.toString()), paramList,
+          collectionOptions);
       totalResults = Long.valueOf(1);
       if (plist.isEmpty()) {
         throw new ProtocolException(HttpServletResponse.SC_BAD_REQUEST, "Person not found");
       }
     } else {
-      int filterPos = addFilterClause(sb, PersonDb.getFilterCapability(), collectionOptions,
-          lastPos);
-      if (filterPos > 0) {
-        paramList.add(collectionOptions.getFilterValue());
-      }
-
-      // Get total results, that is count the total number of rows for this query
-      totalResults = JPQLUtils.getTotalResults(entiyManager, sb.toString(), paramList);
+      lastPos = addFilterClause(sb, PersonDb.getFilterCapability(), collectionOptions,
+          lastPos, paramList);
+      String countQuery = sb.toString();
 
       // Execute ordered and paginated query
-      if (totalResults > 0) {
-        addOrderClause(sb, collectionOptions);
-        plist = JPQLUtils.getListQuery(entiyManager, sb.toString(), paramList, collectionOptions);
-      }
+      addOrderClause(sb, collectionOptions);
+      plist = JPQLUtils.getListQuery(entiyManager, fetchPlan.addJoins(sb.toString()), paramList,
+          collectionOptions);
 
       if (plist == null) {
         plist = Lists.newArrayList();
       }
+
+      // Get total results, only counting the rows when the page doesn't tell
+      totalResults = JPQLUtils.getTotalResults(entiyManager, countQuery, paramList,
+          collectionOptions, plist.size());
     }
 
+    // load the requested collections for the whole page rather than person by person
+    fetchPlan.fetchCollections(entiyManager, plist);
+
     // all of the above could equally have been placed into a thread to overlay the
     // db wait times.
     RestfulCollection<Person> restCollection = new RestfulCollection<Person>(
@@ -178,24 +181,24 @@ public class PersonServiceDb implements PersonService {
    *
    * @param sb the query builder buffer
    * @param collectionOptions the options
-   * @param lastPos the last positional parameter that was used so far in the query
-   * @return
+   * @param lastPos the next positional parameter to use in the query
+   * @param paramList the parameters of the query, to which the filter value is added
+   * @return the next positional parameter to use in the query
    */
   private int addFilterClause(StringBuilder sb, FilterCapability filterable,
-      CollectionOptions collectionOptions, int lastPos) {
+      CollectionOptions collectionOptions, int lastPos, List<String> paramList) {
     // this makes the filter value saf
     String filter = filterable.findFilterableProperty(collectionOptions.getFilter(),
         collectionOptions.getFilterOperation());
     String filterValue = collectionOptions.getFilterValue();
-    int filterPos = 0;
     if (FilterSpecification.isValid(filter)) {
       if (FilterSpecification.isSpecial(filter)) {
         if (PersonService.HAS_APP_FILTER.equals(filter)) {
           // Retrieves all friends with any data for this application.
           // TODO: how do we determine which application is being talked about,
           // the assumption below is wrong
-          filterPos = lastPos + 1;
-          sb.append(" f.application_id  = ?").append(filterPos);
+          sb.append(" and f.application_id = ?").append(lastPos++);
+          paramList.add(filterValue);
         } else if (PersonService.TOP_FRIENDS_FILTER.equals(filter)) {
           // Retrieves only the user's top friends, this is defined here by the implementation
           // and there is an assumption that the sort order has already been applied.
@@ -208,35 +211,31 @@ public class PersonServiceDb implements PersonService {
         } else if (PersonService.ALL_FILTER.equals(filter)) {
            // select all, ie no filtering
         } else if (PersonService.IS_WITH_FRIENDS_FILTER.equals(filter)) {
-          filterPos = lastPos + 1;
-          sb.append(" f.friend  = ?").append(filterPos);
+          sb.append(" and f.friend = ?").append(lastPos++);
+          paramList.add(filterValue);
         }
       } else {
-        sb.append("p.").append(filter);
+        sb.append(" and p.").append(filter);
         switch (collectionOptions.getFilterOperation()) {
         case contains:
-          filterPos = lastPos + 1;
-          sb.append(" like ").append(" ?").append(filterPos);
-          filterValue = '%' + filterValue + '%';
-          collectionOptions.setFilter(filterValue);
+          sb.append(" like ?").append(lastPos++);
+          paramList.add('%' + filterValue + '%');
           break;
         case equals:
-          filterPos = lastPos + 1;
-          sb.append(" = ").append(" ?").append(filterPos);
+          sb.append(" = ?").append(lastPos++);
+          paramList.add(filterValue);
           break;
         case present:
           sb.append(" is not null ");
           break;
         case startsWith:
-          filterPos = lastPos + 1;
-          sb.append(" like ").append(" ?").append(filterPos);
-          filterValue = '%' + filterValue + '%';
-          collectionOptions.setFilter(filterValue);
+          sb.append(" like ?").append(lastPos++);
+          paramList.add(filterValue + '%');
           break;
         }
       }
     }
-    return filterPos;
+    return lastPos;
   }
 
   /**
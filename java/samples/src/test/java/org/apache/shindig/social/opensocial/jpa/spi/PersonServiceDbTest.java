@@ -19,8 +19,10 @@
 package org.apache.shindig.social.opensocial.jpa.spi;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import org.apache.shindig.protocol.RestfulCollection;
+import org.apache.shindig.protocol.model.FilterOperation;
 import org.apache.shindig.protocol.model.SortOrder;
 import org.apache.shindig.social.opensocial.model.Person;
 import org.apache.shindig.social.opensocial.spi.CollectionOptions;
@@ -28,7 +30,13 @@ import org.apache.shindig.social.opensocial.spi.GroupId;
 import org.apache.shindig.social.opensocial.spi.UserId;
 import org.apache.shindig.social.opensocial.spi.UserId.Type;
 
+import com.google.common.collect.ImmutableSet;
+
+import org.hibernate.stat.Statistics;
+
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.Future;
 
 import javax.persistence.EntityManager;
@@ -47,13 +55,15 @@ public class PersonServiceDbTest {
   private final Person canonical = SpiTestUtil.buildCanonicalPerson();
   
   private PersonServiceDb personServiceDb;
+
+  private EntityManager entityManager;
   
   /** The bootstrap. */
   private SpiDatabaseBootstrap bootstrap;
   
   @Before
   public void setup() throws Exception {
-    EntityManager entityManager = SpiEntityManagerFactory.getEntityManager();
+    this.entityManager = SpiEntityManagerFactory.getEntityManager();
     this.personServiceDb = new PersonServiceDb(entityManager);
     
     // Bootstrap hibernate and associated test db, and setup db with test data
@@ -121,4 +131,126 @@ public class PersonServiceDbTest {
   }
   
   
+  @Test
+  public void getJohnDoeFriendsLastPage() throws Exception {
+    // Set collection options
+    CollectionOptions collectionOptions = new CollectionOptions();
+    collectionOptions.setSortBy("name");
+    collectionOptions.setSortOrder(SortOrder.ascending);
+    collectionOptions.setFirst(2);
+    collectionOptions.setMax(2);
+
+    // The total is known from the short last page
+    Future<RestfulCollection<Person>> result = this.personServiceDb.getPeople(SpiTestUtil.buildUserIds("john.doe"), new GroupId(GroupId.Type.friends, "@friends"), collectionOptions, Person.Field.ALL_FIELDS, SpiTestUtil.DEFAULT_TEST_SECURITY_TOKEN);
+    RestfulCollection<Person> peopleCollection = result.get();
+    assertEquals(3, peopleCollection.getTotalResults());
+    assertEquals(2, peopleCollection.getStartIndex());
+    assertEquals(1, peopleCollection.getEntry().size());
+
+    // An empty page past the end still reports the total
+    collectionOptions.setFirst(4);
+    result = this.personServiceDb.getPeople(SpiTestUtil.buildUserIds("john.doe"), new GroupId(GroupId.Type.friends, "@friends"), collectionOptions, Person.Field.ALL_FIELDS, SpiTestUtil.DEFAULT_TEST_SECURITY_TOKEN);
+    peopleCollection = result.get();
+    assertEquals(3, peopleCollection.getTotalResults());
+    assertEquals(0, peopleCollection.getEntry().size());
+  }
+
+  @Test
+  public void getJohnDoeFriendsFilteredByDisplayName() throws Exception {
+    CollectionOptions collectionOptions = new CollectionOptions();
+    collectionOptions.setSortBy("name");
+    collectionOptions.setSortOrder(SortOrder.ascending);
+    collectionOptions.setMax(20);
+    collectionOptions.setFilter("displayName");
+
+    collectionOptions.setFilterOperation(FilterOperation.equals);
+    collectionOptions.setFilterValue("Maija");
+    assertFriendIds(collectionOptions, "maija.m");
+
+    collectionOptions.setFilterOperation(FilterOperation.startsWith);
+    collectionOptions.setFilterValue("Ja");
+    assertFriendIds(collectionOptions, "jane.doe");
+
+    collectionOptions.setFilterOperation(FilterOperation.contains);
+    collectionOptions.setFilterValue("ey");
+    assertFriendIds(collectionOptions, "george.doe", "jane.doe");
+
+    collectionOptions.setFilterOperation(FilterOperation.present);
+    assertFriendIds(collectionOptions, "george.doe", "jane.doe", "maija.m");
+  }
+
+  @Test
+  public void getFriendsOfSeveralPeople() throws Exception {
+    CollectionOptions collectionOptions = new CollectionOptions();
+    collectionOptions.setSortBy("name");
+    collectionOptions.setSortOrder(SortOrder.ascending);
+    collectionOptions.setMax(20);
+
+    // Three ids are padded to four in the in clause
+    Future<RestfulCollection<Person>> result = this.personServiceDb.getPeople(SpiTestUtil.buildUserIds("john.doe", "jane.doe", "george.doe"), new GroupId(GroupId.Type.friends, "@friends"), collectionOptions, Person.Field.ALL_FIELDS, SpiTestUtil.DEFAULT_TEST_SECURITY_TOKEN);
+    RestfulCollection<Person> peopleCollection = result.get();
+    assertEquals(4, peopleCollection.getTotalResults());
+    List<Person> people = peopleCollection.getEntry();
+    SpiTestUtil.assertPersonEquals(people.get(0), "george.doe", "George Doe");
+    SpiTestUtil.assertPersonEquals(people.get(1), "jane.doe", "Jane Doe");
+    SpiTestUtil.assertPersonEquals(people.get(2), "john.doe", "John Doe");
+  }
+
+  private void assertFriendIds(CollectionOptions collectionOptions, String... ids)
+      throws Exception {
+    RestfulCollection<Person> peopleCollection = this.personServiceDb.getPeople(SpiTestUtil.buildUserIds("john.doe"), new GroupId(GroupId.Type.friends, "@friends"), collectionOptions, Person.Field.ALL_FIELDS, SpiTestUtil.DEFAULT_TEST_SECURITY_TOKEN).get();
+    assertEquals(ids.length, peopleCollection.getTotalResults());
+    assertEquals(ids.length, peopleCollection.getEntry().size());
+    for (int i = 0; i < ids.length; i++) {
+      assertEquals(ids[i], peopleCollection.getEntry().get(i).getId());
+    }
+  }
+
+  @Test
+  public void getJohnDoeFriendsLoadsRequestedCollectionsPerPage() throws Exception {
+    Statistics statistics = SpiEntityManagerFactory.getStatistics();
+
+    // Read every collection of john.doe's friends, fetched with all fields
+    entityManager.clear();
+    statistics.clear();
+    readCollections(getJohnDoeFriends(Person.Field.ALL_FIELDS));
+    long planned = statistics.getPrepareStatementCount();
+
+    // Read them again, this time fetched for their ids only
+    entityManager.clear();
+    statistics.clear();
+    readCollections(getJohnDoeFriends(ImmutableSet.of(Person.Field.ID.toString())));
+    long lazy = statistics.getPrepareStatementCount();
+
+    assertTrue("Fetch plan took " + planned + " statements, lazy loading " + lazy,
+        planned < lazy);
+  }
+
+  private List<Person> getJohnDoeFriends(Set<String> fields) throws Exception {
+    CollectionOptions collectionOptions = new CollectionOptions();
+    collectionOptions.setSortBy("name");
+    collectionOptions.setSortOrder(SortOrder.ascending);
+    collectionOptions.setMax(20);
+    List<Person> people = this.personServiceDb.getPeople(SpiTestUtil.buildUserIds("john.doe"), new GroupId(GroupId.Type.friends, "@friends"), collectionOptions, fields, SpiTestUtil.DEFAULT_TEST_SECURITY_TOKEN).get().getEntry();
+    assertEquals(3, people.size());
+    return people;
+  }
+
+  private static void readCollections(List<Person> people) {
+    for (Person person : people) {
+      size(person.getAccounts());
+      size(person.getAddresses());
+      size(person.getEmails());
+      size(person.getIms());
+      size(person.getOrganizations());
+      size(person.getPhoneNumbers());
+      size(person.getPhotos());
+      size(person.getUrls());
+    }
+  }
+
+  private static int size(Collection<?> collection) {
+    return collection == null ? 0 : collection.size();
+  }
+
 }
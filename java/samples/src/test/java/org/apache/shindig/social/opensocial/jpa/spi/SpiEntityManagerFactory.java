@@ -18,6 +18,9 @@
 
 package org.apache.shindig.social.opensocial.jpa.spi;
 
+import org.hibernate.ejb.HibernateEntityManager;
+import org.hibernate.stat.Statistics;
+
 import java.util.HashMap;
 
 import javax.persistence.EntityManager;
@@ -54,4 +57,14 @@ public class SpiEntityManagerFactory {
   public static EntityManager getEntityManager() {
     return INSTANCE.entityManager;
   }
+
+  /**
+   * Gets the statistics of the session factory behind the entity manager.
+   *
+   * @return the statistics
+   */
+  public static Statistics getStatistics() {
+    return ((HibernateEntityManager) INSTANCE.entityManager).getSession().getSessionFactory()
+        .getStatistics();
+  }
 }
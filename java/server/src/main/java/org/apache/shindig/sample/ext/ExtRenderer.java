@@ -40,7 +40,6 @@ import com.google.inject.Provider;
 public class ExtRenderer extends Renderer {
 	private static final Logger LOG = Logger.getLogger(ExtRenderer.class.getName());
 	private final Processor processor;
-	private final HtmlRenderer renderer;
 	private final ContainerConfig containerConfig;
 	private final LockedDomainService lockedDomainService;
 
@@ -55,7 +54,6 @@ public class ExtRenderer extends Renderer {
 		super(processor, renderer, containerConfig, lockedDomainService);
 
 		this.processor = processor;
-		this.renderer = renderer;
 		this.containerConfig = containerConfig;
 		this.lockedDomainService = lockedDomainService;
 		this.noFetchOAuthRequestProvider = provider;
@@ -111,7 +109,7 @@ public class ExtRenderer extends Renderer {
 						HttpServletResponse.SC_BAD_REQUEST);
 			}
 
-			return RenderingResults.ok(renderer.render(gadget));
+			return renderContent(gadget);
 		} catch (RenderingException e) {
 			return logError(context.getUrl(), e.getHttpStatusCode(), e);
 		} catch (ProcessingException e) {
@@ -18,6 +18,7 @@
 package org.apache.shindig.social.core.oauth;
 
 import com.google.inject.Inject;
+import com.google.inject.name.Named;
 
 import net.oauth.OAuth;
 import net.oauth.OAuthAccessor;
@@ -36,12 +37,13 @@ import org.apache.commons.lang.StringUtils;
 import org.apache.shindig.auth.AuthenticationHandler;
 import org.apache.shindig.auth.OAuthConstants;
 import org.apache.shindig.auth.SecurityToken;
+import org.apache.shindig.auth.StashedBody;
 import org.apache.shindig.common.util.CharsetUtil;
 import org.apache.shindig.social.opensocial.oauth.OAuthDataStore;
 import org.apache.shindig.social.opensocial.oauth.OAuthEntry;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URISyntaxException;
 import java.util.Arrays;
 
@@ -55,12 +57,25 @@ public class OAuthAuthenticationHandler implements AuthenticationHandler {
   public static final String REQUESTOR_ID_PARAM = "xoauth_requestor_id";
 
   private final OAuthDataStore store;
+  private int bodyMemoryThreshold = StashedBody.DEFAULT_MEMORY_THRESHOLD;
+  private long bodyMaxSize = StashedBody.DEFAULT_MAX_SIZE;
 
   @Inject
   public OAuthAuthenticationHandler(OAuthDataStore store) {
     this.store = store;
   }
 
+  /**
+   * Sets the limits for request bodies read for body hash verification. Bodies above the memory
+   * threshold are buffered in a temporary file; bodies above the maximum size are rejected.
+   */
+  @Inject(optional = true)
+  public void setBodyLimits(@Named("shindig.oauth.body.memory-threshold") int memoryThreshold,
+                            @Named("shindig.oauth.body.max-size") long maxSize) {
+    this.bodyMemoryThreshold = memoryThreshold;
+    this.bodyMaxSize = maxSize;
+  }
+
   public String getName() {
     return "OAuth";
   }
@@ -214,18 +229,20 @@ public class OAuthAuthenticationHandler implements AuthenticationHandler {
     }
   }
 
-  public static byte[] readBody(HttpServletRequest request) throws IOException {
-    if (request.getAttribute(AuthenticationHandler.STASHED_BODY) != null) {
-      return (byte[])request.getAttribute(AuthenticationHandler.STASHED_BODY);
-    }
-    byte[] rawBody = IOUtils.toByteArray(request.getInputStream());
-    request.setAttribute(AuthenticationHandler.STASHED_BODY, rawBody);
-    return rawBody;
+  /**
+   * Reads and stashes the request body within the configured body limits.
+   */
+  public byte[] readBody(HttpServletRequest request) throws IOException {
+    return StashedBody.stash(request, bodyMemoryThreshold, bodyMaxSize).getBytes();
   }
 
-  public static String readBodyString(HttpServletRequest request) throws IOException {
-    byte[] rawBody = readBody(request);
-    return IOUtils.toString(new ByteArrayInputStream(rawBody), request.getCharacterEncoding());
+  public String readBodyString(HttpServletRequest request) throws IOException {
+    InputStream in = StashedBody.stash(request, bodyMemoryThreshold, bodyMaxSize).getInputStream();
+    try {
+      return IOUtils.toString(in, request.getCharacterEncoding());
+    } finally {
+      in.close();
+    }
   }
 
   //
@@ -235,8 +252,13 @@ public class OAuthAuthenticationHandler implements AuthenticationHandler {
   // Content-Type が application/x-www-form-urlencoded のときのみだった。body hash 拡張仕様で、
   // それ以外の場合も署名のベース文字列として使えるようになる。これにより、ボディ内容を改竄される危険が減る。
   //
-  public static void verifyBodyHash(HttpServletRequest request, String oauthBodyHash)
+  public void verifyBodyHash(HttpServletRequest request, String oauthBodyHash)
     throws InvalidAuthenticationException {
+    verifyBodyHash(request, oauthBodyHash, bodyMemoryThreshold, bodyMaxSize);
+  }
+
+  public static void verifyBodyHash(HttpServletRequest request, String oauthBodyHash,
+      int memoryThreshold, long maxSize) throws InvalidAuthenticationException {
     // we are doing body hash signing which is not permitted for form-encoded data
     if (request.getContentType() != null && request.getContentType().contains(OAuth.FORM_ENCODED)) {
       throw new AuthenticationHandler.InvalidAuthenticationException(
@@ -244,9 +266,19 @@ public class OAuthAuthenticationHandler implements AuthenticationHandler {
         null);
     } else {
       try {
-        byte[] rawBody = readBody(request);
+        StashedBody body = StashedBody.stash(request, memoryThreshold, maxSize);
         byte[] received = Base64.decodeBase64(CharsetUtil.getUtf8Bytes(oauthBodyHash));
-        byte[] expected = DigestUtils.sha(rawBody);
+        byte[] expected;
+        if (body.isInMemory()) {
+          expected = DigestUtils.sha(body.getBytes());
+        } else {
+          InputStream in = body.getInputStream();
+          try {
+            expected = DigestUtils.sha(in);
+          } finally {
+            in.close();
+          }
+        }
         if (!Arrays.equals(received, expected)) {
           throw new AuthenticationHandler.InvalidAuthenticationException(
             "oauth_body_hash failed verification", null);
@@ -18,12 +18,17 @@
 package org.apache.shindig.social.core.util;
 
 import com.google.inject.Inject;
+import com.thoughtworks.xstream.io.StreamException;
 
 import org.apache.shindig.protocol.ContentTypes;
 import org.apache.shindig.protocol.conversion.BeanXStreamConverter;
 import org.apache.shindig.protocol.conversion.xstream.XStreamConfiguration;
 import org.apache.shindig.social.core.util.atom.AtomFeed;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
 /**
  * Converts output to atom.
  * TODO: Move to common once atom binding can be decoupled form social code
@@ -55,12 +60,36 @@ public class BeanXStreamAtomConverter extends BeanXStreamConverter {
    */
   @Override
   public String convertToString(Object obj) {
+    StringWriter out = new StringWriter();
+    writeAtom(obj, out);
+    return out.toString();
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @see org.apache.shindig.protocol.conversion.BeanXStreamConverter#append(java.lang.Appendable, java.lang.Object)
+   */
+  @Override
+  public void append(Appendable buf, Object obj) throws IOException {
+    if (buf instanceof Writer) {
+      try {
+        writeAtom(obj, (Writer) buf);
+      } catch (StreamException e) {
+        throw unwrap(e);
+      }
+    } else {
+      buf.append(convertToString(obj));
+    }
+  }
+
+  private void writeAtom(Object obj, Writer out) {
     writerStack.reset();
     AtomFeed af = new AtomFeed(obj);
     XStreamConfiguration.ConverterConfig cc = converterMap.get(XStreamConfiguration.ConverterSet.DEFAULT);
     cc.mapper.setBaseObject(af); // thread safe method
 
-    return cc.xstream.toXML(af);
+    cc.xstream.toXML(af, out);
   }
 
 }
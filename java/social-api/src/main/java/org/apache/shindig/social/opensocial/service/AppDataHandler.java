@@ -22,6 +22,7 @@ import org.apache.shindig.protocol.Operation;
 import org.apache.shindig.protocol.ProtocolException;
 import org.apache.shindig.protocol.Service;
 import org.apache.shindig.social.opensocial.spi.AppDataService;
+import org.apache.shindig.social.opensocial.spi.GroupId;
 import org.apache.shindig.social.opensocial.spi.UserId;
 
 import java.util.Map;
@@ -40,11 +41,21 @@ public class AppDataHandler {
 
   private final AppDataService service;
 
+  private SocialRequestBatcher batcher;
+
   @Inject
   public AppDataHandler(AppDataService service) {
     this.service = service;
   }
 
+  /**
+   * Lets @self reads within a batch be merged into one call.
+   */
+  @Inject(optional = true)
+  public void setBatcher(SocialRequestBatcher batcher) {
+    this.batcher = batcher;
+  }
+
   /**
    * Allowed endpoints /appdata/{userId}/{groupId}/{appId} - fields={field1, field2}
    *
@@ -122,6 +133,10 @@ public class AppDataHandler {
     // Preconditions
     HandlerPreconditions.requireNotEmpty(userIds, "No userId specified");
 
+    if (batcher != null && request.getGroup().getType() == GroupId.Type.self) {
+      return batcher.getPersonData(userIds, request.getAppId(), request.getFields(),
+          request.getToken());
+    }
     return service.getPersonData(userIds, request.getGroup(),
         request.getAppId(), request.getFields(), request.getToken());
   }
@@ -44,15 +44,27 @@ import com.google.inject.Inject;
  */
 @Service(name = "people", path = "/{userId}+/{groupId}/{personId}+")
 public class PersonHandler {
+  private static final String ALL_FIELDS = "@all";
+
   private final PersonService personService;
   private final ContainerConfig config;
 
+  private SocialRequestBatcher batcher;
+
   @Inject
   public PersonHandler(PersonService personService, ContainerConfig config) {
     this.personService = personService;
     this.config = config;
   }
 
+  /**
+   * Lets single person lookups within a batch be merged into one call.
+   */
+  @Inject(optional = true)
+  public void setBatcher(SocialRequestBatcher batcher) {
+    this.batcher = batcher;
+  }
+
   /**
    * Allowed end-points /people/{userId}+/{groupId} /people/{userId}/{groupId}/{optionalPersonId}+
    *
@@ -82,10 +94,14 @@ public class PersonHandler {
                 userIds, groupId, options, fields, request.getToken());
             return FutureUtil.getFirstFromCollection(people);
           } else {
+            if (batcher != null) {
+              return batcher.getPerson(userIds.iterator().next(), fields, request.getToken());
+            }
             return personService.getPerson(userIds.iterator().next(), fields, request.getToken());
           }
         } else {
-          return personService.getPeople(userIds, groupId, options, fields, request.getToken());
+          return project(personService.getPeople(userIds, groupId, options, fields,
+              request.getToken()), fields);
         }
       } else if (optionalPersonId.size() == 1) {
         // TODO: Add some crazy concept to handle the userId?
@@ -102,13 +118,32 @@ public class PersonHandler {
           personIds.add(new UserId(UserId.Type.userId, pid));
         }
         // Every other case is a collection response of optional person ids
-        return personService.getPeople(personIds.build(), new GroupId(GroupId.Type.self, null),
-            options, fields, request.getToken());
+        return project(personService.getPeople(personIds.build(),
+            new GroupId(GroupId.Type.self, null), options, fields, request.getToken()), fields);
       }
     }
 
     // Every other case is a collection response.
-    return personService.getPeople(userIds, groupId, options, fields, request.getToken());
+    return project(personService.getPeople(userIds, groupId, options, fields, request.getToken()),
+        fields);
+  }
+
+  /**
+   * Makes the people of a collection response be written with only the requested fields, so
+   * that unrequested properties are neither loaded nor serialized. The id is always written, and
+   * so is app data, which is only present when it was requested.
+   */
+  private static Future<RestfulCollection<Person>> project(
+      Future<RestfulCollection<Person>> people, Set<String> fields) {
+    if (fields.contains(ALL_FIELDS)) {
+      return people;
+    }
+    Set<String> projection = ImmutableSet.<String>builder()
+        .addAll(fields)
+        .add(Person.Field.ID.toString())
+        .add(Person.Field.APP_DATA.toString())
+        .build();
+    return FutureUtil.projectCollection(people, projection);
   }
 
   @Operation(httpMethods = "GET", path="/@supportedFields")
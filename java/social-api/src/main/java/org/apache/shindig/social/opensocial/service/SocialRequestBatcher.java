@@ -0,0 +1,400 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.social.opensocial.service;
+
+import org.apache.shindig.auth.SecurityToken;
+import org.apache.shindig.protocol.DataCollection;
+import org.apache.shindig.protocol.RestfulCollection;
+import org.apache.shindig.protocol.model.SortOrder;
+import org.apache.shindig.social.opensocial.model.Person;
+import org.apache.shindig.social.opensocial.spi.AppDataService;
+import org.apache.shindig.social.opensocial.spi.CollectionOptions;
+import org.apache.shindig.social.opensocial.spi.GroupId;
+import org.apache.shindig.social.opensocial.spi.PersonService;
+import org.apache.shindig.social.opensocial.spi.UserId;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.MapMaker;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Merges the single-user social lookups made while one request is handled into one SPI call
+ * per service.
+ *
+ * A JSON-RPC batch, including the batches sent by pipelined data preloading, is dispatched by
+ * calling every handler before reading any of the returned futures. Person lookups and @self
+ * app data reads are therefore queued here and answered with pending futures. When the first of
+ * them is read, all queued lookups asking for the same fields (and app) are resolved with a
+ * single {@link PersonService#getPeople} or {@link AppDataService#getPersonData} call.
+ *
+ * Lookups are grouped by security token, which is created for each incoming request and shared
+ * by every item of its batch. If a merged call fails or doesn't return a requested person, the
+ * affected lookups are repeated one by one, so results and errors match unbatched calls.
+ *
+ * A lookup read with a timeout waits for the merged call and for its own result no longer than
+ * the timeout. If the merged call takes too long, the affected lookups are repeated one by one as
+ * if it had failed, and the reader gets a TimeoutException if its own result isn't ready in time.
+ * Merged calls are made without holding the batch's lock, so a reader of another lookup of the
+ * batch waits no longer than its own timeout either.
+ *
+ * Merged person lookups always ask for the id, which matches people to lookups. It is cleared
+ * again from the returned people when the lookup didn't ask for it.
+ */
+@Singleton
+public class SocialRequestBatcher {
+  private static final GroupId SELF = new GroupId(GroupId.Type.self, null);
+  private static final long NO_DEADLINE = Long.MAX_VALUE;
+
+  private final PersonService personService;
+  private final AppDataService appDataService;
+  private final ConcurrentMap<SecurityToken, Batch> batches =
+      new MapMaker().weakKeys().makeMap();
+
+  @Inject
+  public SocialRequestBatcher(PersonService personService, AppDataService appDataService) {
+    this.personService = personService;
+    this.appDataService = appDataService;
+  }
+
+  /**
+   * Queues a lookup of a single person.
+   */
+  public Future<Person> getPerson(UserId userId, Set<String> fields, SecurityToken token) {
+    Batch batch = getBatch(token);
+    PersonLookup lookup = new PersonLookup(batch, userId, ImmutableSet.copyOf(fields));
+    batch.add(lookup);
+    return lookup;
+  }
+
+  /**
+   * Queues a read of the @self app data of the given users.
+   */
+  public Future<DataCollection> getPersonData(Set<UserId> userIds, String appId,
+      Set<String> fields, SecurityToken token) {
+    Batch batch = getBatch(token);
+    DataLookup lookup = new DataLookup(batch, ImmutableSet.copyOf(userIds), appId,
+        ImmutableSet.copyOf(fields));
+    batch.add(lookup);
+    return lookup;
+  }
+
+  private Batch getBatch(SecurityToken token) {
+    Batch batch = batches.get(token);
+    if (batch == null) {
+      batch = new Batch(token);
+      Batch existing = batches.putIfAbsent(token, batch);
+      if (existing != null) {
+        batch = existing;
+      }
+    }
+    return batch;
+  }
+
+  /**
+   * The lookups queued for one token. Resolving takes every queued lookup and drops the batch
+   * from the map, so lookups queued afterwards form the next batch and no state outlives the
+   * request.
+   */
+  private class Batch {
+    private final SecurityToken token;
+    private List<Lookup<?>> pending = Lists.newArrayList();
+
+    Batch(SecurityToken token) {
+      this.token = token;
+    }
+
+    synchronized void add(Lookup<?> lookup) {
+      pending.add(lookup);
+    }
+
+    /**
+     * Takes every queued lookup and resolves them in the calling thread, outside the lock.
+     *
+     * @param deadline The System.nanoTime() by which merged calls must finish, or NO_DEADLINE.
+     */
+    void resolve(long deadline) {
+      List<Lookup<?>> lookups;
+      synchronized (this) {
+        if (pending.isEmpty()) {
+          return;
+        }
+        batches.remove(token, this);
+        lookups = pending;
+        pending = Lists.newArrayList();
+      }
+
+      try {
+        resolve(lookups, deadline);
+      } catch (RuntimeException e) {
+        // Don't leave other readers waiting for lookups that will never be resolved.
+        for (Lookup<?> lookup : lookups) {
+          if (!lookup.isDone()) {
+            lookup.fail(e);
+          }
+        }
+        throw e;
+      }
+    }
+
+    private void resolve(List<Lookup<?>> lookups, long deadline) {
+      Multimap<Set<String>, PersonLookup> people = LinkedHashMultimap.create();
+      Multimap<List<Object>, DataLookup> data = LinkedHashMultimap.create();
+      for (Lookup<?> lookup : lookups) {
+        if (lookup instanceof PersonLookup) {
+          PersonLookup person = (PersonLookup) lookup;
+          people.put(person.fields, person);
+        } else {
+          DataLookup appData = (DataLookup) lookup;
+          data.put(Lists.<Object>newArrayList(appData.appId, appData.fields), appData);
+        }
+      }
+      for (Collection<PersonLookup> group : people.asMap().values()) {
+        resolvePeople(group, deadline);
+      }
+      for (Collection<DataLookup> group : data.asMap().values()) {
+        resolveData(group, deadline);
+      }
+    }
+
+    private void resolvePeople(Collection<PersonLookup> lookups, long deadline) {
+      PersonLookup first = lookups.iterator().next();
+      Map<String, Person> byId = Maps.newHashMap();
+      if (lookups.size() > 1) {
+        Set<String> fields = first.fields;
+        boolean addId = !fields.isEmpty() && !fields.contains(Person.Field.ID.toString());
+        if (addId) {
+          fields = ImmutableSet.<String>builder()
+              .addAll(fields).add(Person.Field.ID.toString()).build();
+        }
+        Set<UserId> userIds = Sets.newLinkedHashSet();
+        for (PersonLookup lookup : lookups) {
+          userIds.add(new UserId(UserId.Type.userId, lookup.userId.getUserId(token)));
+        }
+        CollectionOptions options = new CollectionOptions();
+        options.setSortBy(PersonService.TOP_FRIENDS_SORT);
+        options.setSortOrder(SortOrder.ascending);
+        options.setFirst(0);
+        options.setMax(userIds.size());
+        try {
+          RestfulCollection<Person> people =
+              await(personService.getPeople(userIds, SELF, options, fields, token), deadline);
+          for (Person person : people.getEntry()) {
+            byId.put(person.getId(), person);
+            if (addId) {
+              person.setId(null);
+            }
+          }
+        } catch (Exception e) {
+          // Fall through to individual lookups, which report their own errors.
+        }
+      }
+      for (PersonLookup lookup : lookups) {
+        Person person = byId.get(lookup.userId.getUserId(token));
+        if (person != null) {
+          lookup.set(person);
+        } else {
+          try {
+            lookup.complete(personService.getPerson(lookup.userId, lookup.fields, token));
+          } catch (RuntimeException e) {
+            lookup.fail(e);
+          }
+        }
+      }
+    }
+
+    private void resolveData(Collection<DataLookup> lookups, long deadline) {
+      DataLookup first = lookups.iterator().next();
+      if (lookups.size() > 1) {
+        Set<UserId> userIds = Sets.newLinkedHashSet();
+        for (DataLookup lookup : lookups) {
+          userIds.addAll(lookup.userIds);
+        }
+        try {
+          Map<String, Map<String, String>> entry = await(appDataService.getPersonData(
+              userIds, SELF, first.appId, first.fields, token), deadline).getEntry();
+          for (DataLookup lookup : lookups) {
+            Map<String, Map<String, String>> own = Maps.newHashMap();
+            for (UserId userId : lookup.userIds) {
+              String id = userId.getUserId(token);
+              if (entry.containsKey(id)) {
+                own.put(id, entry.get(id));
+              }
+            }
+            lookup.set(new DataCollection(own));
+          }
+          return;
+        } catch (Exception e) {
+          // Fall through to individual lookups, which report their own errors.
+        }
+      }
+      for (DataLookup lookup : lookups) {
+        try {
+          lookup.complete(appDataService.getPersonData(
+              lookup.userIds, SELF, lookup.appId, lookup.fields, token));
+        } catch (RuntimeException e) {
+          lookup.fail(e);
+        }
+      }
+    }
+  }
+
+  private static <T> T await(Future<T> future, long deadline)
+      throws InterruptedException, ExecutionException, TimeoutException {
+    if (deadline == NO_DEADLINE) {
+      return future.get();
+    }
+    return future.get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * A queued lookup. Reading it resolves its batch first.
+   */
+  private abstract static class Lookup<T> implements Future<T> {
+    private final Batch batch;
+    private boolean done;
+    private T value;
+    private Throwable error;
+    private Future<T> delegate;
+
+    Lookup(Batch batch) {
+      this.batch = batch;
+    }
+
+    void set(T value) {
+      synchronized (batch) {
+        this.value = value;
+        this.done = true;
+        batch.notifyAll();
+      }
+    }
+
+    void fail(Throwable error) {
+      synchronized (batch) {
+        this.error = error;
+        this.done = true;
+        batch.notifyAll();
+      }
+    }
+
+    void complete(Future<T> future) {
+      synchronized (batch) {
+        this.delegate = future;
+        this.done = true;
+        batch.notifyAll();
+      }
+    }
+
+    public T get() throws InterruptedException, ExecutionException {
+      try {
+        return get(NO_DEADLINE);
+      } catch (TimeoutException e) {
+        // Can't happen without a deadline.
+        throw new ExecutionException(e);
+      }
+    }
+
+    public T get(long timeout, TimeUnit unit)
+        throws InterruptedException, ExecutionException, TimeoutException {
+      return get(System.nanoTime() + unit.toNanos(timeout));
+    }
+
+    private T get(long deadline)
+        throws InterruptedException, ExecutionException, TimeoutException {
+      batch.resolve(deadline);
+      Future<T> future;
+      synchronized (batch) {
+        // Another reader may still be resolving the batch.
+        while (!done) {
+          if (deadline == NO_DEADLINE) {
+            batch.wait();
+          } else {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+              throw new TimeoutException();
+            }
+            TimeUnit.NANOSECONDS.timedWait(batch, remaining);
+          }
+        }
+        if (error != null) {
+          throw new ExecutionException(error);
+        }
+        if (delegate == null) {
+          return value;
+        }
+        future = delegate;
+      }
+      // Wait outside the lock, so other lookups of the batch can be read meanwhile.
+      return await(future, deadline);
+    }
+
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      return false;
+    }
+
+    public boolean isCancelled() {
+      return false;
+    }
+
+    public boolean isDone() {
+      synchronized (batch) {
+        return done;
+      }
+    }
+  }
+
+  private static class PersonLookup extends Lookup<Person> {
+    final UserId userId;
+    final Set<String> fields;
+
+    PersonLookup(Batch batch, UserId userId, Set<String> fields) {
+      super(batch);
+      this.userId = userId;
+      this.fields = fields;
+    }
+  }
+
+  private static class DataLookup extends Lookup<DataCollection> {
+    final Set<UserId> userIds;
+    final String appId;
+    final Set<String> fields;
+
+    DataLookup(Batch batch, Set<UserId> userIds, String appId, Set<String> fields) {
+      super(batch);
+      this.userIds = userIds;
+      this.appId = appId;
+      this.fields = fields;
+    }
+  }
+}
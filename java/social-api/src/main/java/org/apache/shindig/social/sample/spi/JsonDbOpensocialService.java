@@ -20,10 +20,12 @@ package org.apache.shindig.social.sample.spi;
 
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Future;
 
 import javax.servlet.http.HttpServletResponse;
@@ -36,6 +38,7 @@ import org.apache.shindig.protocol.DataCollection;
 import org.apache.shindig.protocol.ProtocolException;
 import org.apache.shindig.protocol.RestfulCollection;
 import org.apache.shindig.protocol.conversion.BeanConverter;
+import org.apache.shindig.protocol.conversion.BeanJsonConverter;
 import org.apache.shindig.protocol.model.SortOrder;
 import org.apache.shindig.social.opensocial.model.Activity;
 import org.apache.shindig.social.opensocial.model.Album;
@@ -56,8 +59,10 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedSet;
 import com.google.common.collect.Lists;
+import com.google.common.collect.MapMaker;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.inject.Inject;
@@ -71,19 +76,23 @@ import com.google.inject.name.Named;
 public class JsonDbOpensocialService implements ActivityService, PersonService, AppDataService,
     MessageService, AlbumService, MediaItemService {
 
-  private static final Comparator<Person> NAME_COMPARATOR = new Comparator<Person>() {
-    public int compare(Person person, Person person1) {
-      String name = person.getName().getFormatted();
-      String name1 = person1.getName().getFormatted();
-      return name.compareTo(name1);
-    }
-  };
 
   /**
    * The DB
    */
   private JSONObject db;
 
+  /**
+   * Lookup structures over db["people"], see {@link #getPeopleIndex()}.
+   */
+  private volatile PeopleIndex peopleIndex;
+
+  /**
+   * Friend lists resolved for each request, see {@link #getFriendIds}.
+   */
+  private final ConcurrentMap<SecurityToken, ConcurrentMap<String, Set<String>>> friendIds =
+      new MapMaker().weakKeys().makeMap();
+
   /**
    * The JSON<->Bean converter
    */
@@ -160,6 +169,7 @@ public class JsonDbOpensocialService implements ActivityService, PersonService,
    */
   public void setDb(JSONObject db) {
     this.db = db;
+    friendIds.clear();
   }
 
   /** {@inheritDoc} */
@@ -294,46 +304,50 @@ public class JsonDbOpensocialService implements ActivityService, PersonService,
   /** {@inheritDoc} */
   public Future<RestfulCollection<Person>> getPeople(Set<UserId> userIds, GroupId groupId,
       CollectionOptions options, Set<String> fields, SecurityToken token) throws ProtocolException {
-    List<Person> result = Lists.newArrayList();
     try {
-      JSONArray people = db.getJSONArray(PEOPLE_TABLE);
+      PeopleIndex index = getPeopleIndex();
 
       Set<String> idSet = getIdSet(userIds, groupId, token);
 
-      for (int i = 0; i < people.length(); i++) {
-        JSONObject person = people.getJSONObject(i);
-        if (!idSet.contains(person.get(Person.Field.ID.toString()))) {
-          continue;
+      List<JSONObject> matches = Lists.newArrayListWithCapacity(idSet.size());
+      for (String id : idSet) {
+        JSONObject person = index.byId.get(id);
+        if (person != null) {
+          matches.add(person);
         }
-
-        // Add group support later
-        Person personObj = filterFields(person, fields, Person.class);
-        Map<String, Object> appData = getPersonAppData(
-            person.getString(Person.Field.ID.toString()), fields);
-        personObj.setAppData(appData);
-
-        result.add(personObj);
       }
 
-      if (GroupId.Type.self == groupId.getType() && result.isEmpty()) {
+      if (GroupId.Type.self == groupId.getType() && matches.isEmpty()) {
         throw new ProtocolException(HttpServletResponse.SC_BAD_REQUEST, "People '" + idSet + "' not found");
       }
 
-      // We can pretend that by default the people are in top friends order
+      // We can pretend that by default the people are in top friends order.
+      // Rows are ordered and paged before conversion, so only the returned page becomes beans.
       if (options.getSortBy().equals(Person.Field.NAME.toString())) {
-        Collections.sort(result, NAME_COMPARATOR);
+        Collections.sort(matches, index.nameOrder);
 
         if (options.getSortOrder() == SortOrder.descending) {
-          Collections.reverse(result);
+          Collections.reverse(matches);
         }
+      } else {
+        Collections.sort(matches, index.tableOrder);
       }
 
       // TODO: The samplecontainer doesn't really have the concept of HAS_APP so
       // we can't support any filters yet. We should fix this.
 
-      int totalSize = result.size();
+      int totalSize = matches.size();
       int last = options.getFirst() + options.getMax();
-      result = result.subList(options.getFirst(), Math.min(last, totalSize));
+      List<Person> result = Lists.newArrayList();
+      for (JSONObject person : matches.subList(options.getFirst(), Math.min(last, totalSize))) {
+        // Add group support later
+        Person personObj = filterFields(person, fields, Person.class);
+        Map<String, Object> appData = getPersonAppData(
+            person.getString(Person.Field.ID.toString()), fields);
+        personObj.setAppData(appData);
+
+        result.add(personObj);
+      }
 
       return ImmediateFuture.newInstance(new RestfulCollection<Person>(result, options.getFirst(), totalSize, options.getMax()));
     } catch (JSONException je) {
@@ -346,18 +360,14 @@ public class JsonDbOpensocialService implements ActivityService, PersonService,
   public Future<Person> getPerson(UserId id, Set<String> fields, SecurityToken token)
       throws ProtocolException {
     try {
-      JSONArray people = db.getJSONArray(PEOPLE_TABLE);
-
-      for (int i = 0; i < people.length(); i++) {
-        JSONObject person = people.getJSONObject(i);
-        if (id != null && person.get(Person.Field.ID.toString()).equals(id.getUserId(token))) {
-          Person personObj = filterFields(person, fields, Person.class);
-          Map<String, Object> appData = getPersonAppData(person.getString(Person.Field.ID
-              .toString()), fields);
-          personObj.setAppData(appData);
+      JSONObject person = getPeopleIndex().byId.get(id.getUserId(token));
+      if (person != null) {
+        Person personObj = filterFields(person, fields, Person.class);
+        Map<String, Object> appData = getPersonAppData(person.getString(Person.Field.ID
+            .toString()), fields);
+        personObj.setAppData(appData);
 
-          return ImmediateFuture.newInstance(personObj);
-        }
+        return ImmediateFuture.newInstance(personObj);
       }
       throw new ProtocolException(HttpServletResponse.SC_BAD_REQUEST, "Person '" + id.getUserId(token) + "' not found");
     } catch (JSONException je) {
@@ -366,6 +376,20 @@ public class JsonDbOpensocialService implements ActivityService, PersonService,
     }
   }
 
+  /**
+   * Returns the index over db["people"], rebuilding it if the table has been replaced or grown
+   * since it was built. Rows are expected to be added to the table, not edited in place.
+   */
+  private PeopleIndex getPeopleIndex() throws JSONException {
+    JSONArray people = db.getJSONArray(PEOPLE_TABLE);
+    PeopleIndex index = peopleIndex;
+    if (index == null || index.people != people || index.length != people.length()) {
+      index = new PeopleIndex(people);
+      peopleIndex = index;
+    }
+    return index;
+  }
+
   private Map<String, Object> getPersonAppData(String id, Set<String> fields) {
     try {
       Map<String, Object> appData = null;
@@ -641,12 +665,7 @@ public class JsonDbOpensocialService implements ActivityService, PersonService,
     case all:
     case friends:
     case groupId:
-      if (db.getJSONObject(FRIEND_LINK_TABLE).has(userId)) {
-        JSONArray friends = db.getJSONObject(FRIEND_LINK_TABLE).getJSONArray(userId);
-        for (int i = 0; i < friends.length(); i++) {
-          returnVal.add(friends.getString(i));
-        }
-      }
+      returnVal.addAll(getFriendIds(userId, token));
       break;
     case self:
       returnVal.add(userId);
@@ -655,6 +674,41 @@ public class JsonDbOpensocialService implements ActivityService, PersonService,
     return returnVal;
   }
 
+  /**
+   * Returns the friends of a user. Lists are remembered for the lifetime of the request's token,
+   * since a batch or a render typically resolves the same viewer and owner friends many times.
+   */
+  private Set<String> getFriendIds(String userId, SecurityToken token) throws JSONException {
+    ConcurrentMap<String, Set<String>> resolved = null;
+    if (token != null) {
+      resolved = friendIds.get(token);
+      if (resolved == null) {
+        resolved = new MapMaker().makeMap();
+        ConcurrentMap<String, Set<String>> existing = friendIds.putIfAbsent(token, resolved);
+        if (existing != null) {
+          resolved = existing;
+        }
+      }
+      Set<String> friends = resolved.get(userId);
+      if (friends != null) {
+        return friends;
+      }
+    }
+
+    ImmutableSet.Builder<String> builder = ImmutableSet.builder();
+    JSONArray friends = db.getJSONObject(FRIEND_LINK_TABLE).optJSONArray(userId);
+    if (friends != null) {
+      for (int i = 0; i < friends.length(); i++) {
+        builder.add(friends.getString(i));
+      }
+    }
+    Set<String> friendSet = builder.build();
+    if (resolved != null) {
+      resolved.put(userId, friendSet);
+    }
+    return friendSet;
+  }
+
   /**
    * Get the set of user id's for a set of users and a group
    *
@@ -1183,6 +1237,68 @@ public class JsonDbOpensocialService implements ActivityService, PersonService,
       object = new JSONObject(object, fields.toArray(new String[fields
           .size()]));
     }
+    if (converter instanceof BeanJsonConverter) {
+      // Populate the bean from the copy directly instead of writing and parsing it again.
+      return clz.cast(((BeanJsonConverter) converter).convertToObject(object, clz));
+    }
     return converter.convertToObject(object.toString(), clz);
   }
+
+  /**
+   * Immutable lookup structures over the people table: rows by id, and each row's position in
+   * table order and in name order. Rebuilt as a whole when the table changes, so readers never
+   * need to lock.
+   */
+  private static final class PeopleIndex {
+    final JSONArray people;
+    final int length;
+    final Map<String, JSONObject> byId;
+    final Comparator<JSONObject> tableOrder;
+    final Comparator<JSONObject> nameOrder;
+
+    PeopleIndex(JSONArray people) throws JSONException {
+      this.people = people;
+      this.length = people.length();
+
+      Map<String, JSONObject> byId = Maps.newHashMapWithExpectedSize(length);
+      final Map<JSONObject, Integer> position = new IdentityHashMap<JSONObject, Integer>(length);
+      List<JSONObject> byName = Lists.newArrayListWithCapacity(length);
+      for (int i = 0; i < length; i++) {
+        JSONObject person = people.getJSONObject(i);
+        String id = person.getString(Person.Field.ID.toString());
+        if (!byId.containsKey(id)) {
+          byId.put(id, person);
+          position.put(person, i);
+          byName.add(person);
+        }
+      }
+      this.byId = byId;
+
+      Collections.sort(byName, new Comparator<JSONObject>() {
+        public int compare(JSONObject person, JSONObject person1) {
+          return getFormattedName(person).compareTo(getFormattedName(person1));
+        }
+      });
+      final Map<JSONObject, Integer> nameRank = new IdentityHashMap<JSONObject, Integer>(length);
+      for (int i = 0; i < byName.size(); i++) {
+        nameRank.put(byName.get(i), i);
+      }
+
+      tableOrder = new Comparator<JSONObject>() {
+        public int compare(JSONObject person, JSONObject person1) {
+          return position.get(person) - position.get(person1);
+        }
+      };
+      nameOrder = new Comparator<JSONObject>() {
+        public int compare(JSONObject person, JSONObject person1) {
+          return nameRank.get(person) - nameRank.get(person1);
+        }
+      };
+    }
+
+    private static String getFormattedName(JSONObject person) {
+      JSONObject name = person.optJSONObject(Person.Field.NAME.toString());
+      return name == null ? "" : name.optString("formatted");
+    }
+  }
 }
@@ -37,6 +37,7 @@ import org.easymock.EasyMock;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.Date;
 
@@ -345,11 +346,24 @@ public class OAuthAuthenticationHanderTest extends EasyMockTestCase {
     FakeHttpServletRequest req = new FakeHttpServletRequest();
     String body = "BODY";
     req.setPostData(CharsetUtil.getUtf8Bytes(body));
-    byte[] bytes = OAuthAuthenticationHandler.readBody(req);
+    byte[] bytes = reqHandler.readBody(req);
     assertTrue(Arrays.equals(bytes, CharsetUtil.getUtf8Bytes(body)));
     assertEquals(req.getAttribute(AuthenticationHandler.STASHED_BODY), bytes);
   }
 
+  @Test
+  public void testReadBodyUsesConfiguredLimits() throws Exception {
+    FakeHttpServletRequest req = new FakeHttpServletRequest();
+    req.setPostData(CharsetUtil.getUtf8Bytes("BODY"));
+    reqHandler.setBodyLimits(2, 3);
+    try {
+      reqHandler.readBody(req);
+      fail("Body is over the configured limit");
+    } catch (IOException e) {
+      // Pass
+    }
+  }
+
   @Test
   public void testBodySigning() throws Exception {
     FakeHttpServletRequest req = new FakeHttpServletRequest();
@@ -359,7 +373,7 @@ public class OAuthAuthenticationHanderTest extends EasyMockTestCase {
     String hash = new String(Base64.encodeBase64(DigestUtils.sha(CharsetUtil.getUtf8Bytes(body))),
                              "UTF-8");
     req.setParameter(OAuthConstants.OAUTH_BODY_HASH, hash);
-    OAuthAuthenticationHandler.verifyBodyHash(req, hash);
+    reqHandler.verifyBodyHash(req, hash);
   }
 
   @Test
@@ -372,7 +386,7 @@ public class OAuthAuthenticationHanderTest extends EasyMockTestCase {
                                DigestUtils.sha(CharsetUtil.getUtf8Bytes("NOTBODY"))), "UTF-8");
     req.setParameter(OAuthConstants.OAUTH_BODY_HASH, hash);
     try {
-      OAuthAuthenticationHandler.verifyBodyHash(req, hash);
+      reqHandler.verifyBodyHash(req, hash);
       fail("Body verification should fail");
     } catch (AuthenticationHandler.InvalidAuthenticationException iae) {
       // Pass
@@ -389,7 +403,7 @@ public class OAuthAuthenticationHanderTest extends EasyMockTestCase {
                              "UTF-8");
     req.setParameter(OAuthConstants.OAUTH_BODY_HASH, hash);
     try {
-      OAuthAuthenticationHandler.verifyBodyHash(req, hash);
+      reqHandler.verifyBodyHash(req, hash);
       fail("Body verification should fail");
     } catch (AuthenticationHandler.InvalidAuthenticationException iae) {
       // Pass
@@ -402,6 +416,6 @@ public class OAuthAuthenticationHanderTest extends EasyMockTestCase {
     req.setPostData(CharsetUtil.getUtf8Bytes(""));
     String hash = new String(Base64.encodeBase64(DigestUtils.sha(CharsetUtil.getUtf8Bytes(""))),
                              "UTF-8");
-    OAuthAuthenticationHandler.verifyBodyHash(req, hash);
+    reqHandler.verifyBodyHash(req, hash);
   }
 }
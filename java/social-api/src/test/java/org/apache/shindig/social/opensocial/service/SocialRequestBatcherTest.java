@@ -0,0 +1,255 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.shindig.social.opensocial.service;
+
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.isA;
+
+import org.apache.shindig.common.EasyMockTestCase;
+import org.apache.shindig.common.testing.FakeGadgetToken;
+import org.apache.shindig.common.util.ImmediateFuture;
+import org.apache.shindig.protocol.DataCollection;
+import org.apache.shindig.protocol.ProtocolException;
+import org.apache.shindig.protocol.RestfulCollection;
+import org.apache.shindig.social.core.model.PersonImpl;
+import org.apache.shindig.social.opensocial.model.Person;
+import org.apache.shindig.social.opensocial.spi.AppDataService;
+import org.apache.shindig.social.opensocial.spi.CollectionOptions;
+import org.apache.shindig.social.opensocial.spi.GroupId;
+import org.apache.shindig.social.opensocial.spi.PersonService;
+import org.apache.shindig.social.opensocial.spi.UserId;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+import org.easymock.IAnswer;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.servlet.http.HttpServletResponse;
+
+public class SocialRequestBatcherTest extends EasyMockTestCase {
+  private static final GroupId SELF = new GroupId(GroupId.Type.self, null);
+  private static final Set<String> FIELDS = ImmutableSet.of("id", "name");
+  private static final UserId JOHN = new UserId(UserId.Type.userId, "john.doe");
+  private static final UserId JANE = new UserId(UserId.Type.userId, "jane.doe");
+
+  private PersonService personService;
+  private AppDataService appDataService;
+  private SocialRequestBatcher batcher;
+  private FakeGadgetToken token;
+
+  @Before
+  public void setUp() throws Exception {
+    personService = mock(PersonService.class);
+    appDataService = mock(AppDataService.class);
+    batcher = new SocialRequestBatcher(personService, appDataService);
+    token = new FakeGadgetToken();
+  }
+
+  private static Person person(String id) {
+    Person person = new PersonImpl();
+    person.setId(id);
+    return person;
+  }
+
+  @Test
+  public void personLookupsAreMerged() throws Exception {
+    expect(personService.getPeople(eq(ImmutableSet.of(JOHN, JANE)), eq(SELF),
+        isA(CollectionOptions.class), eq(FIELDS), eq(token)))
+        .andReturn(ImmediateFuture.newInstance(new RestfulCollection<Person>(
+            ImmutableList.of(person("jane.doe"), person("john.doe")))));
+    replay();
+
+    Future<Person> john = batcher.getPerson(JOHN, FIELDS, token);
+    Future<Person> jane = batcher.getPerson(JANE, FIELDS, token);
+    assertFalse(john.isDone());
+
+    assertEquals("john.doe", john.get().getId());
+    assertEquals("jane.doe", jane.get().getId());
+    verify();
+  }
+
+  @Test
+  public void mergedLookupAsksForIdAndClearsIt() throws Exception {
+    Set<String> nameOnly = ImmutableSet.of("name");
+    Person johnDoe = person("john.doe");
+    Person janeDoe = person("jane.doe");
+    expect(personService.getPeople(eq(ImmutableSet.of(JOHN, JANE)), eq(SELF),
+        isA(CollectionOptions.class), eq(ImmutableSet.of("name", "id")), eq(token)))
+        .andReturn(ImmediateFuture.newInstance(new RestfulCollection<Person>(
+            ImmutableList.of(janeDoe, johnDoe))));
+    replay();
+
+    Future<Person> john = batcher.getPerson(JOHN, nameOnly, token);
+    Future<Person> jane = batcher.getPerson(JANE, nameOnly, token);
+
+    assertSame(johnDoe, john.get());
+    assertSame(janeDoe, jane.get());
+    assertNull(johnDoe.getId());
+    verify();
+  }
+
+  @Test
+  public void singleLookupUsesGetPerson() throws Exception {
+    expect(personService.getPerson(JOHN, FIELDS, token))
+        .andReturn(ImmediateFuture.newInstance(person("john.doe")));
+    replay();
+
+    assertEquals("john.doe", batcher.getPerson(JOHN, FIELDS, token).get().getId());
+    verify();
+  }
+
+  @Test
+  public void missingPersonIsLookedUpAlone() throws Exception {
+    UserId missing = new UserId(UserId.Type.userId, "missing");
+    ProtocolException notFound =
+        new ProtocolException(HttpServletResponse.SC_BAD_REQUEST, "Person not found");
+    expect(personService.getPeople(eq(ImmutableSet.of(JOHN, missing)), eq(SELF),
+        isA(CollectionOptions.class), eq(FIELDS), eq(token)))
+        .andReturn(ImmediateFuture.newInstance(new RestfulCollection<Person>(
+            ImmutableList.of(person("john.doe")))));
+    expect(personService.getPerson(missing, FIELDS, token)).andThrow(notFound);
+    replay();
+
+    Future<Person> john = batcher.getPerson(JOHN, FIELDS, token);
+    Future<Person> other = batcher.getPerson(missing, FIELDS, token);
+
+    assertEquals("john.doe", john.get().getId());
+    try {
+      other.get();
+      fail("Lookup should have failed");
+    } catch (ExecutionException e) {
+      assertSame(notFound, e.getCause());
+    }
+    verify();
+  }
+
+  @Test
+  public void timedLookupHonorsTimeout() throws Exception {
+    Future<Person> never = new FutureTask<Person>(new Callable<Person>() {
+      public Person call() {
+        return null;
+      }
+    });
+    expect(personService.getPerson(JOHN, FIELDS, token)).andReturn(never);
+    replay();
+
+    try {
+      batcher.getPerson(JOHN, FIELDS, token).get(10, TimeUnit.MILLISECONDS);
+      fail("Lookup should have timed out");
+    } catch (TimeoutException e) {
+      // Expected.
+    }
+    verify();
+  }
+
+  @Test
+  public void readerDoesNotWaitForAnotherReadersMergedCall() throws Exception {
+    final FutureTask<RestfulCollection<Person>> people =
+        new FutureTask<RestfulCollection<Person>>(new Callable<RestfulCollection<Person>>() {
+          public RestfulCollection<Person> call() {
+            return new RestfulCollection<Person>(
+                ImmutableList.of(person("jane.doe"), person("john.doe")));
+          }
+        });
+    final CountDownLatch called = new CountDownLatch(1);
+    expect(personService.getPeople(eq(ImmutableSet.of(JOHN, JANE)), eq(SELF),
+        isA(CollectionOptions.class), eq(FIELDS), eq(token)))
+        .andAnswer(new IAnswer<Future<RestfulCollection<Person>>>() {
+          public Future<RestfulCollection<Person>> answer() {
+            called.countDown();
+            return people;
+          }
+        });
+    replay();
+
+    final Future<Person> john = batcher.getPerson(JOHN, FIELDS, token);
+    Future<Person> jane = batcher.getPerson(JANE, FIELDS, token);
+    FutureTask<Person> reader = new FutureTask<Person>(new Callable<Person>() {
+      public Person call() throws Exception {
+        return john.get();
+      }
+    });
+    new Thread(reader).start();
+    assertTrue(called.await(5, TimeUnit.SECONDS));
+
+    // The merged call is still running in the other reader.
+    assertFalse(jane.isDone());
+    try {
+      jane.get(10, TimeUnit.MILLISECONDS);
+      fail("Lookup should have timed out");
+    } catch (TimeoutException e) {
+      // Expected.
+    }
+
+    people.run();
+    assertEquals("john.doe", reader.get(5, TimeUnit.SECONDS).getId());
+    assertEquals("jane.doe", jane.get().getId());
+    verify();
+  }
+
+  @Test
+  public void differentTokensAreNotMerged() throws Exception {
+    FakeGadgetToken other = new FakeGadgetToken();
+    expect(personService.getPerson(JOHN, FIELDS, token))
+        .andReturn(ImmediateFuture.newInstance(person("john.doe")));
+    expect(personService.getPerson(JANE, FIELDS, other))
+        .andReturn(ImmediateFuture.newInstance(person("jane.doe")));
+    replay();
+
+    Future<Person> john = batcher.getPerson(JOHN, FIELDS, token);
+    Future<Person> jane = batcher.getPerson(JANE, FIELDS, other);
+    assertEquals("john.doe", john.get().getId());
+    assertEquals("jane.doe", jane.get().getId());
+    verify();
+  }
+
+  @Test
+  public void appDataReadsAreMergedAndSplit() throws Exception {
+    Set<String> fields = ImmutableSet.of("count");
+    Map<String, String> johnData = ImmutableMap.of("count", "1");
+    Map<String, String> janeData = ImmutableMap.of("count", "2");
+    expect(appDataService.getPersonData(ImmutableSet.of(JOHN, JANE), SELF, "app", fields, token))
+        .andReturn(ImmediateFuture.newInstance(new DataCollection(
+            ImmutableMap.of("john.doe", johnData, "jane.doe", janeData))));
+    replay();
+
+    Future<DataCollection> john =
+        batcher.getPersonData(ImmutableSet.of(JOHN), "app", fields, token);
+    Future<DataCollection> jane =
+        batcher.getPersonData(ImmutableSet.of(JANE), "app", fields, token);
+
+    assertEquals(ImmutableMap.of("john.doe", johnData), john.get().getEntry());
+    assertEquals(ImmutableMap.of("jane.doe", janeData), jane.get().getEntry());
+    verify();
+  }
+}
@@ -20,6 +20,7 @@ package org.apache.shindig.social.opensocial.util;
 import org.apache.commons.lang.StringUtils;
 import org.apache.shindig.common.xml.XmlException;
 import org.apache.shindig.common.xml.XmlUtil;
+import org.apache.shindig.protocol.RestfulCollection;
 import org.apache.shindig.protocol.conversion.BeanXStreamConverter;
 import org.apache.shindig.social.SocialApiTestsGuiceModule;
 import org.apache.shindig.social.core.model.ActivityImpl;
@@ -52,6 +53,7 @@ import org.w3c.dom.Node;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.StringWriter;
 import java.util.List;
 import java.util.Map;
 
@@ -130,6 +132,21 @@ public class BeanXStreamConverterTest extends Assert {
     assertEquals(johnDoe.getId(), id.getTextContent());
   }
 
+  @Test
+  public void testAppendWritesSameXml() throws Exception {
+    String xml = beanXmlConverter.convertToString(johnDoe);
+    StringWriter out = new StringWriter();
+    beanXmlConverter.append(out, johnDoe);
+    assertEquals(xml, out.toString());
+
+    RestfulCollection<Person> people = new RestfulCollection<Person>(
+        Lists.newArrayList(johnDoe, johnDoe));
+    xml = beanXmlConverter.convertToString(people);
+    out = new StringWriter();
+    beanXmlConverter.append(out, people);
+    assertEquals(xml, out.toString());
+  }
+
   @Test
   public void testActivityToXml() throws Exception {
     String xml = XSDValidator.validateOpenSocial(beanXmlConverter.convertToString(activity));
@@ -34,6 +34,7 @@ import org.apache.shindig.social.opensocial.spi.PersonService;
 import org.apache.shindig.social.opensocial.spi.UserId;
 
 import java.util.Collections;
+import java.util.List;
 
 import javax.servlet.http.HttpServletResponse;
 
@@ -41,6 +42,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
+import org.json.JSONObject;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -163,6 +165,57 @@ public class JsonDbOpensocialServiceTest extends Assert {
     assertEquals("jane.doe", responseItem.getEntry().get(1).getId());
   }
 
+  @Test
+  public void testGetFriendsSortedByNameIsPaged() throws Exception {
+    CollectionOptions options = new CollectionOptions();
+    options.setSortBy(Person.Field.NAME.toString());
+    options.setSortOrder(SortOrder.ascending);
+    options.setFirst(0);
+    options.setMax(20);
+
+    List<Person> all = db.getPeople(
+        ImmutableSet.of(CANON_USER), new GroupId(GroupId.Type.friends, null),
+        options, Collections.<String>emptySet(), token).get().getEntry();
+    assertEquals(4, all.size());
+    for (int i = 1; i < all.size(); i++) {
+      assertTrue(all.get(i - 1).getName().getFormatted()
+          .compareTo(all.get(i).getName().getFormatted()) <= 0);
+    }
+
+    options.setFirst(1);
+    options.setMax(2);
+    RestfulCollection<Person> page = db.getPeople(
+        ImmutableSet.of(CANON_USER), new GroupId(GroupId.Type.friends, null),
+        options, Collections.<String>emptySet(), token).get();
+    assertEquals(4, page.getTotalResults());
+    assertEquals(2, page.getEntry().size());
+    assertEquals(all.get(1).getId(), page.getEntry().get(0).getId());
+    assertEquals(all.get(2).getId(), page.getEntry().get(1).getId());
+
+    options.setSortOrder(SortOrder.descending);
+    options.setFirst(0);
+    options.setMax(1);
+    page = db.getPeople(
+        ImmutableSet.of(CANON_USER), new GroupId(GroupId.Type.friends, null),
+        options, Collections.<String>emptySet(), token).get();
+    assertEquals(all.get(3).getId(), page.getEntry().get(0).getId());
+  }
+
+  @Test
+  public void testGetPersonSeesAddedPeople() throws Exception {
+    UserId newUser = new UserId(UserId.Type.userId, "new.user");
+    try {
+      db.getPerson(newUser, Person.Field.DEFAULT_FIELDS, token).get();
+      fail();
+    } catch (ProtocolException e) {
+      assertEquals(HttpServletResponse.SC_BAD_REQUEST, e.getCode());
+    }
+
+    db.getDb().getJSONArray("people").put(new JSONObject("{id: 'new.user'}"));
+    assertEquals("new.user",
+        db.getPerson(newUser, Person.Field.DEFAULT_FIELDS, token).get().getId());
+  }
+
   @Test
   public void testGetExpectedActivities() throws Exception {
     RestfulCollection<Activity> responseItem = db.getActivities(